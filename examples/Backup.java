@@ -1,6 +1,4 @@
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -19,7 +17,8 @@ import com.aetrion.flickr.REST;
 import com.aetrion.flickr.RequestContext;
 import com.aetrion.flickr.auth.Auth;
 import com.aetrion.flickr.auth.Permission;
-import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.photos.DownloadResult;
+import com.aetrion.flickr.photos.ImageDownloader;
 import com.aetrion.flickr.photos.PhotoList;
 import com.aetrion.flickr.photos.PhotosInterface;
 import com.aetrion.flickr.photos.Size;
@@ -104,6 +103,7 @@ public class Backup {
 		
 		
 		
+		ImageDownloader downloader = new ImageDownloader(photoInt);
 		Iterator allIter = allPhotos.keySet().iterator();
 
 		while (allIter.hasNext()) {
@@ -111,33 +111,18 @@ public class Backup {
 			String setDirectoryName = makeSafeFilename(setTitle);
 
 			Collection currentSet = (Collection) allPhotos.get(setTitle);
-			Iterator setIterator = currentSet.iterator();
 			File setDirectory = new File(directory, setDirectoryName);
-			setDirectory.mkdir();
-			while (setIterator.hasNext()) {
-			
-				Photo p = (Photo) setIterator.next();
-				String url = p.getLargeUrl();
-				URL u = new URL(url);
-				String filename = u.getFile();
-				filename = filename.substring(filename.lastIndexOf("/") + 1 , filename.length());				
-				System.out.println("Now writing " + filename + " to " + setDirectory.getCanonicalPath());
-				BufferedInputStream inStream = new BufferedInputStream(photoInt.getImageAsStream(p, Size.LARGE));
-				File newFile = new File(setDirectory, filename);
-				
-				FileOutputStream fos = new FileOutputStream(newFile);
-			
-				int read;
-			
-				while ((read = inStream.read()) != -1) {
-					fos.write(read);
+			System.out.println("Now writing " + currentSet.size() + " photos to " + setDirectory.getCanonicalPath());
+			Iterator results = downloader.download(currentSet, Size.LARGE, setDirectory).iterator();
+			while (results.hasNext()) {
+				DownloadResult result = (DownloadResult) results.next();
+				if (!result.isSuccess()) {
+					System.out.println("Failed " + result.getPhoto().getId() + ": " + result.getException());
 				}
-				fos.flush();
-				fos.close();
-				inStream.close();
 			}
 		}
-		
+		System.out.println("Transferred " + downloader.getBytesTransferred() + " bytes at "
+				+ downloader.getBytesPerSecond() + " bytes/s");
 	}
 
 	private String makeSafeFilename(String input) {
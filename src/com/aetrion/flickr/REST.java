@@ -3,6 +3,7 @@
  */
 package com.aetrion.flickr;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -160,6 +161,48 @@ public class REST extends Transport {
         }
     }
 
+    /**
+     * Invoke an HTTP GET request on a remote host and return the response
+     * body without parsing it.
+     *
+     * @param path The request path
+     * @param parameters The parameters (collection of Parameter objects)
+     * @return The response body
+     * @throws IOException
+     */
+    public byte[] getBytes(String path, List parameters) throws IOException {
+        URL url = UrlUtilities.buildUrl(getHost(), getPort(), path, parameters);
+        if (Flickr.debugRequest) System.out.println("GET: " + url);
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod("GET");
+        if (proxyAuth) {
+            conn.setRequestProperty(
+                "Proxy-Authorization",
+                "Basic " + getProxyCredentials()
+            );
+        }
+        conn.connect();
+
+        InputStream in = null;
+        try {
+            if (Flickr.debugStream) {
+                in = new DebugInputStream(conn.getInputStream(), System.out);
+            } else {
+                in = conn.getInputStream();
+            }
+            int length = conn.getContentLength();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length > 0 ? length : MAX_BUFFER_SIZE);
+            byte[] buffer = new byte[MAX_BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            IOUtilities.close(in);
+        }
+    }
+
     /**
      * Invoke an HTTP POST request on a remote host.
      *
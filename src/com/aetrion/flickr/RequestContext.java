@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.aetrion.flickr.auth.Auth;
+import com.aetrion.flickr.photos.InstancePool;
 
 /**
  * A thread local variable used to hold contextual information used in requests.  To get an instance of this class use
@@ -24,6 +25,7 @@ public class RequestContext {
     private Auth auth;
     private String sharedSecret;
     private List extras;
+    private InstancePool instancePool;
 
     /**
      * Get the RequestContext instance for the current Thread.
@@ -76,6 +78,42 @@ public class RequestContext {
         this.extras = extras;
     }
 
+    /**
+     * Get the pool for owners, tags and sizes of the photos parsed in this
+     * thread.
+     *
+     * @return The pool or null
+     * @see InstancePool
+     */
+    public InstancePool getInstancePool() {
+        return instancePool;
+    }
+
+    /**
+     * Set a pool to share owners, tags and sizes between the photos parsed
+     * in this thread. Overrides {@link InstancePool#getShared()}.
+     *
+     * @param instancePool The pool or null
+     */
+    public void setInstancePool(InstancePool instancePool) {
+        this.instancePool = instancePool;
+    }
+
+    /**
+     * Copy the settings of this RequestContext to another one, like the
+     * context of a worker thread.
+     *
+     * @param context The target
+     * @return The target
+     */
+    public RequestContext copyTo(RequestContext context) {
+        context.setAuth(getAuth());
+        context.setSharedSecret(getSharedSecret());
+        context.setExtras(getExtras());
+        context.setInstancePool(getInstancePool());
+        return context;
+    }
+
     private static class RequestContextThreadLocal extends ThreadLocal {
 
         protected Object initialValue() {
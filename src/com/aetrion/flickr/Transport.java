@@ -3,11 +3,22 @@
  */
 package com.aetrion.flickr;
 
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.xml.sax.SAXException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
 /**
  * The abstract Transport class provides a common interface for transporting requests to the Flickr servers. Flickr
  * offers several transport methods including REST, SOAP and XML-RPC. FlickrJ currently implements the REST transport
@@ -62,6 +73,25 @@ public abstract class Transport {
      */
     public abstract Response get(String path, List parameters) throws IOException, SAXException;
 
+    /**
+     * Invoke an HTTP GET request on a remote host and return the unparsed
+     * response body. This implementation writes the response of
+     * {@link #get(String, List)} back as XML, transports receiving the body
+     * as it is should override it.
+     *
+     * @param path The request path
+     * @param parameters The parameters (collection of Parameter objects)
+     * @return The response body
+     * @throws IOException
+     */
+    public byte[] getBytes(String path, List parameters) throws IOException {
+        try {
+            return serialize(get(path, parameters));
+        } catch (SAXException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
     /**
      * Invoke an HTTP POST request on a remote host.
      *
@@ -113,4 +143,66 @@ public abstract class Transport {
         this.responseClass = responseClass;
     }
 
+    /**
+     * Parse a response body into a new instance of the response class.
+     * The builder is locked while parsing.
+     *
+     * @param builder The DocumentBuilder
+     * @param data The response body
+     * @return The Response
+     * @throws IOException
+     * @throws SAXException
+     */
+    protected Response parse(DocumentBuilder builder, byte[] data) throws IOException, SAXException {
+        try {
+            Response response;
+            synchronized (builder) {
+                Document document = builder.parse(new ByteArrayInputStream(data));
+                response = (Response) responseClass.newInstance();
+                response.parse(document);
+            }
+            return response;
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        } catch (InstantiationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Write a parsed response back as XML.
+     */
+    protected static byte[] serialize(Response response) throws IOException {
+        Document document = null;
+        if (!response.isError()) {
+            Collection payload = response.getPayloadCollection();
+            Element element = payload == null ? response.getPayload()
+                : (payload.isEmpty() ? null : (Element) payload.iterator().next());
+            if (element != null) {
+                document = element.getOwnerDocument();
+            }
+        }
+        if (document == null) {
+            String rsp = response.isError()
+                ? "<rsp stat=\"fail\"><err code=\"" + escape(response.getErrorCode())
+                    + "\" msg=\"" + escape(response.getErrorMessage()) + "\" /></rsp>"
+                : "<rsp stat=\"ok\"></rsp>";
+            return ("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n" + rsp + "\n").getBytes("UTF-8");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            TransformerFactory.newInstance().newTransformer().transform(new DOMSource(document), new StreamResult(out));
+        } catch (TransformerException e) {
+            throw new IOException("Unable to serialize the response: " + e.getMessage());
+        }
+        return out.toByteArray();
+    }
+
+    private static String escape(String s) {
+        if (s == null) {
+            return "";
+        }
+        return s.replaceAll("&", "&amp;").replaceAll("<", "&lt;").replaceAll("\"", "&quot;");
+    }
+
 }
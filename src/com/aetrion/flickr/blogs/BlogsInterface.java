@@ -59,7 +59,7 @@ public class BlogsInterface {
         parameters.add(new Parameter("method", METHOD_GET_SERVICES));
         parameters.add(new Parameter("api_key", apiKey));
 
-        Response response = transportAPI.post(transportAPI.getPath(), parameters);
+        Response response = transportAPI.get(transportAPI.getPath(), parameters);
         if (response.isError()) {
             throw new FlickrException(response.getErrorCode(), response.getErrorMessage());
         }
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+package com.aetrion.flickr.cache;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The table of which cached responses a write method makes stale.<p>
+ *
+ * Cached responses are tagged with the photos, photosets and users they
+ * contain: the photo_id, photoset_id and user_id of the request, and the
+ * photos and photosets listed in the response. A rule of a write method
+ * names the parameter of the write, like photo_id, and the read method whose
+ * responses tagged with that id are removed. Rules without a parameter
+ * remove all responses of the read method, for writes which don't name the
+ * changed object, like creating a photoset.<p>
+ *
+ * Lists which don't contain a photo yet, like searches for a tag just added,
+ * aren't removed and only pick up the change when they expire.
+ *
+ * @see CachingTransport
+ */
+public class CacheInvalidation {
+
+    /**
+     * Removes the responses of a read method when a write method is called.
+     */
+    public static class Rule {
+
+        private final String parameter;
+        private final String readMethod;
+
+        /**
+         * @param parameter The parameter of the write with the id of the
+         * changed object, or null for all responses of the read method
+         * @param readMethod The read method
+         */
+        public Rule(String parameter, String readMethod) {
+            this.parameter = parameter;
+            this.readMethod = readMethod;
+        }
+
+        public String getParameter() {
+            return parameter;
+        }
+
+        public String getReadMethod() {
+            return readMethod;
+        }
+
+    }
+
+    /** The lists of photos, which are tagged with the photos they contain. */
+    private static final String[] PHOTO_LISTS = {
+        "flickr.photos.search",
+        "flickr.photosets.getPhotos",
+        "flickr.people.getPublicPhotos",
+        "flickr.groups.pools.getPhotos",
+        "flickr.favorites.getPublicList",
+        "flickr.interestingness.getList",
+        "flickr.panda.getPhotos"
+    };
+
+    private static final String[] PHOTO_WRITES = {
+        "flickr.photos.setMeta",
+        "flickr.photos.setTags",
+        "flickr.photos.addTags",
+        "flickr.photos.setDates",
+        "flickr.photos.setPerms",
+        "flickr.photos.setContentType",
+        "flickr.photos.setSafetyLevel",
+        "flickr.photos.licenses.setLicense",
+        "flickr.photos.geo.setLocation",
+        "flickr.photos.geo.removeLocation",
+        "flickr.photos.geo.setPerms",
+        "flickr.photos.geo.setContext",
+        "flickr.photos.notes.add",
+        "flickr.photos.delete"
+    };
+
+    /** The parameters naming the objects of a request. */
+    private static final String[] TAGGED_PARAMETERS = {"photo_id", "photoset_id", "user_id", "group_id"};
+    private static final byte[] PHOTO = {'<', 'p', 'h', 'o', 't', 'o', ' '};
+    private static final byte[] PHOTOSET = {'<', 'p', 'h', 'o', 't', 'o', 's', 'e', 't', ' '};
+    private static final byte[] ID = {'i', 'd', '='};
+
+    private final Map rules = new HashMap();
+
+    /**
+     * Construct a CacheInvalidation with the default rules.
+     */
+    public CacheInvalidation() {
+        for (int i = 0; i < PHOTO_WRITES.length; i++) {
+            addRule(PHOTO_WRITES[i], "photo_id", "flickr.photos.getInfo");
+            addPhotoListRules(PHOTO_WRITES[i]);
+        }
+        addRule("flickr.photos.setTags", "photo_id", "flickr.tags.getListPhoto");
+        addRule("flickr.photos.addTags", "photo_id", "flickr.tags.getListPhoto");
+        addRule("flickr.photos.setPerms", "photo_id", "flickr.photos.getPerms");
+        addRule("flickr.photos.geo.setLocation", "photo_id", "flickr.photos.geo.getLocation");
+        addRule("flickr.photos.geo.removeLocation", "photo_id", "flickr.photos.geo.getLocation");
+        addRule("flickr.photos.geo.setPerms", "photo_id", "flickr.photos.geo.getPerms");
+        addRule("flickr.photos.delete", "photo_id", "flickr.photos.getSizes");
+        addRule("flickr.photos.delete", "photo_id", "flickr.photos.getExif");
+        // the tag id doesn't name the photo
+        addRule("flickr.photos.removeTag", null, "flickr.photos.getInfo");
+        addRule("flickr.photos.removeTag", null, "flickr.tags.getListPhoto");
+        // the note id doesn't name the photo
+        addRule("flickr.photos.notes.edit", null, "flickr.photos.getInfo");
+        addRule("flickr.photos.notes.delete", null, "flickr.photos.getInfo");
+
+        addRule("flickr.photos.comments.addComment", "photo_id", "flickr.photos.comments.getList");
+        addRule("flickr.photos.comments.editComment", null, "flickr.photos.comments.getList");
+        addRule("flickr.photos.comments.deleteComment", null, "flickr.photos.comments.getList");
+        addRule("flickr.photosets.comments.addComment", "photoset_id", "flickr.photosets.comments.getList");
+        addRule("flickr.photosets.comments.editComment", null, "flickr.photosets.comments.getList");
+        addRule("flickr.photosets.comments.deleteComment", null, "flickr.photosets.comments.getList");
+
+        addRule("flickr.favorites.add", "photo_id", "flickr.photos.getFavorites");
+        addRule("flickr.favorites.add", null, "flickr.favorites.getList");
+        addRule("flickr.favorites.add", null, "flickr.favorites.getPublicList");
+        addRule("flickr.favorites.remove", "photo_id", "flickr.photos.getFavorites");
+        addRule("flickr.favorites.remove", "photo_id", "flickr.favorites.getList");
+        addRule("flickr.favorites.remove", "photo_id", "flickr.favorites.getPublicList");
+
+        addRule("flickr.groups.pools.add", "photo_id", "flickr.photos.getAllContexts");
+        addRule("flickr.groups.pools.add", "group_id", "flickr.groups.pools.getPhotos");
+        addRule("flickr.groups.pools.remove", "photo_id", "flickr.photos.getAllContexts");
+        addRule("flickr.groups.pools.remove", "photo_id", "flickr.groups.pools.getPhotos");
+
+        String[] setWrites = {
+            "flickr.photosets.addPhoto", "flickr.photosets.removePhoto", "flickr.photosets.editPhotos",
+            "flickr.photosets.editMeta", "flickr.photosets.delete"
+        };
+        for (int i = 0; i < setWrites.length; i++) {
+            addRule(setWrites[i], "photoset_id", "flickr.photosets.getInfo");
+            addRule(setWrites[i], "photoset_id", "flickr.photosets.getPhotos");
+            addRule(setWrites[i], "photoset_id", "flickr.photosets.getList");
+        }
+        addRule("flickr.photosets.addPhoto", "photo_id", "flickr.photos.getAllContexts");
+        addRule("flickr.photosets.removePhoto", "photo_id", "flickr.photos.getAllContexts");
+        addRule("flickr.photosets.create", null, "flickr.photosets.getList");
+        addRule("flickr.photosets.orderSets", null, "flickr.photosets.getList");
+    }
+
+    private void addPhotoListRules(String writeMethod) {
+        for (int i = 0; i < PHOTO_LISTS.length; i++) {
+            addRule(writeMethod, "photo_id", PHOTO_LISTS[i]);
+        }
+    }
+
+    /**
+     * Add a rule.
+     *
+     * @param writeMethod The write method
+     * @param parameter The parameter of the write with the id of the
+     * changed object, or null for all responses of the read method
+     * @param readMethod The read method
+     */
+    public synchronized void addRule(String writeMethod, String parameter, String readMethod) {
+        List list = (List) rules.get(writeMethod);
+        if (list == null) {
+            list = new ArrayList();
+            rules.put(writeMethod, list);
+        }
+        list.add(new Rule(parameter, readMethod));
+    }
+
+    /**
+     * Remove all rules of a write method.
+     *
+     * @param writeMethod The write method
+     */
+    public synchronized void removeRules(String writeMethod) {
+        rules.remove(writeMethod);
+    }
+
+    /**
+     * @param writeMethod The write method
+     * @return List of {@link Rule}
+     */
+    public synchronized List getRules(String writeMethod) {
+        List list = (List) rules.get(writeMethod);
+        return list == null ? new ArrayList() : new ArrayList(list);
+    }
+
+    /**
+     * Remove the cached responses made stale by a write.
+     *
+     * @param parameters The parameters of the write, including the method
+     * @param cache The ResponseCache
+     * @return The number of responses removed
+     */
+    public int invalidate(List parameters, ResponseCache cache) {
+        String method = CachePolicy.getValue(parameters, "method");
+        if (method == null) {
+            return 0;
+        }
+        int removed = 0;
+        List list = getRules(method);
+        for (int i = 0; i < list.size(); i++) {
+            Rule rule = (Rule) list.get(i);
+            if (rule.getParameter() == null) {
+                removed += cache.removeMethod(rule.getReadMethod());
+                continue;
+            }
+            String value = CachePolicy.getValue(parameters, rule.getParameter());
+            if (value == null) {
+                continue;
+            }
+            // editPhotos and the like take comma separated ids
+            String[] ids = value.split(",");
+            for (int j = 0; j < ids.length; j++) {
+                removed += cache.removeTagged(getTag(rule.getParameter(), ids[j].trim()), rule.getReadMethod());
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Get the tag of an object.
+     *
+     * @param parameter The parameter naming the object, like photo_id
+     * @param id The id
+     * @return The tag, like photo:2733
+     */
+    public static String getTag(String parameter, String id) {
+        String kind = parameter.endsWith("_id") ? parameter.substring(0, parameter.length() - 3) : parameter;
+        return kind + ":" + id;
+    }
+
+    /**
+     * Get the tags of a response: the objects named by the request, and the
+     * photos and photosets listed in the response.
+     *
+     * @param parameters The parameters of the request
+     * @param data The response
+     * @return The tags
+     */
+    public static String[] getTags(List parameters, byte[] data) {
+        Set tags = new LinkedHashSet();
+        for (int i = 0; i < TAGGED_PARAMETERS.length; i++) {
+            String value = CachePolicy.getValue(parameters, TAGGED_PARAMETERS[i]);
+            if (value != null) {
+                tags.add(getTag(TAGGED_PARAMETERS[i], value));
+            }
+        }
+        addElementIds(tags, data, PHOTO, "photo:");
+        addElementIds(tags, data, PHOTOSET, "photoset:");
+        return (String[]) tags.toArray(new String[tags.size()]);
+    }
+
+    /**
+     * Add the id attributes of all elements with a name.
+     */
+    private static void addElementIds(Set tags, byte[] data, byte[] element, String prefix) {
+        int i = 0;
+        while ((i = CachingTransport.indexOf(data, element, i, data.length)) >= 0) {
+            i += element.length;
+            int end = i;
+            while (end < data.length && data[end] != '>') {
+                end++;
+            }
+            // the id attribute, not one ending with id like place_id
+            int id = i;
+            while ((id = CachingTransport.indexOf(data, ID, id, end)) >= 0
+                && data[id - 1] != ' ' && data[id - 1] != '\t' && data[id - 1] != '\n') {
+                id += ID.length;
+            }
+            if (id >= 0 && id + ID.length < end) {
+                int start = id + ID.length + 1;
+                byte quote = data[start - 1];
+                int stop = start;
+                while (stop < end && data[stop] != quote) {
+                    stop++;
+                }
+                try {
+                    tags.add(prefix + new String(data, start, stop - start, "UTF-8"));
+                } catch (UnsupportedEncodingException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            i = end;
+        }
+    }
+
+}
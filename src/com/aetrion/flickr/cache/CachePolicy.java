@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+package com.aetrion.flickr.cache;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TimeZone;
+
+import com.aetrion.flickr.Parameter;
+
+/**
+ * The table of how long the responses of each API method may be cached.<p>
+ *
+ * Each method has one of four policies: {@link #FOREVER} for reference data
+ * which doesn't change, like the licenses or the place types,
+ * {@link #DAILY} for slowly changing data like places and users,
+ * {@link #MINUTES} for photos and lists, and {@link #NEVER}. Methods not in
+ * the table are never cached. The list of interestingness is cached forever
+ * for days which are over everywhere.<p>
+ *
+ * The defaults can be overridden by method, or with properties like
+ * <code>flickr.photos.search=never</code>:
+ *
+ * <pre>
+ * CachePolicy policy = new CachePolicy();
+ * policy.setPolicy("flickr.people.getInfo", CachePolicy.MINUTES);
+ * policy.setTtl(CachePolicy.MINUTES, 60 * 1000);
+ * </pre>
+ */
+public class CachePolicy {
+
+    public static final int NEVER = 0;
+    public static final int MINUTES = 1;
+    public static final int DAILY = 2;
+    public static final int FOREVER = 3;
+
+    private static final String[] NAMES = {"never", "minutes", "daily", "forever"};
+
+    private static final String METHOD_INTERESTINGNESS = "flickr.interestingness.getList";
+
+    private static final String[] FOREVER_METHODS = {
+        "flickr.photos.licenses.getInfo",
+        "flickr.places.getPlaceTypes",
+        "flickr.blogs.getServices",
+        "flickr.panda.getList",
+        "flickr.reflection.getMethods",
+        "flickr.reflection.getMethodInfo"
+    };
+
+    private static final String[] DAILY_METHODS = {
+        "flickr.commons.getInstitutions",
+        "flickr.people.findByEmail",
+        "flickr.people.findByUsername",
+        "flickr.people.getInfo",
+        "flickr.groups.getInfo",
+        "flickr.places.getInfo",
+        "flickr.places.getInfoByUrl",
+        "flickr.places.resolvePlaceId",
+        "flickr.places.resolvePlaceURL",
+        "flickr.urls.getGroup",
+        "flickr.urls.getUserPhotos",
+        "flickr.urls.getUserProfile",
+        "flickr.urls.lookupGroup",
+        "flickr.urls.lookupUser"
+    };
+
+    private static final String[] MINUTES_METHODS = {
+        METHOD_INTERESTINGNESS,
+        "flickr.favorites.getPublicList",
+        "flickr.groups.pools.getPhotos",
+        "flickr.panda.getPhotos",
+        "flickr.people.getPublicPhotos",
+        "flickr.photos.comments.getList",
+        "flickr.photos.getExif",
+        "flickr.photos.getInfo",
+        "flickr.photos.getSizes",
+        "flickr.photos.search",
+        "flickr.photosets.getInfo",
+        "flickr.photosets.getList",
+        "flickr.photosets.getPhotos",
+        "flickr.tags.getHotList",
+        "flickr.tags.getListPhoto"
+    };
+
+    private final Map policies = new HashMap();
+    private final long[] ttls = {0, 5 * 60 * 1000L, 24 * 60 * 60 * 1000L, Long.MAX_VALUE};
+
+    /**
+     * Construct a CachePolicy with the default table.
+     */
+    public CachePolicy() {
+        setPolicies(FOREVER_METHODS, FOREVER);
+        setPolicies(DAILY_METHODS, DAILY);
+        setPolicies(MINUTES_METHODS, MINUTES);
+    }
+
+    private void setPolicies(String[] methods, int policy) {
+        for (int i = 0; i < methods.length; i++) {
+            setPolicy(methods[i], policy);
+        }
+    }
+
+    /**
+     * Set the policy of a method.
+     *
+     * @param method The API method name
+     * @param policy One of the policies
+     */
+    public synchronized void setPolicy(String method, int policy) {
+        checkPolicy(policy);
+        policies.put(method, new Integer(policy));
+    }
+
+    /**
+     * Set the policies of the methods named in properties. The values are
+     * the names of the policies: never, minutes, daily or forever.
+     *
+     * @param properties The policies by method name
+     */
+    public void setPolicies(Properties properties) {
+        Iterator it = properties.keySet().iterator();
+        while (it.hasNext()) {
+            String method = (String) it.next();
+            setPolicy(method, parsePolicy(properties.getProperty(method)));
+        }
+    }
+
+    /**
+     * Get the policy of a method from the table.
+     *
+     * @param method The API method name
+     * @return The policy, {@link #NEVER} for unknown methods
+     */
+    public synchronized int getPolicy(String method) {
+        Integer policy = (Integer) policies.get(method);
+        return policy == null ? NEVER : policy.intValue();
+    }
+
+    /**
+     * Get the policy of a request.
+     *
+     * @param parameters The parameters of the request, including the method
+     * @return The policy
+     */
+    public int getPolicy(List parameters) {
+        String method = getValue(parameters, "method");
+        if (method == null) {
+            return NEVER;
+        }
+        int policy = getPolicy(method);
+        if (policy != NEVER && METHOD_INTERESTINGNESS.equals(method)) {
+            String date = getValue(parameters, "date");
+            if (date != null && date.compareTo(getLastFinishedDay()) <= 0) {
+                policy = FOREVER;
+            }
+        }
+        return policy;
+    }
+
+    /**
+     * Get the time to live of a policy.
+     *
+     * @param policy One of the policies
+     * @return Milliseconds, Long.MAX_VALUE for {@link #FOREVER}
+     */
+    public synchronized long getTtl(int policy) {
+        checkPolicy(policy);
+        return ttls[policy];
+    }
+
+    /**
+     * Set the time to live of {@link #MINUTES} or {@link #DAILY}.
+     *
+     * @param policy The policy
+     * @param ttl Milliseconds
+     */
+    public synchronized void setTtl(int policy, long ttl) {
+        if (policy != MINUTES && policy != DAILY) {
+            throw new IllegalArgumentException("Only the time to live of minutes and daily can be set");
+        }
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("The time to live must be positive");
+        }
+        ttls[policy] = ttl;
+    }
+
+    /**
+     * @param name never, minutes, daily or forever
+     * @return The policy
+     */
+    public static int parsePolicy(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equalsIgnoreCase(name.trim())) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown cache policy: " + name);
+    }
+
+    /**
+     * @param policy One of the policies
+     * @return The name of the policy
+     */
+    public static String getName(int policy) {
+        checkPolicy(policy);
+        return NAMES[policy];
+    }
+
+    private static void checkPolicy(int policy) {
+        if (policy < NEVER || policy > FOREVER) {
+            throw new IllegalArgumentException("Unknown cache policy: " + policy);
+        }
+    }
+
+    /**
+     * @return The date of the day before yesterday in UTC, which is over in
+     * all time zones
+     */
+    private static String getLastFinishedDay() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(System.currentTimeMillis() - 2 * 24 * 60 * 60 * 1000L));
+    }
+
+    static String getValue(List parameters, String name) {
+        for (int i = 0; i < parameters.size(); i++) {
+            Parameter parameter = (Parameter) parameters.get(i);
+            if (name.equals(parameter.getName())) {
+                return parameter.getValue() == null ? null : String.valueOf(parameter.getValue());
+            }
+        }
+        return null;
+    }
+
+}
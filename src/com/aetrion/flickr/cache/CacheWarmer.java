@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+package com.aetrion.flickr.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.aetrion.flickr.Flickr;
+import com.aetrion.flickr.Parameter;
+import com.aetrion.flickr.auth.AuthUtilities;
+import com.aetrion.flickr.util.IOUtilities;
+
+/**
+ * Fills the cache of a {@link CachingTransport} with reference data at
+ * startup, so short-lived processes don't wait for it on their first
+ * requests.<p>
+ *
+ * The responses of the {@link #REFERENCE_METHODS} are loaded from a
+ * snapshot file saved by an earlier run, and then fetched again in the
+ * background, saving a new snapshot. Applications bundling a snapshot can
+ * load it with {@link #loadSnapshot(InputStream)} first. Optionally the
+ * parsing and signing code is run a few times on the loaded responses, so
+ * the first real request doesn't pay for class loading and compilation.
+ *
+ * <pre>
+ * CachingTransport transport = new CachingTransport(new REST());
+ * Flickr flickr = new Flickr(apiKey, sharedSecret, transport);
+ * new CacheWarmer(flickr).warmUp(new File("reference.snapshot"), true);
+ * </pre>
+ */
+public class CacheWarmer {
+
+    public static final String[] REFERENCE_METHODS = {
+        "flickr.photos.licenses.getInfo",
+        "flickr.places.getPlaceTypes",
+        "flickr.reflection.getMethods",
+        "flickr.blogs.getServices",
+        "flickr.commons.getInstitutions"
+    };
+
+    public static final int DEFAULT_PRIME_ITERATIONS = 200;
+
+    private static final int MAGIC = 0x46435331;
+
+    private final Flickr flickr;
+    private final CachingTransport transport;
+
+    /**
+     * Construct a CacheWarmer.
+     *
+     * @param flickr The Flickr instance, with a CachingTransport
+     */
+    public CacheWarmer(Flickr flickr) {
+        if (!(flickr.getTransport() instanceof CachingTransport)) {
+            throw new IllegalArgumentException("The transport of the Flickr instance is not a CachingTransport");
+        }
+        this.flickr = flickr;
+        this.transport = (CachingTransport) flickr.getTransport();
+    }
+
+    /**
+     * Load a snapshot, prime the parsing and signing code if wanted, and
+     * start refreshing the reference data in the background.
+     *
+     * @param snapshot The snapshot file, loaded if it exists and saved after
+     * the refresh, or null to refresh only
+     * @param prime Whether to run the parsing and signing code
+     * @return The thread refreshing the reference data
+     */
+    public Thread warmUp(File snapshot, boolean prime) {
+        try {
+            if (snapshot != null && snapshot.isFile()) {
+                loadSnapshot(snapshot);
+            }
+        } catch (IOException e) {
+            // refreshed below
+        }
+        if (prime) {
+            prime(DEFAULT_PRIME_ITERATIONS);
+        }
+        return startRefresh(snapshot);
+    }
+
+    /**
+     * Start refreshing the reference data on a daemon thread.
+     *
+     * @param snapshot The file to save the snapshot to afterwards, or null
+     * @return The started thread
+     */
+    public Thread startRefresh(final File snapshot) {
+        Thread thread = new Thread("CacheWarmer refresh") {
+            public void run() {
+                if (refresh() > 0 && snapshot != null) {
+                    try {
+                        saveSnapshot(snapshot);
+                    } catch (IOException e) {
+                        // the next run refreshes again
+                    }
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Fetch the reference data, replacing the cached responses. Failed
+     * requests leave the cached responses as they are.
+     *
+     * @return The number of methods fetched
+     */
+    public int refresh() {
+        CachingTransport.REFRESHING.set(Boolean.TRUE);
+        try {
+            int fetched = 0;
+            for (int i = 0; i < REFERENCE_METHODS.length; i++) {
+                try {
+                    call(i);
+                    fetched++;
+                } catch (Exception e) {
+                    // keep the snapshot
+                }
+            }
+            return fetched;
+        } finally {
+            CachingTransport.REFRESHING.set(null);
+        }
+    }
+
+    /**
+     * Run the parsing and signing code on the cached reference data. The
+     * methods which are not cached are skipped, so nothing is fetched.
+     *
+     * @param iterations The number of times to run each method
+     */
+    public void prime(int iterations) {
+        List cached = new ArrayList();
+        List entries = transport.getCache().getEntries();
+        for (int i = 0; i < entries.size(); i++) {
+            cached.add(((ResponseCache.Entry) entries.get(i)).getMethod());
+        }
+        List parameters = new ArrayList();
+        parameters.add(new Parameter("method", REFERENCE_METHODS[0]));
+        parameters.add(new Parameter("api_key", flickr.getApiKey()));
+        String secret = flickr.getSharedSecret() != null ? flickr.getSharedSecret() : "";
+        for (int n = 0; n < iterations; n++) {
+            for (int i = 0; i < REFERENCE_METHODS.length; i++) {
+                if (cached.contains(REFERENCE_METHODS[i])) {
+                    try {
+                        call(i);
+                    } catch (Exception e) {
+                        // only warming up
+                    }
+                }
+            }
+            AuthUtilities.getSignature(secret, parameters);
+        }
+    }
+
+    private Object call(int method) throws Exception {
+        switch (method) {
+        case 0:
+            return flickr.getLicensesInterface().getInfo();
+        case 1:
+            return flickr.getPlacesInterface().getPlaceTypes();
+        case 2:
+            return flickr.getReflectionInterface().getMethods();
+        case 3:
+            return flickr.getBlogsInterface().getServices();
+        default:
+            return flickr.getCommonsInterface().getInstitutions();
+        }
+    }
+
+    /**
+     * Save the cached reference data.
+     *
+     * @param file The snapshot file
+     * @throws IOException
+     */
+    public void saveSnapshot(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            writeSnapshot(out);
+        } finally {
+            IOUtilities.close(out);
+        }
+        if (file.exists()) {
+            file.delete();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Unable to rename " + temp + " to " + file);
+        }
+    }
+
+    /**
+     * Write the cached reference data to a gzipped stream.
+     *
+     * @param out The stream, which is finished but not closed
+     * @throws IOException
+     */
+    public void writeSnapshot(OutputStream out) throws IOException {
+        List methods = Arrays.asList(REFERENCE_METHODS);
+        List entries = transport.getCache().getEntries();
+        List snapshot = new ArrayList();
+        for (int i = 0; i < entries.size(); i++) {
+            ResponseCache.Entry entry = (ResponseCache.Entry) entries.get(i);
+            if (methods.contains(entry.getMethod())) {
+                snapshot.add(entry);
+            }
+        }
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(gzip));
+        data.writeInt(MAGIC);
+        data.writeInt(snapshot.size());
+        for (int i = 0; i < snapshot.size(); i++) {
+            ResponseCache.Entry entry = (ResponseCache.Entry) snapshot.get(i);
+            data.writeUTF(entry.getKey());
+            data.writeUTF(entry.getMethod());
+            data.writeInt(entry.getData().length);
+            data.write(entry.getData());
+        }
+        data.flush();
+        gzip.finish();
+    }
+
+    /**
+     * Load a snapshot file into the cache.
+     *
+     * @param file The snapshot file
+     * @return The number of responses loaded
+     * @throws IOException
+     */
+    public int loadSnapshot(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return loadSnapshot(in);
+        } finally {
+            IOUtilities.close(in);
+        }
+    }
+
+    /**
+     * Load a snapshot into the cache. The responses expire according to the
+     * {@link CachePolicy} of the transport from now on, responses of methods
+     * which are never cached are skipped.
+     *
+     * @param in The gzipped snapshot, which is not closed
+     * @return The number of responses loaded
+     * @throws IOException
+     */
+    public int loadSnapshot(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(new GZIPInputStream(in)));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a snapshot");
+        }
+        int count = data.readInt();
+        List entries = new ArrayList(count);
+        for (int i = 0; i < count; i++) {
+            String key = data.readUTF();
+            String method = data.readUTF();
+            byte[] response = new byte[data.readInt()];
+            data.readFully(response);
+            entries.add(new Object[] {key, method, response});
+        }
+        // only complete snapshots are loaded
+        int loaded = 0;
+        CachePolicy policy = transport.getPolicy();
+        for (int i = 0; i < entries.size(); i++) {
+            Object[] entry = (Object[]) entries.get(i);
+            int methodPolicy = policy.getPolicy((String) entry[1]);
+            if (methodPolicy != CachePolicy.NEVER) {
+                transport.getCache().put((String) entry[0], (String) entry[1], (byte[]) entry[2],
+                    policy.getTtl(methodPolicy));
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+package com.aetrion.flickr.cache;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+import com.aetrion.flickr.ProgressListener;
+import com.aetrion.flickr.Response;
+import com.aetrion.flickr.Transport;
+
+/**
+ * A Transport answering GET requests from a {@link ResponseCache}, as far
+ * as the {@link CachePolicy} of the method allows.<p>
+ *
+ * Responses are cached as received by
+ * {@link Transport#getBytes(String, List)}. Error responses and POST requests are
+ * never cached. Concurrent requests for a response which is not cached yet
+ * are joined, the response is only fetched once.<p>
+ *
+ * Successful writes remove the cached responses they make stale, as given
+ * by the {@link CacheInvalidation}, so the cache can be used for
+ * authenticated users changing their photos. Responses which were being
+ * fetched during a write are not cached, and later requests don't join
+ * them.
+ *
+ * <pre>
+ * CachingTransport transport = new CachingTransport(new REST());
+ * Flickr flickr = new Flickr(apiKey, sharedSecret, transport);
+ * </pre>
+ */
+public class CachingTransport extends Transport {
+
+    private static final byte[] RSP = {'<', 'r', 's', 'p'};
+    private static final byte[] FAIL = {'f', 'a', 'i', 'l'};
+
+    private final Transport transport;
+    private final CachePolicy policy;
+    private final ResponseCache cache;
+    private final CacheInvalidation invalidation;
+    private final DocumentBuilder builder;
+
+    private final ConcurrentMap pending = new ConcurrentHashMap();
+
+    /** Set while the calling thread refreshes cached responses. */
+    static final ThreadLocal REFRESHING = new ThreadLocal();
+
+    /**
+     * Construct a CachingTransport with the default policy and a new cache.
+     *
+     * @param transport The Transport sending the requests
+     * @throws ParserConfigurationException
+     */
+    public CachingTransport(Transport transport) throws ParserConfigurationException {
+        this(transport, new CachePolicy(), new ResponseCache(), new CacheInvalidation());
+    }
+
+    /**
+     * Construct a CachingTransport.
+     *
+     * @param transport The Transport sending the requests
+     * @param policy The CachePolicy
+     * @param cache The ResponseCache, which may be shared
+     * @throws ParserConfigurationException
+     */
+    public CachingTransport(Transport transport, CachePolicy policy, ResponseCache cache)
+      throws ParserConfigurationException {
+        this(transport, policy, cache, new CacheInvalidation());
+    }
+
+    /**
+     * Construct a CachingTransport.
+     *
+     * @param transport The Transport sending the requests
+     * @param policy The CachePolicy
+     * @param cache The ResponseCache, which may be shared
+     * @param invalidation The CacheInvalidation, or null to leave the cache as it is on writes
+     * @throws ParserConfigurationException
+     */
+    public CachingTransport(Transport transport, CachePolicy policy, ResponseCache cache,
+      CacheInvalidation invalidation) throws ParserConfigurationException {
+        this.transport = transport;
+        this.policy = policy;
+        this.cache = cache;
+        this.invalidation = invalidation;
+        setTransportType(transport.getTransportType());
+        setHost(transport.getHost());
+        setPort(transport.getPort());
+        setPath(transport.getPath());
+        if (transport.getResponseClass() != null) {
+            setResponseClass(transport.getResponseClass());
+        }
+        builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+    }
+
+    public CachePolicy getPolicy() {
+        return policy;
+    }
+
+    public ResponseCache getCache() {
+        return cache;
+    }
+
+    public CacheInvalidation getInvalidation() {
+        return invalidation;
+    }
+
+    public void setResponseClass(Class responseClass) {
+        super.setResponseClass(responseClass);
+        transport.setResponseClass(responseClass);
+    }
+
+    public Response get(String path, List parameters) throws IOException, SAXException {
+        if (policy.getPolicy(parameters) == CachePolicy.NEVER) {
+            return transport.get(path, parameters);
+        }
+        return parse(builder, getBytes(path, parameters));
+    }
+
+    public byte[] getBytes(String path, List parameters) throws IOException {
+        final int methodPolicy = policy.getPolicy(parameters);
+        if (methodPolicy == CachePolicy.NEVER) {
+            return transport.getBytes(path, parameters);
+        }
+        final String key = ResponseCache.getKey(path, parameters);
+        if (REFRESHING.get() != null) {
+            long generation = cache.getGeneration();
+            byte[] fetched = transport.getBytes(path, parameters);
+            put(key, parameters, fetched, methodPolicy, generation);
+            return fetched;
+        }
+        byte[] data = cache.get(key);
+        if (data != null) {
+            return data;
+        }
+        final String fetchPath = path;
+        final List fetchParameters = parameters;
+        FutureTask task = new FutureTask(new Callable() {
+            public Object call() throws IOException {
+                // a previous fetch may have completed since the lookup
+                ResponseCache.Entry entry = cache.getEntry(key);
+                if (entry != null) {
+                    return entry.getData();
+                }
+                long generation = cache.getGeneration();
+                byte[] fetched = transport.getBytes(fetchPath, fetchParameters);
+                put(key, fetchParameters, fetched, methodPolicy, generation);
+                return fetched;
+            }
+        });
+        FutureTask running = (FutureTask) pending.putIfAbsent(key, task);
+        if (running == null) {
+            running = task;
+            try {
+                task.run();
+            } finally {
+                pending.remove(key, task);
+            }
+        }
+        try {
+            return (byte[]) running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + key);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private void put(String key, List parameters, byte[] data, int methodPolicy, long generation) {
+        if (!isError(data)) {
+            cache.put(key, CachePolicy.getValue(parameters, "method"), data,
+                policy.getTtl(methodPolicy), CacheInvalidation.getTags(parameters, data), generation);
+        }
+    }
+
+    public Response post(String path, List parameters, boolean multipart, ProgressListener progressListener, boolean video)
+      throws IOException, SAXException {
+        Response response = transport.post(path, parameters, multipart, progressListener, video);
+        if (invalidation != null && !response.isError()) {
+            invalidation.invalidate(parameters, cache);
+            // fetches started before the write may return stale responses
+            pending.clear();
+        }
+        return response;
+    }
+
+    /**
+     * Whether the rsp element of a response has the status fail.
+     */
+    static boolean isError(byte[] data) {
+        int start = indexOf(data, RSP, 0, data.length);
+        if (start < 0) {
+            return true;
+        }
+        int end = start;
+        while (end < data.length && data[end] != '>') {
+            end++;
+        }
+        return indexOf(data, FAIL, start, end) >= 0;
+    }
+
+    static int indexOf(byte[] data, byte[] pattern, int start, int end) {
+        for (int i = start; i <= end - pattern.length; i++) {
+            int j = 0;
+            while (j < pattern.length && data[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
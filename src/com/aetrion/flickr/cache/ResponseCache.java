@@ -0,0 +1,420 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+package com.aetrion.flickr.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.aetrion.flickr.Parameter;
+
+/**
+ * In-memory cache of API responses, as received, by request.<p>
+ *
+ * Each entry expires after the time to live given when it was put.
+ * Entries which never expire are kept for the lifetime of the cache, the
+ * others are evicted least recently used first when there are more than
+ * the maximum number of entries.<p>
+ *
+ * Entries may be tagged with the objects they contain, like
+ * <code>photo:2733</code>, to remove them when the objects change. Each
+ * removal starts a new generation, responses requested in an earlier
+ * generation are dropped by {@link #put(Entry, long)} as they may be
+ * stale.
+ *
+ * @see CachingTransport
+ */
+public class ResponseCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    /**
+     * A cached response.
+     */
+    public static class Entry {
+
+        private final String key;
+        private final String method;
+        private final byte[] data;
+        private final long expires;
+        private final String[] tags;
+
+        public Entry(String key, String method, byte[] data, long expires) {
+            this(key, method, data, expires, new String[0]);
+        }
+
+        public Entry(String key, String method, byte[] data, long expires, String[] tags) {
+            this.key = key;
+            this.method = method;
+            this.data = data;
+            this.expires = expires;
+            this.tags = tags;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        /**
+         * @return The response, which must not be modified
+         */
+        public byte[] getData() {
+            return data;
+        }
+
+        /**
+         * @return The expiry in milliseconds since the epoch, Long.MAX_VALUE for never
+         */
+        public long getExpires() {
+            return expires;
+        }
+
+        /**
+         * @return The tags of the objects in the response
+         */
+        public String[] getTags() {
+            return tags;
+        }
+
+    }
+
+    private final int maxEntries;
+
+    /** Key to Entry, in access order. Guarded by this. */
+    private final LinkedHashMap entries = new LinkedHashMap(256, 0.75f, true);
+    /** Key to Entry of entries which never expire. Guarded by this. */
+    private final Map permanent = new HashMap();
+    /** Tag to Set of keys. Guarded by this. */
+    private final Map tagged = new HashMap();
+    /** Incremented on each removal. Guarded by this. */
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Construct a ResponseCache with {@link #DEFAULT_MAX_ENTRIES}.
+     */
+    public ResponseCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Construct a ResponseCache.
+     *
+     * @param maxEntries The maximum number of entries which expire
+     */
+    public ResponseCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maximum number of entries must be at least 1");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Get the key of a request. The API key and signature are left out,
+     * the authentication token is part of the key.
+     *
+     * @param path The request path
+     * @param parameters The parameters of the request
+     * @return The key
+     */
+    public static String getKey(String path, List parameters) {
+        List pairs = new ArrayList(parameters.size());
+        for (int i = 0; i < parameters.size(); i++) {
+            Parameter parameter = (Parameter) parameters.get(i);
+            String name = parameter.getName();
+            if (!"api_key".equals(name) && !"api_sig".equals(name)) {
+                pairs.add(name + "=" + parameter.getValue());
+            }
+        }
+        Collections.sort(pairs);
+        StringBuffer key = new StringBuffer(path.length() + pairs.size() * 24);
+        key.append(path);
+        for (int i = 0; i < pairs.size(); i++) {
+            key.append(i == 0 ? '?' : '&').append(pairs.get(i));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Get a response.
+     *
+     * @param key The key of the request
+     * @return The response, or null if it isn't cached or has expired
+     */
+    public byte[] get(String key) {
+        Entry entry = getEntry(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.getData();
+    }
+
+    /**
+     * Get an entry without counting a hit or miss.
+     *
+     * @param key The key of the request
+     * @return The entry, or null if it isn't cached or has expired
+     */
+    public synchronized Entry getEntry(String key) {
+        Entry entry = (Entry) permanent.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        entry = (Entry) entries.get(key);
+        if (entry != null && entry.getExpires() <= System.currentTimeMillis()) {
+            entries.remove(key);
+            unindex(entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Put a response.
+     *
+     * @param key The key of the request
+     * @param method The API method
+     * @param data The response, which must not be modified afterwards
+     * @param ttl The time to live in milliseconds, Long.MAX_VALUE for never expiring
+     */
+    public void put(String key, String method, byte[] data, long ttl) {
+        put(key, method, data, ttl, new String[0]);
+    }
+
+    /**
+     * Put a tagged response.
+     *
+     * @param key The key of the request
+     * @param method The API method
+     * @param data The response, which must not be modified afterwards
+     * @param ttl The time to live in milliseconds, Long.MAX_VALUE for never expiring
+     * @param tags The tags of the objects in the response
+     */
+    public void put(String key, String method, byte[] data, long ttl, String[] tags) {
+        put(new Entry(key, method, data, getExpires(ttl), tags));
+    }
+
+    /**
+     * Put a tagged response unless responses were removed since a generation.
+     *
+     * @param key The key of the request
+     * @param method The API method
+     * @param data The response, which must not be modified afterwards
+     * @param ttl The time to live in milliseconds, Long.MAX_VALUE for never expiring
+     * @param tags The tags of the objects in the response
+     * @param generation The generation when the response was requested
+     * @return true if the response was put
+     * @see #getGeneration()
+     */
+    public boolean put(String key, String method, byte[] data, long ttl, String[] tags, long generation) {
+        return put(new Entry(key, method, data, getExpires(ttl), tags), generation);
+    }
+
+    private static long getExpires(long ttl) {
+        return ttl == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + ttl;
+    }
+
+    /**
+     * Put an entry.
+     *
+     * @param entry The entry
+     */
+    public synchronized void put(Entry entry) {
+        discard(entry.getKey());
+        for (int i = 0; i < entry.getTags().length; i++) {
+            Set keys = (Set) tagged.get(entry.getTags()[i]);
+            if (keys == null) {
+                keys = new HashSet();
+                tagged.put(entry.getTags()[i], keys);
+            }
+            keys.add(entry.getKey());
+        }
+        if (entry.getExpires() == Long.MAX_VALUE) {
+            permanent.put(entry.getKey(), entry);
+            return;
+        }
+        entries.put(entry.getKey(), entry);
+        Iterator it = entries.values().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            Entry eldest = (Entry) it.next();
+            it.remove();
+            unindex(eldest);
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Put an entry unless responses were removed since a generation.
+     *
+     * @param entry The entry
+     * @param generation The generation when the response was requested
+     * @return true if the entry was put
+     * @see #getGeneration()
+     */
+    public synchronized boolean put(Entry entry, long generation) {
+        if (generation != this.generation) {
+            return false;
+        }
+        put(entry);
+        return true;
+    }
+
+    /**
+     * Get the current generation, to be taken before requesting a response.
+     *
+     * @return The number of removals so far
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Remove a response.
+     *
+     * @param key The key of the request
+     * @return true if the response was cached
+     */
+    public synchronized boolean remove(String key) {
+        generation++;
+        return discard(key);
+    }
+
+    private boolean discard(String key) {
+        Entry entry = (Entry) entries.remove(key);
+        if (entry == null) {
+            entry = (Entry) permanent.remove(key);
+        }
+        if (entry == null) {
+            return false;
+        }
+        unindex(entry);
+        return true;
+    }
+
+    /**
+     * Remove the responses of a method with a tag.
+     *
+     * @param tag The tag, like photo:2733
+     * @param method The API method, or null for all methods
+     * @return The number of responses removed
+     */
+    public synchronized int removeTagged(String tag, String method) {
+        generation++;
+        Set keys = (Set) tagged.get(tag);
+        if (keys == null) {
+            return 0;
+        }
+        int removed = 0;
+        Object[] candidates = keys.toArray();
+        for (int i = 0; i < candidates.length; i++) {
+            String key = (String) candidates[i];
+            Entry entry = (Entry) entries.get(key);
+            if (entry == null) {
+                entry = (Entry) permanent.get(key);
+            }
+            if (entry != null && (method == null || method.equals(entry.getMethod()))) {
+                discard(key);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Remove all responses of a method.
+     *
+     * @param method The API method
+     * @return The number of responses removed
+     */
+    public synchronized int removeMethod(String method) {
+        generation++;
+        int removed = 0;
+        List all = getEntries();
+        for (int i = 0; i < all.size(); i++) {
+            Entry entry = (Entry) all.get(i);
+            if (method.equals(entry.getMethod())) {
+                discard(entry.getKey());
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Remove all responses.
+     */
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+        permanent.clear();
+        tagged.clear();
+    }
+
+    private void unindex(Entry entry) {
+        for (int i = 0; i < entry.getTags().length; i++) {
+            Set keys = (Set) tagged.get(entry.getTags()[i]);
+            if (keys != null) {
+                keys.remove(entry.getKey());
+                if (keys.isEmpty()) {
+                    tagged.remove(entry.getTags()[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return A snapshot of all entries, including expired ones
+     */
+    public synchronized List getEntries() {
+        List all = new ArrayList(permanent.values());
+        all.addAll(entries.values());
+        return all;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public synchronized int getSize() {
+        return entries.size() + permanent.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return Ratio of hits to all requests, 0 if there were no requests
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+}
@@ -0,0 +1,534 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+package com.aetrion.flickr.interestingness;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.aetrion.flickr.RequestContext;
+import com.aetrion.flickr.photos.PhotoCodec;
+import com.aetrion.flickr.photos.PhotoList;
+import com.aetrion.flickr.util.IOUtilities;
+
+/**
+ * Archives the lists of interesting photos of a range of days in a
+ * directory, one segment file per day.<p>
+ *
+ * The pages of all missing days are fetched in parallel, at most
+ * {@link #getConcurrency()} at the same time, on the given Executor or on
+ * threads started for each crawl. The first page of a day tells how many
+ * pages follow, those are fetched by the next free worker. A day is written
+ * when all of its pages have been fetched, so a failed page doesn't stop
+ * the other days and only its day is fetched again by the next crawl.<p>
+ *
+ * The list of a day doesn't change once the day is over in all time zones.
+ * Days older than {@link #getRefreshDays()} days in UTC are written as
+ * sealed, read-only segments and never fetched again, the more recent days
+ * are fetched again by every crawl. Days in the future are skipped.
+ *
+ * <pre>
+ * InterestingnessArchive archive = new InterestingnessArchive(
+ *     flickr.getInterestingnessInterface(), new File("interestingness"));
+ * archive.crawl(from, new Date());
+ * PhotoList photos = archive.getDay("2009-07-01");
+ * </pre>
+ */
+public class InterestingnessArchive {
+
+    public static final int DEFAULT_CONCURRENCY = 8;
+
+    public static final int DEFAULT_PER_PAGE = 500;
+
+    /** The day before yesterday in UTC is over in all time zones. */
+    public static final int DEFAULT_REFRESH_DAYS = 2;
+
+    private static final String SEALED = ".sealed";
+    private static final String RECENT = ".recent";
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private final InterestingnessInterface interestingnessInterface;
+    private final File directory;
+    private final Executor executor;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private int perPage = DEFAULT_PER_PAGE;
+    private int refreshDays = DEFAULT_REFRESH_DAYS;
+    private Set extras;
+
+    /**
+     * A day being fetched.
+     */
+    private static class Day {
+
+        private final String date;
+        private final boolean sealed;
+        /** Released when the day is written or failed. Guarded by this. */
+        private PhotoList[] pages;
+        /** Guarded by this. */
+        private int remaining;
+        /** Guarded by this. */
+        private boolean failed;
+
+        Day(String date, boolean sealed) {
+            this.date = date;
+            this.sealed = sealed;
+        }
+
+    }
+
+    /**
+     * The pages waiting to be fetched, shared by the workers of a crawl.
+     */
+    private static class Queue {
+
+        /** Day and page number pairs. Guarded by this. */
+        private final LinkedList pages = new LinkedList();
+        /** Guarded by this. */
+        private int running;
+
+        synchronized void add(Day day, int page) {
+            pages.addLast(new Object[] {day, new Integer(page)});
+            notifyAll();
+        }
+
+        /**
+         * Add the following pages of a day in front of the other days, so
+         * started days are finished and released first.
+         */
+        synchronized void addFollowing(Day day, int pageCount) {
+            for (int page = pageCount; page >= 2; page--) {
+                pages.addFirst(new Object[] {day, new Integer(page)});
+            }
+            notifyAll();
+        }
+
+        /**
+         * @return The next day and page, or null when all pages are done
+         */
+        synchronized Object[] take() throws InterruptedException {
+            // a running page may add the following pages of its day
+            while (pages.isEmpty() && running > 0) {
+                wait();
+            }
+            if (pages.isEmpty()) {
+                return null;
+            }
+            running++;
+            return (Object[]) pages.removeFirst();
+        }
+
+        synchronized void done() {
+            running--;
+            notifyAll();
+        }
+
+    }
+
+    /**
+     * Construct an InterestingnessArchive starting its own threads for each
+     * crawl.
+     *
+     * @param interestingnessInterface The InterestingnessInterface
+     * @param directory The directory of the segments, created if missing
+     */
+    public InterestingnessArchive(InterestingnessInterface interestingnessInterface, File directory) {
+        this(interestingnessInterface, directory, null);
+    }
+
+    /**
+     * Construct an InterestingnessArchive running the calls on an Executor.
+     * The Executor may be shared, the concurrency of each crawl is still
+     * limited.
+     *
+     * @param interestingnessInterface The InterestingnessInterface
+     * @param directory The directory of the segments, created if missing
+     * @param executor The Executor, or null to start threads for each crawl
+     */
+    public InterestingnessArchive(InterestingnessInterface interestingnessInterface, File directory,
+        Executor executor) {
+        this.interestingnessInterface = interestingnessInterface;
+        this.directory = directory;
+        this.executor = executor;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Set the maximum number of pages of a crawl fetched at the same time.
+     *
+     * @param concurrency The number of pages, at least 1
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("The concurrency must be at least 1");
+        }
+        this.concurrency = concurrency;
+    }
+
+    public int getPerPage() {
+        return perPage;
+    }
+
+    /**
+     * @param perPage The number of photos per page, at most 500
+     */
+    public void setPerPage(int perPage) {
+        if (perPage < 1 || perPage > 500) {
+            throw new IllegalArgumentException("The number of photos per page must be between 1 and 500");
+        }
+        this.perPage = perPage;
+    }
+
+    public int getRefreshDays() {
+        return refreshDays;
+    }
+
+    /**
+     * Set the number of recent days which are fetched again by every crawl.
+     *
+     * @param refreshDays The number of days before today in UTC, at least 1
+     */
+    public void setRefreshDays(int refreshDays) {
+        if (refreshDays < 1) {
+            throw new IllegalArgumentException("The number of refresh days must be at least 1");
+        }
+        this.refreshDays = refreshDays;
+    }
+
+    public Set getExtras() {
+        return extras;
+    }
+
+    /**
+     * Set the extras fetched for each photo. Days sealed before keep the
+     * extras they were fetched with.
+     *
+     * @param extras Set of Strings, or null for none
+     * @see com.aetrion.flickr.photos.Extras
+     */
+    public void setExtras(Set extras) {
+        this.extras = extras;
+    }
+
+    /**
+     * Fetch the days of a range which are not sealed yet.
+     *
+     * @param from The first day
+     * @param to The last day, included
+     * @return The days which failed, as yyyy-MM-dd, fetched again by the next crawl
+     * @throws InterruptedException
+     */
+    public List crawl(Date from, Date to) throws InterruptedException {
+        return crawl(getDate(from), getDate(to));
+    }
+
+    /**
+     * Fetch the days of a range which are not sealed yet.
+     *
+     * @param from The first day, as yyyy-MM-dd
+     * @param to The last day, as yyyy-MM-dd, included
+     * @return The days which failed, as yyyy-MM-dd, fetched again by the next crawl
+     * @throws InterruptedException
+     */
+    public List crawl(String from, String to) throws InterruptedException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Unable to create " + directory);
+        }
+        long now = System.currentTimeMillis();
+        String today = getDate(new Date(now));
+        String lastSealed = getDate(new Date(now - refreshDays * DAY));
+        if (to.compareTo(today) > 0) {
+            to = today;
+        }
+
+        // the days not written yet
+        final Set days = Collections.synchronizedSet(new LinkedHashSet());
+        final Queue queue = new Queue();
+        Calendar calendar = getCalendar(from);
+        for (String date = from; date.compareTo(to) <= 0; date = next(calendar)) {
+            if (!isSealed(date)) {
+                Day day = new Day(date, date.compareTo(lastSealed) <= 0);
+                days.add(day);
+                queue.add(day, 1);
+            }
+        }
+        if (days.isEmpty()) {
+            return new ArrayList();
+        }
+
+        // each worker takes the next page until none are left, the pages
+        // of one day are fetched by several workers
+        int workers = concurrency;
+        final CountDownLatch done = new CountDownLatch(workers);
+        final RequestContext context = RequestContext.getRequestContext();
+        Runnable worker = new Runnable() {
+            public void run() {
+                RequestContext workerContext = RequestContext.getRequestContext();
+                RequestContext saved = workerContext.copyTo(new RequestContext());
+                context.copyTo(workerContext);
+                try {
+                    Object[] next;
+                    while ((next = queue.take()) != null) {
+                        try {
+                            if (fetch((Day) next[0], ((Integer) next[1]).intValue(), queue)) {
+                                days.remove(next[0]);
+                            }
+                        } finally {
+                            queue.done();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    saved.copyTo(workerContext);
+                    done.countDown();
+                }
+            }
+        };
+
+        ExecutorService own = null;
+        Executor target = executor;
+        if (target == null) {
+            own = Executors.newFixedThreadPool(workers);
+            target = own;
+        }
+        try {
+            for (int i = 0; i < workers; i++) {
+                target.execute(worker);
+            }
+            done.await();
+        } finally {
+            if (own != null) {
+                own.shutdown();
+            }
+        }
+
+        List failed = new ArrayList();
+        Iterator it = days.iterator();
+        while (it.hasNext()) {
+            failed.add(((Day) it.next()).date);
+        }
+        return failed;
+    }
+
+    /**
+     * Fetch a page of a day, and write the day when it was the last page.
+     *
+     * @return true if the day was written
+     */
+    private boolean fetch(Day day, int page, Queue queue) {
+        synchronized (day) {
+            if (day.failed) {
+                return false;
+            }
+        }
+        PhotoList photos;
+        try {
+            photos = interestingnessInterface.getList(day.date, extras, perPage, page);
+        } catch (Exception e) {
+            fail(day);
+            return false;
+        }
+        PhotoList[] complete = null;
+        synchronized (day) {
+            if (day.failed) {
+                return false;
+            }
+            if (page == 1) {
+                int pages = Math.max(1, photos.getPages());
+                day.pages = new PhotoList[pages];
+                day.remaining = pages;
+                queue.addFollowing(day, pages);
+            }
+            if (page <= day.pages.length && day.pages[page - 1] == null) {
+                day.pages[page - 1] = photos;
+                day.remaining--;
+            }
+            if (day.remaining == 0) {
+                complete = day.pages;
+                day.pages = null;
+            }
+        }
+        if (complete == null) {
+            return false;
+        }
+        try {
+            write(day, complete);
+            return true;
+        } catch (IOException e) {
+            fail(day);
+            return false;
+        }
+    }
+
+    private static void fail(Day day) {
+        synchronized (day) {
+            day.failed = true;
+            day.pages = null;
+        }
+    }
+
+    private void write(Day day, PhotoList[] pages) throws IOException {
+        PhotoList photos = new PhotoList();
+        for (int i = 0; i < pages.length; i++) {
+            photos.addAll(pages[i]);
+        }
+        photos.setPage(1);
+        photos.setPages(1);
+        photos.setPerPage(photos.size());
+        photos.setTotal(photos.size());
+        ByteBuffer buffer = PhotoCodec.encode(photos);
+
+        File file = getFile(day.date, day.sealed ? SEALED : RECENT);
+        File temp = new File(file.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } finally {
+            IOUtilities.close(out);
+        }
+        if (file.exists()) {
+            file.delete();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Unable to rename " + temp + " to " + file);
+        }
+        if (day.sealed) {
+            file.setReadOnly();
+            getFile(day.date, RECENT).delete();
+        }
+    }
+
+    /**
+     * @param day The day, as yyyy-MM-dd
+     * @return true if the day is archived and never fetched again
+     */
+    public boolean isSealed(String day) {
+        return getFile(day, SEALED).isFile();
+    }
+
+    /**
+     * Get the archived list of a day.
+     *
+     * @param day The day
+     * @return The photos of the day on one page, or null if the day isn't archived
+     * @throws IOException
+     */
+    public PhotoList getDay(Date day) throws IOException {
+        return getDay(getDate(day));
+    }
+
+    /**
+     * Get the archived list of a day.
+     *
+     * @param day The day, as yyyy-MM-dd
+     * @return The photos of the day on one page, or null if the day isn't archived
+     * @throws IOException
+     */
+    public PhotoList getDay(String day) throws IOException {
+        File file = getFile(day, SEALED);
+        if (!file.isFile()) {
+            file = getFile(day, RECENT);
+            if (!file.isFile()) {
+                return null;
+            }
+        }
+        byte[] data = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+                read += n;
+            }
+        } finally {
+            IOUtilities.close(in);
+        }
+        return PhotoCodec.decodePhotoList(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * @return The archived days, as yyyy-MM-dd, in ascending order
+     */
+    public List getDays() {
+        List days = new ArrayList();
+        String[] names = directory.list();
+        if (names == null) {
+            return days;
+        }
+        for (int i = 0; i < names.length; i++) {
+            String day = null;
+            if (names[i].endsWith(SEALED)) {
+                day = names[i].substring(0, names[i].length() - SEALED.length());
+            } else if (names[i].endsWith(RECENT)) {
+                day = names[i].substring(0, names[i].length() - RECENT.length());
+            }
+            if (day != null && !days.contains(day)) {
+                days.add(day);
+            }
+        }
+        Collections.sort(days);
+        return days;
+    }
+
+    private File getFile(String day, String suffix) {
+        return new File(directory, day + suffix);
+    }
+
+    private static SimpleDateFormat getFormat() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format;
+    }
+
+    private static String getDate(Date date) {
+        return getFormat().format(date);
+    }
+
+    private static Calendar getCalendar(String day) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        try {
+            calendar.setTime(getFormat().parse(day));
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Not a day: " + day);
+        }
+        return calendar;
+    }
+
+    private static String next(Calendar calendar) {
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return getDate(calendar.getTime());
+    }
+
+}
@@ -4,14 +4,11 @@
 package com.aetrion.flickr.people;
 
 import java.io.Serializable;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
-import java.util.regex.Matcher;
 
 import com.aetrion.flickr.contacts.OnlineStatus;
 import com.aetrion.flickr.photos.Editability;
@@ -23,7 +20,7 @@ import com.aetrion.flickr.photos.PhotoUrl;
 import com.aetrion.flickr.photos.Size;
 import com.aetrion.flickr.tags.Tag;
 import com.aetrion.flickr.util.BuddyIconable;
-import com.aetrion.flickr.util.StringUtilities;
+import com.aetrion.flickr.util.ObjectUtilities;
 import com.aetrion.flickr.util.UrlUtilities;
 
 /**
@@ -298,48 +295,25 @@ public class User implements Serializable, BuddyIconable {
         if ((obj == null) || (obj.getClass() != this.getClass())) {
             return false;
         }
-		// object must be User at this point
         User test = (User) obj;
-        Class cl = this.getClass();
-        Method[] method = cl.getMethods();
-        for (int i = 0; i < method.length; i++) {
-            Matcher m = StringUtilities.getterPattern.matcher(method[i].getName());
-            if (m.find() && !method[i].getName().equals("getClass")) {
-                try {
-                    Object res = method[i].invoke(this, null);
-                    Object resTest = method[i].invoke(test, null);
-                    String retType = method[i].getReturnType().toString();
-                    if (retType.indexOf("class") == 0) {
-                        if (res != null && resTest != null) {
-                            if (!res.equals(resTest)) return false;
-                        } else {
-                            if (res == null && resTest == null) {
-                                // nop
-                            } else if (res == null || resTest == null) {
-                                // one ist set and one is null
-                                return false;
-                            }
-                        }
-                    } else if (retType.equals("int")) {
-                        if (!((Integer) res).equals(((Integer)resTest))) return false;
-                    } else if (retType.equals("boolean")) {
-                        if (!((Boolean) res).equals(((Boolean)resTest))) return false;
-                    } else if (retType.equals("long")) {
-                        if (!((Long) res).equals(((Long)resTest))) return false;
-                    } else {
-                        System.out.println("User#equals() missing type " + method[i].getName() + "|" +
-                            method[i].getReturnType().toString());
-                    }
-                } catch (IllegalAccessException ex) {
-                    System.out.println("equals " + method[i].getName() + " " + ex);
-                } catch (InvocationTargetException ex) {
-                    //System.out.println("equals " + method[i].getName() + " " + ex);
-                } catch (Exception ex) {
-                    System.out.println("equals " + method[i].getName() + " " + ex);
-                }
-            }
-        }
-        return true;
+        return admin == test.admin
+            && pro == test.pro
+            && iconFarm == test.iconFarm
+            && iconServer == test.iconServer
+            && photosCount == test.photosCount
+            && bandwidthMax == test.bandwidthMax
+            && bandwidthUsed == test.bandwidthUsed
+            && filesizeMax == test.filesizeMax
+            && ObjectUtilities.equals(id, test.id)
+            && ObjectUtilities.equals(username, test.username)
+            && ObjectUtilities.equals(realName, test.realName)
+            && ObjectUtilities.equals(location, test.location)
+            && ObjectUtilities.equals(photosFirstDate, test.photosFirstDate)
+            && ObjectUtilities.equals(photosFirstDateTaken, test.photosFirstDateTaken)
+            && ObjectUtilities.equals(faveDate, test.faveDate)
+            && ObjectUtilities.equals(online, test.online)
+            && ObjectUtilities.equals(awayMessage, test.awayMessage)
+            && ObjectUtilities.equals(mbox_sha1sum, test.mbox_sha1sum);
     }
 
     /**
@@ -348,41 +322,21 @@ public class User implements Serializable, BuddyIconable {
     @Override
     public int hashCode() {
         int hash = 1;
-        Class cl = this.getClass();
-        Method[] method = cl.getMethods();
-        for (int i = 0; i < method.length; i++) {
-            Matcher m = StringUtilities.getterPattern.matcher(method[i].getName());
-            if (m.find() && !method[i].getName().equals("getClass")) {
-                Object res = null;
-                try {
-                    res = method[i].invoke(this, null);
-                } catch (IllegalAccessException ex) {
-                    System.out.println("hashCode " + method[i].getName() + " " + ex);
-                } catch (InvocationTargetException ex) {
-                    //System.out.println("hashCode " + method[i].getName() + " " + ex);
-                }
-                if (res != null) {
-                    if (res instanceof Boolean) {
-                        Boolean bool = (Boolean) res;
-                        hash += bool.hashCode();
-                    } else if (res instanceof Integer) {
-                        Integer inte = (Integer) res;
-                        hash += inte.hashCode();
-                    } else if (res instanceof String) {
-                        String str = (String) res;
-                        hash += str.hashCode();
-                    } else if (res instanceof Long) {
-                        Long lon = (Long) res;
-                        hash += lon.hashCode();
-                    } else if (res instanceof OnlineStatus) {
-                        OnlineStatus os = (OnlineStatus) res;
-                        hash += os.hashCode();
-                    } else {
-                        System.out.println("User hashCode unrecognised object: " + res.getClass().getName());
-                    }
-                }
-            }
-        }
+        hash += ObjectUtilities.hashCode(admin);
+        hash += ObjectUtilities.hashCode(pro);
+        hash += iconFarm;
+        hash += iconServer;
+        hash += photosCount;
+        hash += ObjectUtilities.hashCode(bandwidthMax);
+        hash += ObjectUtilities.hashCode(bandwidthUsed);
+        hash += ObjectUtilities.hashCode(filesizeMax);
+        hash += ObjectUtilities.hashCode(id);
+        hash += ObjectUtilities.hashCode(username);
+        hash += ObjectUtilities.hashCode(realName);
+        hash += ObjectUtilities.hashCode(location);
+        hash += ObjectUtilities.hashCode(online);
+        hash += ObjectUtilities.hashCode(awayMessage);
+        hash += ObjectUtilities.hashCode(mbox_sha1sum);
         return hash;
     }
 }
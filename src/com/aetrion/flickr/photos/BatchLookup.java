@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+package com.aetrion.flickr.photos;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.aetrion.flickr.RequestContext;
+
+/**
+ * Calls the per-photo methods of the {@link PhotosInterface} for many
+ * photos at once, so looking up a page of photos takes about as long as the
+ * slowest call instead of the sum of all calls.<p>
+ *
+ * At most {@link #getConcurrency()} calls run at the same time, on the given
+ * Executor or on threads started for each batch. The calls are made with
+ * the authentication, extras and instance pool of the calling thread's
+ * {@link RequestContext}, and go through the Transport of the
+ * PhotosInterface like single calls, including any rate control configured
+ * there.<p>
+ *
+ * Results are returned in the order of the photo ids, one
+ * {@link BatchResult} per id. A failed call doesn't stop the others.
+ */
+public class BatchLookup {
+
+    public static final int DEFAULT_CONCURRENCY = 8;
+
+    private static final int GET_INFO = 0;
+    private static final int GET_SIZES = 1;
+    private static final int GET_EXIF = 2;
+    private static final int GET_PERMS = 3;
+
+    private final PhotosInterface photosInterface;
+    private final Executor executor;
+    private int concurrency = DEFAULT_CONCURRENCY;
+
+    /**
+     * Construct a BatchLookup starting its own threads for each batch.
+     *
+     * @param photosInterface The PhotosInterface
+     */
+    public BatchLookup(PhotosInterface photosInterface) {
+        this(photosInterface, null);
+    }
+
+    /**
+     * Construct a BatchLookup running the calls on an Executor. The
+     * Executor may be shared, the concurrency of each batch is still
+     * limited.
+     *
+     * @param photosInterface The PhotosInterface
+     * @param executor The Executor, or null to start threads for each batch
+     */
+    public BatchLookup(PhotosInterface photosInterface, Executor executor) {
+        this.photosInterface = photosInterface;
+        this.executor = executor;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Set the maximum number of calls of a batch running at the same time.
+     *
+     * @param concurrency The number of calls, at least 1
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("The concurrency must be at least 1");
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Get the information of photos.
+     *
+     * @param photoIds Collection of photo ids
+     * @return List of {@link BatchResult} with a {@link Photo}, in the order of the ids
+     * @throws InterruptedException
+     * @see PhotosInterface#getInfo(String, String)
+     */
+    public List getInfo(Collection photoIds) throws InterruptedException {
+        return call(GET_INFO, photoIds);
+    }
+
+    /**
+     * Get the sizes of photos.
+     *
+     * @param photoIds Collection of photo ids
+     * @return List of {@link BatchResult} with a Collection of {@link Size}, in the order of the ids
+     * @throws InterruptedException
+     * @see PhotosInterface#getSizes(String)
+     */
+    public List getSizes(Collection photoIds) throws InterruptedException {
+        return call(GET_SIZES, photoIds);
+    }
+
+    /**
+     * Get the Exif-data of photos.
+     *
+     * @param photoIds Collection of photo ids
+     * @return List of {@link BatchResult} with a Collection of {@link Exif}, in the order of the ids
+     * @throws InterruptedException
+     * @see PhotosInterface#getExif(String, String)
+     */
+    public List getExif(Collection photoIds) throws InterruptedException {
+        return call(GET_EXIF, photoIds);
+    }
+
+    /**
+     * Get the permissions of photos.
+     *
+     * @param photoIds Collection of photo ids
+     * @return List of {@link BatchResult} with {@link Permissions}, in the order of the ids
+     * @throws InterruptedException
+     * @see PhotosInterface#getPerms(String)
+     */
+    public List getPerms(Collection photoIds) throws InterruptedException {
+        return call(GET_PERMS, photoIds);
+    }
+
+    private List call(final int method, Collection photoIds) throws InterruptedException {
+        final List results = new ArrayList(photoIds.size());
+        Object[] ids = photoIds.toArray();
+        for (int i = 0; i < ids.length; i++) {
+            results.add(new BatchResult((String) ids[i]));
+        }
+        if (results.isEmpty()) {
+            return results;
+        }
+
+        // each worker takes the next id until none are left
+        final AtomicInteger next = new AtomicInteger();
+        int workers = Math.min(concurrency, results.size());
+        final CountDownLatch done = new CountDownLatch(workers);
+        final RequestContext context = RequestContext.getRequestContext();
+        Runnable worker = new Runnable() {
+            public void run() {
+                RequestContext workerContext = RequestContext.getRequestContext();
+                RequestContext saved = workerContext.copyTo(new RequestContext());
+                context.copyTo(workerContext);
+                try {
+                    int i;
+                    while ((i = next.getAndIncrement()) < results.size()) {
+                        BatchResult result = (BatchResult) results.get(i);
+                        try {
+                            result.setValue(call(method, result.getPhotoId()));
+                        } catch (Exception e) {
+                            result.setException(e);
+                        }
+                    }
+                } finally {
+                    saved.copyTo(workerContext);
+                    done.countDown();
+                }
+            }
+        };
+
+        ExecutorService own = null;
+        Executor target = executor;
+        if (target == null) {
+            own = Executors.newFixedThreadPool(workers);
+            target = own;
+        }
+        try {
+            for (int i = 0; i < workers; i++) {
+                target.execute(worker);
+            }
+            done.await();
+        } finally {
+            if (own != null) {
+                own.shutdown();
+            }
+        }
+        return results;
+    }
+
+    private Object call(int method, String photoId) throws Exception {
+        switch (method) {
+        case GET_INFO:
+            return photosInterface.getInfo(photoId, null);
+        case GET_SIZES:
+            return photosInterface.getSizes(photoId);
+        case GET_EXIF:
+            return photosInterface.getExif(photoId, null);
+        default:
+            return photosInterface.getPerms(photoId);
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+package com.aetrion.flickr.photos;
+
+/**
+ * Outcome of one call of a {@link BatchLookup}: the value returned for a
+ * photo id, or the exception thrown.
+ */
+public class BatchResult {
+
+    private final String photoId;
+    private Object value;
+    private Exception exception;
+
+    BatchResult(String photoId) {
+        this.photoId = photoId;
+    }
+
+    public String getPhotoId() {
+        return photoId;
+    }
+
+    /**
+     * The value returned by the call: a Photo for getInfo(), a Collection
+     * of {@link Size} for getSizes(), a Collection of {@link Exif} for
+     * getExif() and {@link Permissions} for getPerms().
+     *
+     * @return The value, or null if the call failed
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    void setValue(Object value) {
+        this.value = value;
+    }
+
+    /**
+     * @return The exception thrown by the call, a FlickrException for errors
+     * returned by Flickr, or null
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    void setException(Exception exception) {
+        this.exception = exception;
+    }
+
+    public boolean isError() {
+        return exception != null;
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+package com.aetrion.flickr.photos;
+
+import java.io.File;
+
+/**
+ * Outcome of downloading a single image with the {@link ImageDownloader}.
+ */
+public class DownloadResult {
+
+    private final Photo photo;
+    private final File file;
+    private long bytesTransferred;
+    private long length;
+    private boolean skipped;
+    private boolean resumed;
+    private Exception exception;
+
+    DownloadResult(Photo photo, File file) {
+        this.photo = photo;
+        this.file = file;
+    }
+
+    public Photo getPhoto() {
+        return photo;
+    }
+
+    /**
+     * The target file. Only complete images are stored under this name.
+     *
+     * @return The target file, or null if the URL could not be determined
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Number of bytes transferred for this image. Smaller than the length
+     * of the file, if a partial download has been resumed.
+     *
+     * @return Number of bytes transferred
+     */
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    void setBytesTransferred(long bytesTransferred) {
+        this.bytesTransferred = bytesTransferred;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    void setLength(long length) {
+        this.length = length;
+    }
+
+    /**
+     * @return true, if the file existed already and nothing was transferred
+     */
+    public boolean isSkipped() {
+        return skipped;
+    }
+
+    void setSkipped(boolean skipped) {
+        this.skipped = skipped;
+    }
+
+    /**
+     * @return true, if a partial file has been continued with a Range-request
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    void setResumed(boolean resumed) {
+        this.resumed = resumed;
+    }
+
+    public boolean isSuccess() {
+        return exception == null;
+    }
+
+    /**
+     * @return The Exception which made the download fail, or null
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    void setException(Exception exception) {
+        this.exception = exception;
+    }
+
+    public String toString() {
+        return "DownloadResult[photo=" + (photo == null ? null : photo.getId())
+            + " file=" + file + " bytes=" + bytesTransferred
+            + (exception == null ? "" : " exception=" + exception) + "]";
+    }
+
+}
@@ -3,18 +3,16 @@
  */
 package com.aetrion.flickr.photos;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.io.Serializable;
 import java.util.List;
-import java.util.regex.Matcher;
 
 import com.aetrion.flickr.tags.Tag;
-import com.aetrion.flickr.util.StringUtilities;
+import com.aetrion.flickr.util.ObjectUtilities;
 
 /**
  * @author Anthony Eden
  */
-public class Editability {
+public class Editability implements Serializable {
 	private static final long serialVersionUID = 12L;
 
     private boolean comment;
@@ -41,52 +39,19 @@ public class Editability {
     }
 
 	@Override
-	public boolean equals(Object obj) {
+    public boolean equals(Object obj) {
         if ((obj == null) || (obj.getClass() != this.getClass())) {
             return false;
         }
-		// object must be Editability at this point
         Editability test = (Editability) obj;
-        Class cl = this.getClass();
-        Method[] method = cl.getMethods();
-        for (int i = 0; i < method.length; i++) {
-            Matcher m = StringUtilities.getterPattern.matcher(method[i].getName());
-            if (m.find() && !method[i].getName().equals("getClass")) {
-                try {
-                    Object res = method[i].invoke(this, null);
-                    Object resTest = method[i].invoke(test, null);
-                    String retType = method[i].getReturnType().toString();
-                    if (retType.indexOf("class") == 0) {
-                        if (res != null && resTest != null) {
-                            if (!res.equals(resTest)) return false;
-                        } else {
-                            //return false;
-                        }
-                    } else if (retType.equals("int")) {
-                        if (!((Integer) res).equals(((Integer)resTest))) return false;
-                    } else if (retType.equals("boolean")) {
-                        if (!((Boolean) res).equals(((Boolean)resTest))) return false;
-                    } else {
-                        System.out.println(method[i].getName() + "|" +
-                            method[i].getReturnType().toString());
-                    }
-                } catch (IllegalAccessException ex) {
-                    System.out.println("equals " + method[i].getName() + " " + ex);
-                } catch (InvocationTargetException ex) {
-                    //System.out.println("equals " + method[i].getName() + " " + ex);
-                } catch (Exception ex) {
-                    System.out.println("equals " + method[i].getName() + " " + ex);
-                }
-            }
-        }
-        return true;
+        return comment == test.comment && addmeta == test.addmeta;
     }
 
     @Override
     public int hashCode() {
         int hash = 1;
-        hash += new Boolean(comment).hashCode();
-        hash += new Boolean(addmeta).hashCode();
+        hash += ObjectUtilities.hashCode(comment);
+        hash += ObjectUtilities.hashCode(addmeta);
         return hash;
     }
 
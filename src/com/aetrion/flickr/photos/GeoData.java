@@ -1,10 +1,8 @@
 package com.aetrion.flickr.photos;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.regex.Matcher;
+import java.io.Serializable;
 
-import com.aetrion.flickr.util.StringUtilities;
+import com.aetrion.flickr.util.ObjectUtilities;
 
 /**
  * A geographic position.
@@ -12,7 +10,7 @@ import com.aetrion.flickr.util.StringUtilities;
  * @author mago
  * @version $Id: GeoData.java,v 1.4 2009/07/23 20:41:03 x-mago Exp $
  */
-public class GeoData {
+public class GeoData implements Serializable {
     private static final long serialVersionUID = 12L;
     private float longitude;
     private float latitude;
@@ -70,53 +68,23 @@ public class GeoData {
     }
 
 	@Override
-	public boolean equals(Object obj) {
+    public boolean equals(Object obj) {
         if ((obj == null) || (obj.getClass() != this.getClass())) {
             return false;
         }
-		// object must be GeoData at this point
+        // same as Float.equals()
         GeoData test = (GeoData) obj;
-        Class cl = this.getClass();
-        Method[] method = cl.getMethods();
-        for (int i = 0; i < method.length; i++) {
-            Matcher m = StringUtilities.getterPattern.matcher(method[i].getName());
-            if (m.find() && !method[i].getName().equals("getClass")) {
-                try {
-                    Object res = method[i].invoke(this, null);
-                    Object resTest = method[i].invoke(test, null);
-                    String retType = method[i].getReturnType().toString();
-                    if (retType.indexOf("class") == 0) {
-                        if (res != null && resTest != null) {
-                            if (!res.equals(resTest)) return false;
-                        } else {
-                            //return false;
-                        }
-                    } else if (retType.equals("int")) {
-                        if (!((Integer) res).equals(((Integer)resTest))) return false;
-                    } else if (retType.equals("float")) {
-                        if (!((Float) res).equals(((Float)resTest))) return false;
-                    } else {
-                        System.out.println(method[i].getName() + "|" +
-                            method[i].getReturnType().toString());
-                    }
-                } catch (IllegalAccessException ex) {
-                    System.out.println("GeoData equals " + method[i].getName() + " " + ex);
-                } catch (InvocationTargetException ex) {
-                    //System.out.println("equals " + method[i].getName() + " " + ex);
-                } catch (Exception ex) {
-                    System.out.println("GeoData equals " + method[i].getName() + " " + ex);
-                }
-            }
-        }
-        return true;
+        return accuracy == test.accuracy
+            && Float.floatToIntBits(latitude) == Float.floatToIntBits(test.latitude)
+            && Float.floatToIntBits(longitude) == Float.floatToIntBits(test.longitude);
     }
 
     @Override
     public int hashCode() {
         int hash = 1;
-        hash += new Float(longitude).hashCode();
-        hash += new Float(latitude).hashCode();
-        hash += new Integer(accuracy).hashCode();
+        hash += ObjectUtilities.hashCode(longitude);
+        hash += ObjectUtilities.hashCode(latitude);
+        hash += accuracy;
         return hash;
     }
 }
@@ -0,0 +1,608 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+package com.aetrion.flickr.photos;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.aetrion.flickr.FlickrException;
+import com.aetrion.flickr.ProgressListener;
+import com.aetrion.flickr.util.IOUtilities;
+
+/**
+ * Downloads images of many photos concurrently to a directory.<p>
+ *
+ * Images are streamed to disk through a FileChannel with a large buffer.
+ * Data is first written to a file with the suffix <code>.part</code>,
+ * which is renamed once the length has been verified against the
+ * Content-Length of the response. If a partial file is found, the download
+ * continues with a HTTP Range-request. Partial responses are only appended
+ * if their Content-Range starts at the end of the partial file, otherwise
+ * the download starts over.<p>
+ *
+ * Response streams are read to the end and closed, but the connections are
+ * not disconnected, so they are kept alive and reused by the
+ * HttpURLConnection pool. For more than five threads per host, the system
+ * property <code>http.maxConnections</code> should be raised accordingly.<p>
+ *
+ * Large originals and videos can be fetched over several connections at
+ * once, see {@link #setSegments(int)}.
+ *
+ * <pre>
+ * ImageDownloader downloader = new ImageDownloader(flickr.getPhotosInterface());
+ * downloader.setThreads(8);
+ * List results = downloader.download(photos, Size.ORIGINAL, directory);
+ * System.out.println(downloader.getBytesPerSecond() + " bytes/s");
+ * </pre>
+ *
+ * @see PhotosInterface#getImageAsStream(Photo, int)
+ */
+public class ImageDownloader {
+
+    public static final int DEFAULT_THREADS = 4;
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    public static final long DEFAULT_SEGMENT_THRESHOLD = 8 * 1024 * 1024;
+
+    static final String PART_SUFFIX = ".part";
+
+    private final PhotosInterface photosInterface;
+    private int threads = DEFAULT_THREADS;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private boolean resume = true;
+    private boolean overwrite = false;
+    private int segments = 1;
+    private long segmentThreshold = DEFAULT_SEGMENT_THRESHOLD;
+    private ProgressListener progressListener;
+
+    private final AtomicLong bytesTransferred = new AtomicLong();
+    private final AtomicLong elapsedMillis = new AtomicLong();
+
+    private final ThreadLocal buffers = new ThreadLocal();
+
+    public ImageDownloader(PhotosInterface photosInterface) {
+        this.photosInterface = photosInterface;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Number of images downloaded in parallel.
+     *
+     * @param threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.threads = threads;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize < 1024) {
+            throw new IllegalArgumentException("bufferSize must be at least 1024");
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * Continue partial files left by an earlier run. Default is true.
+     *
+     * @param resume
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    public boolean isOverwrite() {
+        return overwrite;
+    }
+
+    /**
+     * Download images again, if the target file exists already.
+     * Default is false, existing files are skipped.
+     *
+     * @param overwrite
+     */
+    public void setOverwrite(boolean overwrite) {
+        this.overwrite = overwrite;
+    }
+
+    public int getSegments() {
+        return segments;
+    }
+
+    /**
+     * Enable the segmented mode for large files, like originals and videos.<p>
+     *
+     * With more than one segment, the length of an image is probed with a
+     * HEAD-request first. If the server accepts byte-ranges and the image
+     * is at least {@link #getSegmentThreshold()} bytes long, the ranges are
+     * fetched over several connections in parallel and written to a
+     * preallocated file. Segmented downloads are not resumed; an
+     * interrupted segmented download starts over.<p>
+     *
+     * Default is 1, which downloads each image with a single connection.
+     *
+     * @param segments Number of parallel connections per image
+     */
+    public void setSegments(int segments) {
+        if (segments < 1) {
+            throw new IllegalArgumentException("segments must be positive");
+        }
+        this.segments = segments;
+    }
+
+    public long getSegmentThreshold() {
+        return segmentThreshold;
+    }
+
+    /**
+     * Minimum length of an image to be downloaded in segments.
+     *
+     * @param segmentThreshold Length in bytes
+     * @see #setSegments(int)
+     */
+    public void setSegmentThreshold(long segmentThreshold) {
+        this.segmentThreshold = segmentThreshold;
+    }
+
+    /**
+     * Set a listener which is notified about the transferred bytes.
+     * The listener is called from several threads.
+     *
+     * @param progressListener
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Download the images of the photos in the given size to a directory.
+     * The filename is taken from the image URL.
+     *
+     * @param photos Collection of Photo objects
+     * @param size The size, see {@link Size}
+     * @param directory The target directory
+     * @return List of {@link DownloadResult}, in the order of the photos
+     * @throws InterruptedException
+     */
+    public List download(Collection photos, int size, File directory)
+      throws InterruptedException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Not a directory: " + directory);
+        }
+        long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(photos.size(), 1)));
+        try {
+            List futures = new ArrayList(photos.size());
+            Iterator it = photos.iterator();
+            while (it.hasNext()) {
+                futures.add(executor.submit(new DownloadTask((Photo) it.next(), size, directory)));
+            }
+            List results = new ArrayList(futures.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(((Future) futures.get(i)).get());
+                } catch (ExecutionException e) {
+                    // DownloadTask reports failures in its result
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+            elapsedMillis.addAndGet(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Download a single image.
+     *
+     * @param photo The photo
+     * @param size The size, see {@link Size}
+     * @param directory The target directory
+     * @return The result
+     */
+    public DownloadResult download(Photo photo, int size, File directory) {
+        long start = System.currentTimeMillis();
+        try {
+            return new DownloadTask(photo, size, directory).call();
+        } finally {
+            elapsedMillis.addAndGet(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * @return Total number of bytes transferred by this downloader
+     */
+    public long getBytesTransferred() {
+        return bytesTransferred.get();
+    }
+
+    /**
+     * @return Total wall time spent in the download-methods
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis.get();
+    }
+
+    /**
+     * @return The aggregate throughput of all downloads, in bytes per second
+     */
+    public long getBytesPerSecond() {
+        long millis = elapsedMillis.get();
+        if (millis == 0) {
+            return 0;
+        }
+        return bytesTransferred.get() * 1000 / millis;
+    }
+
+    /**
+     * Transfer the image to the target file.
+     *
+     * @param url The image URL
+     * @param target The target file
+     * @param result Receives the transferred bytes and length
+     * @throws IOException
+     */
+    void transfer(String url, File target, DownloadResult result) throws IOException {
+        File part = new File(target.getParentFile(), target.getName() + PART_SUFFIX);
+        if (segments > 1) {
+            long length = probeLength(url);
+            if (length >= segmentThreshold) {
+                transferSegmented(url, target, part, length, result);
+                return;
+            }
+        }
+        long offset = resume && part.isFile() ? part.length() : 0;
+
+        HttpURLConnection conn = photosInterface.openImageConnection(url);
+        if (offset > 0) {
+            conn.setRequestProperty("Range", "bytes=" + offset + "-");
+        }
+        int status = conn.getResponseCode();
+        if (status == 416 && offset > 0) {
+            // the partial file does not match the image any more
+            drain(conn);
+            part.delete();
+            transfer(url, target, result);
+            return;
+        }
+        if (status == HttpURLConnection.HTTP_OK) {
+            offset = 0;
+        } else if (status != HttpURLConnection.HTTP_PARTIAL) {
+            drain(conn);
+            throw new IOException("HTTP " + status + " for " + url);
+        } else if (getRangeStart(conn) != offset) {
+            drain(conn);
+            if (offset == 0) {
+                throw new IOException("Unexpected Content-Range " + conn.getHeaderField("Content-Range")
+                    + " for " + url);
+            }
+            // the server did not continue at the end of the partial file
+            part.delete();
+            transfer(url, target, result);
+            return;
+        }
+        result.setResumed(offset > 0);
+        long contentLength = getContentLength(conn);
+
+        InputStream in = conn.getInputStream();
+        RandomAccessFile raf = null;
+        long written = 0;
+        try {
+            raf = new RandomAccessFile(part, "rw");
+            FileChannel out = raf.getChannel();
+            if (offset == 0) {
+                out.truncate(0);
+            }
+            written = copy(Channels.newChannel(in), out, offset);
+            out.force(false);
+        } finally {
+            IOUtilities.close(in);
+            if (raf != null) {
+                raf.close();
+            }
+            result.setBytesTransferred(result.getBytesTransferred() + written);
+        }
+
+        long length = offset + written;
+        if (contentLength >= 0 && written != contentLength) {
+            throw new IOException("Incomplete download of " + url + ": "
+                + written + " of " + contentLength + " bytes");
+        }
+        result.setLength(length);
+        rename(part, target);
+    }
+
+    /**
+     * Download the image in ranges over several connections and write
+     * them to a preallocated file.
+     *
+     * @param url The image URL
+     * @param target The target file
+     * @param part The temporary file
+     * @param length The length of the image
+     * @param result Receives the transferred bytes and length
+     * @throws IOException
+     */
+    void transferSegmented(final String url, File target, File part, long length, DownloadResult result)
+      throws IOException {
+        result.setResumed(false);
+        int count = (int) Math.min(segments, Math.max(1, length / (64 * 1024)));
+        long segmentLength = (length + count - 1) / count;
+        boolean complete = false;
+        RandomAccessFile raf = new RandomAccessFile(part, "rw");
+        ExecutorService executor = Executors.newFixedThreadPool(count);
+        try {
+            raf.setLength(length);
+            final FileChannel out = raf.getChannel();
+            List futures = new ArrayList(count);
+            for (long start = 0; start < length; start += segmentLength) {
+                final long first = start;
+                final long last = Math.min(start + segmentLength, length) - 1;
+                futures.add(executor.submit(new Callable() {
+                    public Object call() throws IOException {
+                        return new Long(transferRange(url, out, first, last));
+                    }
+                }));
+            }
+            long written = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    written += ((Long) ((Future) futures.get(i)).get()).longValue();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new RuntimeException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while downloading " + url);
+                } finally {
+                    result.setBytesTransferred(written);
+                }
+            }
+            if (written != length || out.size() != length) {
+                throw new IOException("Incomplete download of " + url + ": "
+                    + written + " of " + length + " bytes");
+            }
+            out.force(false);
+            complete = true;
+        } finally {
+            executor.shutdownNow();
+            raf.close();
+            if (!complete) {
+                // a preallocated file can not be resumed
+                part.delete();
+            }
+        }
+        result.setLength(length);
+        rename(part, target);
+    }
+
+    /**
+     * Fetch a byte-range of the image into the file.
+     *
+     * @return Number of bytes written
+     */
+    long transferRange(String url, FileChannel out, long first, long last) throws IOException {
+        HttpURLConnection conn = photosInterface.openImageConnection(url);
+        conn.setRequestProperty("Range", "bytes=" + first + "-" + last);
+        int status = conn.getResponseCode();
+        if (status != HttpURLConnection.HTTP_PARTIAL) {
+            drain(conn);
+            throw new IOException("HTTP " + status + " for range " + first + "-" + last + " of " + url);
+        }
+        if (getRangeStart(conn) != first) {
+            drain(conn);
+            throw new IOException("Unexpected Content-Range " + conn.getHeaderField("Content-Range")
+                + " for range " + first + "-" + last + " of " + url);
+        }
+        long expected = last - first + 1;
+        InputStream in = conn.getInputStream();
+        long written;
+        try {
+            written = copy(Channels.newChannel(in), out, first);
+        } finally {
+            IOUtilities.close(in);
+        }
+        if (written != expected) {
+            throw new IOException("Incomplete range " + first + "-" + last + " of " + url
+                + ": " + written + " of " + expected + " bytes");
+        }
+        return written;
+    }
+
+    /**
+     * Get the length of the image, if the server accepts byte-ranges.
+     *
+     * @return The length or -1
+     */
+    long probeLength(String url) throws IOException {
+        HttpURLConnection conn = photosInterface.openImageConnection(url);
+        conn.setRequestMethod("HEAD");
+        int status = conn.getResponseCode();
+        drain(conn);
+        if (status != HttpURLConnection.HTTP_OK) {
+            return -1;
+        }
+        String acceptRanges = conn.getHeaderField("Accept-Ranges");
+        if (acceptRanges == null || acceptRanges.indexOf("bytes") < 0) {
+            return -1;
+        }
+        return getContentLength(conn);
+    }
+
+    /**
+     * Copy the channel to the file at the given position.
+     *
+     * @return Number of bytes copied
+     */
+    long copy(ReadableByteChannel in, FileChannel out, long position) throws IOException {
+        ByteBuffer buffer = getBuffer();
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                total += out.write(buffer, position + total);
+            }
+            buffer.clear();
+            bytesTransferred.addAndGet(read);
+            if (progressListener != null) {
+                progressListener.update(read);
+            }
+        }
+        return total;
+    }
+
+    static long getContentLength(HttpURLConnection conn) {
+        String value = conn.getHeaderField("Content-Length");
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the first byte of a partial response.
+     *
+     * @return The first byte of the Content-Range, or -1 if there is none
+     */
+    static long getRangeStart(HttpURLConnection conn) {
+        String value = conn.getHeaderField("Content-Range");
+        if (value != null) {
+            value = value.trim();
+            int dash = value.indexOf('-');
+            if (value.startsWith("bytes ") && dash > 6) {
+                try {
+                    return Long.parseLong(value.substring(6, dash).trim());
+                } catch (NumberFormatException e) {
+                }
+            }
+        }
+        return -1;
+    }
+
+    static void rename(File from, File to) throws IOException {
+        if (to.exists() && !to.delete()) {
+            throw new IOException("Unable to replace " + to);
+        }
+        if (!from.renameTo(to)) {
+            throw new IOException("Unable to rename " + from + " to " + to);
+        }
+    }
+
+    /**
+     * Read the remaining response, so that the connection can be reused.
+     */
+    static void drain(HttpURLConnection conn) {
+        InputStream in = conn.getErrorStream();
+        if (in == null) {
+            try {
+                in = conn.getInputStream();
+            } catch (IOException e) {
+                return;
+            }
+        }
+        try {
+            byte[] buffer = new byte[4096];
+            while (in.read(buffer) != -1) {
+            }
+        } catch (IOException e) {
+        } finally {
+            IOUtilities.close(in);
+        }
+    }
+
+    static String getFilename(String url) {
+        String path = url;
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private ByteBuffer getBuffer() {
+        ByteBuffer buffer = (ByteBuffer) buffers.get();
+        if (buffer == null || buffer.capacity() != bufferSize) {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+            buffers.set(buffer);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private class DownloadTask implements Callable {
+
+        private final Photo photo;
+        private final int size;
+        private final File directory;
+
+        DownloadTask(Photo photo, int size, File directory) {
+            this.photo = photo;
+            this.size = size;
+            this.directory = directory;
+        }
+
+        public DownloadResult call() {
+            String url;
+            try {
+                url = photosInterface.getImageUrl(photo, size);
+            } catch (FlickrException e) {
+                DownloadResult result = new DownloadResult(photo, null);
+                result.setException(e);
+                return result;
+            }
+            File target = new File(directory, getFilename(url));
+            DownloadResult result = new DownloadResult(photo, target);
+            if (!overwrite && target.isFile()) {
+                result.setSkipped(true);
+                result.setLength(target.length());
+                return result;
+            }
+            try {
+                transfer(url, target, result);
+            } catch (IOException e) {
+                result.setException(e);
+            } catch (RuntimeException e) {
+                result.setException(e);
+            }
+            return result;
+        }
+    }
+
+}
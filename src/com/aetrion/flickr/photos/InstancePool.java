@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+
+package com.aetrion.flickr.photos;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.aetrion.flickr.people.User;
+import com.aetrion.flickr.tags.Tag;
+import com.aetrion.flickr.util.ObjectUtilities;
+
+/**
+ * Pool of canonical owners, tags and sizes, shared by the parsed photos.<p>
+ *
+ * The photos of a page often have the same owner, and the tags of a feed
+ * repeat a few values. With a pool, {@link PhotoUtils} hands out one
+ * instance per distinct owner, tag and size, instead of a new object for
+ * every photo. Owners are looked up by NSID, tags by value and sizes by
+ * source URL; an instance is only reused if all its attributes are equal.<p>
+ *
+ * A pool is used for the requests of a thread after
+ * {@link com.aetrion.flickr.RequestContext#setInstancePool(InstancePool)},
+ * or for all threads after {@link #setShared(InstancePool)}. A pool
+ * created with {@link #createWeakPool()} keeps its instances only while
+ * they are referenced by photos, so it can be shared for the lifetime of
+ * the application.<p>
+ *
+ * Pooled instances are shared between photos and must not be modified.
+ */
+public class InstancePool {
+
+    private static InstancePool shared;
+
+    private final boolean weak;
+    private final Map users;
+    private final Map tags;
+    private final Map sizes;
+
+    private int hits;
+
+    /**
+     * Create a pool, which holds its instances until it is discarded.
+     * Meant to be used for a single request or a batch of requests.
+     */
+    public InstancePool() {
+        this(false);
+    }
+
+    private InstancePool(boolean weak) {
+        this.weak = weak;
+        users = weak ? (Map) new WeakHashMap() : new HashMap();
+        tags = weak ? (Map) new WeakHashMap() : new HashMap();
+        sizes = weak ? (Map) new WeakHashMap() : new HashMap();
+    }
+
+    /**
+     * Create a pool, which drops instances no longer referenced elsewhere.
+     *
+     * @return The pool
+     */
+    public static InstancePool createWeakPool() {
+        return new InstancePool(true);
+    }
+
+    /**
+     * Get the pool used by all threads, which have no pool set in their
+     * RequestContext.
+     *
+     * @return The pool or null
+     */
+    public static synchronized InstancePool getShared() {
+        return shared;
+    }
+
+    /**
+     * Set the pool used by all threads, which have no pool set in their
+     * RequestContext. Usually a pool created by {@link #createWeakPool()}.
+     *
+     * @param pool The pool or null to disable pooling
+     */
+    public static synchronized void setShared(InstancePool pool) {
+        shared = pool;
+    }
+
+    /**
+     * Get the canonical instance of an owner.
+     *
+     * @param user The owner
+     * @return An equal, pooled instance or the given user
+     */
+    public synchronized User getUser(User user) {
+        if (user == null || user.getId() == null) {
+            return user;
+        }
+        User pooled = (User) lookup(users, user.getId());
+        if (user.equals(pooled)) {
+            hits++;
+            return pooled;
+        }
+        store(users, user.getId(), user);
+        return user;
+    }
+
+    /**
+     * Get the canonical instance of a tag. Only tags which consist of the
+     * value, like those of the tags extra, are pooled. Tags read by
+     * getInfo() have ids and authors specific to the photo.
+     *
+     * @param tag The tag
+     * @return An equal, pooled instance or the given tag
+     */
+    public synchronized Tag getTag(Tag tag) {
+        if (tag == null || tag.getValue() == null || tag.getId() != null
+            || tag.getAuthor() != null || tag.getAuthorName() != null
+            || tag.getRaw() != null || tag.getCount() != 0) {
+            return tag;
+        }
+        Tag pooled = (Tag) lookup(tags, tag.getValue());
+        if (pooled != null) {
+            hits++;
+            return pooled;
+        }
+        store(tags, tag.getValue(), tag);
+        return tag;
+    }
+
+    /**
+     * Get the canonical instance of a size.
+     *
+     * @param size The size
+     * @return An equal, pooled instance or the given size
+     */
+    public synchronized Size getSize(Size size) {
+        if (size == null || size.getSource() == null) {
+            return size;
+        }
+        Size pooled = (Size) lookup(sizes, size.getSource());
+        // Size.equals() ignores missing URLs
+        if (pooled != null
+            && pooled.getLabel() == size.getLabel()
+            && pooled.getWidth() == size.getWidth()
+            && pooled.getHeight() == size.getHeight()
+            && ObjectUtilities.equals(pooled.getUrl(), size.getUrl())) {
+            hits++;
+            return pooled;
+        }
+        store(sizes, size.getSource(), size);
+        return size;
+    }
+
+    /**
+     * @return The number of instances replaced by pooled ones
+     */
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of pooled instances
+     */
+    public synchronized int size() {
+        return users.size() + tags.size() + sizes.size();
+    }
+
+    public synchronized void clear() {
+        users.clear();
+        tags.clear();
+        sizes.clear();
+        hits = 0;
+    }
+
+    private Object lookup(Map map, String key) {
+        Object value = map.get(key);
+        if (weak && value != null) {
+            value = ((Reference) value).get();
+        }
+        return value;
+    }
+
+    /**
+     * The key has to be the string held by the value, so the weak entry
+     * lives as long as the value. WeakHashMap keeps the key of a replaced
+     * entry, hence the removal.
+     */
+    private void store(Map map, String key, Object value) {
+        map.remove(key);
+        map.put(key, weak ? new WeakReference(value) : value);
+    }
+
+}
@@ -4,16 +4,14 @@
 package com.aetrion.flickr.photos;
 
 import java.awt.Rectangle;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.regex.Matcher;
+import java.io.Serializable;
 
-import com.aetrion.flickr.util.StringUtilities;
+import com.aetrion.flickr.util.ObjectUtilities;
 
 /**
  * @author Anthony Eden
  */
-public class Note {
+public class Note implements Serializable {
 	private static final long serialVersionUID = 12L;
     private String id;
     private String author;
@@ -74,56 +72,25 @@ public class Note {
     }
 
 	@Override
-	public boolean equals(Object obj) {
+    public boolean equals(Object obj) {
         if ((obj == null) || (obj.getClass() != this.getClass())) {
             return false;
         }
-		// object must be Note at this point
         Note test = (Note) obj;
-        Class cl = this.getClass();
-        Method[] method = cl.getMethods();
-        for (int i = 0; i < method.length; i++) {
-            Matcher m = StringUtilities.getterPattern.matcher(method[i].getName());
-            if (m.find() && !method[i].getName().equals("getClass")) {
-                try {
-                    Object res = method[i].invoke(this, null);
-                    Object resTest = method[i].invoke(test, null);
-                    String retType = method[i].getReturnType().toString();
-                    if (retType.indexOf("class") == 0) {
-                        if (res != null && resTest != null) {
-                            //System.out.println("Note class: " + method[i].getName());
-                            if (!res.equals(resTest)) return false;
-                        } else {
-                            //return false;
-                        }
-                    } else if (retType.equals("int")) {
-                        if (!((Integer) res).equals(((Integer)resTest))) return false;
-                    } else if (retType.equals("boolean")) {
-                        if (!((Boolean) res).equals(((Boolean)resTest))) return false;
-                    } else {
-                        System.out.println(method[i].getName() + "|" +
-                            method[i].getReturnType().toString());
-                    }
-                } catch (IllegalAccessException ex) {
-                    System.out.println("equals " + method[i].getName() + " " + ex);
-                } catch (InvocationTargetException ex) {
-                    //System.out.println("equals " + method[i].getName() + " " + ex);
-                } catch (Exception ex) {
-                    System.out.println("equals " + method[i].getName() + " " + ex);
-                }
-            }
-        }
-        return true;
+        return ObjectUtilities.equals(id, test.id)
+            && ObjectUtilities.equals(author, test.author)
+            && ObjectUtilities.equals(authorName, test.authorName)
+            && ObjectUtilities.equals(bounds, test.bounds)
+            && ObjectUtilities.equals(text, test.text);
     }
 
     @Override
     public int hashCode() {
-        int hash = 1;
-        if(id != null) hash += id.hashCode();
-        if(author != null) hash += author.hashCode();
-        if(authorName != null) hash += authorName.hashCode();
-        if(bounds != null) hash += bounds.hashCode();
-        if(text != null) hash += text.hashCode();
+        int hash = ObjectUtilities.hashCode(id);
+        hash = 31 * hash + ObjectUtilities.hashCode(author);
+        hash = 31 * hash + ObjectUtilities.hashCode(authorName);
+        hash = 31 * hash + ObjectUtilities.hashCode(bounds);
+        hash = 31 * hash + ObjectUtilities.hashCode(text);
         return hash;
     }
 }
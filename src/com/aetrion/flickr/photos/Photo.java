@@ -5,8 +5,7 @@ package com.aetrion.flickr.photos;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.io.Serializable;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.text.DateFormat;
@@ -14,18 +13,17 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
-import java.util.regex.Matcher;
 
 import javax.imageio.ImageIO;
 
 import com.aetrion.flickr.FlickrException;
 import com.aetrion.flickr.people.User;
-import com.aetrion.flickr.tags.Tag;
 import com.aetrion.flickr.util.IOUtilities;
-import com.aetrion.flickr.util.StringUtilities;
+import com.aetrion.flickr.util.ObjectUtilities;
 
 /**
  * Class representing metadata about a Flickr photo. Instances do not actually
@@ -36,7 +34,7 @@ import com.aetrion.flickr.util.StringUtilities;
  * @author Anthony Eden
  * @version $Id: Photo.java,v 1.28 2009/07/23 21:49:35 x-mago Exp $
  */
-public class Photo {
+public class Photo implements Serializable {
     private static final long serialVersionUID = 12L;
 
     private static final ThreadLocal DATE_FORMATS = new ThreadLocal() {
@@ -51,6 +49,9 @@ public class Photo {
     private static final String THUMBNAIL_IMAGE_SUFFIX = "_t.jpg";
     private static final String MEDIUM_IMAGE_SUFFIX = ".jpg";
     private static final String LARGE_IMAGE_SUFFIX = "_b.jpg";
+    static final String PHOTO_PAGE_URL = "http://flickr.com/photos/";
+
+    private static final long NO_DATE = Long.MIN_VALUE;
 
     private Size squareSize;
     private Size smallSize;
@@ -72,10 +73,11 @@ public class Photo {
     private boolean publicFlag;
     private boolean friendFlag;
     private boolean familyFlag;
-    private Date dateAdded;
-    private Date datePosted;
-    private Date dateTaken;
-    private Date lastUpdate;
+    // dates are held as milliseconds, NO_DATE if unset
+    private long dateAdded = NO_DATE;
+    private long datePosted = NO_DATE;
+    private long dateTaken = NO_DATE;
+    private long lastUpdate = NO_DATE;
     private String takenGranularity;
     private Permissions permissions;
     private Editability editability;
@@ -130,7 +132,7 @@ public class Photo {
     }
 
     public void setFarm(String farm) {
-        this.farm = farm;
+        this.farm = intern(farm);
     }
 
     public String getServer() {
@@ -138,7 +140,7 @@ public class Photo {
     }
 
     public void setServer(String server) {
-        this.server = server;
+        this.server = intern(server);
     }
 
     public boolean isFavorite() {
@@ -154,7 +156,7 @@ public class Photo {
     }
 
     public void setLicense(String license) {
-        this.license = license;
+        this.license = intern(license);
     }
 
     public boolean isPrimary() {
@@ -210,15 +212,15 @@ public class Photo {
     }
 
     public Date getDateAdded() {
-        return dateAdded;
+        return toDate(dateAdded);
     }
 
     public void setDateAdded(Date dateAdded) {
-        this.dateAdded = dateAdded;
+        this.dateAdded = toMillis(dateAdded);
     }
 
     public void setDateAdded(long dateAdded) {
-        setDateAdded(new Date(dateAdded));
+        this.dateAdded = dateAdded;
     }
 
     public void setDateAdded(String dateAdded) {
@@ -227,15 +229,15 @@ public class Photo {
     }
 
     public Date getDatePosted() {
-        return datePosted;
+        return toDate(datePosted);
     }
 
     public void setDatePosted(Date datePosted) {
-        this.datePosted = datePosted;
+        this.datePosted = toMillis(datePosted);
     }
 
     public void setDatePosted(long datePosted) {
-        setDatePosted(new Date(datePosted));
+        this.datePosted = datePosted;
     }
 
     public void setDatePosted(String datePosted) {
@@ -244,11 +246,11 @@ public class Photo {
     }
 
     public Date getDateTaken() {
-        return dateTaken;
+        return toDate(dateTaken);
     }
 
     public void setDateTaken(Date dateTaken) {
-        this.dateTaken = dateTaken;
+        this.dateTaken = toMillis(dateTaken);
     }
 
     public void setDateTaken(String dateTaken) {
@@ -262,17 +264,17 @@ public class Photo {
     }
 
     public Date getLastUpdate() {
-        return lastUpdate;
+        return toDate(lastUpdate);
     }
 
     public void setLastUpdate(Date lastUpdate) {
-        this.lastUpdate = lastUpdate;
+        this.lastUpdate = toMillis(lastUpdate);
     }
 
     public void setLastUpdate(String lastUpdateStr) {
         if (lastUpdateStr == null || "".equals(lastUpdateStr)) return;
         long unixTime = Long.parseLong(lastUpdateStr);
-        setLastUpdate(new Date(unixTime * 1000L));
+        this.lastUpdate = unixTime * 1000L;
     }
 
 	public String getTakenGranularity() {
@@ -280,7 +282,7 @@ public class Photo {
     }
 
     public void setTakenGranularity(String takenGranularity) {
-        this.takenGranularity = takenGranularity;
+        this.takenGranularity = intern(takenGranularity);
     }
 
     public Permissions getPermissions() {
@@ -312,6 +314,9 @@ public class Photo {
     }
 
     public Collection getNotes() {
+        if (notes == null) {
+            notes = new ArrayList();
+        }
         return notes;
     }
 
@@ -320,6 +325,9 @@ public class Photo {
     }
 
     public Collection getTags() {
+        if (tags == null) {
+            tags = new ArrayList();
+        }
         return tags;
     }
 
@@ -332,6 +340,9 @@ public class Photo {
      * @return List of {@link PhotoUrl}
      */
     public Collection getUrls() {
+        if (urls == null) {
+            urls = new ArrayList();
+        }
         return urls;
     }
 
@@ -343,6 +354,27 @@ public class Photo {
         this.urls = urls;
     }
 
+    /**
+     * @return The notes or null, without allocating an empty list
+     */
+    Collection getNotesIfSet() {
+        return notes;
+    }
+
+    /**
+     * @return The tags or null, without allocating an empty list
+     */
+    Collection getTagsIfSet() {
+        return tags;
+    }
+
+    /**
+     * @return The URLs or null, without allocating an empty list
+     */
+    Collection getUrlsIfSet() {
+        return urls;
+    }
+
     /**
      * Sets the number of views for this Photo.
      * For un-authenticated calls this value is not available
@@ -409,7 +441,7 @@ public class Photo {
     }
 
     public void setIconServer(String iconServer) {
-        this.iconServer = iconServer;
+        this.iconServer = intern(iconServer);
     }
 
     public String getIconFarm() {
@@ -417,7 +449,7 @@ public class Photo {
     }
 
     public void setIconFarm(String iconFarm) {
-        this.iconFarm = iconFarm;
+        this.iconFarm = intern(iconFarm);
     }
 
     public String getUrl() {
@@ -445,7 +477,7 @@ public class Photo {
     }
 
     public void setOriginalFormat(String originalFormat) {
-        this.originalFormat = originalFormat;
+        this.originalFormat = intern(originalFormat);
     }
 
     public String getOriginalSecret() {
@@ -465,9 +497,9 @@ public class Photo {
     public String getOriginalUrl() throws FlickrException {
         if (originalSize == null) {
             if (originalFormat != null) {
-                return getOriginalBaseImageUrl() + "_o." + originalFormat;
+                return getOriginalBaseImageUrl().append("_o.").append(originalFormat).toString();
             }
-            return getOriginalBaseImageUrl() + DEFAULT_ORIGINAL_IMAGE_SUFFIX;
+            return getOriginalBaseImageUrl().append(DEFAULT_ORIGINAL_IMAGE_SUFFIX).toString();
         } else {
             return originalSize.getSource();
         }
@@ -477,7 +509,7 @@ public class Photo {
  
     public String getSmallSquareUrl() {
         if (squareSize == null) {
-            return getBaseImageUrl() + SMALL_SQUARE_IMAGE_SUFFIX;
+            return getBaseImageUrl().append(SMALL_SQUARE_IMAGE_SUFFIX).toString();
         } else {
             return squareSize.getSource();
         }
@@ -488,7 +520,7 @@ public class Photo {
   
     public String getThumbnailUrl() {
         if (thumbnailSize == null) {
-            return getBaseImageUrl() + THUMBNAIL_IMAGE_SUFFIX;
+            return getBaseImageUrl().append(THUMBNAIL_IMAGE_SUFFIX).toString();
         } else {
             return thumbnailSize.getSource();
         }
@@ -497,7 +529,7 @@ public class Photo {
    
     public String getSmallUrl() {
         if (smallSize == null) {
-            return getBaseImageUrl() + SMALL_IMAGE_SUFFIX;
+            return getBaseImageUrl().append(SMALL_IMAGE_SUFFIX).toString();
         } else {
             return smallSize.getSource();
         }
@@ -506,7 +538,7 @@ public class Photo {
 
     public String getMediumUrl() {
         if (mediumSize == null) {
-            return getBaseImageUrl() + MEDIUM_IMAGE_SUFFIX;
+            return getBaseImageUrl().append(MEDIUM_IMAGE_SUFFIX).toString();
         } else {
             return mediumSize.getSource();
         }
@@ -515,34 +547,32 @@ public class Photo {
 
     public String getLargeUrl() {
         if (largeSize == null) {
-            return getBaseImageUrl() + LARGE_IMAGE_SUFFIX;
+            return getBaseImageUrl().append(LARGE_IMAGE_SUFFIX).toString();
         } else {
             return largeSize.getSource();
         }
     }
 
     private StringBuffer getBaseImageUrl() {
-        StringBuffer buffer = new StringBuffer();
-        buffer.append(_getBaseImageUrl());
-        buffer.append(getSecret());
-        return buffer;
+        return _getBaseImageUrl().append(getSecret());
     }
 
-    private StringBuffer getOriginalBaseImageUrl() throws FlickrException, NullPointerException {
-        StringBuffer buffer = new StringBuffer();
-        buffer.append(_getBaseImageUrl());
-        if (getOriginalSecret().length() > 8) {
-            buffer.append(getOriginalSecret());
+    private StringBuffer getOriginalBaseImageUrl() throws FlickrException {
+        String originalSecret = getOriginalSecret();
+        if (originalSecret != null && originalSecret.length() > 8) {
+            return _getBaseImageUrl().append(originalSecret);
         } else {
             throw new FlickrException(
               "0",
               "OriginalUrl not available because of missing originalsecret.");
         }
-        return buffer;
     }
 
+    /**
+     * One buffer, sized for the complete URL, is used for each URL.
+     */
     private StringBuffer _getBaseImageUrl() {
-        StringBuffer buffer = new StringBuffer();
+        StringBuffer buffer = new StringBuffer(80);
         buffer.append("http://farm");
         buffer.append(getFarm());
         buffer.append(".static.flickr.com/");
@@ -570,7 +600,7 @@ public class Photo {
     }
 
     public void setMedia(String media) {
-        this.media = media;
+        this.media = intern(media);
     }
 
     public String getMediaStatus() {
@@ -578,7 +608,7 @@ public class Photo {
     }
 
     public void setMediaStatus(String mediaStatus) {
-        this.mediaStatus = mediaStatus;
+        this.mediaStatus = intern(mediaStatus);
     }
 
     public int getOriginalWidth() {
@@ -673,6 +703,29 @@ public class Photo {
         this.pathAlias = pathAlias;
     }
 
+    private static Date toDate(long millis) {
+        return millis == NO_DATE ? null : new Date(millis);
+    }
+
+    private static long toMillis(Date date) {
+        return date == null ? NO_DATE : date.getTime();
+    }
+
+    /**
+     * The lists are created on first access, unset equals empty.
+     */
+    private static Collection nonNull(Collection c) {
+        return c == null ? Collections.EMPTY_LIST : c;
+    }
+
+    /**
+     * Share the few distinct values of attributes like farm, server or
+     * license between all instances.
+     */
+    private static String intern(String value) {
+        return value == null ? null : value.intern();
+    }
+
     /**
      * @see java.lang.Object#equals(java.lang.Object)
      * @see <a href="http://www.ibm.com/developerworks/library/j-dyn0603/">http://www.ibm.com/developerworks/library/j-dyn0603/</a>
@@ -682,75 +735,52 @@ public class Photo {
         if ((obj == null) || (obj.getClass() != this.getClass())) {
             return false;
         }
-        // object must be Photo at this point
+        // the image URLs are derived from the compared attributes
         Photo test = (Photo) obj;
-        Class cl = this.getClass();
-        Method[] method = cl.getMethods();
-        for (int i = 0; i < method.length; i++) {
-            Matcher m = StringUtilities.getterPattern.matcher(method[i].getName());
-            if (m.find() && !method[i].getName().equals("getClass")) {
-                try {
-                    Object res = method[i].invoke(this, null);
-                    Object resTest = method[i].invoke(test, null);
-                    String retType = method[i].getReturnType().toString();
-                    if (retType.indexOf("class") == 0) {
-                        if (res != null && resTest != null) {
-                            //System.out.println("class: " + method[i].getName());
-                            if (!res.equals(resTest)) return false;
-                        } else {
-                            if (res == null && resTest == null) {
-                                // nop
-                            } else if (res == null || resTest == null) {
-                                // one is set and one is null
-                                return false;
-                            }
-                        }
-                    } else if (retType.equals("int")) {
-                        if (!((Integer) res).equals(((Integer)resTest))) return false;
-                    } else if (retType.equals("boolean")) {
-                        if (!((Boolean) res).equals(((Boolean)resTest))) return false;
-                    } else if (retType.equals("interface java.util.Collection")) {
-                        if (res != null && resTest != null) {
-                            List col = (List) res;
-                            List colTest = (List) resTest;
-                            if (col.size() != colTest.size()) return false;
-                            for (int j = 0; j < col.size(); j++) {
-                                Object tobj1 = col.get(j);
-                                Object tobj2 = colTest.get(j);
-                                if (tobj1 instanceof Tag) {
-                                    Tag tag1 = (Tag) tobj1;
-                                    Tag tag2 = (Tag) tobj2;
-                                    if (!tag1.equals(tag2)) return false;
-                                } else if (tobj1 instanceof PhotoUrl) {
-                                    PhotoUrl url1 = (PhotoUrl) tobj1;
-                                    PhotoUrl url2 = (PhotoUrl) tobj2;
-                                    if (!url1.equals(url2)) return false;
-                                } else if (tobj1 instanceof Note) {
-                                    Note note1 = (Note) tobj1;
-                                    Note note2 = (Note) tobj2;
-                                    if (!note1.equals(note2)) return false;
-                                } else {
-                                    System.out.println("Photo unhandled object: " + tobj1.getClass().getName());
-                               }
-                            }
-                        } else {
-                            if (res == null && resTest != null) return false;
-                            if (res != null && resTest == null) return false;
-                        }
-                    } else {
-                        System.out.println("Photo#equals() missing type " + method[i].getName() + "|" +
-                            method[i].getReturnType().toString());
-                    }
-                } catch (IllegalAccessException ex) {
-                    System.out.println("equals " + method[i].getName() + " " + ex);
-                } catch (InvocationTargetException ex) {
-                    //System.out.println("equals " + method[i].getName() + " " + ex);
-                } catch (Exception ex) {
-                    System.out.println("equals " + method[i].getName() + " " + ex);
-                }
-            }
-        }
-        return true;
+        return favorite == test.favorite
+            && primary == test.primary
+            && publicFlag == test.publicFlag
+            && friendFlag == test.friendFlag
+            && familyFlag == test.familyFlag
+            && comments == test.comments
+            && views == test.views
+            && rotation == test.rotation
+            && originalWidth == test.originalWidth
+            && originalHeight == test.originalHeight
+            && dateAdded == test.dateAdded
+            && datePosted == test.datePosted
+            && dateTaken == test.dateTaken
+            && lastUpdate == test.lastUpdate
+            && ObjectUtilities.equals(id, test.id)
+            && ObjectUtilities.equals(secret, test.secret)
+            && ObjectUtilities.equals(farm, test.farm)
+            && ObjectUtilities.equals(server, test.server)
+            && ObjectUtilities.equals(license, test.license)
+            && ObjectUtilities.equals(title, test.title)
+            && ObjectUtilities.equals(description, test.description)
+            && ObjectUtilities.equals(takenGranularity, test.takenGranularity)
+            && ObjectUtilities.equals(iconServer, test.iconServer)
+            && ObjectUtilities.equals(iconFarm, test.iconFarm)
+            && ObjectUtilities.equals(url, test.url)
+            && ObjectUtilities.equals(originalFormat, test.originalFormat)
+            && ObjectUtilities.equals(originalSecret, test.originalSecret)
+            && ObjectUtilities.equals(placeId, test.placeId)
+            && ObjectUtilities.equals(media, test.media)
+            && ObjectUtilities.equals(mediaStatus, test.mediaStatus)
+            && ObjectUtilities.equals(pathAlias, test.pathAlias)
+            && ObjectUtilities.equals(owner, test.owner)
+            && ObjectUtilities.equals(permissions, test.permissions)
+            && ObjectUtilities.equals(editability, test.editability)
+            && ObjectUtilities.equals(geoData, test.geoData)
+            && ObjectUtilities.equals(squareSize, test.squareSize)
+            && ObjectUtilities.equals(smallSize, test.smallSize)
+            && ObjectUtilities.equals(thumbnailSize, test.thumbnailSize)
+            && ObjectUtilities.equals(mediumSize, test.mediumSize)
+            && ObjectUtilities.equals(largeSize, test.largeSize)
+            && ObjectUtilities.equals(originalSize, test.originalSize)
+            && ObjectUtilities.equals(nonNull(notes), nonNull(test.notes))
+            && ObjectUtilities.equals(nonNull(tags), nonNull(test.tags))
+            && ObjectUtilities.equals(nonNull(urls), nonNull(test.urls));
     }
 
     /**
@@ -759,53 +789,25 @@ public class Photo {
     @Override
     public int hashCode() {
         int hash = 1;
-        Class cl = this.getClass();
-        Method[] method = cl.getMethods();
-        for (int i = 0; i < method.length; i++) {
-            Matcher m = StringUtilities.getterPattern.matcher(method[i].getName());
-            if (m.find() && !method[i].getName().equals("getClass")) {
-                Object res = null;
-                try {
-                    res = method[i].invoke(this, null);
-                } catch (IllegalAccessException ex) {
-                    System.out.println("Photo hashCode " + method[i].getName() + " " + ex);
-                } catch (InvocationTargetException ex) {
-                    //System.out.println("hashCode " + method[i].getName() + " " + ex);
-                }
-                if (res != null) {
-                    if (res instanceof Boolean) {
-                        Boolean bool = (Boolean) res;
-                        hash += bool.hashCode();
-                    } else if (res instanceof Integer) {
-                        Integer inte = (Integer) res;
-                        hash += inte.hashCode();
-                    } else if (res instanceof String) {
-                        String str = (String) res;
-                        hash += str.hashCode();
-                    } else if (res instanceof Editability) {
-                        Editability edit = (Editability) res;
-                        hash += edit.hashCode();
-                    } else if (res instanceof GeoData) {
-                        GeoData edit = (GeoData) res;
-                        hash += edit.hashCode();
-                    } else if (res instanceof Size) {
-                        Size size = (Size) res;
-                        hash += size.hashCode();
-                    } else if (res instanceof Permissions) {
-                        Permissions perm = (Permissions) res;
-                        hash += perm.hashCode();
-                    } else if (res instanceof User) {
-                        User user = (User) res;
-                        hash += user.hashCode();
-                    } else if (res instanceof ArrayList) {
-                        ArrayList list = (ArrayList) res;
-                        hash += list.hashCode();
-                    } else {
-                        System.out.println("Photo hashCode unrecognised object: " + res.getClass().getName());
-                    }
-                }
-            }
-        }
+        hash += ObjectUtilities.hashCode(favorite);
+        hash += ObjectUtilities.hashCode(primary);
+        hash += ObjectUtilities.hashCode(publicFlag);
+        hash += ObjectUtilities.hashCode(friendFlag);
+        hash += ObjectUtilities.hashCode(familyFlag);
+        hash += comments;
+        hash += views;
+        hash += rotation;
+        hash += originalWidth;
+        hash += originalHeight;
+        hash += ObjectUtilities.hashCode(id);
+        hash += ObjectUtilities.hashCode(secret);
+        hash += ObjectUtilities.hashCode(farm);
+        hash += ObjectUtilities.hashCode(server);
+        hash += ObjectUtilities.hashCode(title);
+        hash += ObjectUtilities.hashCode(owner);
+        hash += ObjectUtilities.hashCode(permissions);
+        hash += ObjectUtilities.hashCode(editability);
+        hash += ObjectUtilities.hashCode(geoData);
         return hash;
     }
 
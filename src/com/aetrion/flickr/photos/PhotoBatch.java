@@ -0,0 +1,722 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+
+package com.aetrion.flickr.photos;
+
+import java.lang.reflect.Array;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import com.aetrion.flickr.people.User;
+
+/**
+ * Column-oriented batch of photos for aggregations over large result sets.<p>
+ *
+ * Each attribute is held in a primitive array, indexed by row, instead of
+ * one object per photo. Only the columns given on construction are
+ * populated. Owners are stored once in a dictionary and referenced by
+ * index. Scans like {@link #countByLicense()} run as plain loops over
+ * the arrays.<p>
+ *
+ * A batch is filled directly from search responses with
+ * {@link PhotosInterface#search(SearchParameters, int, int, PhotoBatch)},
+ * or converted from and to a {@link PhotoList}. Request the extras of
+ * {@link #getExtras(int)}, otherwise the columns stay unset.<p>
+ *
+ * Not thread-safe.
+ */
+public class PhotoBatch {
+
+    /** Photo id. Always populated. */
+    public static final int ID = 1;
+    /** Owner NSID and name. */
+    public static final int OWNER = 2;
+    /** Secret, server and farm, enough to build the image URLs. */
+    public static final int IMAGE = 4;
+    public static final int TITLE = 8;
+    public static final int LICENSE = 16;
+    public static final int DATE_UPLOAD = 32;
+    public static final int DATE_TAKEN = 64;
+    public static final int LAST_UPDATE = 128;
+    /** Latitude, longitude and accuracy. */
+    public static final int GEO = 256;
+    public static final int VIEWS = 512;
+    public static final int MEDIA = 1024;
+    public static final int ALL_COLUMNS = 2047;
+
+    /** Value of unset dates. */
+    public static final long NO_DATE = Long.MIN_VALUE;
+    /** Value of unset licenses, views and owners. */
+    public static final int NONE = -1;
+
+    public static final byte MEDIA_PHOTO = 0;
+    public static final byte MEDIA_VIDEO = 1;
+
+    private static final int INITIAL_CAPACITY = 500;
+
+    private static final ThreadLocal DATE_FORMATS = new ThreadLocal() {
+        protected synchronized Object initialValue() {
+            return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        }
+    };
+
+    private final int columns;
+    private int size;
+    private int total;
+
+    private long[] ids;
+    private int[] owners;
+    private String[] secrets;
+    private int[] servers;
+    private byte[] farms;
+    private String[] titles;
+    private byte[] licenses;
+    private long[] datesUploaded;
+    private long[] datesTaken;
+    private long[] lastUpdates;
+    private float[] latitudes;
+    private float[] longitudes;
+    private byte[] accuracies;
+    private int[] views;
+    private byte[] media;
+
+    private final Map ownerIndex = new HashMap();
+    private final List ownerIds = new ArrayList();
+    private final List ownerNames = new ArrayList();
+
+    /**
+     * Create an empty batch.
+     *
+     * @param columns The columns to populate, a combination of the column constants
+     */
+    public PhotoBatch(int columns) {
+        this(columns, INITIAL_CAPACITY);
+    }
+
+    public PhotoBatch(int columns, int capacity) {
+        this.columns = columns | ID;
+        allocate(Math.max(capacity, 1));
+    }
+
+    /**
+     * Get the extras, which a request has to ask for to populate the
+     * columns.
+     *
+     * @param columns A combination of the column constants
+     * @return The set of extras
+     * @see SearchParameters#setExtras(Set)
+     */
+    public static Set getExtras(int columns) {
+        Set extras = new HashSet();
+        if ((columns & OWNER) != 0) extras.add(Extras.OWNER_NAME);
+        if ((columns & LICENSE) != 0) extras.add(Extras.LICENSE);
+        if ((columns & DATE_UPLOAD) != 0) extras.add(Extras.DATE_UPLOAD);
+        if ((columns & DATE_TAKEN) != 0) extras.add(Extras.DATE_TAKEN);
+        if ((columns & LAST_UPDATE) != 0) extras.add(Extras.LAST_UPDATE);
+        if ((columns & GEO) != 0) extras.add(Extras.GEO);
+        if ((columns & VIEWS) != 0) extras.add(Extras.VIEWS);
+        if ((columns & MEDIA) != 0) extras.add(Extras.MEDIA);
+        return extras;
+    }
+
+    /**
+     * Create a batch from photo objects.
+     *
+     * @param photos Collection of {@link Photo}
+     * @param columns The columns to populate
+     * @return The batch
+     */
+    public static PhotoBatch fromPhotos(Collection photos, int columns) {
+        PhotoBatch batch = new PhotoBatch(columns, photos.size());
+        Iterator it = photos.iterator();
+        while (it.hasNext()) {
+            batch.add((Photo) it.next());
+        }
+        if (photos instanceof PhotoList) {
+            batch.total = ((PhotoList) photos).getTotal();
+        }
+        return batch;
+    }
+
+    /**
+     * Append the photos of a response, without creating Photo objects.
+     *
+     * @param photosElement The photos element of a list response
+     */
+    public void addPhotos(Element photosElement) {
+        String totalStr = photosElement.getAttribute("total");
+        if (totalStr.length() > 0) {
+            total = Integer.parseInt(totalStr);
+        }
+        NodeList photoNodes = photosElement.getElementsByTagName("photo");
+        int length = photoNodes.getLength();
+        ensureCapacity(size + length);
+        for (int i = 0; i < length; i++) {
+            addPhoto((Element) photoNodes.item(i));
+        }
+    }
+
+    private void addPhoto(Element photoElement) {
+        int row = size++;
+        ids[row] = parseLong(photoElement.getAttribute("id"));
+        if (owners != null) {
+            owners[row] = toOwner(photoElement.getAttribute("owner"),
+                photoElement.getAttribute("ownername"));
+        }
+        if (secrets != null) {
+            secrets[row] = photoElement.getAttribute("secret");
+            servers[row] = parseInt(photoElement.getAttribute("server"));
+            farms[row] = (byte) parseInt(photoElement.getAttribute("farm"));
+        }
+        if (titles != null) {
+            titles[row] = photoElement.getAttribute("title");
+        }
+        if (licenses != null) {
+            licenses[row] = (byte) parseInt(photoElement.getAttribute("license"));
+        }
+        if (datesUploaded != null) {
+            datesUploaded[row] = parseSeconds(photoElement.getAttribute("dateupload"));
+        }
+        if (datesTaken != null) {
+            datesTaken[row] = parseDate(photoElement.getAttribute("datetaken"));
+        }
+        if (lastUpdates != null) {
+            lastUpdates[row] = parseSeconds(photoElement.getAttribute("lastupdate"));
+        }
+        if (latitudes != null) {
+            String latitude = photoElement.getAttribute("latitude");
+            String longitude = photoElement.getAttribute("longitude");
+            if (latitude.length() > 0 && longitude.length() > 0) {
+                latitudes[row] = Float.parseFloat(latitude);
+                longitudes[row] = Float.parseFloat(longitude);
+            } else {
+                latitudes[row] = Float.NaN;
+                longitudes[row] = Float.NaN;
+            }
+            accuracies[row] = (byte) parseInt(photoElement.getAttribute("accuracy"));
+        }
+        if (views != null) {
+            views[row] = parseInt(photoElement.getAttribute("views"));
+        }
+        if (media != null) {
+            media[row] = toMedia(photoElement.getAttribute("media"));
+        }
+    }
+
+    /**
+     * Append a photo object.
+     *
+     * @param photo The photo
+     */
+    @SuppressWarnings("deprecation")
+    public void add(Photo photo) {
+        ensureCapacity(size + 1);
+        int row = size++;
+        ids[row] = parseLong(photo.getId());
+        if (owners != null) {
+            User owner = photo.getOwner();
+            owners[row] = owner == null ? NONE : toOwner(owner.getId(), owner.getUsername());
+        }
+        if (secrets != null) {
+            secrets[row] = photo.getSecret();
+            servers[row] = parseInt(photo.getServer());
+            farms[row] = (byte) parseInt(photo.getFarm());
+        }
+        if (titles != null) {
+            titles[row] = photo.getTitle();
+        }
+        if (licenses != null) {
+            licenses[row] = (byte) parseInt(photo.getLicense());
+        }
+        if (datesUploaded != null) {
+            datesUploaded[row] = toMillis(photo.getDatePosted());
+        }
+        if (datesTaken != null) {
+            datesTaken[row] = toMillis(photo.getDateTaken());
+        }
+        if (lastUpdates != null) {
+            lastUpdates[row] = toMillis(photo.getLastUpdate());
+        }
+        if (latitudes != null) {
+            GeoData geoData = photo.getGeoData();
+            latitudes[row] = geoData == null ? Float.NaN : geoData.getLatitude();
+            longitudes[row] = geoData == null ? Float.NaN : geoData.getLongitude();
+            accuracies[row] = geoData == null ? 0 : (byte) geoData.getAccuracy();
+        }
+        if (views != null) {
+            // views is deprecated, but the column is still filled
+            views[row] = photo.getViews();
+        }
+        if (media != null) {
+            media[row] = toMedia(photo.getMedia());
+        }
+    }
+
+    /**
+     * Create a photo object from a row, with the populated columns set.
+     *
+     * @param row The row index
+     * @return The photo
+     */
+    @SuppressWarnings("deprecation")
+    public Photo getPhoto(int row) {
+        checkRow(row);
+        Photo photo = new Photo();
+        photo.setId(String.valueOf(ids[row]));
+        if (owners != null && owners[row] != NONE) {
+            User owner = new User();
+            owner.setId(getOwnerId(row));
+            owner.setUsername(getOwnerName(row));
+            photo.setOwner(owner);
+        }
+        if (secrets != null) {
+            photo.setSecret(secrets[row]);
+            photo.setServer(String.valueOf(servers[row]));
+            photo.setFarm(String.valueOf(farms[row]));
+        }
+        if (titles != null) {
+            photo.setTitle(titles[row]);
+        }
+        if (licenses != null && licenses[row] != NONE) {
+            photo.setLicense(String.valueOf(licenses[row]));
+        }
+        if (datesUploaded != null && datesUploaded[row] != NO_DATE) {
+            photo.setDatePosted(datesUploaded[row]);
+        }
+        if (datesTaken != null && datesTaken[row] != NO_DATE) {
+            photo.setDateTaken(new Date(datesTaken[row]));
+        }
+        if (lastUpdates != null && lastUpdates[row] != NO_DATE) {
+            photo.setLastUpdate(new Date(lastUpdates[row]));
+        }
+        if (latitudes != null && !Float.isNaN(latitudes[row])) {
+            GeoData geoData = new GeoData();
+            geoData.setLatitude(latitudes[row]);
+            geoData.setLongitude(longitudes[row]);
+            geoData.setAccuracy(accuracies[row]);
+            photo.setGeoData(geoData);
+        }
+        if (views != null) {
+            // views is deprecated, but the column is still filled
+            photo.setViews(views[row]);
+        }
+        if (media != null && media[row] != NONE) {
+            photo.setMedia(media[row] == MEDIA_VIDEO ? "video" : "photo");
+        }
+        return photo;
+    }
+
+    /**
+     * Convert the batch to photo objects.
+     *
+     * @return The photos
+     */
+    public PhotoList toPhotoList() {
+        PhotoList photos = new PhotoList();
+        photos.ensureCapacity(size);
+        for (int row = 0; row < size; row++) {
+            photos.add(getPhoto(row));
+        }
+        photos.setTotal(total);
+        photos.setPerPage(size);
+        photos.setPage(1);
+        photos.setPages(1);
+        return photos;
+    }
+
+    /**
+     * Count the photos per license.
+     *
+     * @return Array indexed by license id
+     * @see com.aetrion.flickr.photos.licenses.LicensesInterface#getInfo()
+     */
+    public int[] countByLicense() {
+        checkColumn(LICENSE);
+        int max = 0;
+        for (int row = 0; row < size; row++) {
+            max = Math.max(max, licenses[row]);
+        }
+        int[] counts = new int[max + 1];
+        for (int row = 0; row < size; row++) {
+            int license = licenses[row];
+            if (license >= 0) {
+                counts[license]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Count the photos per time interval. Photos outside of the range
+     * or without date are not counted.
+     *
+     * @param column DATE_UPLOAD, DATE_TAKEN or LAST_UPDATE
+     * @param start The start of the first bucket
+     * @param bucketMillis The length of a bucket in milliseconds
+     * @param buckets The number of buckets
+     * @return The counts per bucket
+     */
+    public int[] histogram(int column, Date start, long bucketMillis, int buckets) {
+        long[] dates = getDates(column);
+        long from = start.getTime();
+        int[] counts = new int[buckets];
+        for (int row = 0; row < size; row++) {
+            long date = dates[row];
+            if (date != NO_DATE && date >= from) {
+                long bucket = (date - from) / bucketMillis;
+                if (bucket < buckets) {
+                    counts[(int) bucket]++;
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Get the bounding box of all geotagged photos.
+     *
+     * @return {minLatitude, minLongitude, maxLatitude, maxLongitude} or null, if no photo is geotagged
+     */
+    public float[] getBounds() {
+        checkColumn(GEO);
+        float minLat = Float.POSITIVE_INFINITY;
+        float minLon = Float.POSITIVE_INFINITY;
+        float maxLat = Float.NEGATIVE_INFINITY;
+        float maxLon = Float.NEGATIVE_INFINITY;
+        for (int row = 0; row < size; row++) {
+            // comparisons with NaN are false, untagged rows are skipped
+            float lat = latitudes[row];
+            float lon = longitudes[row];
+            if (lat < minLat) minLat = lat;
+            if (lat > maxLat) maxLat = lat;
+            if (lon < minLon) minLon = lon;
+            if (lon > maxLon) maxLon = lon;
+        }
+        if (minLat > maxLat) {
+            return null;
+        }
+        return new float[] {minLat, minLon, maxLat, maxLon};
+    }
+
+    /**
+     * Count the photos of an owner.
+     *
+     * @param nsid The owner NSID
+     * @return The number of photos
+     */
+    public int countByOwner(String nsid) {
+        checkColumn(OWNER);
+        Integer index = (Integer) ownerIndex.get(nsid);
+        if (index == null) {
+            return 0;
+        }
+        int owner = index.intValue();
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (owners[row] == owner) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public boolean hasColumn(int column) {
+        return (columns & column) == column;
+    }
+
+    /**
+     * @return The total of the last added response
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    public long getId(int row) {
+        checkRow(row);
+        return ids[row];
+    }
+
+    public String getOwnerId(int row) {
+        checkColumn(OWNER);
+        checkRow(row);
+        return owners[row] == NONE ? null : (String) ownerIds.get(owners[row]);
+    }
+
+    public String getOwnerName(int row) {
+        checkColumn(OWNER);
+        checkRow(row);
+        return owners[row] == NONE ? null : (String) ownerNames.get(owners[row]);
+    }
+
+    /**
+     * @return The number of distinct owners
+     */
+    public int getOwnerCount() {
+        return ownerIds.size();
+    }
+
+    public String getSecret(int row) {
+        checkColumn(IMAGE);
+        checkRow(row);
+        return secrets[row];
+    }
+
+    public int getServer(int row) {
+        checkColumn(IMAGE);
+        checkRow(row);
+        return servers[row];
+    }
+
+    public int getFarm(int row) {
+        checkColumn(IMAGE);
+        checkRow(row);
+        return farms[row];
+    }
+
+    public String getTitle(int row) {
+        checkColumn(TITLE);
+        checkRow(row);
+        return titles[row];
+    }
+
+    /**
+     * @return The license id or NONE
+     */
+    public int getLicense(int row) {
+        checkColumn(LICENSE);
+        checkRow(row);
+        return licenses[row];
+    }
+
+    /**
+     * @return The date in milliseconds or NO_DATE
+     */
+    public long getDateUploaded(int row) {
+        checkRow(row);
+        return getDates(DATE_UPLOAD)[row];
+    }
+
+    /**
+     * @return The date in milliseconds or NO_DATE
+     */
+    public long getDateTaken(int row) {
+        checkRow(row);
+        return getDates(DATE_TAKEN)[row];
+    }
+
+    /**
+     * @return The date in milliseconds or NO_DATE
+     */
+    public long getLastUpdate(int row) {
+        checkRow(row);
+        return getDates(LAST_UPDATE)[row];
+    }
+
+    /**
+     * @return The latitude or NaN, if the photo is not geotagged
+     */
+    public float getLatitude(int row) {
+        checkColumn(GEO);
+        checkRow(row);
+        return latitudes[row];
+    }
+
+    /**
+     * @return The longitude or NaN, if the photo is not geotagged
+     */
+    public float getLongitude(int row) {
+        checkColumn(GEO);
+        checkRow(row);
+        return longitudes[row];
+    }
+
+    public int getAccuracy(int row) {
+        checkColumn(GEO);
+        checkRow(row);
+        return accuracies[row];
+    }
+
+    /**
+     * @return The number of views or NONE
+     */
+    public int getViews(int row) {
+        checkColumn(VIEWS);
+        checkRow(row);
+        return views[row];
+    }
+
+    /**
+     * @return MEDIA_PHOTO, MEDIA_VIDEO or NONE
+     */
+    public int getMedia(int row) {
+        checkColumn(MEDIA);
+        checkRow(row);
+        return media[row];
+    }
+
+    private long[] getDates(int column) {
+        checkColumn(column);
+        if (column == DATE_UPLOAD) {
+            return datesUploaded;
+        } else if (column == DATE_TAKEN) {
+            return datesTaken;
+        } else if (column == LAST_UPDATE) {
+            return lastUpdates;
+        }
+        throw new IllegalArgumentException("Not a date column: " + column);
+    }
+
+    private void checkColumn(int column) {
+        if ((columns & column) != column) {
+            throw new IllegalStateException("Column not populated: " + column);
+        }
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", size: " + size);
+        }
+    }
+
+    private int toOwner(String nsid, String name) {
+        if (nsid == null || nsid.length() == 0) {
+            return NONE;
+        }
+        Integer index = (Integer) ownerIndex.get(nsid);
+        if (index == null) {
+            index = new Integer(ownerIds.size());
+            ownerIndex.put(nsid, index);
+            ownerIds.add(nsid);
+            ownerNames.add(name == null || name.length() == 0 ? null : name);
+        }
+        return index.intValue();
+    }
+
+    private void allocate(int capacity) {
+        ids = new long[capacity];
+        if ((columns & OWNER) != 0) owners = new int[capacity];
+        if ((columns & IMAGE) != 0) {
+            secrets = new String[capacity];
+            servers = new int[capacity];
+            farms = new byte[capacity];
+        }
+        if ((columns & TITLE) != 0) titles = new String[capacity];
+        if ((columns & LICENSE) != 0) licenses = new byte[capacity];
+        if ((columns & DATE_UPLOAD) != 0) datesUploaded = new long[capacity];
+        if ((columns & DATE_TAKEN) != 0) datesTaken = new long[capacity];
+        if ((columns & LAST_UPDATE) != 0) lastUpdates = new long[capacity];
+        if ((columns & GEO) != 0) {
+            latitudes = new float[capacity];
+            longitudes = new float[capacity];
+            accuracies = new byte[capacity];
+        }
+        if ((columns & VIEWS) != 0) views = new int[capacity];
+        if ((columns & MEDIA) != 0) media = new byte[capacity];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int length = Math.max(capacity, ids.length * 2);
+        ids = (long[]) grow(ids, length);
+        owners = (int[]) grow(owners, length);
+        secrets = (String[]) grow(secrets, length);
+        servers = (int[]) grow(servers, length);
+        farms = (byte[]) grow(farms, length);
+        titles = (String[]) grow(titles, length);
+        licenses = (byte[]) grow(licenses, length);
+        datesUploaded = (long[]) grow(datesUploaded, length);
+        datesTaken = (long[]) grow(datesTaken, length);
+        lastUpdates = (long[]) grow(lastUpdates, length);
+        latitudes = (float[]) grow(latitudes, length);
+        longitudes = (float[]) grow(longitudes, length);
+        accuracies = (byte[]) grow(accuracies, length);
+        views = (int[]) grow(views, length);
+        media = (byte[]) grow(media, length);
+    }
+
+    /**
+     * Copy a column into a larger array. Unused columns stay null.
+     */
+    private Object grow(Object array, int length) {
+        if (array == null) {
+            return null;
+        }
+        Object larger = Array.newInstance(array.getClass().getComponentType(), length);
+        System.arraycopy(array, 0, larger, 0, size);
+        return larger;
+    }
+
+    private static long parseLong(String value) {
+        if (value == null || value.length() == 0) {
+            return NONE;
+        }
+        return Long.parseLong(value);
+    }
+
+    private static int parseInt(String value) {
+        if (value == null || value.length() == 0) {
+            return NONE;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return NONE;
+        }
+    }
+
+    private static long parseSeconds(String value) {
+        if (value == null || value.length() == 0) {
+            return NO_DATE;
+        }
+        return Long.parseLong(value) * 1000L;
+    }
+
+    private static long parseDate(String value) {
+        if (value == null || value.length() == 0) {
+            return NO_DATE;
+        }
+        try {
+            return ((DateFormat) DATE_FORMATS.get()).parse(value).getTime();
+        } catch (ParseException e) {
+            return NO_DATE;
+        }
+    }
+
+    private static long toMillis(Date date) {
+        return date == null ? NO_DATE : date.getTime();
+    }
+
+    private static byte toMedia(String value) {
+        if ("photo".equals(value)) {
+            return MEDIA_PHOTO;
+        } else if ("video".equals(value)) {
+            return MEDIA_VIDEO;
+        }
+        return NONE;
+    }
+
+}
@@ -0,0 +1,843 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+
+package com.aetrion.flickr.photos;
+
+import java.awt.Rectangle;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.aetrion.flickr.contacts.OnlineStatus;
+import com.aetrion.flickr.people.User;
+import com.aetrion.flickr.tags.Tag;
+
+/**
+ * Compact, versioned binary encoding of photos and their parts, for caches
+ * and the transfer between processes.<p>
+ *
+ * A message starts with a magic byte, the format version and the type of
+ * the root object. Objects are sequences of numbered fields, each
+ * preceded by its number and wire type, and closed by an end marker.
+ * Fields with default values are omitted, integers are written as
+ * varints, and numeric ids as numbers instead of text.<p>
+ *
+ * Strings like owner ids, tags, servers or licenses are added to a
+ * dictionary, which is built while the message is written, so repeated
+ * values cost one or two bytes.<p>
+ *
+ * Decoders skip fields they don't know, so later versions can add fields
+ * without breaking older readers.
+ */
+public final class PhotoCodec {
+
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0xF1;
+
+    private static final int TYPE_PHOTO = 1;
+    private static final int TYPE_PHOTO_LIST = 2;
+    private static final int TYPE_USER = 3;
+    private static final int TYPE_TAG = 4;
+    private static final int TYPE_GEO_DATA = 5;
+    private static final int TYPE_SIZE = 6;
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_FIXED32 = 1;
+    private static final int WIRE_STRING = 2;
+    private static final int WIRE_START = 3;
+    private static final int WIRE_END = 4;
+
+    // string references: literal, literal added to the dictionary, or index + REF_INDEX
+    private static final int REF_LITERAL = 1;
+    private static final int REF_ADD = 2;
+    private static final int REF_INDEX = 3;
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    /** Typical size of an encoded photo of a list with a few extras. */
+    private static final int ESTIMATED_PHOTO_SIZE = 160;
+
+    private PhotoCodec() {
+    }
+
+    public static void encode(Photo photo, ByteBuffer buffer) {
+        new Encoder(buffer, TYPE_PHOTO).writePhoto(photo);
+    }
+
+    public static void encode(PhotoList photos, ByteBuffer buffer) {
+        new Encoder(buffer, TYPE_PHOTO_LIST).writePhotoList(photos);
+    }
+
+    public static void encode(User user, ByteBuffer buffer) {
+        new Encoder(buffer, TYPE_USER).writeUser(user);
+    }
+
+    public static void encode(Tag tag, ByteBuffer buffer) {
+        new Encoder(buffer, TYPE_TAG).writeTag(tag);
+    }
+
+    public static void encode(GeoData geoData, ByteBuffer buffer) {
+        new Encoder(buffer, TYPE_GEO_DATA).writeGeoData(geoData);
+    }
+
+    public static void encode(Size size, ByteBuffer buffer) {
+        new Encoder(buffer, TYPE_SIZE).writeSize(size);
+    }
+
+    /**
+     * Encode a list of photos into a new buffer of sufficient size. The
+     * buffer is sized for the number of photos and grows while writing if
+     * needed, keeping what has been written.
+     *
+     * @param photos The photos
+     * @return The buffer, ready to be read
+     */
+    public static ByteBuffer encode(PhotoList photos) {
+        int capacity = Math.max(INITIAL_BUFFER_SIZE, photos.size() * ESTIMATED_PHOTO_SIZE);
+        Encoder encoder = new Encoder(ByteBuffer.allocate(capacity), TYPE_PHOTO_LIST, true);
+        encoder.writePhotoList(photos);
+        ByteBuffer buffer = encoder.buffer;
+        buffer.flip();
+        return buffer;
+    }
+
+    public static Photo decodePhoto(ByteBuffer buffer) {
+        return new Decoder(buffer, TYPE_PHOTO).readPhoto();
+    }
+
+    public static PhotoList decodePhotoList(ByteBuffer buffer) {
+        return new Decoder(buffer, TYPE_PHOTO_LIST).readPhotoList();
+    }
+
+    public static User decodeUser(ByteBuffer buffer) {
+        return new Decoder(buffer, TYPE_USER).readUser();
+    }
+
+    public static Tag decodeTag(ByteBuffer buffer) {
+        return new Decoder(buffer, TYPE_TAG).readTag();
+    }
+
+    public static GeoData decodeGeoData(ByteBuffer buffer) {
+        return new Decoder(buffer, TYPE_GEO_DATA).readGeoData();
+    }
+
+    public static Size decodeSize(ByteBuffer buffer) {
+        return new Decoder(buffer, TYPE_SIZE).readSize();
+    }
+
+    /**
+     * Writes one message.
+     */
+    private static class Encoder {
+
+        /** Replaced by a larger buffer when full, if growable. */
+        private ByteBuffer buffer;
+        private final boolean growable;
+        private final Map dictionary = new HashMap();
+
+        Encoder(ByteBuffer buffer, int type) {
+            this(buffer, type, false);
+        }
+
+        Encoder(ByteBuffer buffer, int type, boolean growable) {
+            this.buffer = buffer;
+            this.growable = growable;
+            ensure(3);
+            buffer.put((byte) MAGIC);
+            buffer.put((byte) VERSION);
+            buffer.put((byte) type);
+        }
+
+        void writePhotoList(PhotoList photos) {
+            writeInt(1, photos.getPage(), 0);
+            writeInt(2, photos.getPages(), 0);
+            writeInt(3, photos.getPerPage(), 0);
+            writeInt(4, photos.getTotal(), 0);
+            for (int i = 0; i < photos.size(); i++) {
+                start(5);
+                writePhoto(photos.get(i));
+            }
+            end();
+        }
+
+        @SuppressWarnings("deprecation")
+        void writePhoto(Photo photo) {
+            writeNumeric(1, photo.getId(), false);
+            if (photo.getOwner() != null) {
+                start(2);
+                writeUser(photo.getOwner());
+            }
+            writeString(3, photo.getSecret(), false);
+            writeNumeric(4, photo.getFarm(), true);
+            writeNumeric(5, photo.getServer(), true);
+            writeBoolean(6, photo.isFavorite());
+            writeNumeric(7, photo.getLicense(), true);
+            writeBoolean(8, photo.isPrimary());
+            writeString(9, photo.getTitle(), false);
+            writeString(10, photo.getDescription(), false);
+            writeBoolean(11, photo.isPublicFlag());
+            writeBoolean(12, photo.isFriendFlag());
+            writeBoolean(13, photo.isFamilyFlag());
+            writeDate(14, photo.getDateAdded());
+            writeDate(15, photo.getDatePosted());
+            writeDate(16, photo.getDateTaken());
+            writeDate(17, photo.getLastUpdate());
+            writeString(18, photo.getTakenGranularity(), true);
+            Permissions permissions = photo.getPermissions();
+            if (permissions != null) {
+                start(19);
+                writeString(1, permissions.getId(), false);
+                writeBoolean(2, permissions.isPublicFlag());
+                writeBoolean(3, permissions.isFriendFlag());
+                writeBoolean(4, permissions.isFamilyFlag());
+                writeInt(5, permissions.getComment(), 0);
+                writeInt(6, permissions.getAddmeta(), 0);
+                end();
+            }
+            Editability editability = photo.getEditability();
+            if (editability != null) {
+                start(20);
+                writeBoolean(1, editability.isComment());
+                writeBoolean(2, editability.isAddmeta());
+                end();
+            }
+            writeInt(21, photo.getComments(), 0);
+            // views is deprecated, but still encoded so photos round-trip
+            writeInt(22, photo.getViews(), -1);
+            writeInt(23, photo.getRotation(), 0);
+            // unset lists are not allocated by reading them
+            Collection notes = photo.getNotesIfSet();
+            Iterator it = notes == null ? Collections.EMPTY_LIST.iterator() : notes.iterator();
+            while (it.hasNext()) {
+                Note note = (Note) it.next();
+                start(24);
+                writeString(1, note.getId(), false);
+                writeString(2, note.getAuthor(), true);
+                writeString(3, note.getAuthorName(), true);
+                Rectangle bounds = note.getBounds();
+                if (bounds != null) {
+                    writeVarintField(4, zigzag(bounds.x));
+                    writeVarintField(5, zigzag(bounds.y));
+                    writeVarintField(6, zigzag(bounds.width));
+                    writeVarintField(7, zigzag(bounds.height));
+                }
+                writeString(8, note.getText(), false);
+                end();
+            }
+            Collection tags = photo.getTagsIfSet();
+            it = tags == null ? Collections.EMPTY_LIST.iterator() : tags.iterator();
+            while (it.hasNext()) {
+                start(25);
+                writeTag((Tag) it.next());
+            }
+            Collection urls = photo.getUrlsIfSet();
+            it = urls == null ? Collections.EMPTY_LIST.iterator() : urls.iterator();
+            while (it.hasNext()) {
+                PhotoUrl photoUrl = (PhotoUrl) it.next();
+                start(26);
+                writeString(1, photoUrl.getUrl(), false);
+                writeString(2, photoUrl.getType(), true);
+                end();
+            }
+            writeNumeric(27, photo.getIconServer(), true);
+            writeNumeric(28, photo.getIconFarm(), true);
+            // the derived photo page URL is not stored
+            writeString(29, photo.getUrl(), false);
+            if (photo.getGeoData() != null) {
+                start(30);
+                writeGeoData(photo.getGeoData());
+            }
+            writeString(31, photo.getOriginalFormat(), true);
+            writeString(32, photo.getOriginalSecret(), false);
+            writeString(33, photo.getPlaceId(), false);
+            writeString(34, photo.getMedia(), true);
+            writeString(35, photo.getMediaStatus(), true);
+            writeString(36, photo.getPathAlias(), true);
+            writeInt(37, photo.getOriginalWidth(), 0);
+            writeInt(38, photo.getOriginalHeight(), 0);
+            Size[] sizes = {
+                photo.getSquareSize(), photo.getThumbnailSize(), photo.getSmallSize(),
+                photo.getMediumSize(), photo.getLargeSize(), photo.getOriginalSize()
+            };
+            for (int i = 0; i < sizes.length; i++) {
+                if (sizes[i] != null) {
+                    start(39);
+                    writeSize(sizes[i]);
+                }
+            }
+            end();
+        }
+
+        void writeUser(User user) {
+            writeString(1, user.getId(), true);
+            writeString(2, user.getUsername(), true);
+            writeBoolean(3, user.isAdmin());
+            writeBoolean(4, user.isPro());
+            writeInt(5, user.getIconFarm(), 0);
+            writeInt(6, user.getIconServer(), 0);
+            writeString(7, user.getRealName(), true);
+            writeString(8, user.getLocation(), true);
+            writeDate(9, user.getPhotosFirstDate());
+            writeDate(10, user.getPhotosFirstDateTaken());
+            writeDate(11, user.getFaveDate());
+            writeInt(12, user.getPhotosCount(), 0);
+            if (user.getOnline() != null) {
+                writeVarintField(13, zigzag(user.getOnline().getType()));
+            }
+            writeString(14, user.getAwayMessage(), false);
+            writeLong(15, user.getBandwidthMax());
+            writeLong(16, user.getBandwidthUsed());
+            writeLong(17, user.getFilesizeMax());
+            writeString(18, user.getMbox_sha1sum(), false);
+            end();
+        }
+
+        void writeTag(Tag tag) {
+            writeString(1, tag.getId(), false);
+            writeString(2, tag.getAuthor(), true);
+            writeString(3, tag.getAuthorName(), true);
+            writeString(4, tag.getRaw(), true);
+            writeString(5, tag.getValue(), true);
+            writeInt(6, tag.getCount(), 0);
+            end();
+        }
+
+        void writeGeoData(GeoData geoData) {
+            writeFloat(1, geoData.getLatitude());
+            writeFloat(2, geoData.getLongitude());
+            writeInt(3, geoData.getAccuracy(), 0);
+            end();
+        }
+
+        void writeSize(Size size) {
+            writeInt(1, size.getLabel(), 0);
+            writeInt(2, size.getWidth(), 0);
+            writeInt(3, size.getHeight(), 0);
+            writeString(4, size.getSource(), false);
+            writeString(5, size.getUrl(), false);
+            end();
+        }
+
+        private void start(int field) {
+            writeVarint((field << 3) | WIRE_START);
+        }
+
+        private void end() {
+            writeVarint(WIRE_END);
+        }
+
+        private void writeBoolean(int field, boolean value) {
+            if (value) {
+                writeVarintField(field, 1);
+            }
+        }
+
+        private void writeInt(int field, int value, int defaultValue) {
+            if (value != defaultValue) {
+                writeVarintField(field, zigzag(value));
+            }
+        }
+
+        private void writeLong(int field, long value) {
+            if (value != 0) {
+                writeVarintField(field, zigzag(value));
+            }
+        }
+
+        private void writeDate(int field, Date date) {
+            if (date != null) {
+                writeVarintField(field, zigzag(date.getTime()));
+            }
+        }
+
+        private void writeFloat(int field, float value) {
+            writeVarint((field << 3) | WIRE_FIXED32);
+            int bits = Float.floatToIntBits(value);
+            ensure(4);
+            buffer.put((byte) (bits >>> 24));
+            buffer.put((byte) (bits >>> 16));
+            buffer.put((byte) (bits >>> 8));
+            buffer.put((byte) bits);
+        }
+
+        private void writeVarintField(int field, long value) {
+            writeVarint(field << 3 | WIRE_VARINT);
+            writeVarint(value);
+        }
+
+        /**
+         * Write a decimal string as number, if it can be restored exactly.
+         */
+        private void writeNumeric(int field, String value, boolean useDictionary) {
+            if (isNumeric(value)) {
+                writeVarintField(field, Long.parseLong(value));
+            } else {
+                writeString(field, value, useDictionary);
+            }
+        }
+
+        private void writeString(int field, String value, boolean useDictionary) {
+            if (value == null) {
+                return;
+            }
+            writeVarint((field << 3) | WIRE_STRING);
+            if (useDictionary) {
+                Integer index = (Integer) dictionary.get(value);
+                if (index != null) {
+                    writeVarint(index.intValue() + REF_INDEX);
+                    return;
+                }
+                dictionary.put(value, new Integer(dictionary.size()));
+                writeVarint(REF_ADD);
+            } else {
+                writeVarint(REF_LITERAL);
+            }
+            int length = value.length();
+            boolean ascii = true;
+            for (int i = 0; i < length && ascii; i++) {
+                ascii = value.charAt(i) < 0x80;
+            }
+            if (ascii) {
+                writeVarint(length);
+                ensure(length);
+                for (int i = 0; i < length; i++) {
+                    buffer.put((byte) value.charAt(i));
+                }
+            } else {
+                byte[] bytes = toUtf8(value);
+                writeVarint(bytes.length);
+                ensure(bytes.length);
+                buffer.put(bytes);
+            }
+        }
+
+        private void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        /**
+         * Make room for some bytes, if the buffer is growable. Otherwise a
+         * full buffer throws a BufferOverflowException.
+         */
+        private void ensure(int count) {
+            if (growable && buffer.remaining() < count) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + count));
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+
+        private static boolean isNumeric(String value) {
+            int length = value == null ? 0 : value.length();
+            if (length == 0 || length > 18 || (length > 1 && value.charAt(0) == '0')) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Reads one message.
+     */
+    private static class Decoder {
+
+        private final ByteBuffer buffer;
+        private final List dictionary = new ArrayList();
+        private char[] chars = new char[64];
+        private byte[] bytes;
+
+        Decoder(ByteBuffer buffer, int type) {
+            this.buffer = buffer;
+            int magic = buffer.get() & 0xFF;
+            if (magic != MAGIC) {
+                throw new IllegalArgumentException("Not an encoded object, magic: " + magic);
+            }
+            // fields of later versions are skipped
+            buffer.get();
+            int actualType = buffer.get();
+            if (actualType != type) {
+                throw new IllegalArgumentException("Expected type " + type + ", found " + actualType);
+            }
+        }
+
+        PhotoList readPhotoList() {
+            PhotoList photos = new PhotoList();
+            int tag;
+            while ((tag = readVarintInt()) != WIRE_END) {
+                switch (tag >>> 3) {
+                    case 1: photos.setPage(readInt(tag)); break;
+                    case 2: photos.setPages(readInt(tag)); break;
+                    case 3: photos.setPerPage(readInt(tag)); break;
+                    case 4: photos.setTotal(readInt(tag)); break;
+                    case 5: photos.add(readPhoto()); break;
+                    default: skip(tag);
+                }
+            }
+            return photos;
+        }
+
+        @SuppressWarnings("deprecation")
+        Photo readPhoto() {
+            Photo photo = new Photo();
+            List sizes = null;
+            int tag;
+            while ((tag = readVarintInt()) != WIRE_END) {
+                switch (tag >>> 3) {
+                    case 1: photo.setId(readString(tag)); break;
+                    case 2: photo.setOwner(readUser()); break;
+                    case 3: photo.setSecret(readString(tag)); break;
+                    case 4: photo.setFarm(readString(tag)); break;
+                    case 5: photo.setServer(readString(tag)); break;
+                    case 6: photo.setFavorite(readBoolean(tag)); break;
+                    case 7: photo.setLicense(readString(tag)); break;
+                    case 8: photo.setPrimary(readBoolean(tag)); break;
+                    case 9: photo.setTitle(readString(tag)); break;
+                    case 10: photo.setDescription(readString(tag)); break;
+                    case 11: photo.setPublicFlag(readBoolean(tag)); break;
+                    case 12: photo.setFriendFlag(readBoolean(tag)); break;
+                    case 13: photo.setFamilyFlag(readBoolean(tag)); break;
+                    case 14: photo.setDateAdded(readDate(tag)); break;
+                    case 15: photo.setDatePosted(readDate(tag)); break;
+                    case 16: photo.setDateTaken(readDate(tag)); break;
+                    case 17: photo.setLastUpdate(readDate(tag)); break;
+                    case 18: photo.setTakenGranularity(readString(tag)); break;
+                    case 19: photo.setPermissions(readPermissions()); break;
+                    case 20: photo.setEditability(readEditability()); break;
+                    case 21: photo.setComments(readInt(tag)); break;
+                    case 22: photo.setViews(readInt(tag)); break;
+                    case 23: photo.setRotation(readInt(tag)); break;
+                    case 24: photo.getNotes().add(readNote()); break;
+                    case 25: photo.getTags().add(readTag()); break;
+                    case 26: photo.getUrls().add(readPhotoUrl()); break;
+                    case 27: photo.setIconServer(readString(tag)); break;
+                    case 28: photo.setIconFarm(readString(tag)); break;
+                    case 29: photo.setUrl(readString(tag)); break;
+                    case 30: photo.setGeoData(readGeoData()); break;
+                    case 31: photo.setOriginalFormat(readString(tag)); break;
+                    case 32: photo.setOriginalSecret(readString(tag)); break;
+                    case 33: photo.setPlaceId(readString(tag)); break;
+                    case 34: photo.setMedia(readString(tag)); break;
+                    case 35: photo.setMediaStatus(readString(tag)); break;
+                    case 36: photo.setPathAlias(readString(tag)); break;
+                    case 37: photo.setOriginalWidth(readInt(tag)); break;
+                    case 38: photo.setOriginalHeight(readInt(tag)); break;
+                    case 39:
+                        if (sizes == null) {
+                            sizes = new ArrayList(6);
+                        }
+                        sizes.add(readSize());
+                        break;
+                    default: skip(tag);
+                }
+            }
+            if (sizes != null) {
+                photo.setSizes(sizes);
+            }
+            return photo;
+        }
+
+        User readUser() {
+            User user = new User();
+            int tag;
+            while ((tag = readVarintInt()) != WIRE_END) {
+                switch (tag >>> 3) {
+                    case 1: user.setId(readString(tag)); break;
+                    case 2: user.setUsername(readString(tag)); break;
+                    case 3: user.setAdmin(readBoolean(tag)); break;
+                    case 4: user.setPro(readBoolean(tag)); break;
+                    case 5: user.setIconFarm(readInt(tag)); break;
+                    case 6: user.setIconServer(readInt(tag)); break;
+                    case 7: user.setRealName(readString(tag)); break;
+                    case 8: user.setLocation(readString(tag)); break;
+                    case 9: user.setPhotosFirstDate(readDate(tag)); break;
+                    case 10: user.setPhotosFirstDateTaken(readDate(tag)); break;
+                    case 11: user.setFaveDate(readDate(tag)); break;
+                    case 12: user.setPhotosCount(readInt(tag)); break;
+                    case 13: user.setOnline(OnlineStatus.fromType(readInt(tag))); break;
+                    case 14: user.setAwayMessage(readString(tag)); break;
+                    case 15: user.setBandwidthMax(readLong(tag)); break;
+                    case 16: user.setBandwidthUsed(readLong(tag)); break;
+                    case 17: user.setFilesizeMax(readLong(tag)); break;
+                    case 18: user.setMbox_sha1sum(readString(tag)); break;
+                    default: skip(tag);
+                }
+            }
+            return user;
+        }
+
+        Tag readTag() {
+            Tag t = new Tag();
+            int tag;
+            while ((tag = readVarintInt()) != WIRE_END) {
+                switch (tag >>> 3) {
+                    case 1: t.setId(readString(tag)); break;
+                    case 2: t.setAuthor(readString(tag)); break;
+                    case 3: t.setAuthorName(readString(tag)); break;
+                    case 4: t.setRaw(readString(tag)); break;
+                    case 5: t.setValue(readString(tag)); break;
+                    case 6: t.setCount(readInt(tag)); break;
+                    default: skip(tag);
+                }
+            }
+            return t;
+        }
+
+        GeoData readGeoData() {
+            GeoData geoData = new GeoData();
+            int tag;
+            while ((tag = readVarintInt()) != WIRE_END) {
+                switch (tag >>> 3) {
+                    case 1: geoData.setLatitude(readFloat(tag)); break;
+                    case 2: geoData.setLongitude(readFloat(tag)); break;
+                    case 3: geoData.setAccuracy(readInt(tag)); break;
+                    default: skip(tag);
+                }
+            }
+            return geoData;
+        }
+
+        Size readSize() {
+            Size size = new Size();
+            int tag;
+            while ((tag = readVarintInt()) != WIRE_END) {
+                switch (tag >>> 3) {
+                    case 1: size.setLabel(readInt(tag)); break;
+                    case 2: size.setWidth(readInt(tag)); break;
+                    case 3: size.setHeight(readInt(tag)); break;
+                    case 4: size.setSource(readString(tag)); break;
+                    case 5: size.setUrl(readString(tag)); break;
+                    default: skip(tag);
+                }
+            }
+            return size;
+        }
+
+        private Permissions readPermissions() {
+            Permissions permissions = new Permissions();
+            int tag;
+            while ((tag = readVarintInt()) != WIRE_END) {
+                switch (tag >>> 3) {
+                    case 1: permissions.setId(readString(tag)); break;
+                    case 2: permissions.setPublicFlag(readBoolean(tag)); break;
+                    case 3: permissions.setFriendFlag(readBoolean(tag)); break;
+                    case 4: permissions.setFamilyFlag(readBoolean(tag)); break;
+                    case 5: permissions.setComment(readInt(tag)); break;
+                    case 6: permissions.setAddmeta(readInt(tag)); break;
+                    default: skip(tag);
+                }
+            }
+            return permissions;
+        }
+
+        private Editability readEditability() {
+            Editability editability = new Editability();
+            int tag;
+            while ((tag = readVarintInt()) != WIRE_END) {
+                switch (tag >>> 3) {
+                    case 1: editability.setComment(readBoolean(tag)); break;
+                    case 2: editability.setAddmeta(readBoolean(tag)); break;
+                    default: skip(tag);
+                }
+            }
+            return editability;
+        }
+
+        private Note readNote() {
+            Note note = new Note();
+            Rectangle bounds = null;
+            int tag;
+            while ((tag = readVarintInt()) != WIRE_END) {
+                int field = tag >>> 3;
+                if (field >= 4 && field <= 7 && bounds == null) {
+                    bounds = new Rectangle();
+                }
+                switch (field) {
+                    case 1: note.setId(readString(tag)); break;
+                    case 2: note.setAuthor(readString(tag)); break;
+                    case 3: note.setAuthorName(readString(tag)); break;
+                    case 4: bounds.x = readInt(tag); break;
+                    case 5: bounds.y = readInt(tag); break;
+                    case 6: bounds.width = readInt(tag); break;
+                    case 7: bounds.height = readInt(tag); break;
+                    case 8: note.setText(readString(tag)); break;
+                    default: skip(tag);
+                }
+            }
+            if (bounds != null) {
+                note.setBounds(bounds);
+            }
+            return note;
+        }
+
+        private PhotoUrl readPhotoUrl() {
+            PhotoUrl photoUrl = new PhotoUrl();
+            int tag;
+            while ((tag = readVarintInt()) != WIRE_END) {
+                switch (tag >>> 3) {
+                    case 1: photoUrl.setUrl(readString(tag)); break;
+                    case 2: photoUrl.setType(readString(tag)); break;
+                    default: skip(tag);
+                }
+            }
+            return photoUrl;
+        }
+
+        private boolean readBoolean(int tag) {
+            return readLong(tag) != 0;
+        }
+
+        private int readInt(int tag) {
+            return (int) readLong(tag);
+        }
+
+        private long readLong(int tag) {
+            checkWireType(tag, WIRE_VARINT);
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private Date readDate(int tag) {
+            return new Date(readLong(tag));
+        }
+
+        private float readFloat(int tag) {
+            checkWireType(tag, WIRE_FIXED32);
+            return Float.intBitsToFloat(readFixed32());
+        }
+
+        private String readString(int tag) {
+            if ((tag & 7) == WIRE_VARINT) {
+                // numeric value
+                return Long.toString(readVarint());
+            }
+            checkWireType(tag, WIRE_STRING);
+            int ref = readVarintInt();
+            if (ref >= REF_INDEX) {
+                return (String) dictionary.get(ref - REF_INDEX);
+            }
+            String value = readLiteral();
+            if (ref == REF_ADD) {
+                dictionary.add(value);
+            }
+            return value;
+        }
+
+        private String readLiteral() {
+            int length = readVarintInt();
+            if (chars.length < length) {
+                chars = new char[Math.max(length, chars.length * 2)];
+            }
+            int start = buffer.position();
+            for (int i = 0; i < length; i++) {
+                byte b = buffer.get();
+                if (b < 0) {
+                    // not ASCII, decode the whole string as UTF-8
+                    buffer.position(start);
+                    return readUtf8(length);
+                }
+                chars[i] = (char) b;
+            }
+            return new String(chars, 0, length);
+        }
+
+        private String readUtf8(int length) {
+            if (bytes == null || bytes.length < length) {
+                bytes = new byte[Math.max(length, 64)];
+            }
+            buffer.get(bytes, 0, length);
+            try {
+                return new String(bytes, 0, length, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void skip(int tag) {
+            switch (tag & 7) {
+                case WIRE_VARINT:
+                    readVarint();
+                    break;
+                case WIRE_FIXED32:
+                    readFixed32();
+                    break;
+                case WIRE_STRING:
+                    // keeps the dictionary in sync
+                    readString(tag);
+                    break;
+                case WIRE_START:
+                    int nested;
+                    while ((nested = readVarintInt()) != WIRE_END) {
+                        skip(nested);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown wire type: " + (tag & 7));
+            }
+        }
+
+        private void checkWireType(int tag, int wireType) {
+            if ((tag & 7) != wireType) {
+                throw new IllegalArgumentException("Field " + (tag >>> 3)
+                    + " has wire type " + (tag & 7) + ", expected " + wireType);
+            }
+        }
+
+        private int readFixed32() {
+            return ((buffer.get() & 0xFF) << 24) | ((buffer.get() & 0xFF) << 16)
+                | ((buffer.get() & 0xFF) << 8) | (buffer.get() & 0xFF);
+        }
+
+        private int readVarintInt() {
+            return (int) readVarint();
+        }
+
+        private long readVarint() {
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+                shift += 7;
+                if (shift > 63) {
+                    throw new IllegalArgumentException("Malformed varint");
+                }
+            }
+        }
+    }
+
+    private static byte[] toUtf8(String value) {
+        try {
+            return value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
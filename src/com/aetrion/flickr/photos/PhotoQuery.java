@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+package com.aetrion.flickr.photos;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The photos and fields wanted from a {@link PhotoQueryPlanner}.<p>
+ *
+ * Photos are selected by id, by owner or by photoset. Knowing the owner of
+ * a photo id lets the planner look it up with the other photos of the
+ * owner.<p>
+ *
+ * Fields are the names of {@link Extras}, which can be read from lists of
+ * photos, or {@link #DESCRIPTION}, {@link #NOTES}, {@link #COMMENTS} and
+ * {@link #URLS}, which only come with
+ * {@link PhotosInterface#getInfo(String, String)}.
+ */
+public class PhotoQuery {
+
+    public static final String DESCRIPTION = "description";
+    public static final String NOTES = "notes";
+    public static final String COMMENTS = "comments";
+    public static final String URLS = "urls";
+
+    private final List photoIds = new ArrayList();
+    private final Map photoOwners = new HashMap();
+    private final List owners = new ArrayList();
+    private final List photosets = new ArrayList();
+    private final Set fields = new HashSet();
+
+    /**
+     * Add a photo of an unknown owner.
+     *
+     * @param photoId The photo id
+     * @return This query
+     */
+    public PhotoQuery addPhotoId(String photoId) {
+        return addPhotoId(photoId, null);
+    }
+
+    /**
+     * Add a photo.
+     *
+     * @param photoId The photo id
+     * @param ownerId The NSID of the owner, or null if unknown
+     * @return This query
+     */
+    public PhotoQuery addPhotoId(String photoId, String ownerId) {
+        if (!photoOwners.containsKey(photoId)) {
+            photoIds.add(photoId);
+        }
+        if (ownerId != null || !photoOwners.containsKey(photoId)) {
+            photoOwners.put(photoId, ownerId);
+        }
+        return this;
+    }
+
+    /**
+     * Add photos of unknown owners.
+     *
+     * @param photoIds Collection of photo ids
+     * @return This query
+     */
+    public PhotoQuery addPhotoIds(Collection photoIds) {
+        Iterator it = photoIds.iterator();
+        while (it.hasNext()) {
+            addPhotoId((String) it.next());
+        }
+        return this;
+    }
+
+    /**
+     * Add all photos of a user.
+     *
+     * @param userId The NSID of the user
+     * @return This query
+     */
+    public PhotoQuery addOwner(String userId) {
+        if (!owners.contains(userId)) {
+            owners.add(userId);
+        }
+        return this;
+    }
+
+    /**
+     * Add all photos of a photoset.
+     *
+     * @param photosetId The photoset id
+     * @return This query
+     */
+    public PhotoQuery addPhotoset(String photosetId) {
+        if (!photosets.contains(photosetId)) {
+            photosets.add(photosetId);
+        }
+        return this;
+    }
+
+    /**
+     * Add a wanted field.
+     *
+     * @param field The name of an extra, or one of the fields only returned by getInfo
+     * @return This query
+     */
+    public PhotoQuery addField(String field) {
+        fields.add(field);
+        return this;
+    }
+
+    /**
+     * Add wanted fields.
+     *
+     * @param fields Set of field names
+     * @return This query
+     */
+    public PhotoQuery addFields(Set fields) {
+        this.fields.addAll(fields);
+        return this;
+    }
+
+    /**
+     * @return The photo ids, in the order added
+     */
+    public List getPhotoIds() {
+        return photoIds;
+    }
+
+    /**
+     * @param photoId The photo id
+     * @return The NSID of the owner, or null if unknown
+     */
+    public String getOwnerId(String photoId) {
+        return (String) photoOwners.get(photoId);
+    }
+
+    public List getOwners() {
+        return owners;
+    }
+
+    public List getPhotosets() {
+        return photosets;
+    }
+
+    public Set getFields() {
+        return fields;
+    }
+
+}
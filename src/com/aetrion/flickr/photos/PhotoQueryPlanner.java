@@ -0,0 +1,437 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+package com.aetrion.flickr.photos;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.xml.sax.SAXException;
+
+import com.aetrion.flickr.Flickr;
+import com.aetrion.flickr.FlickrException;
+import com.aetrion.flickr.photosets.PhotosetsInterface;
+
+/**
+ * Fetches the photos of a {@link PhotoQuery} with as few calls as
+ * possible.<p>
+ *
+ * Fields available as {@link Extras} are read from lists of up to 500
+ * photos: flickr.photos.search by owner or flickr.photosets.getPhotos.
+ * Only fields missing from lists, like the description or the notes, make
+ * the planner call flickr.photos.getInfo for each photo, with the
+ * concurrency of a {@link BatchLookup}.<p>
+ *
+ * Photo ids with a known owner are looked up in the owner's photos when
+ * at least two of them are wanted, or one without getInfo for its original
+ * dimensions. Listing stops when all of them are found, or when more
+ * pages are left than photos are missing, as known from the first page;
+ * the missing ones are looked up one by one.
+ * Photo ids of unknown owners are looked up one by one, unless they turn up
+ * in the owners or photosets of the same query.<p>
+ *
+ * The original dimensions (o_dims) are only known from lists. They are
+ * missing from photos which had to be looked up one by one.
+ */
+public class PhotoQueryPlanner {
+
+    public static final int PAGE_SIZE = 500;
+
+    private final PhotosInterface photosInterface;
+    private final PhotosetsInterface photosetsInterface;
+    private int concurrency = BatchLookup.DEFAULT_CONCURRENCY;
+
+    /**
+     * The calls chosen for a query. Filled in by
+     * {@link PhotoQueryPlanner#execute(Plan)} with the calls made and the
+     * photos that failed.
+     */
+    public static class Plan {
+
+        private final PhotoQuery query;
+        private final Set extras;
+        private final boolean infoNeeded;
+        private final List steps = new ArrayList();
+        private int calls;
+        private final Map failures = new LinkedHashMap();
+
+        Plan(PhotoQuery query, Set extras, boolean infoNeeded) {
+            this.query = query;
+            this.extras = extras;
+            this.infoNeeded = infoNeeded;
+        }
+
+        public PhotoQuery getQuery() {
+            return query;
+        }
+
+        /**
+         * @return The extras requested with lists
+         */
+        public Set getExtras() {
+            return extras;
+        }
+
+        /**
+         * @return true, if all photos are looked up with getInfo
+         */
+        public boolean isInfoNeeded() {
+            return infoNeeded;
+        }
+
+        /**
+         * @return List of {@link Step}, in the order of execution
+         */
+        public List getSteps() {
+            return steps;
+        }
+
+        /**
+         * The least number of calls, before the sizes of the lists are known.
+         *
+         * @return The number of calls
+         */
+        public int getEstimatedCalls() {
+            int estimate = 0;
+            for (int i = 0; i < steps.size(); i++) {
+                estimate += ((Step) steps.get(i)).getEstimatedCalls();
+            }
+            return estimate;
+        }
+
+        /**
+         * @return The number of calls made by the execution
+         */
+        public int getCalls() {
+            return calls;
+        }
+
+        /**
+         * @return Map of the ids of photos that couldn't be fetched to the exception
+         */
+        public Map getFailures() {
+            return failures;
+        }
+
+        public String toString() {
+            StringBuffer buffer = new StringBuffer();
+            for (int i = 0; i < steps.size(); i++) {
+                buffer.append(steps.get(i)).append('\n');
+            }
+            buffer.append("at least ").append(getEstimatedCalls()).append(" calls");
+            return buffer.toString();
+        }
+
+    }
+
+    /**
+     * One step of a Plan.
+     */
+    public static class Step {
+
+        /** List all photos of an owner with flickr.photos.search. */
+        public static final int LIST_OWNER = 0;
+        /** List all photos of a photoset with flickr.photosets.getPhotos. */
+        public static final int LIST_PHOTOSET = 1;
+        /** Search the photos of an owner for some photo ids. */
+        public static final int SEARCH_OWNER = 2;
+        /** Call flickr.photos.getInfo for each photo. */
+        public static final int GET_INFO = 3;
+
+        private static final String[] NAMES = {"list owner", "list photoset", "search owner", "getInfo"};
+
+        private final int type;
+        private final String target;
+        private final List photoIds;
+
+        Step(int type, String target, List photoIds) {
+            this.type = type;
+            this.target = target;
+            this.photoIds = photoIds;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        /**
+         * @return The owner or photoset, or null for GET_INFO
+         */
+        public String getTarget() {
+            return target;
+        }
+
+        /**
+         * @return The wanted photo ids, empty when listing all photos
+         */
+        public List getPhotoIds() {
+            return photoIds;
+        }
+
+        /**
+         * @return The least number of calls
+         */
+        public int getEstimatedCalls() {
+            return type == GET_INFO ? photoIds.size() : 1;
+        }
+
+        public String toString() {
+            return NAMES[type] + (target == null ? "" : " " + target)
+                + (photoIds.isEmpty() ? "" : " for " + photoIds.size() + " photos");
+        }
+
+    }
+
+    public PhotoQueryPlanner(PhotosInterface photosInterface, PhotosetsInterface photosetsInterface) {
+        this.photosInterface = photosInterface;
+        this.photosetsInterface = photosetsInterface;
+    }
+
+    public PhotoQueryPlanner(Flickr flickr) {
+        this(flickr.getPhotosInterface(), flickr.getPhotosetsInterface());
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @param concurrency The number of getInfo calls running at the same time
+     * @see BatchLookup#setConcurrency(int)
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Choose the calls for a query.
+     *
+     * @param query The query
+     * @return The Plan
+     */
+    public Plan plan(PhotoQuery query) {
+        Set extras = new HashSet();
+        boolean infoNeeded = false;
+        Iterator it = query.getFields().iterator();
+        while (it.hasNext()) {
+            String field = (String) it.next();
+            if (Extras.ALL_EXTRAS.contains(field)) {
+                extras.add(field);
+            } else {
+                infoNeeded = true;
+            }
+        }
+        if (infoNeeded) {
+            // getInfo returns all extras except the dimensions
+            extras.retainAll(Collections.singleton(Extras.O_DIMS));
+        }
+        Plan plan = new Plan(query, extras, infoNeeded);
+
+        for (int i = 0; i < query.getOwners().size(); i++) {
+            plan.steps.add(new Step(Step.LIST_OWNER, (String) query.getOwners().get(i), Collections.EMPTY_LIST));
+        }
+        for (int i = 0; i < query.getPhotosets().size(); i++) {
+            plan.steps.add(new Step(Step.LIST_PHOTOSET, (String) query.getPhotosets().get(i), Collections.EMPTY_LIST));
+        }
+
+        // photo ids by known owner, unless the owner is listed anyway
+        Map byOwner = new LinkedHashMap();
+        List single = new ArrayList();
+        for (int i = 0; i < query.getPhotoIds().size(); i++) {
+            String photoId = (String) query.getPhotoIds().get(i);
+            String ownerId = query.getOwnerId(photoId);
+            if (ownerId != null && query.getOwners().contains(ownerId)) {
+                continue;
+            }
+            if (ownerId == null) {
+                single.add(photoId);
+            } else {
+                List ids = (List) byOwner.get(ownerId);
+                if (ids == null) {
+                    ids = new ArrayList();
+                    byOwner.put(ownerId, ids);
+                }
+                ids.add(photoId);
+            }
+        }
+        it = byOwner.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry entry = (Map.Entry) it.next();
+            List ids = (List) entry.getValue();
+            // with getInfo for each photo anyway, a list only adds calls,
+            // which are worth it for the dimensions of several photos
+            boolean dimensions = extras.contains(Extras.O_DIMS);
+            if (infoNeeded ? dimensions && ids.size() > 1 : dimensions || ids.size() > 1) {
+                plan.steps.add(new Step(Step.SEARCH_OWNER, (String) entry.getKey(), ids));
+            } else {
+                single.addAll(ids);
+            }
+        }
+        if (!single.isEmpty()) {
+            plan.steps.add(new Step(Step.GET_INFO, null, single));
+        }
+        return plan;
+    }
+
+    /**
+     * Fetch the photos of a query.
+     *
+     * @param query The query
+     * @return The photos
+     * @see #execute(Plan)
+     */
+    public PhotoList execute(PhotoQuery query)
+      throws IOException, SAXException, FlickrException, InterruptedException {
+        return execute(plan(query));
+    }
+
+    /**
+     * Execute a plan. The photo ids of the query come first, in the order
+     * added, followed by the other photos of the owners and photosets.
+     * Photos found while searching an owner for other ids aren't returned.
+     * Photos that couldn't be fetched are left out and reported by
+     * {@link Plan#getFailures()}.
+     *
+     * @param plan The plan
+     * @return The photos
+     * @throws IOException
+     * @throws SAXException
+     * @throws FlickrException If a list couldn't be fetched
+     * @throws InterruptedException
+     */
+    public PhotoList execute(Plan plan)
+      throws IOException, SAXException, FlickrException, InterruptedException {
+        plan.calls = 0;
+        plan.failures.clear();
+        Map listed = new LinkedHashMap();
+        Set complete = new HashSet();
+        Set lookups = new LinkedHashSet();
+        for (int i = 0; i < plan.steps.size(); i++) {
+            Step step = (Step) plan.steps.get(i);
+            switch (step.getType()) {
+            case Step.LIST_OWNER:
+            case Step.LIST_PHOTOSET:
+                list(plan, step, listed, complete, Collections.EMPTY_SET);
+                break;
+            case Step.SEARCH_OWNER:
+                Set missing = new HashSet(step.getPhotoIds());
+                missing.removeAll(listed.keySet());
+                list(plan, step, listed, complete, missing);
+                lookups.addAll(missing);
+                break;
+            default:
+                Iterator it = step.getPhotoIds().iterator();
+                while (it.hasNext()) {
+                    Object photoId = it.next();
+                    if (!listed.containsKey(photoId)) {
+                        lookups.add(photoId);
+                    }
+                }
+            }
+        }
+        if (plan.infoNeeded) {
+            lookups.addAll(listed.keySet());
+        }
+
+        Map found = new HashMap(listed);
+        if (!lookups.isEmpty()) {
+            BatchLookup lookup = new BatchLookup(photosInterface);
+            lookup.setConcurrency(concurrency);
+            List results = lookup.getInfo(lookups);
+            plan.calls += results.size();
+            for (int i = 0; i < results.size(); i++) {
+                BatchResult result = (BatchResult) results.get(i);
+                if (result.isError()) {
+                    plan.failures.put(result.getPhotoId(), result.getException());
+                    found.remove(result.getPhotoId());
+                } else {
+                    found.put(result.getPhotoId(), merge((Photo) result.getValue(), (Photo) listed.get(result.getPhotoId())));
+                }
+            }
+        }
+
+        PhotoList photos = new PhotoList();
+        Set added = new HashSet();
+        List photoIds = plan.query.getPhotoIds();
+        for (int i = 0; i < photoIds.size(); i++) {
+            Photo photo = (Photo) found.get(photoIds.get(i));
+            if (photo != null && added.add(photoIds.get(i))) {
+                photos.add(photo);
+            }
+        }
+        Iterator it = listed.keySet().iterator();
+        while (it.hasNext()) {
+            String photoId = (String) it.next();
+            Photo photo = (Photo) found.get(photoId);
+            if (photo != null && complete.contains(photoId) && added.add(photoId)) {
+                photos.add(photo);
+            }
+        }
+        photos.setPage(1);
+        photos.setPages(1);
+        photos.setPerPage(photos.size());
+        photos.setTotal(photos.size());
+        return photos;
+    }
+
+    /**
+     * List the photos of an owner or photoset. When searching for photo
+     * ids, the found ones are removed from missing, and listing stops when
+     * more pages are left than ids are missing. The ids of completely
+     * listed photos are added to complete.
+     */
+    private void list(Plan plan, Step step, Map listed, Set complete, Set missing)
+      throws IOException, SAXException, FlickrException {
+        boolean search = step.getType() == Step.SEARCH_OWNER;
+        if (search && missing.isEmpty()) {
+            return;
+        }
+        int pages = 1;
+        for (int page = 1; page <= pages; page++) {
+            PhotoList list;
+            if (step.getType() == Step.LIST_PHOTOSET) {
+                list = photosetsInterface.getPhotos(step.getTarget(), plan.extras, 0, PAGE_SIZE, page);
+            } else {
+                SearchParameters parameters = new SearchParameters();
+                parameters.setUserId(step.getTarget());
+                parameters.setExtras(plan.extras);
+                list = photosInterface.search(parameters, PAGE_SIZE, page);
+            }
+            plan.calls++;
+            pages = list.getPages();
+            for (int i = 0; i < list.size(); i++) {
+                Photo photo = list.get(i);
+                if (!search) {
+                    complete.add(photo.getId());
+                }
+                if (!search || missing.remove(photo.getId())) {
+                    listed.put(photo.getId(), photo);
+                }
+            }
+            if (search && (missing.isEmpty() || pages - page >= missing.size())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Add what only lists return to a photo from getInfo.
+     */
+    private static Photo merge(Photo info, Photo listed) {
+        if (listed != null && info.getOriginalWidth() == 0) {
+            info.setOriginalWidth(listed.getOriginalWidth());
+            info.setOriginalHeight(listed.getOriginalHeight());
+        }
+        return info;
+    }
+
+}
@@ -2,10 +2,14 @@
 
 package com.aetrion.flickr.photos;
 
+import java.io.Serializable;
+
+import com.aetrion.flickr.util.ObjectUtilities;
+
 /**
  * @author Anthony Eden
  */
-public class PhotoUrl {
+public class PhotoUrl implements Serializable {
 	private static final long serialVersionUID = 12L;
 
     private String url;
@@ -32,4 +36,22 @@ public class PhotoUrl {
         this.type = type;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if ((obj == null) || (obj.getClass() != this.getClass())) {
+            return false;
+        }
+        PhotoUrl test = (PhotoUrl) obj;
+        return ObjectUtilities.equals(url, test.url)
+            && ObjectUtilities.equals(type, test.type);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        hash += ObjectUtilities.hashCode(url);
+        hash += ObjectUtilities.hashCode(type);
+        return hash;
+    }
+
 }
@@ -1,5 +1,6 @@
 package com.aetrion.flickr.photos;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -7,7 +8,9 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Text;
 
+import com.aetrion.flickr.RequestContext;
 import com.aetrion.flickr.people.User;
+import com.aetrion.flickr.util.ElementIndex;
 import com.aetrion.flickr.util.XMLUtilities;
 import com.aetrion.flickr.tags.Tag;
 
@@ -39,6 +42,14 @@ public final class PhotoUtils {
         return val;
     }
 
+    /**
+     * @return The pool of the current request, the shared pool or null
+     */
+    private static InstancePool getInstancePool() {
+        InstancePool pool = RequestContext.getRequestContext().getInstancePool();
+        return pool != null ? pool : InstancePool.getShared();
+    }
+
     /**
      * Transfer the Information of a photo from a DOM-object
      * to a Photo-object.
@@ -60,6 +71,7 @@ public final class PhotoUtils {
      */
      public static final Photo createPhoto(Element photoElement,
         Element defaultElement) {
+        InstancePool pool = getInstancePool();
         Photo photo = new Photo();
         photo.setId(photoElement.getAttribute("id"));
         photo.setPlaceId(photoElement.getAttribute("place_id"));
@@ -88,49 +100,18 @@ public final class PhotoUtils {
         // Size-objects created from them, which are used to override
         // the Url-generation.
         List sizes = new ArrayList();
-        String urlTmp = photoElement.getAttribute("url_t");
-        if (urlTmp.startsWith("http")) {
-            Size sizeT = new Size();
-            sizeT.setLabel(Size.THUMB);
-            sizeT.setSource(urlTmp);
-            sizes.add(sizeT);
-        }
-        urlTmp = photoElement.getAttribute("url_s");
-        if (urlTmp.startsWith("http")) {
-            Size sizeT = new Size();
-            sizeT.setLabel(Size.SMALL);
-            sizeT.setSource(urlTmp);
-            sizes.add(sizeT);
-        }
-        urlTmp = photoElement.getAttribute("url_sq");
-        if (urlTmp.startsWith("http")) {
-            Size sizeT = new Size();
-            sizeT.setLabel(Size.SQUARE);
-            sizeT.setSource(urlTmp);
-            sizes.add(sizeT);
-        }
-        urlTmp = photoElement.getAttribute("url_m");
-        if (urlTmp.startsWith("http")) {
-            Size sizeT = new Size();
-            sizeT.setLabel(Size.MEDIUM);
-            sizeT.setSource(urlTmp);
-            sizes.add(sizeT);
-        }
-        urlTmp = photoElement.getAttribute("url_l");
-        if (urlTmp.startsWith("http")) {
-            Size sizeT = new Size();
-            sizeT.setLabel(Size.LARGE);
-            sizeT.setSource(urlTmp);
-            sizes.add(sizeT);
-        }
-        urlTmp = photoElement.getAttribute("url_o");
-        if (urlTmp.startsWith("http")) {
-            Size sizeT = new Size();
-            sizeT.setLabel(Size.ORIGINAL);
-            sizeT.setSource(urlTmp);
-            sizes.add(sizeT);
-        }
+        addSize(sizes, photoElement, Size.THUMB, "t");
+        addSize(sizes, photoElement, Size.SMALL, "s");
+        addSize(sizes, photoElement, Size.SQUARE, "sq");
+        addSize(sizes, photoElement, Size.MEDIUM, "m");
+        addSize(sizes, photoElement, Size.LARGE, "l");
+        addSize(sizes, photoElement, Size.ORIGINAL, "o");
         if (sizes.size() > 0) {
+            if (pool != null) {
+                for (int i = 0; i < sizes.size(); i++) {
+                    sizes.set(i, pool.getSize((Size) sizes.get(i)));
+                }
+            }
             photo.setSizes(sizes);
         }
 
@@ -144,8 +125,11 @@ public final class PhotoUtils {
             photo.setOriginalFormat("jpg");
         }
 
+        // One pass over the children, instead of a subtree search per part.
+        ElementIndex children = new ElementIndex(photoElement);
+
         try {
-            Element ownerElement = (Element) photoElement.getElementsByTagName("owner").item(0);
+            Element ownerElement = children.getChild("owner");
             if (ownerElement == null) {
                 User owner = new User();
                 owner.setId(getAttribute("owner", photoElement, defaultElement));
@@ -179,9 +163,12 @@ public final class PhotoUtils {
             photo.setOwner(owner);
             photo.setUrl("http://flickr.com/photos/" + owner.getId() + "/" + photo.getId());
         }
+        if (pool != null) {
+            photo.setOwner(pool.getUser(photo.getOwner()));
+        }
 
         try {
-            photo.setTitle(XMLUtilities.getChildValue(photoElement, "title"));
+            photo.setTitle(children.getChildValue("title"));
             if (photo.getTitle() == null) {
                 photo.setTitle(photoElement.getAttribute("title"));
             }
@@ -190,13 +177,13 @@ public final class PhotoUtils {
         }
 
         try {
-            photo.setDescription(XMLUtilities.getChildValue(photoElement, "description"));
+            photo.setDescription(children.getChildValue("description"));
         } catch (IndexOutOfBoundsException e) {
         }
 
         try {
             // here the flags are set, if the photo is read by getInfo().
-            Element visibilityElement = (Element) photoElement.getElementsByTagName("visibility").item(0);
+            Element visibilityElement = children.getChild("visibility");
             photo.setPublicFlag("1".equals(visibilityElement.getAttribute("ispublic")));
             photo.setFriendFlag("1".equals(visibilityElement.getAttribute("isfriend")));
             photo.setFamilyFlag("1".equals(visibilityElement.getAttribute("isfamily")));
@@ -210,7 +197,7 @@ public final class PhotoUtils {
 
         // Parse either photo by getInfo, or from list
         try {
-            Element datesElement = XMLUtilities.getChild(photoElement, "dates");
+            Element datesElement = children.getChild("dates");
             photo.setDatePosted(datesElement.getAttribute("posted"));
             photo.setDateTaken(datesElement.getAttribute("taken"));
             photo.setTakenGranularity(datesElement.getAttribute("takengranularity"));
@@ -221,16 +208,15 @@ public final class PhotoUtils {
             photo.setDateTaken(photoElement.getAttribute("datetaken"));
         }
 
-        NodeList permissionsNodes = photoElement.getElementsByTagName("permissions");
-        if (permissionsNodes.getLength() > 0) {
-            Element permissionsElement = (Element) permissionsNodes.item(0);
+        Element permissionsElement = children.getChild("permissions");
+        if (permissionsElement != null) {
             Permissions permissions = new Permissions();
             permissions.setComment(permissionsElement.getAttribute("permcomment"));
             permissions.setAddmeta(permissionsElement.getAttribute("permaddmeta"));
         }
 
         try {
-            Element editabilityElement = (Element) photoElement.getElementsByTagName("editability").item(0);
+            Element editabilityElement = children.getChild("editability");
             Editability editability = new Editability();
             editability.setComment("1".equals(editabilityElement.getAttribute("cancomment")));
             editability.setAddmeta("1".equals(editabilityElement.getAttribute("canaddmeta")));
@@ -241,7 +227,7 @@ public final class PhotoUtils {
         }
 
         try {
-            Element commentsElement = (Element) photoElement.getElementsByTagName("comments").item(0);
+            Element commentsElement = children.getChild("comments");
             photo.setComments(((Text) commentsElement.getFirstChild()).getData());
         } catch (IndexOutOfBoundsException e) {
         } catch (NullPointerException e) {
@@ -249,11 +235,11 @@ public final class PhotoUtils {
         }
 
         try {
-            Element notesElement = (Element) photoElement.getElementsByTagName("notes").item(0);
+            Element notesElement = children.getChild("notes");
             List notes = new ArrayList();
-            NodeList noteNodes = notesElement.getElementsByTagName("note");
-            for (int i = 0; i < noteNodes.getLength(); i++) {
-                Element noteElement = (Element) noteNodes.item(i);
+            List noteNodes = XMLUtilities.getChildren(notesElement, "note");
+            for (int i = 0; i < noteNodes.size(); i++) {
+                Element noteElement = (Element) noteNodes.get(i);
                 Note note = new Note();
                 note.setId(noteElement.getAttribute("id"));
                 note.setAuthor(noteElement.getAttribute("author"));
@@ -265,9 +251,8 @@ public final class PhotoUtils {
             }
             photo.setNotes(notes);
         } catch (IndexOutOfBoundsException e) {
-            photo.setNotes(new ArrayList());
         } catch (NullPointerException e) {
-            photo.setNotes(new ArrayList());
+            // the list is created on first access
         }
 
         // Tags coming as space-seperated attribute calling
@@ -275,21 +260,23 @@ public final class PhotoUtils {
         // Through PhotoInterface#getInfo() the Photo has a list of
         // Elements.
         try {
-            List tags = new ArrayList();
+            List tags = null;
             String tagsAttr = photoElement.getAttribute("tags");
             if (!tagsAttr.equals("")) {
                 String[] values = tagsAttr.split("\\s+");
+                tags = new ArrayList(values.length);
                 for (int i = 0; i < values.length; i++) {
                     Tag tag = new Tag();
                     tag.setValue(values[i]);
-                    tags.add(tag);
+                    tags.add(pool != null ? pool.getTag(tag) : tag);
                 }
             } else {
                  try {
-                    Element tagsElement = (Element) photoElement.getElementsByTagName("tags").item(0);
-                    NodeList tagNodes = tagsElement.getElementsByTagName("tag");
-                    for (int i = 0; i < tagNodes.getLength(); i++) {
-                        Element tagElement = (Element) tagNodes.item(i);
+                    Element tagsElement = children.getChild("tags");
+                    List tagNodes = XMLUtilities.getChildren(tagsElement, "tag");
+                    tags = new ArrayList(tagNodes.size());
+                    for (int i = 0; i < tagNodes.size(); i++) {
+                        Element tagElement = (Element) tagNodes.get(i);
                         Tag tag = new Tag();
                         tag.setId(tagElement.getAttribute("id"));
                         tag.setAuthor(tagElement.getAttribute("author"));
@@ -300,17 +287,19 @@ public final class PhotoUtils {
                 } catch (IndexOutOfBoundsException e) {
                 }
             }
-            photo.setTags(tags);
+            if (tags != null) {
+                photo.setTags(tags);
+            }
         } catch (NullPointerException e) {
-            photo.setTags(new ArrayList());
+            // the list is created on first access
         }
 
         try {
-            Element urlsElement = (Element) photoElement.getElementsByTagName("urls").item(0);
+            Element urlsElement = children.getChild("urls");
             List urls = new ArrayList();
-            NodeList urlNodes = urlsElement.getElementsByTagName("url");
-            for (int i = 0; i < urlNodes.getLength(); i++) {
-                Element urlElement = (Element) urlNodes.item(i);
+            List urlNodes = XMLUtilities.getChildren(urlsElement, "url");
+            for (int i = 0; i < urlNodes.size(); i++) {
+                Element urlElement = (Element) urlNodes.get(i);
                 PhotoUrl photoUrl = new PhotoUrl();
                 photoUrl.setType(urlElement.getAttribute("type"));
                 photoUrl.setUrl(XMLUtilities.getValue(urlElement));
@@ -321,14 +310,14 @@ public final class PhotoUtils {
             photo.setUrls(urls);
         } catch (IndexOutOfBoundsException e) {
         } catch (NullPointerException e) {
-            photo.setUrls(new ArrayList());
+            // the list is created on first access
         }
 
         String longitude = null;
         String latitude = null;
         String accuracy = null;
         try {
-            Element geoElement = (Element) photoElement.getElementsByTagName("location").item(0);
+            Element geoElement = children.getChild("location");
             longitude = geoElement.getAttribute("longitude");
             latitude = geoElement.getAttribute("latitude");
             accuracy = geoElement.getAttribute("accuracy");
@@ -353,6 +342,36 @@ public final class PhotoUtils {
         return photo;
     }
 
+    /**
+     * Add the Size of an url_* extra with the dimensions of the width_* and
+     * height_* attributes.
+     *
+     * @param sizes The list to add to
+     * @param photoElement The photo element
+     * @param label The label of the size
+     * @param suffix The suffix of the attribute names, like sq for url_sq
+     */
+    private static void addSize(List sizes, Element photoElement, int label, String suffix) {
+        String url = photoElement.getAttribute("url_" + suffix);
+        if (url.startsWith("http")) {
+            Size size = new Size();
+            size.setLabel(label);
+            size.setSource(url);
+            String width = photoElement.getAttribute("width_" + suffix);
+            String height = photoElement.getAttribute("height_" + suffix);
+            if (width.length() > 0 && height.length() > 0) {
+                try {
+                    size.setWidth(width);
+                    size.setHeight(height);
+                } catch (NumberFormatException e) {
+                    size.setWidth(0);
+                    size.setHeight(0);
+                }
+            }
+            sizes.add(size);
+        }
+    }
+
     /**
      * Parse a list of Photos from given Element.
      *
@@ -367,6 +386,7 @@ public final class PhotoUtils {
         photos.setTotal(photosElement.getAttribute("total"));
 
         NodeList photoNodes = photosElement.getElementsByTagName("photo");
+        photos.ensureCapacity(photoNodes.getLength());
         for (int i = 0; i < photoNodes.getLength(); i++) {
             Element photoElement = (Element) photoNodes.item(i);
             photos.add(PhotoUtils.createPhoto(photoElement));
@@ -374,4 +394,15 @@ public final class PhotoUtils {
         return photos;
     }
 
+    /**
+     * Get the tags of a photo without allocating an empty list, for
+     * serializers outside this package.
+     *
+     * @param photo The photo
+     * @return The tags or null
+     */
+    public static Collection getTagsIfSet(Photo photo) {
+        return photo.getTagsIfSet();
+    }
+
 }
@@ -0,0 +1,679 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+
+package com.aetrion.flickr.photos;
+
+import java.io.ObjectStreamException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import com.aetrion.flickr.FlickrException;
+import com.aetrion.flickr.people.User;
+import com.aetrion.flickr.tags.Tag;
+
+/**
+ * A photo of a {@link PhotoViewList}, which reads each group of attributes
+ * on the first call of one of its getters.<p>
+ *
+ * The values are converted by the setters of Photo, so they are the same
+ * as those of PhotoUtils. Setting a value replaces the one of the response.
+ */
+class PhotoView extends Photo {
+    private static final long serialVersionUID = 12L;
+
+    private static final int ID = 1;
+    private static final int OWNER = 1 << 1;
+    private static final int SECRET = 1 << 2;
+    private static final int SERVER = 1 << 3;
+    private static final int FARM = 1 << 4;
+    private static final int TITLE = 1 << 5;
+    private static final int FLAGS = 1 << 6;
+    private static final int FAVORITE = 1 << 7;
+    private static final int LICENSE = 1 << 8;
+    private static final int DATE_POSTED = 1 << 9;
+    private static final int DATE_TAKEN = 1 << 10;
+    private static final int LAST_UPDATE = 1 << 11;
+    private static final int DATE_ADDED = 1 << 12;
+    private static final int ICON_SERVER = 1 << 13;
+    private static final int ICON_FARM = 1 << 14;
+    private static final int ORIGINAL_FORMAT = 1 << 15;
+    private static final int ORIGINAL_SECRET = 1 << 16;
+    private static final int GEO = 1 << 17;
+    private static final int TAGS = 1 << 18;
+    private static final int MEDIA = 1 << 19;
+    private static final int MEDIA_STATUS = 1 << 20;
+    private static final int PATH_ALIAS = 1 << 21;
+    private static final int PLACE_ID = 1 << 22;
+    private static final int ROTATION = 1 << 23;
+    private static final int ORIGINAL_WIDTH = 1 << 24;
+    private static final int ORIGINAL_HEIGHT = 1 << 25;
+    private static final int SIZES = 1 << 26;
+    private static final int URL = 1 << 27;
+
+    private transient PhotoViewList list;
+    private final int index;
+    private int loaded;
+
+    PhotoView(PhotoViewList list, int index) {
+        this.list = list;
+        this.index = index;
+    }
+
+    /**
+     * Mark a group as loaded.
+     *
+     * @return true if the group has to be read from the response
+     */
+    private boolean load(int group) {
+        if ((loaded & group) != 0) {
+            return false;
+        }
+        loaded |= group;
+        return true;
+    }
+
+    private String value(int name) {
+        return list.getValue(index, name);
+    }
+
+    private void loadAll() {
+        // each getter loads its group
+        getId();
+        getOwner();
+        getSecret();
+        getServer();
+        getFarm();
+        getTitle();
+        isPublicFlag();
+        isFavorite();
+        getLicense();
+        getDatePosted();
+        getDateTaken();
+        getLastUpdate();
+        getDateAdded();
+        getIconServer();
+        getIconFarm();
+        getOriginalFormat();
+        getOriginalSecret();
+        getGeoData();
+        loadTags();
+        getMedia();
+        getMediaStatus();
+        getPathAlias();
+        getPlaceId();
+        getRotation();
+        getOriginalWidth();
+        getOriginalHeight();
+        getSquareSize();
+        getUrl();
+    }
+
+    public String getId() {
+        if (load(ID)) {
+            super.setId(value(PhotoViewList.ID));
+        }
+        return super.getId();
+    }
+
+    public void setId(String id) {
+        loaded |= ID;
+        super.setId(id);
+    }
+
+    public User getOwner() {
+        if (load(OWNER)) {
+            User owner = new User();
+            owner.setId(value(PhotoViewList.OWNER));
+            owner.setUsername(value(PhotoViewList.OWNER_NAME));
+            super.setOwner(owner);
+        }
+        return super.getOwner();
+    }
+
+    public void setOwner(User owner) {
+        loaded |= OWNER;
+        super.setOwner(owner);
+    }
+
+    public String getSecret() {
+        if (load(SECRET)) {
+            super.setSecret(value(PhotoViewList.SECRET));
+        }
+        return super.getSecret();
+    }
+
+    public void setSecret(String secret) {
+        loaded |= SECRET;
+        super.setSecret(secret);
+    }
+
+    public String getServer() {
+        if (load(SERVER)) {
+            super.setServer(value(PhotoViewList.SERVER));
+        }
+        return super.getServer();
+    }
+
+    public void setServer(String server) {
+        loaded |= SERVER;
+        super.setServer(server);
+    }
+
+    public String getFarm() {
+        if (load(FARM)) {
+            super.setFarm(value(PhotoViewList.FARM));
+        }
+        return super.getFarm();
+    }
+
+    public void setFarm(String farm) {
+        loaded |= FARM;
+        super.setFarm(farm);
+    }
+
+    public String getTitle() {
+        if (load(TITLE)) {
+            super.setTitle(value(PhotoViewList.TITLE));
+        }
+        return super.getTitle();
+    }
+
+    public void setTitle(String title) {
+        loaded |= TITLE;
+        super.setTitle(title);
+    }
+
+    private void loadFlags() {
+        if (load(FLAGS)) {
+            super.setPublicFlag("1".equals(value(PhotoViewList.IS_PUBLIC)));
+            super.setFriendFlag("1".equals(value(PhotoViewList.IS_FRIEND)));
+            super.setFamilyFlag("1".equals(value(PhotoViewList.IS_FAMILY)));
+        }
+    }
+
+    public boolean isPublicFlag() {
+        loadFlags();
+        return super.isPublicFlag();
+    }
+
+    public void setPublicFlag(boolean publicFlag) {
+        loadFlags();
+        super.setPublicFlag(publicFlag);
+    }
+
+    public boolean isFriendFlag() {
+        loadFlags();
+        return super.isFriendFlag();
+    }
+
+    public void setFriendFlag(boolean friendFlag) {
+        loadFlags();
+        super.setFriendFlag(friendFlag);
+    }
+
+    public boolean isFamilyFlag() {
+        loadFlags();
+        return super.isFamilyFlag();
+    }
+
+    public void setFamilyFlag(boolean familyFlag) {
+        loadFlags();
+        super.setFamilyFlag(familyFlag);
+    }
+
+    public boolean isFavorite() {
+        if (load(FAVORITE)) {
+            super.setFavorite("1".equals(value(PhotoViewList.IS_FAVORITE)));
+        }
+        return super.isFavorite();
+    }
+
+    public void setFavorite(boolean favorite) {
+        loaded |= FAVORITE;
+        super.setFavorite(favorite);
+    }
+
+    public String getLicense() {
+        if (load(LICENSE)) {
+            super.setLicense(value(PhotoViewList.LICENSE));
+        }
+        return super.getLicense();
+    }
+
+    public void setLicense(String license) {
+        loaded |= LICENSE;
+        super.setLicense(license);
+    }
+
+    public Date getDatePosted() {
+        if (load(DATE_POSTED)) {
+            super.setDatePosted(value(PhotoViewList.DATE_UPLOAD));
+        }
+        return super.getDatePosted();
+    }
+
+    public void setDatePosted(Date datePosted) {
+        loaded |= DATE_POSTED;
+        super.setDatePosted(datePosted);
+    }
+
+    public void setDatePosted(long datePosted) {
+        loaded |= DATE_POSTED;
+        super.setDatePosted(datePosted);
+    }
+
+    public void setDatePosted(String datePosted) {
+        loaded |= DATE_POSTED;
+        super.setDatePosted(datePosted);
+    }
+
+    public Date getDateTaken() {
+        if (load(DATE_TAKEN)) {
+            super.setDateTaken(value(PhotoViewList.DATE_TAKEN));
+        }
+        return super.getDateTaken();
+    }
+
+    public void setDateTaken(Date dateTaken) {
+        loaded |= DATE_TAKEN;
+        super.setDateTaken(dateTaken);
+    }
+
+    public void setDateTaken(String dateTaken) {
+        loaded |= DATE_TAKEN;
+        super.setDateTaken(dateTaken);
+    }
+
+    public Date getLastUpdate() {
+        if (load(LAST_UPDATE)) {
+            super.setLastUpdate(value(PhotoViewList.LAST_UPDATE));
+        }
+        return super.getLastUpdate();
+    }
+
+    public void setLastUpdate(Date lastUpdate) {
+        loaded |= LAST_UPDATE;
+        super.setLastUpdate(lastUpdate);
+    }
+
+    public void setLastUpdate(String lastUpdate) {
+        loaded |= LAST_UPDATE;
+        super.setLastUpdate(lastUpdate);
+    }
+
+    public Date getDateAdded() {
+        if (load(DATE_ADDED)) {
+            super.setDateAdded(value(PhotoViewList.DATE_ADDED));
+        }
+        return super.getDateAdded();
+    }
+
+    public void setDateAdded(Date dateAdded) {
+        loaded |= DATE_ADDED;
+        super.setDateAdded(dateAdded);
+    }
+
+    public void setDateAdded(long dateAdded) {
+        loaded |= DATE_ADDED;
+        super.setDateAdded(dateAdded);
+    }
+
+    public void setDateAdded(String dateAdded) {
+        loaded |= DATE_ADDED;
+        super.setDateAdded(dateAdded);
+    }
+
+    public String getIconServer() {
+        if (load(ICON_SERVER)) {
+            super.setIconServer(value(PhotoViewList.ICON_SERVER));
+        }
+        return super.getIconServer();
+    }
+
+    public void setIconServer(String iconServer) {
+        loaded |= ICON_SERVER;
+        super.setIconServer(iconServer);
+    }
+
+    public String getIconFarm() {
+        if (load(ICON_FARM)) {
+            super.setIconFarm(value(PhotoViewList.ICON_FARM));
+        }
+        return super.getIconFarm();
+    }
+
+    public void setIconFarm(String iconFarm) {
+        loaded |= ICON_FARM;
+        super.setIconFarm(iconFarm);
+    }
+
+    public String getOriginalFormat() {
+        if (load(ORIGINAL_FORMAT)) {
+            String originalFormat = value(PhotoViewList.ORIGINAL_FORMAT);
+            super.setOriginalFormat(originalFormat.length() == 0 ? "jpg" : originalFormat);
+        }
+        return super.getOriginalFormat();
+    }
+
+    public void setOriginalFormat(String originalFormat) {
+        loaded |= ORIGINAL_FORMAT;
+        super.setOriginalFormat(originalFormat);
+    }
+
+    public String getOriginalSecret() {
+        if (load(ORIGINAL_SECRET)) {
+            super.setOriginalSecret(value(PhotoViewList.ORIGINAL_SECRET));
+        }
+        return super.getOriginalSecret();
+    }
+
+    public void setOriginalSecret(String originalSecret) {
+        loaded |= ORIGINAL_SECRET;
+        super.setOriginalSecret(originalSecret);
+    }
+
+    public GeoData getGeoData() {
+        if (load(GEO)) {
+            String longitude = value(PhotoViewList.LONGITUDE);
+            String latitude = value(PhotoViewList.LATITUDE);
+            if (longitude.length() > 0 && latitude.length() > 0
+                && !("0".equals(longitude) && "0".equals(latitude))) {
+                super.setGeoData(new GeoData(longitude, latitude, value(PhotoViewList.ACCURACY)));
+            }
+        }
+        return super.getGeoData();
+    }
+
+    public boolean hasGeoData() {
+        return getGeoData() != null;
+    }
+
+    public void setGeoData(GeoData geoData) {
+        loaded |= GEO;
+        super.setGeoData(geoData);
+    }
+
+    public Collection getTags() {
+        loadTags();
+        return super.getTags();
+    }
+
+    Collection getTagsIfSet() {
+        loadTags();
+        return super.getTagsIfSet();
+    }
+
+    private void loadTags() {
+        if (load(TAGS)) {
+            String tagsAttr = value(PhotoViewList.TAGS);
+            if (tagsAttr.length() > 0) {
+                String[] values = tagsAttr.split("\\s+");
+                List tags = new ArrayList(values.length);
+                for (int i = 0; i < values.length; i++) {
+                    Tag tag = new Tag();
+                    tag.setValue(values[i]);
+                    tags.add(tag);
+                }
+                super.setTags(tags);
+            }
+        }
+    }
+
+    public void setTags(Collection tags) {
+        loaded |= TAGS;
+        super.setTags(tags);
+    }
+
+    public String getMedia() {
+        if (load(MEDIA)) {
+            super.setMedia(value(PhotoViewList.MEDIA));
+        }
+        return super.getMedia();
+    }
+
+    public void setMedia(String media) {
+        loaded |= MEDIA;
+        super.setMedia(media);
+    }
+
+    public String getMediaStatus() {
+        if (load(MEDIA_STATUS)) {
+            super.setMediaStatus(value(PhotoViewList.MEDIA_STATUS));
+        }
+        return super.getMediaStatus();
+    }
+
+    public void setMediaStatus(String mediaStatus) {
+        loaded |= MEDIA_STATUS;
+        super.setMediaStatus(mediaStatus);
+    }
+
+    public String getPathAlias() {
+        if (load(PATH_ALIAS)) {
+            super.setPathAlias(value(PhotoViewList.PATH_ALIAS));
+        }
+        return super.getPathAlias();
+    }
+
+    public void setPathAlias(String pathAlias) {
+        loaded |= PATH_ALIAS;
+        super.setPathAlias(pathAlias);
+    }
+
+    public String getPlaceId() {
+        if (load(PLACE_ID)) {
+            super.setPlaceId(value(PhotoViewList.PLACE_ID));
+        }
+        return super.getPlaceId();
+    }
+
+    public void setPlaceId(String placeId) {
+        loaded |= PLACE_ID;
+        super.setPlaceId(placeId);
+    }
+
+    public int getRotation() {
+        if (load(ROTATION)) {
+            super.setRotation(value(PhotoViewList.ROTATION));
+        }
+        return super.getRotation();
+    }
+
+    public void setRotation(int rotation) {
+        loaded |= ROTATION;
+        super.setRotation(rotation);
+    }
+
+    public void setRotation(String rotation) {
+        loaded |= ROTATION;
+        super.setRotation(rotation);
+    }
+
+    public int getOriginalWidth() {
+        if (load(ORIGINAL_WIDTH)) {
+            super.setOriginalWidth(value(PhotoViewList.ORIGINAL_WIDTH));
+        }
+        return super.getOriginalWidth();
+    }
+
+    public void setOriginalWidth(int originalWidth) {
+        loaded |= ORIGINAL_WIDTH;
+        super.setOriginalWidth(originalWidth);
+    }
+
+    public void setOriginalWidth(String originalWidth) {
+        loaded |= ORIGINAL_WIDTH;
+        super.setOriginalWidth(originalWidth);
+    }
+
+    public int getOriginalHeight() {
+        if (load(ORIGINAL_HEIGHT)) {
+            super.setOriginalHeight(value(PhotoViewList.ORIGINAL_HEIGHT));
+        }
+        return super.getOriginalHeight();
+    }
+
+    public void setOriginalHeight(int originalHeight) {
+        loaded |= ORIGINAL_HEIGHT;
+        super.setOriginalHeight(originalHeight);
+    }
+
+    public void setOriginalHeight(String originalHeight) {
+        loaded |= ORIGINAL_HEIGHT;
+        super.setOriginalHeight(originalHeight);
+    }
+
+    /**
+     * The Size objects replace the generated image URLs, like in
+     * PhotoUtils. Setting sizes adds to those of the response.
+     */
+    private void loadSizes() {
+        if (load(SIZES)) {
+            List sizes = new ArrayList();
+            addSize(sizes, Size.THUMB, PhotoViewList.URL_T,
+                PhotoViewList.WIDTH_T, PhotoViewList.HEIGHT_T);
+            addSize(sizes, Size.SMALL, PhotoViewList.URL_S,
+                PhotoViewList.WIDTH_S, PhotoViewList.HEIGHT_S);
+            addSize(sizes, Size.SQUARE, PhotoViewList.URL_SQ,
+                PhotoViewList.WIDTH_SQ, PhotoViewList.HEIGHT_SQ);
+            addSize(sizes, Size.MEDIUM, PhotoViewList.URL_M,
+                PhotoViewList.WIDTH_M, PhotoViewList.HEIGHT_M);
+            addSize(sizes, Size.LARGE, PhotoViewList.URL_L,
+                PhotoViewList.WIDTH_L, PhotoViewList.HEIGHT_L);
+            addSize(sizes, Size.ORIGINAL, PhotoViewList.URL_O,
+                PhotoViewList.WIDTH_O, PhotoViewList.HEIGHT_O);
+            if (sizes.size() > 0) {
+                super.setSizes(sizes);
+            }
+        }
+    }
+
+    private void addSize(List sizes, int label, int name, int widthName, int heightName) {
+        String url = value(name);
+        if (url.startsWith("http")) {
+            Size size = new Size();
+            size.setLabel(label);
+            size.setSource(url);
+            String width = value(widthName);
+            String height = value(heightName);
+            if (width.length() > 0 && height.length() > 0) {
+                try {
+                    size.setWidth(width);
+                    size.setHeight(height);
+                } catch (NumberFormatException e) {
+                    size.setWidth(0);
+                    size.setHeight(0);
+                }
+            }
+            sizes.add(size);
+        }
+    }
+
+    public void setSizes(Collection sizes) {
+        loadSizes();
+        super.setSizes(sizes);
+    }
+
+    public Size getSquareSize() {
+        loadSizes();
+        return super.getSquareSize();
+    }
+
+    public Size getSmallSize() {
+        loadSizes();
+        return super.getSmallSize();
+    }
+
+    public Size getThumbnailSize() {
+        loadSizes();
+        return super.getThumbnailSize();
+    }
+
+    public Size getMediumSize() {
+        loadSizes();
+        return super.getMediumSize();
+    }
+
+    public Size getLargeSize() {
+        loadSizes();
+        return super.getLargeSize();
+    }
+
+    public Size getOriginalSize() {
+        loadSizes();
+        return super.getOriginalSize();
+    }
+
+    public String getSmallSquareUrl() {
+        loadSizes();
+        return super.getSmallSquareUrl();
+    }
+
+    public String getThumbnailUrl() {
+        loadSizes();
+        return super.getThumbnailUrl();
+    }
+
+    public String getSmallUrl() {
+        loadSizes();
+        return super.getSmallUrl();
+    }
+
+    public String getMediumUrl() {
+        loadSizes();
+        return super.getMediumUrl();
+    }
+
+    public String getLargeUrl() {
+        loadSizes();
+        return super.getLargeUrl();
+    }
+
+    public String getOriginalUrl() throws FlickrException {
+        loadSizes();
+        getOriginalFormat();
+        return super.getOriginalUrl();
+    }
+
+    public String getUrl() {
+        if (load(URL)) {
+            super.setUrl(PHOTO_PAGE_URL + getOwner().getId() + "/" + getId());
+        }
+        return super.getUrl();
+    }
+
+    public void setUrl(String url) {
+        loaded |= URL;
+        super.setUrl(url);
+    }
+
+    /**
+     * Compares the values after reading all attributes.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        loadAll();
+        if (obj instanceof PhotoView) {
+            ((PhotoView) obj).loadAll();
+        }
+        return super.equals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+        loadAll();
+        return super.hashCode();
+    }
+
+    /**
+     * Serializes the values, not the response they were read from.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        loadAll();
+        return this;
+    }
+
+}
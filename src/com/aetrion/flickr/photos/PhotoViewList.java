@@ -0,0 +1,487 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+
+package com.aetrion.flickr.photos;
+
+import java.io.UnsupportedEncodingException;
+
+import com.aetrion.flickr.FlickrException;
+
+/**
+ * Photos of a list response, read lazily from the raw response bytes.<p>
+ *
+ * The response is scanned once, recording where the attributes of each
+ * photo element start and end. Nothing is decoded until a getter of a
+ * photo is called, and then only the attributes of that getter. Readers
+ * of a few fields, like id, secret, server and farm, skip the date
+ * parsing and object creation done by {@link PhotoUtils#createPhoto(org.w3c.dom.Element)}.<p>
+ *
+ * The photos returned by {@link #get(int)} have the accessors of Photo and
+ * the same values as photos created by PhotoUtils from the attributes.
+ * Child elements, as returned by getInfo(), are not read. The photos
+ * decode on first access and are not thread-safe.
+ */
+public class PhotoViewList {
+
+    static final int ID = 0;
+    static final int OWNER = 1;
+    static final int OWNER_NAME = 2;
+    static final int SECRET = 3;
+    static final int SERVER = 4;
+    static final int FARM = 5;
+    static final int TITLE = 6;
+    static final int IS_PUBLIC = 7;
+    static final int IS_FRIEND = 8;
+    static final int IS_FAMILY = 9;
+    static final int IS_FAVORITE = 10;
+    static final int LICENSE = 11;
+    static final int DATE_UPLOAD = 12;
+    static final int DATE_TAKEN = 13;
+    static final int LAST_UPDATE = 14;
+    static final int DATE_ADDED = 15;
+    static final int ICON_SERVER = 16;
+    static final int ICON_FARM = 17;
+    static final int ORIGINAL_FORMAT = 18;
+    static final int ORIGINAL_SECRET = 19;
+    static final int LATITUDE = 20;
+    static final int LONGITUDE = 21;
+    static final int ACCURACY = 22;
+    static final int TAGS = 23;
+    static final int MEDIA = 24;
+    static final int MEDIA_STATUS = 25;
+    static final int PATH_ALIAS = 26;
+    static final int PLACE_ID = 27;
+    static final int ROTATION = 28;
+    static final int ORIGINAL_WIDTH = 29;
+    static final int ORIGINAL_HEIGHT = 30;
+    static final int URL_SQ = 31;
+    static final int URL_T = 32;
+    static final int URL_S = 33;
+    static final int URL_M = 34;
+    static final int URL_L = 35;
+    static final int URL_O = 36;
+    static final int WIDTH_SQ = 37;
+    static final int HEIGHT_SQ = 38;
+    static final int WIDTH_T = 39;
+    static final int HEIGHT_T = 40;
+    static final int WIDTH_S = 41;
+    static final int HEIGHT_S = 42;
+    static final int WIDTH_M = 43;
+    static final int HEIGHT_M = 44;
+    static final int WIDTH_L = 45;
+    static final int HEIGHT_L = 46;
+    static final int WIDTH_O = 47;
+    static final int HEIGHT_O = 48;
+
+    private static final String[] ATTRIBUTES = {
+        "id", "owner", "ownername", "secret", "server", "farm", "title",
+        "ispublic", "isfriend", "isfamily", "isfavorite", "license",
+        "dateupload", "datetaken", "lastupdate", "dateadded", "iconserver",
+        "iconfarm", "originalformat", "originalsecret", "latitude",
+        "longitude", "accuracy", "tags", "media", "media_status", "pathalias",
+        "place_id", "rotation", "o_width", "o_height", "url_sq", "url_t",
+        "url_s", "url_m", "url_l", "url_o", "width_sq", "height_sq",
+        "width_t", "height_t", "width_s", "height_s", "width_m", "height_m",
+        "width_l", "height_l", "width_o", "height_o"
+    };
+
+    private static final byte[][] NAMES = new byte[ATTRIBUTES.length][];
+
+    /** Open addressing table of attribute index + 1 by name hash. */
+    private static final byte[] NAME_TABLE = new byte[128];
+
+    private static final byte[] PHOTO = ascii("photo");
+    private static final byte[] PHOTOS = ascii("photos");
+    private static final byte[] RSP = ascii("rsp");
+    private static final byte[] ERR = ascii("err");
+
+    static {
+        for (int i = 0; i < ATTRIBUTES.length; i++) {
+            NAMES[i] = ascii(ATTRIBUTES[i]);
+            int slot = slot(hash(NAMES[i]));
+            while (NAME_TABLE[slot] != 0) {
+                slot = (slot + 1) & (NAME_TABLE.length - 1);
+            }
+            NAME_TABLE[slot] = (byte) (i + 1);
+        }
+    }
+
+    private final byte[] data;
+
+    private int page;
+    private int pages;
+    private int perPage;
+    private int total;
+
+    private int size;
+    /** Index of the first attribute of each photo, plus the end. */
+    private int[] firstAttribute = new int[17];
+    private byte[] attribute = new byte[256];
+    private int[] valueStart = new int[256];
+    private int[] valueEnd = new int[256];
+    private int attributes;
+
+    /**
+     * Scan a list response, either the complete rsp document or the photos
+     * element.
+     *
+     * @param data The UTF-8 encoded response, which must not be modified
+     * afterwards
+     * @throws FlickrException If the response reports an error
+     */
+    public PhotoViewList(byte[] data) throws FlickrException {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * Scan a list response in a part of an array.
+     *
+     * @param data The UTF-8 encoded response, which must not be modified
+     * afterwards
+     * @param offset The start of the response
+     * @param length The length of the response
+     * @throws FlickrException If the response reports an error
+     */
+    public PhotoViewList(byte[] data, int offset, int length) throws FlickrException {
+        this.data = data;
+        scan(offset, offset + length);
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getPages() {
+        return pages;
+    }
+
+    public int getPerPage() {
+        return perPage;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return The number of photos
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get a photo, which reads its attributes on first access.
+     *
+     * @param index The index of the photo
+     * @return The photo
+     */
+    public Photo get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return new PhotoView(this, index);
+    }
+
+    /**
+     * Create a PhotoList of lazy photos.
+     *
+     * @return The photos
+     */
+    public PhotoList toPhotoList() {
+        PhotoList photos = new PhotoList();
+        photos.setPage(page);
+        photos.setPages(pages);
+        photos.setPerPage(perPage);
+        photos.setTotal(total);
+        photos.ensureCapacity(size);
+        for (int i = 0; i < size; i++) {
+            photos.add(new PhotoView(this, i));
+        }
+        return photos;
+    }
+
+    /**
+     * Get the value of an attribute of a photo.
+     *
+     * @param index The index of the photo
+     * @param name The attribute name
+     * @return The value or an empty string, like Element.getAttribute()
+     */
+    public String getAttribute(int index, String name) {
+        for (int i = 0; i < ATTRIBUTES.length; i++) {
+            if (ATTRIBUTES[i].equals(name)) {
+                return getValue(index, i);
+            }
+        }
+        throw new IllegalArgumentException("Attribute not recorded: " + name);
+    }
+
+    /**
+     * @return The value of a known attribute or an empty string
+     */
+    String getValue(int index, int name) {
+        for (int i = firstAttribute[index], end = firstAttribute[index + 1]; i < end; i++) {
+            if (attribute[i] == name) {
+                return decode(valueStart[i], valueEnd[i]);
+            }
+        }
+        return "";
+    }
+
+    private void scan(int pos, int end) throws FlickrException {
+        String errorCode = null;
+        String errorMessage = null;
+        boolean failed = false;
+        while (true) {
+            while (pos < end && data[pos] != '<') {
+                pos++;
+            }
+            if (++pos >= end) {
+                break;
+            }
+            if (isElement(pos, end, PHOTO)) {
+                pos = scanPhoto(pos + PHOTO.length, end);
+            } else if (isElement(pos, end, PHOTOS)) {
+                pos = scanHeader(pos + PHOTOS.length, end);
+            } else if (isElement(pos, end, RSP)) {
+                failed = "fail".equals(findAttribute(pos + RSP.length, end, "stat"));
+            } else if (failed && isElement(pos, end, ERR)) {
+                errorCode = findAttribute(pos + ERR.length, end, "code");
+                errorMessage = findAttribute(pos + ERR.length, end, "msg");
+            }
+        }
+        if (failed) {
+            throw new FlickrException(errorCode, errorMessage);
+        }
+        firstAttribute[size] = attributes;
+    }
+
+    private int scanPhoto(int pos, int end) {
+        if (size + 1 >= firstAttribute.length) {
+            firstAttribute = grow(firstAttribute, firstAttribute.length * 2);
+        }
+        firstAttribute[size++] = attributes;
+        byte[] data = this.data;
+        while (true) {
+            while (pos < end && isWhitespace(data[pos])) {
+                pos++;
+            }
+            if (pos >= end || data[pos] == '>' || data[pos] == '/') {
+                return pos;
+            }
+            // the name is hashed while it is scanned
+            int nameStart = pos;
+            int hash = 0;
+            byte b;
+            while (pos < end && (b = data[pos]) != '=' && !isWhitespace(b)) {
+                hash = 31 * hash + b;
+                pos++;
+            }
+            int nameEnd = pos;
+            while (pos < end && data[pos] != '\'' && data[pos] != '"') {
+                pos++;
+            }
+            if (pos >= end) {
+                return pos;
+            }
+            byte quote = data[pos++];
+            int start = pos;
+            while (pos < end && data[pos] != quote) {
+                pos++;
+            }
+            int name = lookup(nameStart, nameEnd, hash);
+            if (name >= 0) {
+                if (attributes == attribute.length) {
+                    int capacity = attributes * 2;
+                    byte[] newAttribute = new byte[capacity];
+                    System.arraycopy(attribute, 0, newAttribute, 0, attributes);
+                    attribute = newAttribute;
+                    valueStart = grow(valueStart, capacity);
+                    valueEnd = grow(valueEnd, capacity);
+                }
+                attribute[attributes] = (byte) name;
+                valueStart[attributes] = start;
+                valueEnd[attributes] = pos;
+                attributes++;
+            }
+            pos++;
+        }
+    }
+
+    private int scanHeader(int pos, int end) {
+        page = parseInt(findAttribute(pos, end, "page"));
+        pages = parseInt(findAttribute(pos, end, "pages"));
+        perPage = parseInt(findAttribute(pos, end, "perpage"));
+        total = parseInt(findAttribute(pos, end, "total"));
+        return pos;
+    }
+
+    /**
+     * Find an attribute of the start tag beginning at pos. Only used for
+     * the few header attributes.
+     */
+    private String findAttribute(int pos, int end, String name) {
+        byte[] bytes = ascii(name);
+        while (pos < end && data[pos] != '>') {
+            if (isWhitespace(data[pos]) && matches(pos + 1, end, bytes)) {
+                int p = pos + 1 + bytes.length;
+                while (p < end && isWhitespace(data[p])) {
+                    p++;
+                }
+                if (p < end && data[p] == '=') {
+                    p++;
+                    while (p < end && isWhitespace(data[p])) {
+                        p++;
+                    }
+                    if (p < end && (data[p] == '"' || data[p] == '\'')) {
+                        byte quote = data[p];
+                        int start = ++p;
+                        while (p < end && data[p] != quote) {
+                            p++;
+                        }
+                        return decode(start, p);
+                    }
+                }
+            }
+            pos++;
+        }
+        return "";
+    }
+
+    private boolean isElement(int pos, int end, byte[] name) {
+        if (!matches(pos, end, name)) {
+            return false;
+        }
+        int next = pos + name.length;
+        return next < end && (isWhitespace(data[next]) || data[next] == '>' || data[next] == '/');
+    }
+
+    private boolean matches(int pos, int end, byte[] bytes) {
+        if (pos + bytes.length > end) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (data[pos + i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int lookup(int start, int end, int hash) {
+        int slot = slot(hash);
+        int index;
+        while ((index = NAME_TABLE[slot]) != 0) {
+            byte[] name = NAMES[index - 1];
+            if (name.length == end - start && matches(start, end, name)) {
+                return index - 1;
+            }
+            slot = (slot + 1) & (NAME_TABLE.length - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Decode an attribute value. ASCII without references is copied
+     * directly, anything else is decoded as UTF-8 and unescaped.
+     */
+    private String decode(int start, int end) {
+        char[] chars = new char[end - start];
+        for (int i = start; i < end; i++) {
+            byte b = data[i];
+            if (b < 0x20 || b == '&') {
+                // negative for non-ASCII
+                return decodeSlow(start, end);
+            }
+            chars[i - start] = (char) b;
+        }
+        return new String(chars);
+    }
+
+    private String decodeSlow(int start, int end) {
+        String value;
+        try {
+            value = new String(data, start, end - start, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+        StringBuffer buffer = new StringBuffer(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\t' || c == '\n' || c == '\r') {
+                // attribute value normalization
+                buffer.append(' ');
+            } else if (c == '&') {
+                int semicolon = value.indexOf(';', i);
+                if (semicolon < 0) {
+                    buffer.append(c);
+                    continue;
+                }
+                String entity = value.substring(i + 1, semicolon);
+                if (entity.equals("amp")) {
+                    buffer.append('&');
+                } else if (entity.equals("lt")) {
+                    buffer.append('<');
+                } else if (entity.equals("gt")) {
+                    buffer.append('>');
+                } else if (entity.equals("quot")) {
+                    buffer.append('"');
+                } else if (entity.equals("apos")) {
+                    buffer.append('\'');
+                } else if (entity.startsWith("#x")) {
+                    buffer.append(Character.toChars(Integer.parseInt(entity.substring(2), 16)));
+                } else if (entity.startsWith("#")) {
+                    buffer.append(Character.toChars(Integer.parseInt(entity.substring(1))));
+                } else {
+                    buffer.append(c);
+                    continue;
+                }
+                i = semicolon;
+            } else {
+                buffer.append(c);
+            }
+        }
+        return buffer.toString();
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static int hash(byte[] bytes) {
+        int h = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h;
+    }
+
+    private static int slot(int hash) {
+        return (hash ^ (hash >>> 7)) & (NAME_TABLE.length - 1);
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return value.length() == 0 ? 0 : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        int[] newArray = new int[capacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    private static byte[] ascii(String s) {
+        byte[] bytes = new byte[s.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) s.charAt(i);
+        }
+        return bytes;
+    }
+
+}
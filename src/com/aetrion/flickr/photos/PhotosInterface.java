@@ -32,7 +32,10 @@ import com.aetrion.flickr.Transport;
 import com.aetrion.flickr.auth.AuthUtilities;
 import com.aetrion.flickr.people.User;
 import com.aetrion.flickr.photos.geo.GeoInterface;
+import com.aetrion.flickr.util.ByteBufferInputStream;
 import com.aetrion.flickr.util.IOUtilities;
+import com.aetrion.flickr.util.ImageCache;
+import com.aetrion.flickr.util.ImageUtilities;
 import com.aetrion.flickr.util.StringUtilities;
 import com.aetrion.flickr.util.XMLUtilities;
 
@@ -84,6 +87,7 @@ public class PhotosInterface {
     private String apiKey;
     private String sharedSecret;
     private Transport transport;
+    private ImageCache imageCache;
 
     public PhotosInterface(String apiKey, String sharedSecret, Transport transport) {
         this.apiKey = apiKey;
@@ -102,6 +106,21 @@ public class PhotosInterface {
         return geoInterface;
     }
 
+    public ImageCache getImageCache() {
+        return imageCache;
+    }
+
+    /**
+     * Set a disk cache for the image requests of
+     * {@link #getImageAsStream(Photo, int)}, {@link #getImage(Photo, int)}
+     * and {@link #getImage(String)}. Set to null to disable caching.
+     *
+     * @param imageCache The cache or null
+     */
+    public void setImageCache(ImageCache imageCache) {
+        this.imageCache = imageCache;
+    }
+
     /**
      * Add tags to a photo.
      *
@@ -1041,7 +1060,71 @@ public class PhotosInterface {
     public PhotoList search(SearchParameters params, int perPage, int page)
         throws IOException, SAXException, FlickrException {
         PhotoList photos = new PhotoList();
+        Element photosElement = searchPayload(params, perPage, page);
+        photos.setPage(photosElement.getAttribute("page"));
+        photos.setPages(photosElement.getAttribute("pages"));
+        photos.setPerPage(photosElement.getAttribute("perpage"));
+        photos.setTotal(photosElement.getAttribute("total"));
+
+        NodeList photoNodes = photosElement.getElementsByTagName("photo");
+        for (int i = 0; i < photoNodes.getLength(); i++) {
+            Element photoElement = (Element) photoNodes.item(i);
+            photos.add(PhotoUtils.createPhoto(photoElement));
+        }
+        return photos;
+    }
 
+    /**
+     * Search for photos and append them to a column-oriented batch,
+     * without creating Photo objects.<p>
+     *
+     * The extras needed by the columns of the batch have to be set in
+     * the search parameters, see {@link PhotoBatch#getExtras(int)}.
+     *
+     * @param params The search parameters
+     * @param perPage The number of photos to show per page
+     * @param page The page offset
+     * @param batch The batch to append to
+     * @return The batch
+     * @throws IOException
+     * @throws SAXException
+     * @throws FlickrException
+     */
+    public PhotoBatch search(SearchParameters params, int perPage, int page, PhotoBatch batch)
+        throws IOException, SAXException, FlickrException {
+        batch.addPhotos(searchPayload(params, perPage, page));
+        return batch;
+    }
+
+    /**
+     * Search for photos and read them lazily from the response, see
+     * {@link PhotoViewList}. Requires a transport supporting
+     * {@link Transport#getBytes(String, List)}, like REST.
+     *
+     * @param params The search parameters
+     * @param perPage The number of photos to show per page
+     * @param page The page offset
+     * @return The photos
+     * @throws IOException
+     * @throws FlickrException
+     */
+    public PhotoViewList searchViews(SearchParameters params, int perPage, int page)
+        throws IOException, FlickrException {
+        byte[] data = transport.getBytes(transport.getPath(), searchParameters(params, perPage, page));
+        return new PhotoViewList(data);
+    }
+
+    private Element searchPayload(SearchParameters params, int perPage, int page)
+        throws IOException, SAXException, FlickrException {
+        List parameters = searchParameters(params, perPage, page);
+        Response response = transport.get(transport.getPath(), parameters);
+        if (response.isError()) {
+            throw new FlickrException(response.getErrorCode(), response.getErrorMessage());
+        }
+        return response.getPayload();
+    }
+
+    private List searchParameters(SearchParameters params, int perPage, int page) {
         List parameters = new ArrayList();
         parameters.add(new Parameter("method", METHOD_SEARCH));
         parameters.add(new Parameter("api_key", apiKey));
@@ -1060,23 +1143,7 @@ public class PhotosInterface {
                 AuthUtilities.getSignature(sharedSecret, parameters)
             )
         );
-
-        Response response = transport.get(transport.getPath(), parameters);
-        if (response.isError()) {
-            throw new FlickrException(response.getErrorCode(), response.getErrorMessage());
-        }
-        Element photosElement = response.getPayload();
-        photos.setPage(photosElement.getAttribute("page"));
-        photos.setPages(photosElement.getAttribute("pages"));
-        photos.setPerPage(photosElement.getAttribute("perpage"));
-        photos.setTotal(photosElement.getAttribute("total"));
-
-        NodeList photoNodes = photosElement.getElementsByTagName("photo");
-        for (int i = 0; i < photoNodes.getLength(); i++) {
-            Element photoElement = (Element) photoNodes.item(i);
-            photos.add(PhotoUtils.createPhoto(photoElement));
-        }
-        return photos;
+        return parameters;
     }
 
     /**
@@ -1420,22 +1487,71 @@ public class PhotosInterface {
      */
     public InputStream getImageAsStream(Photo photo, int size)
       throws IOException, FlickrException {
-        String urlStr = "";
+        return openImageStream(getImageUrl(photo, size));
+    }
+
+    /**
+     * Get the URL of an image in the given size.<p>
+     *
+     * At {@link Size} you can find constants for the available sizes.
+     *
+     * @param photo A photo-object
+     * @param size The Size
+     * @return The image URL
+     * @throws FlickrException if the size is unknown or the URL of the original is not available
+     */
+    public String getImageUrl(Photo photo, int size) throws FlickrException {
         if (size == Size.SQUARE) {
-            urlStr = photo.getSmallSquareUrl();
+            return photo.getSmallSquareUrl();
         } else if (size == Size.THUMB) {
-            urlStr = photo.getThumbnailUrl();
+            return photo.getThumbnailUrl();
         } else if (size == Size.SMALL) {
-            urlStr = photo.getSmallUrl();
+            return photo.getSmallUrl();
         } else if (size == Size.MEDIUM) {
-            urlStr = photo.getMediumUrl();
+            return photo.getMediumUrl();
         } else if (size == Size.LARGE) {
-            urlStr = photo.getLargeUrl();
+            return photo.getLargeUrl();
         } else if (size == Size.ORIGINAL) {
-            urlStr = photo.getOriginalUrl();
-        } else {
-            throw new FlickrException("0", "Unknown Photo-size");
+            return photo.getOriginalUrl();
+        }
+        throw new FlickrException("0", "Unknown Photo-size");
+    }
+
+    /**
+     * Open the stream of an image, served from the image cache if one is set.
+     *
+     * @param urlStr The image URL
+     * @return The InputStream
+     * @throws IOException
+     */
+    private InputStream openImageStream(String urlStr) throws IOException {
+        if (imageCache != null) {
+            return new ByteBufferInputStream(imageCache.get(urlStr, imageSource));
+        }
+        HttpURLConnection conn = openImageConnection(urlStr);
+        conn.connect();
+        return conn.getInputStream();
+    }
+
+    private final ImageCache.Source imageSource = new ImageCache.Source() {
+        public InputStream open(String url, long[] length) throws IOException {
+            HttpURLConnection conn = openImageConnection(url);
+            conn.connect();
+            InputStream in = conn.getInputStream();
+            length[0] = ImageDownloader.getContentLength(conn);
+            return in;
         }
+    };
+
+    /**
+     * Open an unconnected connection to an image on the static servers,
+     * applying the proxy-credentials of the transport.
+     *
+     * @param urlStr The image URL
+     * @return The connection
+     * @throws IOException
+     */
+    HttpURLConnection openImageConnection(String urlStr) throws IOException {
         URL url = new URL(urlStr);
         HttpURLConnection conn = (HttpURLConnection) url.openConnection();
         if (transport instanceof REST) {
@@ -1446,8 +1562,7 @@ public class PhotosInterface {
                 );
             }
         }
-        conn.connect();
-        return conn.getInputStream();
+        return conn;
     }
 
     /**
@@ -1466,6 +1581,55 @@ public class PhotosInterface {
         return ImageIO.read(getImageAsStream(photo, size));
     }
 
+    /**
+     * Request an image, decoded only with the resolution needed to cover
+     * the given box.<p>
+     *
+     * The image is subsampled while it is decoded, so a large size can be
+     * displayed scaled down without allocating the full resolution.
+     *
+     * @param photo A photo-object
+     * @param size The size
+     * @param maxWidth The width of the target box, 0 for any
+     * @param maxHeight The height of the target box, 0 for any
+     * @return An Image
+     * @throws IOException
+     * @throws FlickrException
+     * @see ImageUtilities#readImage(InputStream, int, int)
+     */
+    public BufferedImage getImage(Photo photo, int size, int maxWidth, int maxHeight)
+      throws IOException, FlickrException {
+        return getImage(photo, size, maxWidth, maxHeight, null);
+    }
+
+    /**
+     * Request an image, decoded only with the resolution needed to cover
+     * the given box, into a reusable destination image.<p>
+     *
+     * The destination is used if it matches the dimensions and type of the
+     * decoded image, otherwise a new image is returned.
+     *
+     * @param photo A photo-object
+     * @param size The size
+     * @param maxWidth The width of the target box, 0 for any
+     * @param maxHeight The height of the target box, 0 for any
+     * @param destination An image to decode into, or null
+     * @return An Image
+     * @throws IOException
+     * @throws FlickrException
+     * @see ImageUtilities#readImage(InputStream, java.awt.Rectangle, int, int, BufferedImage)
+     */
+    public BufferedImage getImage(Photo photo, int size, int maxWidth, int maxHeight,
+      BufferedImage destination) throws IOException, FlickrException {
+        InputStream in = null;
+        try {
+            in = getImageAsStream(photo, size);
+            return ImageUtilities.readImage(in, null, maxWidth, maxHeight, destination);
+        } finally {
+            IOUtilities.close(in);
+        }
+    }
+
     /**
      * Download of an image by URL.
      *
@@ -1475,20 +1639,9 @@ public class PhotosInterface {
      */
     public BufferedImage getImage(String urlStr)
       throws IOException {
-        URL url = new URL(urlStr);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        if (transport instanceof REST) {
-            if (((REST) transport).isProxyAuth()) {
-                conn.setRequestProperty(
-                    "Proxy-Authorization",
-                    "Basic " + ((REST) transport).getProxyCredentials()
-                );
-            }
-        }
-        conn.connect();
         InputStream in = null;
         try {
-            in = conn.getInputStream();
+            in = openImageStream(urlStr);
             return ImageIO.read(in);
         } finally {
             IOUtilities.close(in);
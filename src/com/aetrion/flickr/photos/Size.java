@@ -3,11 +3,9 @@
  */
 package com.aetrion.flickr.photos;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.regex.Matcher;
+import java.io.Serializable;
 
-import com.aetrion.flickr.util.StringUtilities;
+import com.aetrion.flickr.util.ObjectUtilities;
 
 /**
  * This class descibes a Size of a Photo.<p>
@@ -15,7 +13,7 @@ import com.aetrion.flickr.util.StringUtilities;
  * @author Anthony Eden
  * @version $Id: Size.java,v 1.7 2009/07/23 20:41:03 x-mago Exp $
  */
-public class Size {
+public class Size implements Serializable {
 	private static final long serialVersionUID = 12L;
 
 	/**
@@ -196,53 +194,25 @@ public class Size {
     }
 
 	@Override
-	public boolean equals(Object obj) {
+    public boolean equals(Object obj) {
         if ((obj == null) || (obj.getClass() != this.getClass())) {
             return false;
         }
-		// object must be GeoData at this point
         Size test = (Size) obj;
-        Class cl = this.getClass();
-        Method[] method = cl.getMethods();
-        for (int i = 0; i < method.length; i++) {
-            Matcher m = StringUtilities.getterPattern.matcher(method[i].getName());
-            if (m.find() && !method[i].getName().equals("getClass")) {
-                try {
-                    Object res = method[i].invoke(this, null);
-                    Object resTest = method[i].invoke(test, null);
-                    String retType = method[i].getReturnType().toString();
-                    if (retType.indexOf("class") == 0) {
-                        if (res != null && resTest != null) {
-                            if (!res.equals(resTest)) return false;
-                        } else {
-                            //return false;
-                        }
-                    } else if (retType.equals("int")) {
-                        if (!((Integer) res).equals(((Integer)resTest))) return false;
-                    } else {
-                        System.out.println(method[i].getName() + "|" +
-                            method[i].getReturnType().toString());
-                    }
-                } catch (IllegalAccessException ex) {
-                    System.out.println("Size equals " + method[i].getName() + " " + ex);
-                } catch (InvocationTargetException ex) {
-                    //System.out.println("equals " + method[i].getName() + " " + ex);
-                } catch (Exception ex) {
-                    System.out.println("Size equals " + method[i].getName() + " " + ex);
-                }
-            }
-        }
-        return true;
+        return label == test.label
+            && width == test.width
+            && height == test.height
+            && ObjectUtilities.equals(source, test.source)
+            && ObjectUtilities.equals(url, test.url);
     }
 
     @Override
     public int hashCode() {
-        int hash = 1;
-        hash += new Integer(label).hashCode();
-        hash += new Integer(width).hashCode();
-        hash += new Integer(height).hashCode();
-        if (source != null) hash += source.hashCode();
-        if (url != null) hash += url.hashCode();
+        int hash = ObjectUtilities.hashCode(source);
+        hash = 31 * hash + ObjectUtilities.hashCode(url);
+        hash = 31 * hash + label;
+        hash = 31 * hash + width;
+        hash = 31 * hash + height;
         return hash;
     }
 }
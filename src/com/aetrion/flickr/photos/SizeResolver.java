@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+package com.aetrion.flickr.photos;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.xml.sax.SAXException;
+
+import com.aetrion.flickr.FlickrException;
+
+/**
+ * Derives the sizes of photos from the data of a photo list instead of
+ * calling {@link PhotosInterface#getSizes(String)} for each photo.<p>
+ *
+ * The URLs are built from farm, server, id and secret like the URL getters
+ * of {@link Photo}, or taken from the url_* extras. The dimensions are taken
+ * from the width_* and height_* attributes of the url_* extras, or scaled
+ * from the original dimensions of the o_dims extra onto the longest edges
+ * of the sizes: 75 for the square, 100, 240, 500 and 1024. Sizes larger than
+ * the original are not available, except the square. The original needs the
+ * originalsecret of the original_format extra.<p>
+ *
+ * Only if a photo lacks the data for a size, getSizes is called, and the
+ * result is set on the photo so the next lookup is local.<p>
+ *
+ * A SizeResolver may be shared by threads.
+ */
+public class SizeResolver {
+
+    /** The labels from the smallest to the largest size. */
+    private static final int[] LADDER = {
+        Size.SQUARE, Size.THUMB, Size.SMALL, Size.MEDIUM, Size.LARGE, Size.ORIGINAL
+    };
+
+    /** Longest edges by label, 0 for the original. */
+    private static final int[] EDGES = {100, 75, 240, 500, 1024, 0};
+
+    /** URL suffixes by label. The original is built from its format. */
+    private static final String[] SUFFIXES = {"_t.jpg", "_s.jpg", "_m.jpg", ".jpg", "_b.jpg", null};
+
+    private static final String FARM = "http://farm";
+    private static final String HOST = ".static.flickr.com/";
+
+    private final PhotosInterface photosInterface;
+    private final AtomicInteger fallbacks = new AtomicInteger();
+
+    /**
+     * Construct a SizeResolver calling getSizes of a PhotosInterface if data
+     * is missing.
+     *
+     * @param photosInterface The PhotosInterface, or null to never call getSizes
+     */
+    public SizeResolver(PhotosInterface photosInterface) {
+        this.photosInterface = photosInterface;
+    }
+
+    /**
+     * @return The number of calls to getSizes made
+     */
+    public int getFallbackCount() {
+        return fallbacks.get();
+    }
+
+    /**
+     * Get a size of a photo.
+     *
+     * @param photo The photo
+     * @param label The label of the size, like {@link Size#MEDIUM}
+     * @return The size, or null if the photo doesn't have it
+     * @throws IOException
+     * @throws SAXException
+     * @throws FlickrException
+     */
+    public Size getSize(Photo photo, int label) throws IOException, SAXException, FlickrException {
+        Size size = derive(photo, label, new StringBuffer(80));
+        if (size != null && size.getWidth() > 0) {
+            return size;
+        }
+        if (size == null && !isAvailable(photo, label)) {
+            return null;
+        }
+        if (!fallback(photo)) {
+            return size;
+        }
+        return getLoadedSize(photo, label);
+    }
+
+    /**
+     * Get all sizes of a photo, from the square to the original, like
+     * {@link PhotosInterface#getSizes(String)}.
+     *
+     * @param photo The photo
+     * @return A collection of {@link Size}
+     * @throws IOException
+     * @throws SAXException
+     * @throws FlickrException
+     */
+    public Collection getSizes(Photo photo) throws IOException, SAXException, FlickrException {
+        List sizes = derive(photo);
+        if (sizes != null || !fallback(photo)) {
+            return sizes != null ? sizes : new ArrayList();
+        }
+        sizes = new ArrayList();
+        for (int i = 0; i < LADDER.length; i++) {
+            Size size = getLoadedSize(photo, LADDER[i]);
+            if (size != null) {
+                sizes.add(size);
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Derive all sizes of a photo without calling getSizes.
+     *
+     * @param photo The photo
+     * @return A list of {@link Size} from the square to the original, or
+     * null if the URL or the dimensions of a size are unknown
+     */
+    public List derive(Photo photo) {
+        StringBuffer buffer = new StringBuffer(80);
+        List sizes = new ArrayList(LADDER.length);
+        for (int i = 0; i < LADDER.length; i++) {
+            Size size = derive(photo, LADDER[i], buffer);
+            if (size == null) {
+                // without originalsecret the original isn't available to us
+                if (LADDER[i] != Size.ORIGINAL && isAvailable(photo, LADDER[i])) {
+                    return null;
+                }
+                continue;
+            }
+            if (size.getWidth() == 0) {
+                return null;
+            }
+            sizes.add(size);
+        }
+        return sizes;
+    }
+
+    /**
+     * Build the URLs of a size for many photos, reusing one buffer.
+     *
+     * @param photos List of {@link Photo}
+     * @param label The label of the size
+     * @return The URLs in the order of the photos, null for photos without
+     * the data for the URL
+     */
+    public static String[] getUrls(List photos, int label) {
+        String[] urls = new String[photos.size()];
+        StringBuffer buffer = new StringBuffer(80);
+        Iterator it = photos.iterator();
+        for (int i = 0; it.hasNext(); i++) {
+            Photo photo = (Photo) it.next();
+            Size size = getLoadedSize(photo, label);
+            if (size != null && size.getSource() != null) {
+                urls[i] = size.getSource();
+            } else if (buildUrl(photo, label, buffer)) {
+                urls[i] = buffer.toString();
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Derive a size from the url_* extras and o_dims.
+     *
+     * @return The size, with width and height 0 if unknown, or null if
+     * the URL can't be built
+     */
+    static Size derive(Photo photo, int label, StringBuffer buffer) {
+        Size loaded = getLoadedSize(photo, label);
+        if (loaded != null && loaded.getWidth() > 0) {
+            return loaded;
+        }
+        String source;
+        if (loaded != null && loaded.getSource() != null) {
+            source = loaded.getSource();
+        } else if (buildUrl(photo, label, buffer)) {
+            source = buffer.toString();
+        } else {
+            return null;
+        }
+        Size size = new Size();
+        size.setLabel(label);
+        size.setSource(source);
+        if (loaded != null) {
+            size.setUrl(loaded.getUrl());
+        }
+        int width = photo.getOriginalWidth();
+        int height = photo.getOriginalHeight();
+        if (width > 0 && height > 0) {
+            int edge = EDGES[label];
+            int longest = Math.max(width, height);
+            if (label == Size.SQUARE) {
+                size.setWidth(Math.min(edge, Math.min(width, height)));
+                size.setHeight(size.getWidth());
+            } else if (label == Size.ORIGINAL || edge >= longest) {
+                if (label != Size.ORIGINAL && loaded == null && isLarger(label, longest)) {
+                    // the photo has no rendition this large
+                    return null;
+                }
+                size.setWidth(width);
+                size.setHeight(height);
+            } else {
+                size.setWidth(scale(width, edge, longest));
+                size.setHeight(scale(height, edge, longest));
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return Whether the next smaller size already covers the original
+     */
+    private static boolean isLarger(int label, int longest) {
+        for (int i = 2; i < LADDER.length; i++) {
+            if (LADDER[i] == label) {
+                return EDGES[LADDER[i - 1]] >= longest;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The longest edge of a size, 0 for the original
+     */
+    static int getEdge(int label) {
+        return EDGES[label];
+    }
+
+    private static int scale(int length, int edge, int longest) {
+        return Math.max(1, (int) Math.round((double) length * edge / longest));
+    }
+
+    /**
+     * Whether a size, which can't be derived, may still exist.
+     */
+    private static boolean isAvailable(Photo photo, int label) {
+        int width = photo.getOriginalWidth();
+        int height = photo.getOriginalHeight();
+        if (width > 0 && height > 0 && label != Size.SQUARE && label != Size.ORIGINAL) {
+            return !isLarger(label, Math.max(width, height));
+        }
+        return true;
+    }
+
+    /**
+     * Build the URL of a size into the buffer.
+     *
+     * @return false if the photo lacks the data for the URL
+     */
+    private static boolean buildUrl(Photo photo, int label, StringBuffer buffer) {
+        String secret;
+        if (label == Size.ORIGINAL) {
+            secret = photo.getOriginalSecret();
+            if (secret == null || secret.length() <= 8 || isEmpty(photo.getOriginalFormat())) {
+                return false;
+            }
+        } else {
+            secret = photo.getSecret();
+        }
+        if (isEmpty(secret) || isEmpty(photo.getFarm()) || isEmpty(photo.getServer())
+            || isEmpty(photo.getId())) {
+            return false;
+        }
+        buffer.setLength(0);
+        buffer.append(FARM).append(photo.getFarm()).append(HOST)
+            .append(photo.getServer()).append('/').append(photo.getId()).append('_')
+            .append(secret);
+        if (label == Size.ORIGINAL) {
+            buffer.append("_o.").append(photo.getOriginalFormat());
+        } else {
+            buffer.append(SUFFIXES[label]);
+        }
+        return true;
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.length() == 0;
+    }
+
+    /**
+     * The size set on the photo, from url_* extras or getSizes.
+     */
+    private static Size getLoadedSize(Photo photo, int label) {
+        switch (label) {
+        case Size.SQUARE:
+            return photo.getSquareSize();
+        case Size.THUMB:
+            return photo.getThumbnailSize();
+        case Size.SMALL:
+            return photo.getSmallSize();
+        case Size.MEDIUM:
+            return photo.getMediumSize();
+        case Size.LARGE:
+            return photo.getLargeSize();
+        default:
+            return photo.getOriginalSize();
+        }
+    }
+
+    /**
+     * Call getSizes and set the sizes on the photo.
+     *
+     * @return false if there is no PhotosInterface to call
+     */
+    private boolean fallback(Photo photo) throws IOException, SAXException, FlickrException {
+        if (photosInterface == null) {
+            return false;
+        }
+        fallbacks.incrementAndGet();
+        photo.setSizes(photosInterface.getSizes(photo.getId()));
+        return true;
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+package com.aetrion.flickr.photos;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Selects the smallest size of a photo which fills a display box, without
+ * calling the Flickr API.<p>
+ *
+ * The sizes are derived by the {@link SizeResolver} from the data of the
+ * photo, the original dimensions of the o_dims extra and the url_* extras.
+ * A size is adequate if it isn't scaled up to fill the box: fitted into the
+ * box, or cropped to cover it. The square is only used when cropping to a
+ * box of at most 75 pixels. If the dimensions of the photo are unknown, the
+ * size is chosen by the longest edges of the sizes, as if the photo had the
+ * shape of the box.<p>
+ *
+ * The bytes of a size are estimated from its pixels, and the bytes saved
+ * compared to the original are summed up for all selections.<p>
+ *
+ * A SizeSelector may be shared by threads.
+ */
+public class SizeSelector {
+
+    /** Bytes per pixel of a typical Flickr JPEG. */
+    public static final double DEFAULT_BYTES_PER_PIXEL = 0.2;
+
+    /** The labels from the smallest to the largest size. */
+    private static final int[] LADDER = {
+        Size.SQUARE, Size.THUMB, Size.SMALL, Size.MEDIUM, Size.LARGE, Size.ORIGINAL
+    };
+
+    private static final SizeResolver RESOLVER = new SizeResolver(null);
+
+    private double bytesPerPixel = DEFAULT_BYTES_PER_PIXEL;
+    private final AtomicLong selections = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    public double getBytesPerPixel() {
+        return bytesPerPixel;
+    }
+
+    /**
+     * Set the bytes per pixel used to estimate the size of images.
+     *
+     * @param bytesPerPixel The bytes per pixel
+     */
+    public void setBytesPerPixel(double bytesPerPixel) {
+        if (bytesPerPixel <= 0) {
+            throw new IllegalArgumentException("The bytes per pixel must be positive");
+        }
+        this.bytesPerPixel = bytesPerPixel;
+    }
+
+    /**
+     * Select the smallest size of a photo which fits into a box without
+     * being scaled up.
+     *
+     * @param photo The photo
+     * @param width The width of the box in pixels
+     * @param height The height of the box in pixels
+     * @return The size, or null if no URL of the photo can be built
+     */
+    public Size select(Photo photo, int width, int height) {
+        return select(photo, width, height, false);
+    }
+
+    /**
+     * Select the smallest size of a photo which fills a box without being
+     * scaled up.
+     *
+     * @param photo The photo
+     * @param width The width of the box in pixels
+     * @param height The height of the box in pixels
+     * @param crop true if the image is cropped to cover the box, false if it
+     * is fitted into the box
+     * @return The size, or null if no URL of the photo can be built
+     */
+    public Size select(Photo photo, int width, int height, boolean crop) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("The box must be at least 1x1");
+        }
+        List sizes = RESOLVER.derive(photo);
+        Size selected;
+        if (sizes == null || sizes.isEmpty()) {
+            selected = selectByEdge(photo, width, height, crop);
+        } else {
+            selected = selectByDimensions(sizes, width, height, crop);
+        }
+        if (selected != null) {
+            selections.incrementAndGet();
+            bytesSaved.addAndGet(getEstimatedSavings(photo, selected));
+        }
+        return selected;
+    }
+
+    private Size selectByDimensions(List sizes, int width, int height, boolean crop) {
+        Size largest = (Size) sizes.get(sizes.size() - 1);
+        for (int i = 0; i < sizes.size(); i++) {
+            Size size = (Size) sizes.get(i);
+            if (size.getLabel() == Size.SQUARE) {
+                if (crop && width <= size.getWidth() && height <= size.getHeight()) {
+                    return size;
+                }
+                continue;
+            }
+            // the scale of the size to fill the box
+            double scale = crop
+                ? Math.max((double) width / size.getWidth(), (double) height / size.getHeight())
+                : Math.min((double) width / size.getWidth(), (double) height / size.getHeight());
+            if (scale <= 1) {
+                return size;
+            }
+        }
+        return largest;
+    }
+
+    private Size selectByEdge(Photo photo, int width, int height, boolean crop) {
+        int longest = Math.max(width, height);
+        StringBuffer buffer = new StringBuffer(80);
+        Size fallback = null;
+        for (int i = 0; i < LADDER.length; i++) {
+            int label = LADDER[i];
+            if (label == Size.SQUARE && !(crop && longest <= SizeResolver.getEdge(label))) {
+                continue;
+            }
+            Size size = SizeResolver.derive(photo, label, buffer);
+            if (size == null) {
+                continue;
+            }
+            if (label == Size.ORIGINAL || SizeResolver.getEdge(label) >= longest) {
+                return size;
+            }
+            fallback = size;
+        }
+        return fallback;
+    }
+
+    /**
+     * Estimate the bytes of the image of a size.
+     *
+     * @param size The size
+     * @return The estimated bytes, based on the dimensions or on the longest
+     * edge of the size
+     */
+    public long estimateBytes(Size size) {
+        long pixels;
+        if (size.getWidth() > 0 && size.getHeight() > 0) {
+            pixels = (long) size.getWidth() * size.getHeight();
+        } else {
+            int edge = SizeResolver.getEdge(size.getLabel());
+            pixels = (long) edge * edge * 3 / 4;
+        }
+        return Math.round(pixels * bytesPerPixel);
+    }
+
+    /**
+     * Estimate the bytes saved by using a size instead of the original.
+     *
+     * @param photo The photo
+     * @param size The size
+     * @return The estimated bytes saved, 0 if the original dimensions are unknown
+     */
+    public long getEstimatedSavings(Photo photo, Size size) {
+        long original = (long) photo.getOriginalWidth() * photo.getOriginalHeight();
+        if (original <= 0) {
+            return 0;
+        }
+        return Math.max(0, Math.round(original * bytesPerPixel) - estimateBytes(size));
+    }
+
+    /**
+     * @return The number of sizes selected
+     */
+    public long getSelections() {
+        return selections.get();
+    }
+
+    /**
+     * @return The estimated bytes saved by all selections
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+}
@@ -906,10 +906,10 @@ public class PlacesInterface {
 
     private Location parseLocation(Element locationElement) {
         Location location = new Location();
-        Element localityElement = (Element) locationElement.getElementsByTagName("locality").item(0);
-        Element countyElement = (Element) locationElement.getElementsByTagName("county").item(0);
-        Element regionElement = (Element) locationElement.getElementsByTagName("region").item(0);
-        Element countryElement = (Element) locationElement.getElementsByTagName("country").item(0);
+        Element localityElement = XMLUtilities.getChild(locationElement, "locality");
+        Element countyElement = XMLUtilities.getChild(locationElement, "county");
+        Element regionElement = XMLUtilities.getChild(locationElement, "region");
+        Element countryElement = XMLUtilities.getChild(locationElement, "country");
 
         location.setPlaceId(locationElement.getAttribute("place_id"));
         //location.setName(locationElement.getAttribute("name"));
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+
+package com.aetrion.flickr.reflection;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import com.aetrion.flickr.Flickr;
+import com.aetrion.flickr.REST;
+import com.aetrion.flickr.util.IOUtilities;
+import com.aetrion.flickr.util.XMLUtilities;
+
+/**
+ * Reads and writes the descriptions of Flickr-methods as a stored
+ * snapshot, an XML file of &lt;method&gt; elements in the form of the
+ * flickr.reflection.getMethodInfo response, with the arguments and
+ * errors nested in the method.<p>
+ *
+ * The snapshot in <code>etc/methods.xml</code> is the input of the
+ * {@link StubGenerator}. To refresh it from the live API run
+ * <code>java com.aetrion.flickr.reflection.MethodSnapshot apiKey sharedSecret file</code>.
+ */
+public final class MethodSnapshot {
+
+    private MethodSnapshot() {
+    }
+
+    /**
+     * Read the methods of a snapshot.
+     *
+     * @param in The snapshot
+     * @return The List of Method objects, in the order of the snapshot
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static List read(InputStream in) throws IOException, SAXException {
+        DocumentBuilder builder;
+        try {
+            builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+        Element methodsElement = builder.parse(in).getDocumentElement();
+        List methods = new ArrayList();
+        List methodElements = XMLUtilities.getChildren(methodsElement, "method");
+        for (int i = 0; i < methodElements.size(); i++) {
+            Element methodElement = (Element) methodElements.get(i);
+            methods.add(createMethod(
+                methodElement,
+                XMLUtilities.getChild(methodElement, "arguments"),
+                XMLUtilities.getChild(methodElement, "errors")
+            ));
+        }
+        return methods;
+    }
+
+    /**
+     * Write methods as a snapshot.
+     *
+     * @param methods The Method objects
+     * @param out The stream, left open
+     * @throws IOException
+     */
+    public static void write(Collection methods, OutputStream out) throws IOException {
+        Document document;
+        try {
+            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+        Element methodsElement = document.createElement("methods");
+        document.appendChild(methodsElement);
+        Iterator iter = methods.iterator();
+        while (iter.hasNext()) {
+            Method method = (Method) iter.next();
+            Element methodElement = document.createElement("method");
+            methodElement.setAttribute("name", method.getName());
+            methodElement.setAttribute("needslogin", method.needsLogin() ? "1" : "0");
+            methodElement.setAttribute("needssigning", method.needsSigning() ? "1" : "0");
+            methodElement.setAttribute("requiredperms", Integer.toString(method.getRequiredPerms()));
+            appendText(methodElement, "description", method.getDescription());
+            appendText(methodElement, "response", method.getResponse());
+            appendText(methodElement, "explanation", method.getExplanation());
+
+            Element argumentsElement = document.createElement("arguments");
+            Iterator arguments = method.getArguments().iterator();
+            while (arguments.hasNext()) {
+                Argument argument = (Argument) arguments.next();
+                Element argumentElement = appendText(argumentsElement, "argument", argument.getDescription());
+                argumentElement.setAttribute("name", argument.getName());
+                argumentElement.setAttribute("optional", argument.isOptional() ? "1" : "0");
+            }
+            methodElement.appendChild(argumentsElement);
+
+            Element errorsElement = document.createElement("errors");
+            Iterator errors = method.getErrors().iterator();
+            while (errors.hasNext()) {
+                Error error = (Error) errors.next();
+                Element errorElement = appendText(errorsElement, "error", error.getExplaination());
+                errorElement.setAttribute("code", Integer.toString(error.getCode()));
+                errorElement.setAttribute("message", error.getMessage());
+            }
+            methodElement.appendChild(errorsElement);
+            methodsElement.appendChild(methodElement);
+        }
+
+        try {
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            transformer.transform(new DOMSource(document), new StreamResult(out));
+        } catch (TransformerException e) {
+            IOException ioe = new IOException(e.getMessage());
+            ioe.initCause(e);
+            throw ioe;
+        }
+    }
+
+    private static Element appendText(Element parent, String name, String text) {
+        Element element = parent.getOwnerDocument().createElement(name);
+        if (text != null && text.length() > 0) {
+            element.appendChild(parent.getOwnerDocument().createTextNode(text));
+        }
+        parent.appendChild(element);
+        return element;
+    }
+
+    /**
+     * Create a Method from its element and the elements of its arguments
+     * and errors, which flickr.reflection.getMethodInfo doesn't always
+     * nest in the method element.
+     */
+    static Method createMethod(Element methodElement, Element argumentsElement, Element errorsElement) {
+        Method method = new Method();
+        method.setName(methodElement.getAttribute("name"));
+        method.setNeedsLogin("1".equals(methodElement.getAttribute("needslogin")));
+        method.setNeedsSigning("1".equals(methodElement.getAttribute("needssigning")));
+        String requiredPermsStr = methodElement.getAttribute("requiredperms");
+        if (requiredPermsStr != null && requiredPermsStr.length() > 0) {
+            try {
+                int perms = Integer.parseInt(requiredPermsStr);
+                method.setRequiredPerms(perms);
+            } catch (NumberFormatException e) {
+                // what shall we do?
+                e.printStackTrace();
+            }
+        }
+        method.setDescription(XMLUtilities.getChildValue(methodElement, "description"));
+        method.setResponse(XMLUtilities.getChildValue(methodElement, "response"));
+        method.setExplanation(XMLUtilities.getChildValue(methodElement, "explanation"));
+
+        List arguments = new ArrayList();
+        NodeList argumentElements = argumentsElement.getElementsByTagName("argument");
+        for (int i = 0; i < argumentElements.getLength(); i++) {
+            Argument argument = new Argument();
+            Element argumentElement = (Element) argumentElements.item(i);
+            argument.setName(argumentElement.getAttribute("name"));
+            argument.setOptional("1".equals(argumentElement.getAttribute("optional")));
+            argument.setDescription(XMLUtilities.getValue(argumentElement));
+            arguments.add(argument);
+        }
+        method.setArguments(arguments);
+
+        List errors = new ArrayList();
+        NodeList errorElements = errorsElement.getElementsByTagName("error");
+        for (int i = 0; i < errorElements.getLength(); i++) {
+            Error error = new Error();
+            Element errorElement = (Element) errorElements.item(i);
+            error.setCode(errorElement.getAttribute("code"));
+            error.setMessage(errorElement.getAttribute("message"));
+            error.setExplaination(XMLUtilities.getValue(errorElement));
+            errors.add(error);
+        }
+        method.setErrors(errors);
+        return method;
+    }
+
+    /**
+     * Capture all methods of the live API into a snapshot.
+     *
+     * @param args The API key, the shared secret and the snapshot file
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3) {
+            System.err.println("Usage: MethodSnapshot apiKey sharedSecret file");
+            System.exit(1);
+        }
+        ReflectionInterface reflectionInterface =
+            new Flickr(args[0], args[1], new REST()).getReflectionInterface();
+        List methods = new ArrayList();
+        Iterator names = reflectionInterface.getMethods().iterator();
+        while (names.hasNext()) {
+            methods.add(reflectionInterface.getMethodInfo((String) names.next()));
+        }
+        OutputStream out = new FileOutputStream(args[2]);
+        try {
+            write(methods, out);
+        } finally {
+            IOUtilities.close(out);
+        }
+    }
+
+}
@@ -78,25 +78,6 @@ public class ReflectionInterface {
         }
 
         Element methodElement = response.getPayload();
-        Method method = new Method();
-        method.setName(methodElement.getAttribute("name"));
-        method.setNeedsLogin("1".equals(methodElement.getAttribute("needslogin")));
-        method.setNeedsSigning("1".equals(methodElement.getAttribute("needssigning")));
-        String requiredPermsStr = methodElement.getAttribute("requiredperms");
-        if (requiredPermsStr != null && requiredPermsStr.length() > 0) {
-            try {
-                int perms = Integer.parseInt(requiredPermsStr);
-                method.setRequiredPerms(perms);
-            } catch (NumberFormatException e) {
-                // what shall we do?
-                e.printStackTrace();
-            }
-        }
-        method.setDescription(XMLUtilities.getChildValue(methodElement, "description"));
-        method.setResponse(XMLUtilities.getChildValue(methodElement, "response"));
-        method.setExplanation(XMLUtilities.getChildValue(methodElement, "explanation"));
-
-        List arguments = new ArrayList();
         Element argumentsElement = XMLUtilities.getChild(methodElement, "arguments");
         // tolerant fix for incorrect nesting of the <arguments> element
         // as observed in current flickr responses of this method
@@ -124,16 +105,6 @@ public class ReflectionInterface {
             	argumentsElement = child;
             }
         }
-        NodeList argumentElements = argumentsElement.getElementsByTagName("argument");
-        for (int i = 0; i < argumentElements.getLength(); i++) {
-            Argument argument = new Argument();
-            Element argumentElement = (Element) argumentElements.item(i);
-            argument.setName(argumentElement.getAttribute("name"));
-            argument.setOptional("1".equals(argumentElement.getAttribute("optional")));
-            argument.setDescription(XMLUtilities.getValue(argumentElement));
-            arguments.add(argument);
-        }
-        method.setArguments(arguments);
 
         Element errorsElement = XMLUtilities.getChild(methodElement, "errors");
         // tolerant fix for incorrect nesting of the <errors> element
@@ -163,19 +134,7 @@ public class ReflectionInterface {
             	errorsElement = child;
             }
         }
-        List errors = new ArrayList();
-        NodeList errorElements = errorsElement.getElementsByTagName("error");
-        for (int i = 0; i < errorElements.getLength(); i++) {
-            Error error = new Error();
-            Element errorElement = (Element) errorElements.item(i);
-            error.setCode(errorElement.getAttribute("code"));
-            error.setMessage(errorElement.getAttribute("message"));
-            error.setExplaination(XMLUtilities.getValue(errorElement));
-            errors.add(error);
-        }
-        method.setErrors(errors);
-
-        return method;
+        return MethodSnapshot.createMethod(methodElement, argumentsElement, errorsElement);
     }
 
     /**
@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+
+package com.aetrion.flickr.reflection;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.aetrion.flickr.util.IOUtilities;
+
+/**
+ * Generates the request stubs of the package com.aetrion.flickr.request
+ * from a {@link MethodSnapshot}.<p>
+ *
+ * For each method a final subclass of
+ * {@link com.aetrion.flickr.request.FlickrRequest} is written, named
+ * after the method: flickr.photos.getInfo becomes PhotosGetInfoRequest.
+ * Required arguments are parameters of the constructor, optional ones
+ * get a setter. The api_key argument is added by FlickrRequest.<p>
+ *
+ * Run at build time by the <code>generate</code> target with
+ * <code>java com.aetrion.flickr.reflection.StubGenerator etc/methods.xml outputDir</code>.
+ */
+public final class StubGenerator {
+
+    public static final String PACKAGE = "com.aetrion.flickr.request";
+
+    private static final int LINE_LENGTH = 78;
+
+    private static final Set KEYWORDS = new HashSet(Arrays.asList(new String[] {
+        "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class",
+        "const", "continue", "default", "do", "double", "else", "enum", "extends", "final",
+        "finally", "float", "for", "goto", "if", "implements", "import", "instanceof", "int",
+        "interface", "long", "native", "new", "package", "private", "protected", "public",
+        "return", "short", "static", "strictfp", "super", "switch", "synchronized", "this",
+        "throw", "throws", "transient", "try", "void", "volatile", "while", "true", "false", "null"
+    }));
+
+    private StubGenerator() {
+    }
+
+    /**
+     * Get the class name of the stub of a method.
+     *
+     * @param methodName The method name, like flickr.photos.geo.getLocation
+     * @return The class name, like PhotosGeoGetLocationRequest
+     */
+    public static String getClassName(String methodName) {
+        String name = methodName.startsWith("flickr.") ? methodName.substring(7) : methodName;
+        StringBuffer buffer = new StringBuffer();
+        String[] parts = name.split("\\.");
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i].length() > 0) {
+                buffer.append(Character.toUpperCase(parts[i].charAt(0)));
+                buffer.append(parts[i].substring(1));
+            }
+        }
+        buffer.append("Request");
+        return buffer.toString();
+    }
+
+    /**
+     * Get the field name of an argument.
+     *
+     * @param argumentName The argument name, like photo_id
+     * @return The field name, like photoId
+     */
+    public static String getFieldName(String argumentName) {
+        StringBuffer buffer = new StringBuffer();
+        boolean upper = false;
+        for (int i = 0; i < argumentName.length(); i++) {
+            char c = argumentName.charAt(i);
+            if (!Character.isJavaIdentifierPart(c)) {
+                upper = buffer.length() > 0;
+            } else if (c == '_') {
+                upper = buffer.length() > 0;
+            } else if (buffer.length() == 0 && !Character.isJavaIdentifierStart(c)) {
+                buffer.append('_').append(c);
+            } else {
+                buffer.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        String name = buffer.toString();
+        return KEYWORDS.contains(name) ? name + "Value" : name;
+    }
+
+    /**
+     * Write the stub of a method.
+     *
+     * @param method The method
+     * @param source The name of the snapshot, for the header
+     * @param writer The writer, left open
+     */
+    public static void generate(Method method, String source, Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        String className = getClassName(method.getName());
+        List arguments = new ArrayList();
+        List required = new ArrayList();
+        Iterator iter = method.getArguments().iterator();
+        while (iter.hasNext()) {
+            Argument argument = (Argument) iter.next();
+            if (!"api_key".equals(argument.getName())) {
+                arguments.add(argument);
+                if (!argument.isOptional()) {
+                    required.add(argument);
+                }
+            }
+        }
+
+        line(out, "/*");
+        line(out, " * Generated by " + StubGenerator.class.getName() + " from " + source + ".");
+        line(out, " * Do not edit.");
+        line(out, " */");
+        line(out, "");
+        line(out, "package " + PACKAGE + ";");
+        line(out, "");
+        line(out, "import java.util.List;");
+        if (arguments.size() > 0) {
+            line(out, "");
+            line(out, "import com.aetrion.flickr.Parameter;");
+        }
+        line(out, "");
+
+        line(out, "/**");
+        comment(out, "", method.getName() + ": " + nonNull(method.getDescription()));
+        if (method.needsLogin()) {
+            line(out, " * <p>");
+            comment(out, "", "This method requires authentication with "
+                + permission(method.getRequiredPerms()) + " permission.");
+        }
+        line(out, " *");
+        line(out, " * @see <a href=\"http://www.flickr.com/services/api/" + method.getName()
+            + ".html\">" + method.getName() + "</a>");
+        line(out, " */");
+        line(out, "public final class " + className + " extends FlickrRequest {");
+        line(out, "");
+        line(out, "    public static final String METHOD = \"" + method.getName() + "\";");
+        line(out, "");
+        for (int i = 0; i < arguments.size(); i++) {
+            line(out, "    private String " + getFieldName(((Argument) arguments.get(i)).getName()) + ";");
+        }
+        if (arguments.size() > 0) {
+            line(out, "");
+        }
+
+        line(out, "    /**");
+        line(out, "     * Create a request of " + method.getName() + ".");
+        if (required.size() > 0) {
+            line(out, "     *");
+        }
+        for (int i = 0; i < required.size(); i++) {
+            Argument argument = (Argument) required.get(i);
+            comment(out, "    ", "@param " + getFieldName(argument.getName()) + " "
+                + nonNull(argument.getDescription()));
+        }
+        line(out, "     */");
+        StringBuffer signature = new StringBuffer();
+        for (int i = 0; i < required.size(); i++) {
+            if (i > 0) {
+                signature.append(", ");
+            }
+            signature.append("String ").append(getFieldName(((Argument) required.get(i)).getName()));
+        }
+        line(out, "    public " + className + "(" + signature + ") {");
+        line(out, "        super(METHOD, " + method.needsLogin() + ", " + method.needsSigning() + ", "
+            + method.getRequiredPerms() + ", " + arguments.size() + ");");
+        for (int i = 0; i < required.size(); i++) {
+            String field = getFieldName(((Argument) required.get(i)).getName());
+            line(out, "        this." + field + " = " + field + ";");
+        }
+        line(out, "    }");
+        line(out, "");
+
+        for (int i = 0; i < arguments.size(); i++) {
+            Argument argument = (Argument) arguments.get(i);
+            if (!argument.isOptional()) {
+                continue;
+            }
+            String field = getFieldName(argument.getName());
+            line(out, "    /**");
+            comment(out, "    ", nonNull(argument.getDescription()));
+            line(out, "     *");
+            line(out, "     * @param " + field + " The " + argument.getName() + " argument");
+            line(out, "     * @return This request");
+            line(out, "     */");
+            line(out, "    public " + className + " set" + Character.toUpperCase(field.charAt(0))
+                + field.substring(1) + "(String " + field + ") {");
+            line(out, "        this." + field + " = " + field + ";");
+            line(out, "        return this;");
+            line(out, "    }");
+            line(out, "");
+        }
+
+        line(out, "    protected void addArguments(List parameters) {");
+        for (int i = 0; i < arguments.size(); i++) {
+            Argument argument = (Argument) arguments.get(i);
+            String field = getFieldName(argument.getName());
+            line(out, "        if (" + field + " != null) {");
+            line(out, "            parameters.add(new Parameter(\"" + argument.getName() + "\", " + field + "));");
+            line(out, "        }");
+        }
+        line(out, "    }");
+        line(out, "");
+        line(out, "}");
+        out.flush();
+    }
+
+    private static String nonNull(String text) {
+        return text == null ? "" : text;
+    }
+
+    private static String permission(int perms) {
+        switch (perms) {
+        case Method.READ_PERMISSION:
+            return "read";
+        case Method.WRITE_PERMISSION:
+            return "write";
+        case Method.WRITE_PERMISSION + 1:
+            return "delete";
+        default:
+            return "no";
+        }
+    }
+
+    private static void line(PrintWriter out, String line) {
+        out.print(line);
+        out.print('\n');
+    }
+
+    /**
+     * Write text as doc comment lines, wrapped at word boundaries. Text
+     * that would end the comment, start a tag or not survive the source
+     * encoding is escaped.
+     */
+    private static void comment(PrintWriter out, String indent, String text) {
+        StringBuffer escaped = new StringBuffer();
+        boolean tag = text.startsWith("@param ");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '/' && i > 0 && text.charAt(i - 1) == '*') {
+                escaped.append("&#47;");
+            } else if (c == '@' && !(tag && i == 0)) {
+                escaped.append("&#64;");
+            } else if (c == '\\') {
+                escaped.append("&#92;");
+            } else if (c > 126) {
+                escaped.append("&#").append((int) c).append(';');
+            } else if (Character.isWhitespace(c)) {
+                escaped.append(' ');
+            } else {
+                escaped.append(c);
+            }
+        }
+        String[] words = escaped.toString().trim().split(" +");
+        String prefix = indent + " * ";
+        StringBuffer line = new StringBuffer(prefix);
+        for (int i = 0; i < words.length; i++) {
+            if (line.length() > prefix.length()
+              && line.length() + 1 + words[i].length() > LINE_LENGTH) {
+                line(out, line.toString());
+                line.setLength(0);
+                line.append(prefix);
+            }
+            if (line.length() > prefix.length()) {
+                line.append(' ');
+            }
+            line.append(words[i]);
+        }
+        line(out, line.length() > prefix.length() ? line.toString() : indent + " *");
+    }
+
+    /**
+     * Generate the stubs of all methods of a snapshot.
+     *
+     * @param args The snapshot file and the source directory to write to
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: StubGenerator snapshot outputDir");
+            System.exit(1);
+        }
+        File snapshot = new File(args[0]);
+        File dir = new File(args[1], PACKAGE.replace('.', File.separatorChar));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        InputStream in = new FileInputStream(snapshot);
+        List methods;
+        try {
+            methods = MethodSnapshot.read(in);
+        } finally {
+            IOUtilities.close(in);
+        }
+        for (int i = 0; i < methods.size(); i++) {
+            Method method = (Method) methods.get(i);
+            Writer writer = new OutputStreamWriter(
+                new FileOutputStream(new File(dir, getClassName(method.getName()) + ".java")), "ISO-8859-1");
+            try {
+                generate(method, snapshot.getName(), writer);
+            } finally {
+                IOUtilities.close(writer);
+            }
+        }
+        System.out.println("Generated " + methods.size() + " request stubs in " + dir);
+    }
+
+}
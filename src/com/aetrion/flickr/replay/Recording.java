@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+
+package com.aetrion.flickr.replay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.aetrion.flickr.Parameter;
+import com.aetrion.flickr.ParameterAlphaComparator;
+import com.aetrion.flickr.util.IOUtilities;
+
+/**
+ * Request/response pairs captured by a {@link RecordingTransport} and
+ * answered by a {@link ReplayTransport}.<p>
+ *
+ * A request is identified by its HTTP method, path and parameters in
+ * alphabetical order. The API key, the signature and the auth token are
+ * left out, so a recording can be replayed with other credentials.<p>
+ *
+ * Recordings are stored as a gzipped binary file holding the unparsed
+ * response bodies and the time each request took.
+ */
+public class Recording {
+
+    private static final String MAGIC = "flickrj-recording";
+    private static final int VERSION = 1;
+
+    /** Parameters which don't identify a request. */
+    private static final Set IGNORED_PARAMETERS = new HashSet(Arrays.asList(new String[] {
+        "api_key", "api_sig", "auth_token"
+    }));
+
+    /**
+     * One recorded request and its response.
+     */
+    public static class Exchange {
+
+        private final String key;
+        private final byte[] response;
+        private final long nanos;
+
+        public Exchange(String key, byte[] response, long nanos) {
+            this.key = key;
+            this.response = response;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return The request, as returned by {@link Recording#getKey(String, String, List)}
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return The unparsed response body
+         */
+        public byte[] getResponse() {
+            return response;
+        }
+
+        /**
+         * @return The nanoseconds the request took when recorded
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+    }
+
+    private final List exchanges = new ArrayList();
+
+    /**
+     * Get the key identifying a request.
+     *
+     * @param httpMethod GET or POST
+     * @param path The request path
+     * @param parameters The parameters (List of Parameter objects)
+     * @return The key
+     */
+    public static String getKey(String httpMethod, String path, List parameters) {
+        List sorted = new ArrayList(parameters);
+        Collections.sort(sorted, new ParameterAlphaComparator());
+        StringBuffer key = new StringBuffer(httpMethod).append(' ').append(path);
+        char separator = '?';
+        for (int i = 0; i < sorted.size(); i++) {
+            Parameter parameter = (Parameter) sorted.get(i);
+            if (IGNORED_PARAMETERS.contains(parameter.getName())) {
+                continue;
+            }
+            Object value = parameter.getValue();
+            key.append(separator).append(parameter.getName()).append('=');
+            // photos to upload are only identified by their length
+            if (value instanceof byte[]) {
+                key.append("<").append(((byte[]) value).length).append(" bytes>");
+            } else if (value instanceof InputStream) {
+                key.append("<stream>");
+            } else {
+                key.append(value);
+            }
+            separator = '&';
+        }
+        return key.toString();
+    }
+
+    /**
+     * Add an exchange.
+     *
+     * @param exchange The exchange
+     */
+    public void add(Exchange exchange) {
+        synchronized (exchanges) {
+            exchanges.add(exchange);
+        }
+    }
+
+    /**
+     * @return A copy of the exchanges, in recorded order
+     */
+    public List getExchanges() {
+        synchronized (exchanges) {
+            return new ArrayList(exchanges);
+        }
+    }
+
+    public int size() {
+        synchronized (exchanges) {
+            return exchanges.size();
+        }
+    }
+
+    /**
+     * Write the recording. The stream is left open.
+     *
+     * @param out The stream
+     * @throws IOException
+     */
+    public void write(OutputStream out) throws IOException {
+        GZIPOutputStream zip = new GZIPOutputStream(out);
+        DataOutputStream data = new DataOutputStream(zip);
+        List copy = getExchanges();
+        data.writeUTF(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(copy.size());
+        for (int i = 0; i < copy.size(); i++) {
+            Exchange exchange = (Exchange) copy.get(i);
+            byte[] key = exchange.getKey().getBytes("UTF-8");
+            data.writeInt(key.length);
+            data.write(key);
+            data.writeLong(exchange.getNanos());
+            data.writeInt(exchange.getResponse().length);
+            data.write(exchange.getResponse());
+        }
+        data.flush();
+        zip.finish();
+    }
+
+    /**
+     * Read a recording. The stream is left open.
+     *
+     * @param in The stream
+     * @return The recording
+     * @throws IOException If the stream isn't a recording
+     */
+    public static Recording read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new GZIPInputStream(in));
+        if (!MAGIC.equals(data.readUTF())) {
+            throw new IOException("Not a recording");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported recording version " + version);
+        }
+        Recording recording = new Recording();
+        int count = data.readInt();
+        for (int i = 0; i < count; i++) {
+            byte[] key = new byte[data.readInt()];
+            data.readFully(key);
+            long nanos = data.readLong();
+            byte[] response = new byte[data.readInt()];
+            data.readFully(response);
+            recording.add(new Exchange(new String(key, "UTF-8"), response, nanos));
+        }
+        return recording;
+    }
+
+    /**
+     * Save the recording to a file.
+     *
+     * @param file The file
+     * @throws IOException
+     */
+    public void save(File file) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            write(out);
+        } finally {
+            IOUtilities.close(out);
+        }
+    }
+
+    /**
+     * Load a recording from a file.
+     *
+     * @param file The file
+     * @return The recording
+     * @throws IOException
+     */
+    public static Recording load(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return read(in);
+        } finally {
+            IOUtilities.close(in);
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+
+package com.aetrion.flickr.replay;
+
+import java.io.IOException;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+import com.aetrion.flickr.ProgressListener;
+import com.aetrion.flickr.Response;
+import com.aetrion.flickr.Transport;
+
+/**
+ * A Transport recording all requests sent through another Transport,
+ * for later use with a {@link ReplayTransport}.<p>
+ *
+ * GET requests are recorded as received, POST responses are recorded by
+ * writing the parsed document back as XML.
+ *
+ * <pre>
+ * RecordingTransport recorder = new RecordingTransport(new REST());
+ * Flickr flickr = new Flickr(apiKey, sharedSecret, recorder);
+ * ...
+ * recorder.getRecording().save(new File("search.recording"));
+ * </pre>
+ */
+public class RecordingTransport extends Transport {
+
+    private final Transport transport;
+    private final Recording recording;
+    private final DocumentBuilder builder;
+
+    /**
+     * Construct a RecordingTransport with a new Recording.
+     *
+     * @param transport The Transport sending the requests
+     * @throws ParserConfigurationException
+     */
+    public RecordingTransport(Transport transport) throws ParserConfigurationException {
+        this(transport, new Recording());
+    }
+
+    /**
+     * Construct a RecordingTransport adding to a Recording.
+     *
+     * @param transport The Transport sending the requests
+     * @param recording The Recording
+     * @throws ParserConfigurationException
+     */
+    public RecordingTransport(Transport transport, Recording recording) throws ParserConfigurationException {
+        this.transport = transport;
+        this.recording = recording;
+        setTransportType(transport.getTransportType());
+        setHost(transport.getHost());
+        setPort(transport.getPort());
+        setPath(transport.getPath());
+        if (transport.getResponseClass() != null) {
+            setResponseClass(transport.getResponseClass());
+        }
+        builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+    }
+
+    /**
+     * @return The Recording
+     */
+    public Recording getRecording() {
+        return recording;
+    }
+
+    public void setResponseClass(Class responseClass) {
+        super.setResponseClass(responseClass);
+        transport.setResponseClass(responseClass);
+    }
+
+    public Response get(String path, List parameters) throws IOException, SAXException {
+        return parse(builder, getBytes(path, parameters));
+    }
+
+    public byte[] getBytes(String path, List parameters) throws IOException {
+        long start = System.nanoTime();
+        byte[] data = transport.getBytes(path, parameters);
+        recording.add(new Recording.Exchange(Recording.getKey("GET", path, parameters), data, System.nanoTime() - start));
+        return data;
+    }
+
+    public Response post(String path, List parameters, boolean multipart, ProgressListener progressListener, boolean video)
+      throws IOException, SAXException {
+        // the key is taken first, streamed photos are consumed by the post
+        String key = Recording.getKey("POST", path, parameters);
+        long start = System.nanoTime();
+        Response response = transport.post(path, parameters, multipart, progressListener, video);
+        recording.add(new Recording.Exchange(key, serialize(response), System.nanoTime() - start));
+        return response;
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+
+package com.aetrion.flickr.replay;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+import com.aetrion.flickr.Flickr;
+import com.aetrion.flickr.ProgressListener;
+import com.aetrion.flickr.RESTResponse;
+import com.aetrion.flickr.Response;
+import com.aetrion.flickr.Transport;
+
+/**
+ * A Transport answering from a {@link Recording} in memory, without
+ * network access.<p>
+ *
+ * Requests recorded several times are answered in recorded order, starting
+ * over after the last one. With original timing each answer is delayed by
+ * the time the request took when recorded, otherwise it is returned at
+ * once, so only the parsing and the interfaces are measured.<p>
+ *
+ * Requests missing from the recording fail with an IOException.
+ */
+public class ReplayTransport extends Transport {
+
+    private final Map exchanges = new HashMap();
+    private final boolean originalTiming;
+    private final DocumentBuilder builder;
+    private final AtomicLong delayedNanos = new AtomicLong();
+
+    /**
+     * The recorded answers to one request.
+     */
+    private static class Answers {
+
+        final List exchanges = new ArrayList();
+        int next;
+
+        synchronized Recording.Exchange next() {
+            Recording.Exchange exchange = (Recording.Exchange) exchanges.get(next);
+            next = (next + 1) % exchanges.size();
+            return exchange;
+        }
+
+    }
+
+    /**
+     * Construct a ReplayTransport.
+     *
+     * @param recording The recording
+     * @param originalTiming Delay answers by the recorded time
+     * @throws ParserConfigurationException
+     */
+    public ReplayTransport(Recording recording, boolean originalTiming) throws ParserConfigurationException {
+        this.originalTiming = originalTiming;
+        setTransportType(REST);
+        setHost(Flickr.DEFAULT_HOST);
+        setPath(com.aetrion.flickr.REST.PATH);
+        setResponseClass(RESTResponse.class);
+        builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+
+        List list = recording.getExchanges();
+        for (int i = 0; i < list.size(); i++) {
+            Recording.Exchange exchange = (Recording.Exchange) list.get(i);
+            Answers answers = (Answers) exchanges.get(exchange.getKey());
+            if (answers == null) {
+                answers = new Answers();
+                exchanges.put(exchange.getKey(), answers);
+            }
+            answers.exchanges.add(exchange);
+        }
+    }
+
+    public Response get(String path, List parameters) throws IOException, SAXException {
+        return parse(builder, answer("GET", path, parameters));
+    }
+
+    public byte[] getBytes(String path, List parameters) throws IOException {
+        return answer("GET", path, parameters).clone();
+    }
+
+    public Response post(String path, List parameters, boolean multipart, ProgressListener progressListener, boolean video)
+      throws IOException, SAXException {
+        return parse(builder, answer("POST", path, parameters));
+    }
+
+    private byte[] answer(String httpMethod, String path, List parameters) throws IOException {
+        String key = Recording.getKey(httpMethod, path, parameters);
+        Answers answers = (Answers) exchanges.get(key);
+        if (answers == null) {
+            throw new IOException("Not recorded: " + key);
+        }
+        Recording.Exchange exchange = answers.next();
+        if (originalTiming && exchange.getNanos() > 0) {
+            delayedNanos.addAndGet(exchange.getNanos());
+            try {
+                Thread.sleep(exchange.getNanos() / 1000000L, (int) (exchange.getNanos() % 1000000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted replaying " + key);
+            }
+        }
+        return exchange.getResponse();
+    }
+
+    /**
+     * @return The sum of the recorded times the answers were delayed by
+     */
+    public long getDelayedNanos() {
+        return delayedNanos.get();
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+
+package com.aetrion.flickr.request;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+
+import com.aetrion.flickr.Flickr;
+import com.aetrion.flickr.FlickrException;
+import com.aetrion.flickr.Parameter;
+import com.aetrion.flickr.Response;
+import com.aetrion.flickr.Transport;
+import com.aetrion.flickr.auth.AuthUtilities;
+import com.aetrion.flickr.reflection.Method;
+
+/**
+ * A request of one Flickr-method.<p>
+ *
+ * The subclasses in this package are generated at build time by the
+ * {@link com.aetrion.flickr.reflection.StubGenerator} from the method
+ * descriptions in <code>etc/methods.xml</code>. Each holds the arguments
+ * of its method in fields, takes the required ones in the constructor
+ * and has a setter for each optional one. Whether a request is signed or
+ * posted is fixed when the stub is generated.
+ *
+ * <pre>
+ * Element photoElement = new PhotosGetInfoRequest(photoId).setSecret(secret).call(flickr);
+ * Photo photo = PhotoUtils.createPhoto(photoElement);
+ * </pre>
+ */
+public abstract class FlickrRequest {
+
+    /** The parameters added to the arguments: method, api_key, auth_token and api_sig. */
+    private static final int EXTRA_PARAMETERS = 4;
+
+    private final String method;
+    private final boolean signed;
+    private final boolean post;
+    private final int argumentCount;
+
+    /**
+     * @param method The method name
+     * @param needsLogin Whether the method needs an authenticated user
+     * @param needsSigning Whether the request must be signed
+     * @param requiredPerms The required permission, as in {@link Method#getRequiredPerms()}
+     * @param argumentCount The number of arguments of the method
+     */
+    protected FlickrRequest(String method, boolean needsLogin, boolean needsSigning,
+      int requiredPerms, int argumentCount) {
+        this.method = method;
+        this.signed = needsLogin || needsSigning;
+        this.post = requiredPerms >= Method.WRITE_PERMISSION;
+        this.argumentCount = argumentCount;
+    }
+
+    /**
+     * @return The method name
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return Whether the request is signed and carries the auth token
+     */
+    public boolean isSigned() {
+        return signed;
+    }
+
+    /**
+     * @return Whether the request is sent with HTTP POST
+     */
+    public boolean isPost() {
+        return post;
+    }
+
+    /**
+     * Add the parameters of all arguments which are set.
+     *
+     * @param parameters The parameter List
+     */
+    protected abstract void addArguments(List parameters);
+
+    /**
+     * Get the parameters of this request, including the method, the API key
+     * and, for signed requests, the auth token of the RequestContext and
+     * the signature.
+     *
+     * @param apiKey The API key
+     * @param sharedSecret The shared secret
+     * @return The List of Parameter objects
+     */
+    public List getParameters(String apiKey, String sharedSecret) {
+        List parameters = new ArrayList(argumentCount + EXTRA_PARAMETERS);
+        parameters.add(new Parameter("method", method));
+        parameters.add(new Parameter("api_key", apiKey));
+        addArguments(parameters);
+        if (signed) {
+            parameters.add(
+                new Parameter(
+                    "api_sig",
+                    AuthUtilities.getSignature(sharedSecret, parameters)
+                )
+            );
+        }
+        return parameters;
+    }
+
+    /**
+     * Send this request.
+     *
+     * @param transport The Transport
+     * @param apiKey The API key
+     * @param sharedSecret The shared secret
+     * @return The payload of the response
+     * @throws IOException
+     * @throws SAXException
+     * @throws FlickrException
+     */
+    public Element call(Transport transport, String apiKey, String sharedSecret)
+      throws IOException, SAXException, FlickrException {
+        List parameters = getParameters(apiKey, sharedSecret);
+        Response response = post
+            ? transport.post(transport.getPath(), parameters)
+            : transport.get(transport.getPath(), parameters);
+        if (response.isError()) {
+            throw new FlickrException(response.getErrorCode(), response.getErrorMessage());
+        }
+        return response.getPayload();
+    }
+
+    /**
+     * Send this request with the transport and the keys of a Flickr instance.
+     *
+     * @param flickr The Flickr instance
+     * @return The payload of the response
+     * @throws IOException
+     * @throws SAXException
+     * @throws FlickrException
+     */
+    public Element call(Flickr flickr) throws IOException, SAXException, FlickrException {
+        return call(flickr.getTransport(), flickr.getApiKey(), flickr.getSharedSecret());
+    }
+
+}
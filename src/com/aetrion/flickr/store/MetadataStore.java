@@ -0,0 +1,853 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+package com.aetrion.flickr.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import com.aetrion.flickr.people.User;
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.photosets.Photoset;
+import com.aetrion.flickr.places.Place;
+
+/**
+ * Embedded, file-backed store for Photo, Photoset, User and Place metadata.<p>
+ *
+ * The store keeps the objects returned by the interface-classes locally,
+ * so that read-heavy applications don't need to re-query Flickr for
+ * data which rarely changes:
+ *
+ * <pre>
+ * MetadataStore store = MetadataStore.open(new File("flickr.store"));
+ * PhotoList photos = photosetsInterface.getPhotos(setId, 500, 1);
+ * store.newBatch()
+ *     .putPhotoset(photosetsInterface.getInfo(setId), photos)
+ *     .commit();
+ * ...
+ * Photo photo = store.getPhoto(photoId);
+ * </pre>
+ *
+ * Records are appended to a single file in batches. Each batch carries a
+ * checksum and becomes visible only after it has been completely written
+ * and forced to disk, so a crash during a write loses the partial batch
+ * and nothing else. Reads are served from memory-mapped segments of the
+ * file, only the segment at the end of the file is mapped again after a
+ * write. Photos are indexed by ID, owner, photoset membership, date taken
+ * and date posted. The indexes live in memory and are rebuilt when the
+ * store is opened.<p>
+ *
+ * Replaced records stay in the file until it is compacted with
+ * {@link #compact()}, which happens on open when most records are
+ * replaced ones.<p>
+ *
+ * Instances are thread-safe.
+ */
+public class MetadataStore {
+
+    private static final int FILE_MAGIC = 0x464a4d53;
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+    private static final int BATCH_MAGIC = 0x42415443;
+    private static final int BATCH_HEADER_LENGTH = 16;
+    private static final int COMPACT_MIN_LENGTH = 1 << 20;
+    private static final int COMPACT_BATCH_LENGTH = 4 << 20;
+
+    /** The default size of the mapped segments of the file, 64 MB. */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    static final byte TYPE_PHOTO = 1;
+    static final byte TYPE_PHOTOSET = 2;
+    static final byte TYPE_MEMBERS = 3;
+    static final byte TYPE_USER = 4;
+    static final byte TYPE_PLACE = 5;
+
+    private final File file;
+    private final int segmentSize;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long committedLength;
+    /** The mapped segments of the file, the last one may be short. Guarded by this. */
+    private final List segments = new ArrayList();
+    /** Records replaced by later ones. */
+    private int replacedRecords;
+    /** Whether records of unknown type were found, which compaction would drop. */
+    private boolean unknownRecords;
+
+    private final Map photos = new HashMap();
+    private final Map photosets = new HashMap();
+    private final Map users = new HashMap();
+    private final Map places = new HashMap();
+    private final Map photosByOwner = new HashMap();
+    private final Map photosBySet = new HashMap();
+    private final SortedMap photosByDateTaken = new TreeMap();
+    private final SortedMap photosByDatePosted = new TreeMap();
+
+    private MetadataStore(File file, int segmentSize) throws IOException {
+        this.file = file;
+        this.segmentSize = segmentSize;
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+    }
+
+    /**
+     * Open the store at the given file, creating it if it does not exist.
+     *
+     * @param file The store file
+     * @return The MetadataStore
+     * @throws IOException
+     */
+    public static MetadataStore open(File file) throws IOException {
+        return open(file, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Open the store at the given file, creating it if it does not exist.
+     *
+     * @param file The store file
+     * @param segmentSize The size of the mapped segments of the file
+     * @return The MetadataStore
+     * @throws IOException
+     */
+    public static MetadataStore open(File file, int segmentSize) throws IOException {
+        if (segmentSize < BATCH_HEADER_LENGTH) {
+            throw new IllegalArgumentException("The segment size must be at least " + BATCH_HEADER_LENGTH);
+        }
+        MetadataStore store = new MetadataStore(file, segmentSize);
+        try {
+            store.load();
+            if (store.isCompactable()) {
+                store.compact();
+            }
+        } catch (IOException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Start a new batch of writes. Nothing is visible to readers
+     * until {@link Batch#commit()} returns.
+     *
+     * @return A new Batch
+     */
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    /**
+     * Store a single photo. Shortcut for a batch with one entry.
+     *
+     * @param photo The photo
+     * @throws IOException
+     */
+    public void putPhoto(Photo photo) throws IOException {
+        newBatch().putPhoto(photo).commit();
+    }
+
+    /**
+     * Store all photos of a collection, for instance a
+     * {@link com.aetrion.flickr.photos.PhotoList}, in one batch.
+     *
+     * @param photos Collection of Photo objects
+     * @throws IOException
+     */
+    public void putPhotos(Collection photos) throws IOException {
+        newBatch().putPhotos(photos).commit();
+    }
+
+    public Photo getPhoto(String photoId) {
+        lock.readLock().lock();
+        try {
+            PhotoEntry entry = (PhotoEntry) photos.get(photoId);
+            if (entry == null) {
+                return null;
+            }
+            return RecordCodec.readPhoto(recordAt(entry.offset));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Photoset getPhotoset(String photosetId) {
+        lock.readLock().lock();
+        try {
+            Long offset = (Long) photosets.get(photosetId);
+            if (offset == null) {
+                return null;
+            }
+            return RecordCodec.readPhotoset(recordAt(offset.longValue()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public User getUser(String userId) {
+        lock.readLock().lock();
+        try {
+            Long offset = (Long) users.get(userId);
+            if (offset == null) {
+                return null;
+            }
+            return RecordCodec.readUser(recordAt(offset.longValue()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Place getPlace(String placeId) {
+        lock.readLock().lock();
+        try {
+            Long offset = (Long) places.get(placeId);
+            if (offset == null) {
+                return null;
+            }
+            return RecordCodec.readPlace(recordAt(offset.longValue()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the stored photos of the given owner.
+     *
+     * @param userId The NSID of the owner
+     * @return List of Photo objects
+     */
+    public List getPhotosByOwner(String userId) {
+        lock.readLock().lock();
+        try {
+            return readPhotos((Collection) photosByOwner.get(userId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the stored photos of a photoset, in the order they have been
+     * stored with {@link Batch#putPhotoset(Photoset, Collection)}.
+     *
+     * @param photosetId The photoset ID
+     * @return List of Photo objects
+     */
+    public List getPhotosInSet(String photosetId) {
+        lock.readLock().lock();
+        try {
+            return readPhotos((Collection) photosBySet.get(photosetId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the stored photos taken in the given range, ordered by date taken.
+     *
+     * @param from Inclusive lower bound or null
+     * @param to Exclusive upper bound or null
+     * @return List of Photo objects
+     */
+    public List getPhotosTaken(Date from, Date to) {
+        lock.readLock().lock();
+        try {
+            return readPhotos(idsInRange(photosByDateTaken, from, to));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the stored photos posted in the given range, ordered by date posted.
+     *
+     * @param from Inclusive lower bound or null
+     * @param to Exclusive upper bound or null
+     * @return List of Photo objects
+     */
+    public List getPhotosPosted(Date from, Date to) {
+        lock.readLock().lock();
+        try {
+            return readPhotos(idsInRange(photosByDatePosted, from, to));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The length of the committed part of the file
+     */
+    public long getLength() {
+        lock.readLock().lock();
+        try {
+            return committedLength;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getPhotoCount() {
+        lock.readLock().lock();
+        try {
+            return photos.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrite the file with the current records only, dropping the
+     * replaced ones.
+     *
+     * @throws IOException
+     */
+    public void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            File compacted = new File(file.getPath() + ".compact");
+            RandomAccessFile target = new RandomAccessFile(compacted, "rw");
+            try {
+                target.setLength(0);
+                Compaction compaction = new Compaction(target.getChannel());
+                Iterator it = photos.values().iterator();
+                while (it.hasNext()) {
+                    compaction.copy(TYPE_PHOTO, ((PhotoEntry) it.next()).offset);
+                }
+                compaction.copyAll(TYPE_PHOTOSET, photosets);
+                compaction.copyAll(TYPE_USER, users);
+                compaction.copyAll(TYPE_PLACE, places);
+                it = photosBySet.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry entry = (Map.Entry) it.next();
+                    compaction.addMembers((String) entry.getKey(), new ArrayList((Set) entry.getValue()));
+                }
+                compaction.finish();
+            } finally {
+                target.close();
+            }
+
+            clearSegments();
+            channel.close();
+            raf.close();
+            boolean replaced = compacted.renameTo(file) || (file.delete() && compacted.renameTo(file));
+            raf = new RandomAccessFile(file, "rw");
+            channel = raf.getChannel();
+            photos.clear();
+            photosets.clear();
+            users.clear();
+            places.clear();
+            photosByOwner.clear();
+            photosBySet.clear();
+            photosByDateTaken.clear();
+            photosByDatePosted.clear();
+            replacedRecords = 0;
+            load();
+            if (!replaced) {
+                throw new IOException("Could not replace " + file + " with " + compacted);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            clearSegments();
+            channel.close();
+            raf.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * A group of writes which is committed atomically.
+     */
+    public class Batch {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+        private final DataOutputStream recordOut = new DataOutputStream(record);
+        private boolean committed = false;
+
+        private Batch() {
+        }
+
+        public Batch putPhoto(Photo photo) throws IOException {
+            RecordCodec.writePhoto(recordOut, photo);
+            return endRecord(TYPE_PHOTO);
+        }
+
+        public Batch putPhotos(Collection photos) throws IOException {
+            Iterator it = photos.iterator();
+            while (it.hasNext()) {
+                putPhoto((Photo) it.next());
+            }
+            return this;
+        }
+
+        /**
+         * Store a photoset with its photos. The membership of the set is
+         * replaced by the given photos.
+         *
+         * @param photoset The photoset
+         * @param photos Collection of Photo objects, or null to keep the membership
+         * @return this Batch
+         * @throws IOException
+         */
+        public Batch putPhotoset(Photoset photoset, Collection photos) throws IOException {
+            RecordCodec.writePhotoset(recordOut, photoset);
+            endRecord(TYPE_PHOTOSET);
+            if (photos != null) {
+                List ids = new ArrayList(photos.size());
+                Iterator it = photos.iterator();
+                while (it.hasNext()) {
+                    Photo photo = (Photo) it.next();
+                    putPhoto(photo);
+                    ids.add(photo.getId());
+                }
+                RecordCodec.writeMembers(recordOut, photoset.getId(), ids);
+                endRecord(TYPE_MEMBERS);
+            }
+            return this;
+        }
+
+        public Batch putUser(User user) throws IOException {
+            RecordCodec.writeUser(recordOut, user);
+            return endRecord(TYPE_USER);
+        }
+
+        public Batch putPlace(Place place) throws IOException {
+            RecordCodec.writePlace(recordOut, place);
+            return endRecord(TYPE_PLACE);
+        }
+
+        /**
+         * Write the batch to disk and make it visible to readers.
+         *
+         * @throws IOException
+         */
+        public void commit() throws IOException {
+            if (committed) {
+                throw new IllegalStateException("Batch already committed");
+            }
+            committed = true;
+            out.flush();
+            if (bytes.size() == 0) {
+                return;
+            }
+            append(bytes.toByteArray());
+        }
+
+        private Batch endRecord(byte type) throws IOException {
+            if (committed) {
+                throw new IllegalStateException("Batch already committed");
+            }
+            recordOut.flush();
+            out.writeByte(type);
+            out.writeInt(record.size());
+            record.writeTo(out);
+            record.reset();
+            return this;
+        }
+    }
+
+    private void load() throws IOException {
+        lock.writeLock().lock();
+        try {
+            long length = channel.size();
+            if (length == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+                header.putInt(FILE_MAGIC);
+                header.putInt(FILE_VERSION);
+                header.flip();
+                write(channel, header, 0);
+                channel.force(true);
+                committedLength = HEADER_LENGTH;
+                return;
+            }
+            if (length < HEADER_LENGTH) {
+                throw new IOException("Not a metadata store: " + file);
+            }
+            // the whole file is readable while the batches are checked
+            committedLength = length;
+            ByteBuffer header = read(0, HEADER_LENGTH);
+            if (header.getInt() != FILE_MAGIC) {
+                throw new IOException("Not a metadata store: " + file);
+            }
+            int version = header.getInt();
+            if (version != FILE_VERSION) {
+                throw new IOException("Unsupported metadata store version " + version + ": " + file);
+            }
+            long position = HEADER_LENGTH;
+            CRC32 crc = new CRC32();
+            while (position + BATCH_HEADER_LENGTH <= length) {
+                ByteBuffer batchHeader = read(position, BATCH_HEADER_LENGTH);
+                if (batchHeader.getInt() != BATCH_MAGIC) {
+                    break;
+                }
+                int batchLength = batchHeader.getInt();
+                long checksum = batchHeader.getLong();
+                long bodyStart = position + BATCH_HEADER_LENGTH;
+                if (batchLength < 0 || bodyStart + batchLength > length) {
+                    break;
+                }
+                byte[] body = new byte[batchLength];
+                read(bodyStart, batchLength).get(body);
+                crc.reset();
+                crc.update(body, 0, body.length);
+                if (crc.getValue() != checksum) {
+                    break;
+                }
+                indexBatch(ByteBuffer.wrap(body), bodyStart);
+                position = bodyStart + batchLength;
+            }
+            committedLength = position;
+            if (committedLength < length) {
+                // drop an incomplete trailing batch left by a crash
+                clearSegments();
+                channel.truncate(committedLength);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(byte[] body) throws IOException {
+        ByteBuffer batch = frame(body, body.length);
+        lock.writeLock().lock();
+        try {
+            long position = committedLength + batch.remaining();
+            write(channel, batch, committedLength);
+            channel.force(false);
+            indexBatch(ByteBuffer.wrap(body), committedLength + BATCH_HEADER_LENGTH);
+            committedLength = position;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Put the header of a batch in front of its body.
+     */
+    private static ByteBuffer frame(byte[] body, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, length);
+        ByteBuffer batch = ByteBuffer.allocate(BATCH_HEADER_LENGTH + length);
+        batch.putInt(BATCH_MAGIC);
+        batch.putInt(length);
+        batch.putLong(crc.getValue());
+        batch.put(body, 0, length);
+        batch.flip();
+        return batch;
+    }
+
+    private static void write(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += target.write(buffer, position);
+        }
+    }
+
+    /**
+     * Writes the current records to a new file, in batches.
+     */
+    private class Compaction {
+
+        private final FileChannel target;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+        private final DataOutputStream recordOut = new DataOutputStream(record);
+        private long position = HEADER_LENGTH;
+
+        Compaction(FileChannel target) throws IOException {
+            this.target = target;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.putInt(FILE_MAGIC);
+            header.putInt(FILE_VERSION);
+            header.flip();
+            write(target, header, 0);
+        }
+
+        void copyAll(byte type, Map offsets) throws IOException {
+            Iterator it = offsets.values().iterator();
+            while (it.hasNext()) {
+                copy(type, ((Long) it.next()).longValue());
+            }
+        }
+
+        void copy(byte type, long offset) throws IOException {
+            ByteBuffer payload = recordAt(offset);
+            out.writeByte(type);
+            out.writeInt(payload.remaining());
+            while (payload.hasRemaining()) {
+                out.writeByte(payload.get());
+            }
+            endRecord();
+        }
+
+        void addMembers(String photosetId, List photoIds) throws IOException {
+            RecordCodec.writeMembers(recordOut, photosetId, photoIds);
+            recordOut.flush();
+            out.writeByte(TYPE_MEMBERS);
+            out.writeInt(record.size());
+            record.writeTo(out);
+            record.reset();
+            endRecord();
+        }
+
+        void finish() throws IOException {
+            flush();
+            target.force(true);
+        }
+
+        private void endRecord() throws IOException {
+            if (bytes.size() >= COMPACT_BATCH_LENGTH) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            out.flush();
+            if (bytes.size() > 0) {
+                ByteBuffer batch = frame(bytes.toByteArray(), bytes.size());
+                int length = batch.remaining();
+                write(target, batch, position);
+                position += length;
+                bytes.reset();
+            }
+        }
+    }
+
+    /**
+     * Update the indexes with the records of a batch.
+     *
+     * @param body The batch body
+     * @param bodyOffset The file offset of the body
+     */
+    private void indexBatch(ByteBuffer body, long bodyOffset) {
+        while (body.hasRemaining()) {
+            byte type = body.get();
+            int recordLength = body.getInt();
+            int start = body.position();
+            long offset = bodyOffset + start;
+            ByteBuffer payload = (ByteBuffer) body.slice().limit(recordLength);
+            switch (type) {
+            case TYPE_PHOTO:
+                indexPhoto(RecordCodec.readPhoto(payload), offset);
+                break;
+            case TYPE_PHOTOSET:
+                index(photosets, RecordCodec.readString(payload), new Long(offset));
+                break;
+            case TYPE_MEMBERS:
+                List ids = RecordCodec.readMembers(payload);
+                String photosetId = (String) ids.remove(0);
+                index(photosBySet, photosetId, new LinkedHashSet(ids));
+                break;
+            case TYPE_USER:
+                index(users, RecordCodec.readString(payload), new Long(offset));
+                break;
+            case TYPE_PLACE:
+                index(places, RecordCodec.readString(payload), new Long(offset));
+                break;
+            default:
+                // records of unknown type written by a newer version are skipped
+                unknownRecords = true;
+                break;
+            }
+            body.position(start + recordLength);
+        }
+    }
+
+    private void index(Map index, String id, Object value) {
+        if (index.put(id, value) != null) {
+            replacedRecords++;
+        }
+    }
+
+    private void indexPhoto(Photo photo, long offset) {
+        String id = photo.getId();
+        PhotoEntry old = (PhotoEntry) photos.get(id);
+        if (old != null) {
+            replacedRecords++;
+            removeFromIndex(photosByOwner, old.ownerId, id);
+            removeFromIndex(photosByDateTaken, old.dateTaken, id);
+            removeFromIndex(photosByDatePosted, old.datePosted, id);
+        }
+        PhotoEntry entry = new PhotoEntry();
+        entry.offset = offset;
+        entry.ownerId = photo.getOwner() == null ? null : photo.getOwner().getId();
+        entry.dateTaken = photo.getDateTaken() == null ? null : new Long(photo.getDateTaken().getTime());
+        entry.datePosted = photo.getDatePosted() == null ? null : new Long(photo.getDatePosted().getTime());
+        photos.put(id, entry);
+        addToIndex(photosByOwner, entry.ownerId, id);
+        addToIndex(photosByDateTaken, entry.dateTaken, id);
+        addToIndex(photosByDatePosted, entry.datePosted, id);
+    }
+
+    private static void addToIndex(Map index, Object key, String id) {
+        if (key == null) {
+            return;
+        }
+        Set ids = (Set) index.get(key);
+        if (ids == null) {
+            ids = new LinkedHashSet();
+            index.put(key, ids);
+        }
+        ids.add(id);
+    }
+
+    private static void removeFromIndex(Map index, Object key, String id) {
+        if (key == null) {
+            return;
+        }
+        Set ids = (Set) index.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static Collection idsInRange(SortedMap index, Date from, Date to) {
+        SortedMap range;
+        if (from != null && to != null) {
+            range = index.subMap(new Long(from.getTime()), new Long(to.getTime()));
+        } else if (from != null) {
+            range = index.tailMap(new Long(from.getTime()));
+        } else if (to != null) {
+            range = index.headMap(new Long(to.getTime()));
+        } else {
+            range = index;
+        }
+        List ids = new ArrayList();
+        Iterator it = range.values().iterator();
+        while (it.hasNext()) {
+            ids.addAll((Set) it.next());
+        }
+        return ids;
+    }
+
+    /**
+     * Must be called with the read lock held.
+     */
+    private List readPhotos(Collection ids) {
+        if (ids == null) {
+            return Collections.EMPTY_LIST;
+        }
+        List result = new ArrayList(ids.size());
+        Iterator it = ids.iterator();
+        while (it.hasNext()) {
+            PhotoEntry entry = (PhotoEntry) photos.get(it.next());
+            if (entry != null) {
+                result.add(RecordCodec.readPhoto(recordAt(entry.offset)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Whether most records are replaced ones, and the file is worth compacting.
+     */
+    private boolean isCompactable() {
+        int current = photos.size() + photosets.size() + users.size() + places.size() + photosBySet.size();
+        return !unknownRecords && committedLength >= COMPACT_MIN_LENGTH && replacedRecords > current;
+    }
+
+    /**
+     * Get a buffer holding the given record payload.
+     * Must be called with the read lock held.
+     */
+    private ByteBuffer recordAt(long offset) {
+        try {
+            // the length precedes the payload
+            int length = read(offset - 4, 4).getInt();
+            return read(offset, length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Get a buffer holding a region of the file: a view of the mapped
+     * segment containing it, or a copy if it crosses segments.
+     * Must be called with the read lock held.
+     */
+    private ByteBuffer read(long offset, int length) throws IOException {
+        int index = (int) (offset / segmentSize);
+        int start = (int) (offset - (long) index * segmentSize);
+        if (start + length <= segmentSize) {
+            ByteBuffer buffer = segment(index, start + length).duplicate();
+            buffer.limit(start + length);
+            buffer.position(start);
+            return buffer.slice();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of " + file);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Get a mapped segment, mapping it again if it ended before the given
+     * length when it was mapped. Only the last segment grows, the others
+     * are mapped once.
+     */
+    private synchronized MappedByteBuffer segment(int index, int length) throws IOException {
+        while (segments.size() <= index) {
+            segments.add(null);
+        }
+        MappedByteBuffer segment = (MappedByteBuffer) segments.get(index);
+        if (segment == null || segment.capacity() < length) {
+            long start = (long) index * segmentSize;
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, committedLength - start));
+            segments.set(index, segment);
+        }
+        return segment;
+    }
+
+    private synchronized void clearSegments() {
+        segments.clear();
+    }
+
+    private static class PhotoEntry {
+        long offset;
+        String ownerId;
+        Long dateTaken;
+        Long datePosted;
+    }
+
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+package com.aetrion.flickr.store;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import com.aetrion.flickr.people.User;
+import com.aetrion.flickr.photos.GeoData;
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.photos.PhotoUtils;
+import com.aetrion.flickr.photosets.Photoset;
+import com.aetrion.flickr.places.Place;
+import com.aetrion.flickr.tags.Tag;
+
+/**
+ * Reads and writes the record payloads of a {@link MetadataStore}.<p>
+ *
+ * Only the attributes which are returned by the list- and getInfo-calls
+ * are stored. Strings are written as length-prefixed UTF-8, a length
+ * of -1 denotes null.
+ */
+final class RecordCodec {
+
+    private static final String UTF8 = "UTF-8";
+
+    private RecordCodec() {
+    }
+
+    // views is deprecated, but still stored so records round-trip
+    @SuppressWarnings("deprecation")
+    static void writePhoto(DataOutputStream out, Photo photo) throws IOException {
+        writeString(out, photo.getId());
+        User owner = photo.getOwner();
+        writeString(out, owner == null ? null : owner.getId());
+        writeString(out, owner == null ? null : owner.getUsername());
+        writeString(out, photo.getSecret());
+        writeString(out, photo.getServer());
+        writeString(out, photo.getFarm());
+        writeString(out, photo.getLicense());
+        writeString(out, photo.getTitle());
+        writeString(out, photo.getDescription());
+        writeString(out, photo.getUrl());
+        writeString(out, photo.getOriginalFormat());
+        writeString(out, photo.getOriginalSecret());
+        writeString(out, photo.getPlaceId());
+        writeString(out, photo.getMedia());
+        writeString(out, photo.getMediaStatus());
+        writeString(out, photo.getPathAlias());
+        writeString(out, photo.getTakenGranularity());
+        writeString(out, photo.getIconServer());
+        writeString(out, photo.getIconFarm());
+        int flags = 0;
+        if (photo.isPublicFlag()) flags |= 1;
+        if (photo.isFriendFlag()) flags |= 2;
+        if (photo.isFamilyFlag()) flags |= 4;
+        if (photo.isFavorite()) flags |= 8;
+        if (photo.isPrimary()) flags |= 16;
+        out.writeByte(flags);
+        writeDate(out, photo.getDateTaken());
+        writeDate(out, photo.getDatePosted());
+        writeDate(out, photo.getDateAdded());
+        writeDate(out, photo.getLastUpdate());
+        out.writeInt(photo.getComments());
+        out.writeInt(photo.getViews());
+        out.writeInt(photo.getRotation());
+        out.writeInt(photo.getOriginalWidth());
+        out.writeInt(photo.getOriginalHeight());
+        GeoData geoData = photo.getGeoData();
+        out.writeBoolean(geoData != null);
+        if (geoData != null) {
+            out.writeFloat(geoData.getLongitude());
+            out.writeFloat(geoData.getLatitude());
+            out.writeInt(geoData.getAccuracy());
+        }
+        Collection tags = PhotoUtils.getTagsIfSet(photo);
+        out.writeInt(tags == null ? -1 : tags.size());
+        if (tags != null) {
+            Iterator it = tags.iterator();
+            while (it.hasNext()) {
+                Tag tag = (Tag) it.next();
+                writeString(out, tag.getId());
+                writeString(out, tag.getAuthor());
+                writeString(out, tag.getRaw());
+                writeString(out, tag.getValue());
+            }
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    static Photo readPhoto(ByteBuffer in) {
+        Photo photo = new Photo();
+        photo.setId(readString(in));
+        String ownerId = readString(in);
+        String ownerName = readString(in);
+        if (ownerId != null) {
+            User owner = new User();
+            owner.setId(ownerId);
+            owner.setUsername(ownerName);
+            photo.setOwner(owner);
+        }
+        photo.setSecret(readString(in));
+        photo.setServer(readString(in));
+        photo.setFarm(readString(in));
+        photo.setLicense(readString(in));
+        photo.setTitle(readString(in));
+        photo.setDescription(readString(in));
+        photo.setUrl(readString(in));
+        photo.setOriginalFormat(readString(in));
+        photo.setOriginalSecret(readString(in));
+        photo.setPlaceId(readString(in));
+        photo.setMedia(readString(in));
+        photo.setMediaStatus(readString(in));
+        photo.setPathAlias(readString(in));
+        photo.setTakenGranularity(readString(in));
+        photo.setIconServer(readString(in));
+        photo.setIconFarm(readString(in));
+        int flags = in.get();
+        photo.setPublicFlag((flags & 1) != 0);
+        photo.setFriendFlag((flags & 2) != 0);
+        photo.setFamilyFlag((flags & 4) != 0);
+        photo.setFavorite((flags & 8) != 0);
+        photo.setPrimary((flags & 16) != 0);
+        photo.setDateTaken(readDate(in));
+        photo.setDatePosted(readDate(in));
+        photo.setDateAdded(readDate(in));
+        photo.setLastUpdate(readDate(in));
+        photo.setComments(in.getInt());
+        photo.setViews(in.getInt());
+        photo.setRotation(in.getInt());
+        photo.setOriginalWidth(in.getInt());
+        photo.setOriginalHeight(in.getInt());
+        if (in.get() != 0) {
+            GeoData geoData = new GeoData();
+            geoData.setLongitude(in.getFloat());
+            geoData.setLatitude(in.getFloat());
+            geoData.setAccuracy(in.getInt());
+            photo.setGeoData(geoData);
+        }
+        int tagCount = in.getInt();
+        if (tagCount >= 0) {
+            List tags = new ArrayList(tagCount);
+            for (int i = 0; i < tagCount; i++) {
+                Tag tag = new Tag();
+                tag.setId(readString(in));
+                tag.setAuthor(readString(in));
+                tag.setRaw(readString(in));
+                tag.setValue(readString(in));
+                tags.add(tag);
+            }
+            photo.setTags(tags);
+        }
+        return photo;
+    }
+
+    static void writePhotoset(DataOutputStream out, Photoset photoset) throws IOException {
+        writeString(out, photoset.getId());
+        writeString(out, photoset.getOwner() == null ? null : photoset.getOwner().getId());
+        writeString(out, photoset.getPrimaryPhoto() == null ? null : photoset.getPrimaryPhoto().getId());
+        writeString(out, photoset.getSecret());
+        writeString(out, photoset.getServer());
+        writeString(out, photoset.getFarm());
+        writeString(out, photoset.getTitle());
+        writeString(out, photoset.getDescription());
+        out.writeInt(photoset.getPhotoCount());
+    }
+
+    static Photoset readPhotoset(ByteBuffer in) {
+        Photoset photoset = new Photoset();
+        photoset.setId(readString(in));
+        String ownerId = readString(in);
+        if (ownerId != null) {
+            User owner = new User();
+            owner.setId(ownerId);
+            photoset.setOwner(owner);
+        }
+        String primaryId = readString(in);
+        if (primaryId != null) {
+            Photo primary = new Photo();
+            primary.setId(primaryId);
+            photoset.setPrimaryPhoto(primary);
+        }
+        photoset.setSecret(readString(in));
+        photoset.setServer(readString(in));
+        photoset.setFarm(readString(in));
+        photoset.setTitle(readString(in));
+        photoset.setDescription(readString(in));
+        photoset.setPhotoCount(in.getInt());
+        return photoset;
+    }
+
+    static void writeMembers(DataOutputStream out, String photosetId, List photoIds) throws IOException {
+        writeString(out, photosetId);
+        out.writeInt(photoIds.size());
+        for (int i = 0; i < photoIds.size(); i++) {
+            writeString(out, (String) photoIds.get(i));
+        }
+    }
+
+    /**
+     * @return the photoset ID followed by the IDs of its photos
+     */
+    static List readMembers(ByteBuffer in) {
+        String photosetId = readString(in);
+        int count = in.getInt();
+        List ids = new ArrayList(count + 1);
+        ids.add(photosetId);
+        for (int i = 0; i < count; i++) {
+            ids.add(readString(in));
+        }
+        return ids;
+    }
+
+    static void writeUser(DataOutputStream out, User user) throws IOException {
+        writeString(out, user.getId());
+        writeString(out, user.getUsername());
+        writeString(out, user.getRealName());
+        writeString(out, user.getLocation());
+        out.writeInt(user.getIconFarm());
+        out.writeInt(user.getIconServer());
+        out.writeBoolean(user.isAdmin());
+        out.writeBoolean(user.isPro());
+        out.writeInt(user.getPhotosCount());
+        writeDate(out, user.getPhotosFirstDate());
+        writeDate(out, user.getPhotosFirstDateTaken());
+    }
+
+    static User readUser(ByteBuffer in) {
+        User user = new User();
+        user.setId(readString(in));
+        user.setUsername(readString(in));
+        user.setRealName(readString(in));
+        user.setLocation(readString(in));
+        user.setIconFarm(in.getInt());
+        user.setIconServer(in.getInt());
+        user.setAdmin(in.get() != 0);
+        user.setPro(in.get() != 0);
+        user.setPhotosCount(in.getInt());
+        user.setPhotosFirstDate(readDate(in));
+        user.setPhotosFirstDateTaken(readDate(in));
+        return user;
+    }
+
+    static void writePlace(DataOutputStream out, Place place) throws IOException {
+        writeString(out, place.getPlaceId());
+        writeString(out, place.getWoeId());
+        writeString(out, place.getName());
+        writeString(out, place.getPlaceUrl());
+        out.writeDouble(place.getLatitude());
+        out.writeDouble(place.getLongitude());
+        out.writeInt(place.getPlaceType());
+        out.writeInt(place.getPhotoCount());
+    }
+
+    static Place readPlace(ByteBuffer in) {
+        Place place = new Place();
+        place.setPlaceId(readString(in));
+        place.setWoeId(readString(in));
+        place.setName(readString(in));
+        place.setPlaceUrl(readString(in));
+        place.setLatitude(in.getDouble());
+        place.setLongitude(in.getDouble());
+        place.setPlaceType(in.getInt());
+        place.setPhotoCount(in.getInt());
+        return place;
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(UTF8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        try {
+            return new String(bytes, UTF8);
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void writeDate(DataOutputStream out, Date date) throws IOException {
+        out.writeBoolean(date != null);
+        if (date != null) {
+            out.writeLong(date.getTime());
+        }
+    }
+
+    private static Date readDate(ByteBuffer in) {
+        if (in.get() == 0) {
+            return null;
+        }
+        return new Date(in.getLong());
+    }
+
+}
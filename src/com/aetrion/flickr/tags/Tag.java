@@ -3,17 +3,14 @@
  */
 package com.aetrion.flickr.tags;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.regex.Matcher;
+import java.io.Serializable;
 
-import com.aetrion.flickr.photos.Size;
-import com.aetrion.flickr.util.StringUtilities;
+import com.aetrion.flickr.util.ObjectUtilities;
 
 /**
  * @author Anthony Eden
  */
-public class Tag {
+public class Tag implements Serializable {
 	private static final long serialVersionUID = 12L;
 
     private String id;
@@ -80,54 +77,27 @@ public class Tag {
     }
 
 	@Override
-	public boolean equals(Object obj) {
+    public boolean equals(Object obj) {
         if ((obj == null) || (obj.getClass() != this.getClass())) {
             return false;
         }
-		// object must be GeoData at this point
         Tag test = (Tag) obj;
-        Class cl = this.getClass();
-        Method[] method = cl.getMethods();
-        for (int i = 0; i < method.length; i++) {
-            Matcher m = StringUtilities.getterPattern.matcher(method[i].getName());
-            if (m.find() && !method[i].getName().equals("getClass")) {
-                try {
-                    Object res = method[i].invoke(this, null);
-                    Object resTest = method[i].invoke(test, null);
-                    String retType = method[i].getReturnType().toString();
-                    if (retType.indexOf("class") == 0) {
-                        if (res != null && resTest != null) {
-                            if (!res.equals(resTest)) return false;
-                        } else {
-                            //return false;
-                        }
-                    } else if (retType.equals("int")) {
-                        if (!((Integer) res).equals(((Integer)resTest))) return false;
-                    } else {
-                        System.out.println(method[i].getName() + "|" +
-                            method[i].getReturnType().toString());
-                    }
-                } catch (IllegalAccessException ex) {
-                    System.out.println("Size equals " + method[i].getName() + " " + ex);
-                } catch (InvocationTargetException ex) {
-                    //System.out.println("equals " + method[i].getName() + " " + ex);
-                } catch (Exception ex) {
-                    System.out.println("Size equals " + method[i].getName() + " " + ex);
-                }
-            }
-        }
-        return true;
+        return count == test.count
+            && ObjectUtilities.equals(id, test.id)
+            && ObjectUtilities.equals(author, test.author)
+            && ObjectUtilities.equals(authorName, test.authorName)
+            && ObjectUtilities.equals(raw, test.raw)
+            && ObjectUtilities.equals(value, test.value);
     }
 
     @Override
     public int hashCode() {
-        int hash = 1;
-        hash += new Integer(count).hashCode();
-        if (value != null) hash += value.hashCode();
-        if (raw != null) hash += raw.hashCode();
-        if (author != null) hash += author.hashCode();
-        if (authorName != null) hash += authorName.hashCode();
-        if (id != null) hash += id.hashCode();
+        int hash = ObjectUtilities.hashCode(value);
+        hash = 31 * hash + ObjectUtilities.hashCode(raw);
+        hash = 31 * hash + ObjectUtilities.hashCode(id);
+        hash = 31 * hash + ObjectUtilities.hashCode(author);
+        hash = 31 * hash + ObjectUtilities.hashCode(authorName);
+        hash = 31 * hash + count;
         return hash;
     }
 }
@@ -59,6 +59,22 @@ public class Uploader {
         }
     }
 
+    /**
+     * Construct an Uploader, which posts to the host and port of the given
+     * Transport. The response class of the Transport is set to
+     * UploaderResponse, so it shouldn't be shared with other interfaces.
+     *
+     * @param apiKey The API key
+     * @param sharedSecret The shared secret
+     * @param transport The Transport
+     */
+    public Uploader(String apiKey, String sharedSecret, Transport transport) {
+        this.apiKey = apiKey;
+        this.sharedSecret = sharedSecret;
+        this.transport = transport;
+        this.transport.setResponseClass(UploaderResponse.class);
+    }
+
     /**
      * Upload a photo from a byte-array.
      *
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+
+package com.aetrion.flickr.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * The child elements of an element, indexed by name.<p>
+ *
+ * The children are visited once, when the index is created. Lookups
+ * don't search the subtree like Element.getElementsByTagName(), so
+ * reading all parts of a large element, like the response of
+ * flickr.photos.getInfo, stays linear in its size.
+ */
+public class ElementIndex {
+
+    /** Name to Element, or to a List of Elements for repeated names. */
+    private Map children;
+
+    /**
+     * Index the direct child elements.
+     *
+     * @param element The parent element
+     */
+    public ElementIndex(Element element) {
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            if (children == null) {
+                children = new HashMap();
+            }
+            String name = node.getNodeName();
+            Object existing = children.get(name);
+            if (existing == null) {
+                children.put(name, node);
+            } else if (existing instanceof List) {
+                ((List) existing).add(node);
+            } else {
+                List list = new ArrayList();
+                list.add(existing);
+                list.add(node);
+                children.put(name, list);
+            }
+        }
+    }
+
+    /**
+     * Get the first child element with the given name.
+     *
+     * @param name The child element name
+     * @return The child element or null
+     */
+    public Element getChild(String name) {
+        Object child = children == null ? null : children.get(name);
+        if (child instanceof List) {
+            return (Element) ((List) child).get(0);
+        }
+        return (Element) child;
+    }
+
+    /**
+     * Get all child elements with the given name, in document order.
+     *
+     * @param name The child element name
+     * @return The child elements, maybe empty
+     */
+    public List getChildren(String name) {
+        Object child = children == null ? null : children.get(name);
+        if (child == null) {
+            return Collections.EMPTY_LIST;
+        }
+        if (child instanceof List) {
+            return (List) child;
+        }
+        return Collections.singletonList(child);
+    }
+
+    /**
+     * Get the text of the first child element with the given name.
+     *
+     * @param name The child element name
+     * @return The text or null
+     */
+    public String getChildValue(String name) {
+        return XMLUtilities.getValue(getChild(name));
+    }
+
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+
+package com.aetrion.flickr.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded disk cache for image bytes, keyed by image URL.<p>
+ *
+ * Images on the static servers never change for a given URL, so they
+ * can be kept until the byte budget is exhausted. The least recently
+ * used files are evicted first. A hit updates the modification time of
+ * the file, so the access order is restored when the cache is opened
+ * again.<p>
+ *
+ * Hits are returned as read-only buffers. Files of at least 64 KB are
+ * memory-mapped and not copied to the heap, smaller ones, like thumbnails
+ * and buddy icons, are read, because a mapping costs more than the copy.<p>
+ *
+ * Concurrent requests for an URL which is not cached yet are joined,
+ * the image is only fetched once. Joined requests count as misses. Images
+ * shorter than the length announced by the source are not cached.<p>
+ *
+ * The cache is used by {@link com.aetrion.flickr.photos.PhotosInterface}
+ * for all image requests, including buddy icons, once it has been set with
+ * {@link com.aetrion.flickr.photos.PhotosInterface#setImageCache(ImageCache)}.
+ */
+public class ImageCache {
+
+    private static final String FILE_SUFFIX = ".img";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAP_THRESHOLD = 64 * 1024;
+
+    /**
+     * Opens the stream of an image which is not in the cache.
+     */
+    public interface Source {
+
+        /**
+         * Open an image.
+         *
+         * @param url The image URL
+         * @param length Receives the announced length of the image at index 0, -1 if unknown
+         * @return The stream of the image
+         * @throws IOException
+         */
+        InputStream open(String url, long[] length) throws IOException;
+
+    }
+
+    private final File directory;
+    private final long maxBytes;
+
+    /** Key to file length, in access order. Guarded by this. */
+    private final LinkedHashMap entries = new LinkedHashMap(256, 0.75f, true);
+    private long totalBytes;
+
+    private final ConcurrentMap pending = new ConcurrentHashMap();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Open the cache in a directory. Files of an earlier run are kept,
+     * the oldest ones are evicted, if they exceed the budget.
+     *
+     * @param directory The cache directory
+     * @param maxBytes The maximum total size of the cached images
+     */
+    public ImageCache(File directory, long maxBytes) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Not a directory: " + directory);
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        load();
+    }
+
+    /**
+     * Get an image from the cache, fetching it with the source if missing.
+     *
+     * @param url The image URL
+     * @param source Opens the image, if it is not cached
+     * @return A read-only buffer with the image bytes
+     * @throws IOException
+     */
+    public ByteBuffer get(final String url, final Source source) throws IOException {
+        final String key = toKey(url);
+        ByteBuffer buffer = lookup(key);
+        if (buffer != null) {
+            hits.incrementAndGet();
+            return buffer;
+        }
+        FutureTask task = new FutureTask(new Callable() {
+            public Object call() throws IOException {
+                // the previous fill may have completed since the lookup
+                ByteBuffer cached = lookup(key);
+                return cached != null ? cached : fill(key, url, source);
+            }
+        });
+        FutureTask running = (FutureTask) pending.putIfAbsent(key, task);
+        if (running == null) {
+            misses.incrementAndGet();
+            running = task;
+            try {
+                task.run();
+            } finally {
+                pending.remove(key);
+            }
+        } else {
+            // another thread is fetching the same image, still a miss
+            misses.incrementAndGet();
+        }
+        try {
+            return ((ByteBuffer) running.get()).duplicate();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + url);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Get an image from the cache without fetching it.
+     *
+     * @param url The image URL
+     * @return A read-only buffer with the image bytes or null
+     * @throws IOException
+     */
+    public ByteBuffer get(String url) throws IOException {
+        ByteBuffer buffer = lookup(toKey(url));
+        if (buffer != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return buffer;
+    }
+
+    public boolean contains(String url) {
+        synchronized (this) {
+            return entries.containsKey(toKey(url));
+        }
+    }
+
+    public void remove(String url) {
+        String key = toKey(url);
+        synchronized (this) {
+            Long length = (Long) entries.remove(key);
+            if (length != null) {
+                totalBytes -= length.longValue();
+            }
+        }
+        getFile(key).delete();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return Ratio of hits to all requests, 0 if there were no requests
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    private ByteBuffer lookup(String key) throws IOException {
+        synchronized (this) {
+            if (entries.get(key) == null) {
+                return null;
+            }
+        }
+        File file = getFile(key);
+        try {
+            ByteBuffer buffer = read(file);
+            file.setLastModified(System.currentTimeMillis());
+            return buffer;
+        } catch (IOException e) {
+            // evicted in between
+            synchronized (this) {
+                Long length = (Long) entries.remove(key);
+                if (length != null) {
+                    totalBytes -= length.longValue();
+                }
+            }
+            return null;
+        }
+    }
+
+    private ByteBuffer fill(String key, String url, Source source) throws IOException {
+        File temp = File.createTempFile(key, TEMP_SUFFIX, directory);
+        try {
+            long[] length = {-1};
+            InputStream in = source.open(url, length);
+            FileOutputStream out = null;
+            long written = 0;
+            try {
+                out = new FileOutputStream(temp);
+                byte[] buffer = new byte[16 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    written += read;
+                }
+            } finally {
+                IOUtilities.close(in);
+                IOUtilities.close(out);
+            }
+            if (length[0] >= 0 && written != length[0]) {
+                throw new IOException("Incomplete image " + url + ": " + written + " of " + length[0] + " bytes");
+            }
+            File file = getFile(key);
+            if (file.exists()) {
+                file.delete();
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Unable to rename " + temp + " to " + file);
+            }
+            ByteBuffer buffer = read(file);
+            synchronized (this) {
+                Long old = (Long) entries.put(key, new Long(file.length()));
+                if (old != null) {
+                    totalBytes -= old.longValue();
+                }
+                totalBytes += file.length();
+                evict();
+            }
+            return buffer;
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Remove the least recently used files until the budget is met.
+     * Must be called with the lock held.
+     */
+    private void evict() {
+        Iterator it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry entry = (Map.Entry) it.next();
+            it.remove();
+            totalBytes -= ((Long) entry.getValue()).longValue();
+            getFile((String) entry.getKey()).delete();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private synchronized void load() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                long m1 = ((File) o1).lastModified();
+                long m2 = ((File) o2).lastModified();
+                return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+            }
+        });
+        List stale = new ArrayList();
+        for (int i = 0; i < files.length; i++) {
+            String name = files[i].getName();
+            if (name.endsWith(FILE_SUFFIX)) {
+                String key = name.substring(0, name.length() - FILE_SUFFIX.length());
+                entries.put(key, new Long(files[i].length()));
+                totalBytes += files[i].length();
+            } else if (name.endsWith(TEMP_SUFFIX)) {
+                stale.add(files[i]);
+            }
+        }
+        for (int i = 0; i < stale.size(); i++) {
+            ((File) stale.get(i)).delete();
+        }
+        evict();
+    }
+
+    private File getFile(String key) {
+        return new File(directory, key + FILE_SUFFIX);
+    }
+
+    private static ByteBuffer read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = raf.length();
+            if (length >= MAP_THRESHOLD) {
+                // the mapping stays valid after the file is closed
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) == -1) {
+                    throw new IOException("Truncated " + file);
+                }
+            }
+            buffer.flip();
+            return buffer.asReadOnlyBuffer();
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static String toKey(String url) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            return ByteUtilities.toHexString(md.digest(url.getBytes("UTF-8")));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -6,8 +6,18 @@ package com.aetrion.flickr.util;
 
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
 
 /**
  * @author Anthony Eden
@@ -21,46 +31,171 @@ public class ImageUtilities {
     }
 
     public BufferedImage bufferImage(Image image, int type) {
+        LoadObserver observer = new LoadObserver();
+        observer.awaitSize(image);
         BufferedImage bufferedImage = new BufferedImage(image.getWidth(null), image.getHeight(null), type);
         Graphics2D g = bufferedImage.createGraphics();
-        g.drawImage(image, null, null);
-        waitForImage(bufferedImage);
+        try {
+            // drawImage() is synchronous for BufferedImages, other images
+            // notify the observer while they are loaded
+            if (!g.drawImage(image, 0, 0, observer)) {
+                observer.awaitComplete();
+                g.drawImage(image, 0, 0, null);
+            }
+        } finally {
+            g.dispose();
+        }
         return bufferedImage;
     }
 
-    private void waitForImage(BufferedImage bufferedImage) {
-        final ImageLoadStatus imageLoadStatus = new ImageLoadStatus();
-        bufferedImage.getHeight(new ImageObserver() {
-            public boolean imageUpdate(Image img, int infoflags, int x, int y, int width, int height) {
-                if (infoflags == ALLBITS) {
-                    imageLoadStatus.heightDone = true;
-                    return true;
-                }
-                return false;
+    /**
+     * Decode an image with the lowest resolution which still covers the
+     * given box.<p>
+     *
+     * The image is subsampled while it is read, so the full resolution is
+     * never held in memory. The result is at least maxWidth wide or maxHeight
+     * high, unless the image is smaller.
+     *
+     * @param in The image data, not closed by this method
+     * @param maxWidth The width of the target box, 0 for any
+     * @param maxHeight The height of the target box, 0 for any
+     * @return The image or null, if no reader for the format is available
+     * @throws IOException
+     */
+    public static BufferedImage readImage(InputStream in, int maxWidth, int maxHeight)
+      throws IOException {
+        return readImage(in, null, maxWidth, maxHeight, null);
+    }
+
+    /**
+     * Decode a region of an image with the lowest resolution which still
+     * covers the given box.<p>
+     *
+     * If a destination image is given, which has the dimensions and type
+     * of the decoded image, it is filled instead of allocating a new one.
+     * This allows to reuse the rasters when many images of one size are
+     * decoded, like thumbnails.
+     *
+     * @param in The image data, not closed by this method
+     * @param region The region of the source image to read, null for all
+     * @param maxWidth The width of the target box, 0 for any
+     * @param maxHeight The height of the target box, 0 for any
+     * @param destination An image to decode into, or null
+     * @return The image or null, if no reader for the format is available
+     * @throws IOException
+     */
+    public static BufferedImage readImage(InputStream in, Rectangle region,
+      int maxWidth, int maxHeight, BufferedImage destination) throws IOException {
+        ImageInputStream iis = ImageIO.createImageInputStream(in);
+        if (iis == null) {
+            throw new IOException("Unable to create an ImageInputStream");
+        }
+        try {
+            Iterator readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                return null;
             }
-        });
-        bufferedImage.getWidth(new ImageObserver() {
-            public boolean imageUpdate(Image img, int infoflags, int x, int y, int width, int height) {
-                if (infoflags == ALLBITS) {
-                    imageLoadStatus.widthDone = true;
-                    return true;
+            ImageReader reader = (ImageReader) readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                Rectangle source = new Rectangle(0, 0, reader.getWidth(0), reader.getHeight(0));
+                if (region != null) {
+                    source = source.intersection(region);
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (region != null) {
+                    param.setSourceRegion(source);
                 }
-                return false;
+                int step = getSubsampling(source.width, source.height, maxWidth, maxHeight);
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                if (destination != null
+                    && destination.getWidth() == (source.width + step - 1) / step
+                    && destination.getHeight() == (source.height + step - 1) / step
+                    && isDestinationType(reader, destination)) {
+                    param.setDestination(destination);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
             }
-        });
-        while (!imageLoadStatus.widthDone && !imageLoadStatus.heightDone) {
-            try {
-                Thread.sleep(300);
-            } catch (InterruptedException e) {
+        } finally {
+            iis.close();
+        }
+    }
 
+    /**
+     * Get the largest subsampling step, which keeps the image at least as
+     * large as the box in one dimension.
+     *
+     * @param width The source width
+     * @param height The source height
+     * @param maxWidth The width of the box, 0 for any
+     * @param maxHeight The height of the box, 0 for any
+     * @return The step, 1 for no subsampling
+     */
+    public static int getSubsampling(int width, int height, int maxWidth, int maxHeight) {
+        int stepX = maxWidth > 0 ? width / maxWidth : Integer.MAX_VALUE;
+        int stepY = maxHeight > 0 ? height / maxHeight : Integer.MAX_VALUE;
+        int step = Math.min(stepX, stepY);
+        if (step == Integer.MAX_VALUE || step < 1) {
+            return 1;
+        }
+        return step;
+    }
+
+    private static boolean isDestinationType(ImageReader reader, BufferedImage destination)
+      throws IOException {
+        if (destination.getType() == BufferedImage.TYPE_CUSTOM) {
+            return false;
+        }
+        Iterator types = reader.getImageTypes(0);
+        while (types.hasNext()) {
+            ImageTypeSpecifier type = (ImageTypeSpecifier) types.next();
+            if (type.getBufferedImageType() == destination.getType()) {
+                return true;
             }
         }
+        return false;
     }
 
-    class ImageLoadStatus {
+    /**
+     * Waits for the asynchronous loading of an Image without polling.
+     */
+    static class LoadObserver implements ImageObserver {
+
+        private int flags;
+
+        public synchronized boolean imageUpdate(Image img, int infoflags, int x, int y, int width, int height) {
+            flags |= infoflags;
+            notifyAll();
+            return (flags & (ALLBITS | FRAMEBITS | ERROR | ABORT)) == 0;
+        }
+
+        synchronized void awaitSize(Image image) {
+            while (image.getWidth(this) < 0 || image.getHeight(this) < 0) {
+                if ((flags & (ERROR | ABORT)) != 0) {
+                    throw new IllegalArgumentException("Unable to load image");
+                }
+                await();
+            }
+        }
+
+        synchronized void awaitComplete() {
+            while ((flags & (ALLBITS | FRAMEBITS | ERROR | ABORT)) == 0) {
+                await();
+            }
+        }
 
-        public boolean widthDone = false;
-        public boolean heightDone = false;
+        private void await() {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while loading image");
+            }
+        }
     }
 
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+package com.aetrion.flickr.util;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Helpers for the equals() and hashCode() implementations of the model
+ * classes.
+ */
+public class ObjectUtilities {
+
+    private ObjectUtilities() {
+
+    }
+
+    /**
+     * Compare two objects, which may be null.
+     *
+     * @param o1
+     * @param o2
+     * @return true if both are null or equal
+     */
+    public static boolean equals(Object o1, Object o2) {
+        return o1 == null ? o2 == null : o1.equals(o2);
+    }
+
+    /**
+     * Compare two collections element by element in iteration order.
+     *
+     * @param c1
+     * @param c2
+     * @return true if both are null or have equal elements
+     */
+    public static boolean equals(Collection c1, Collection c2) {
+        if (c1 == null || c2 == null) {
+            return c1 == c2;
+        }
+        if (c1.size() != c2.size()) {
+            return false;
+        }
+        Iterator it1 = c1.iterator();
+        Iterator it2 = c2.iterator();
+        while (it1.hasNext()) {
+            if (!equals(it1.next(), it2.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param o An object or null
+     * @return The hash code or 0 for null
+     */
+    public static int hashCode(Object o) {
+        return o == null ? 0 : o.hashCode();
+    }
+
+    /**
+     * @param b A boolean
+     * @return The hash code of Boolean, without boxing
+     */
+    public static int hashCode(boolean b) {
+        return b ? 1231 : 1237;
+    }
+
+    /**
+     * @param l A long
+     * @return The hash code of Long, without boxing
+     */
+    public static int hashCode(long l) {
+        return (int) (l ^ (l >>> 32));
+    }
+
+    /**
+     * @param f A float
+     * @return The hash code of Float, without boxing
+     */
+    public static int hashCode(float f) {
+        return Float.floatToIntBits(f);
+    }
+
+}
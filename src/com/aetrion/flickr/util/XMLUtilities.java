@@ -51,14 +51,38 @@ public class XMLUtilities {
     }
 
     /**
-     * Get the first child element with the given name.
+     * Get the first child element with the given name. Only the direct
+     * children are visited, not the whole subtree.
      *
      * @param element The parent element
      * @param name The child element name
      * @return The child element or null
+     * @see ElementIndex
      */
     public static Element getChild(Element element, String name) {
-        return (Element) element.getElementsByTagName(name).item(0);
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE && name.equals(node.getNodeName())) {
+                return (Element) node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get all direct child elements with the given name, in document order.
+     *
+     * @param element The parent element
+     * @param name The child element name
+     * @return The child elements, maybe empty
+     */
+    public static List getChildren(Element element, String name) {
+        List children = new ArrayList();
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE && name.equals(node.getNodeName())) {
+                children.add(node);
+            }
+        }
+        return children;
     }
 
     /**
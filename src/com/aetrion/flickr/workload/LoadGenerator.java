@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+
+package com.aetrion.flickr.workload;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.aetrion.flickr.Parameter;
+import com.aetrion.flickr.REST;
+import com.aetrion.flickr.Response;
+import com.aetrion.flickr.Transport;
+
+/**
+ * Replays a {@link Trace} as load against a Flickr endpoint, normally a
+ * local stand-in, and reports the throughput and latency percentiles.<p>
+ *
+ * Scheduling is open-loop: each call is started at its offset in the trace,
+ * divided by the speed, whether or not earlier calls have completed. The
+ * latency of a call is measured from its scheduled start, so calls waiting
+ * for a free thread show up as latency instead of slowing the load
+ * down.<p>
+ *
+ * Parameter values are filled with placeholders of the traced lengths.
+ * GET responses are read without parsing, so the generator itself isn't
+ * limited by the parser.<p>
+ *
+ * Run with <code>java com.aetrion.flickr.workload.LoadGenerator trace host port
+ * [-speed multiplier] [-threads n]</code>.
+ */
+public class LoadGenerator {
+
+    private final Transport transport;
+    private final String apiKey;
+    private double speed = 1;
+    private int threads = 256;
+
+    /**
+     * The outcome of a run.
+     */
+    public static class Result {
+
+        private final long elapsedNanos;
+        private final long[] latencies;
+        private final long errors;
+        private final long failures;
+
+        Result(long elapsedNanos, long[] latencies, long errors, long failures) {
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = latencies;
+            this.errors = errors;
+            this.failures = failures;
+            Arrays.sort(this.latencies);
+        }
+
+        /**
+         * @return The number of completed calls, including errors and failures
+         */
+        public int getCalls() {
+            return latencies.length;
+        }
+
+        /**
+         * @return The number of calls answered with a Flickr error
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return The number of calls failed with an exception
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return The completed calls per second
+         */
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : latencies.length * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Get a latency percentile.
+         *
+         * @param percentile Between 0 and 100, like 99.9
+         * @return The latency in microseconds
+         */
+        public long getPercentile(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(latencies.length - 1, index))];
+        }
+
+        public String toString() {
+            return getCalls() + " calls in " + (elapsedNanos / 1000000) + " ms, "
+                + Math.round(getThroughput()) + " calls/s, "
+                + errors + " errors, " + failures + " failures\n"
+                + "latency ms: p50 " + millis(getPercentile(50))
+                + ", p90 " + millis(getPercentile(90))
+                + ", p99 " + millis(getPercentile(99))
+                + ", p99.9 " + millis(getPercentile(99.9))
+                + ", max " + millis(getPercentile(100));
+        }
+
+        private static String millis(long micros) {
+            return String.valueOf(Math.round(micros / 100.0) / 10.0);
+        }
+
+    }
+
+    /**
+     * Construct a LoadGenerator.
+     *
+     * @param transport The Transport sending the calls
+     * @param apiKey The API key sent with the calls
+     */
+    public LoadGenerator(Transport transport, String apiKey) {
+        this.transport = transport;
+        this.apiKey = apiKey;
+    }
+
+    /**
+     * @param speed The speed multiplier, 2 replays the trace in half the time
+     */
+    public void setSpeed(double speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("The speed must be positive");
+        }
+        this.speed = speed;
+    }
+
+    /**
+     * @param threads The maximum number of calls in flight
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Replay the calls of a trace.
+     *
+     * @param trace The trace
+     * @return The Result
+     * @throws InterruptedException
+     */
+    public Result run(Trace trace) throws InterruptedException {
+        List calls = trace.getCalls();
+        final long[] latencies = new long[calls.size()];
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        long firstOffset = calls.isEmpty() ? 0 : ((Trace.Call) calls.get(0)).getOffsetMicros();
+        final long start = System.nanoTime();
+        try {
+            for (int i = 0; i < calls.size(); i++) {
+                final Trace.Call call = (Trace.Call) calls.get(i);
+                final long scheduled = start + (long) ((call.getOffsetMicros() - firstOffset) * 1000 / speed);
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+                }
+                final int index = i;
+                executor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            if (!send(call)) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                        latencies[index] = (System.nanoTime() - scheduled) / 1000;
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        return new Result(System.nanoTime() - start, latencies, errors.get(), failures.get());
+    }
+
+    /**
+     * Send one call.
+     *
+     * @return false for a Flickr error
+     */
+    private boolean send(Trace.Call call) throws Exception {
+        List parameters = createParameters(call);
+        if (call.isPost()) {
+            Response response = transport.post(call.getPath(), parameters, call.isMultipart(), null, false);
+            return !response.isError();
+        }
+        byte[] data = transport.getBytes(call.getPath(), parameters);
+        // the status is in the first element
+        String head = new String(data, 0, Math.min(data.length, 256), "UTF-8");
+        return head.indexOf("stat=\"fail\"") < 0;
+    }
+
+    /**
+     * Create parameters of the traced shape with placeholder values.
+     */
+    List createParameters(Trace.Call call) {
+        List parameters = new ArrayList();
+        if (call.getMethod().length() > 0) {
+            parameters.add(new Parameter("method", call.getMethod()));
+        }
+        parameters.add(new Parameter("api_key", apiKey));
+        if (call.getShape().length() == 0) {
+            return parameters;
+        }
+        String[] entries = call.getShape().split(",");
+        for (int i = 0; i < entries.length; i++) {
+            int colon = entries[i].lastIndexOf(':');
+            String name = entries[i].substring(0, colon);
+            int length = Integer.parseInt(entries[i].substring(colon + 1));
+            if (call.isMultipart() && "photo".equals(name)) {
+                parameters.add(new Parameter(name, new byte[Math.max(0, length)]));
+            } else {
+                char[] value = new char[Math.max(0, length)];
+                Arrays.fill(value, '0');
+                parameters.add(new Parameter(name, new String(value)));
+            }
+        }
+        return parameters;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: LoadGenerator trace host port [-speed multiplier] [-threads n]");
+            System.exit(1);
+        }
+        Trace trace = Trace.load(new File(args[0]));
+        LoadGenerator generator = new LoadGenerator(new REST(args[1], Integer.parseInt(args[2])), "loadgenerator");
+        for (int i = 3; i + 1 < args.length; i += 2) {
+            if ("-speed".equals(args[i])) {
+                generator.setSpeed(Double.parseDouble(args[i + 1]));
+            } else if ("-threads".equals(args[i])) {
+                generator.setThreads(Integer.parseInt(args[i + 1]));
+            } else {
+                throw new IOException("Unknown option " + args[i]);
+            }
+        }
+        System.out.println("Replaying " + trace.getCalls().size() + " calls");
+        System.out.println(generator.run(trace));
+    }
+
+}
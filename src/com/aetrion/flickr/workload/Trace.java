@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+
+package com.aetrion.flickr.workload;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aetrion.flickr.util.IOUtilities;
+
+/**
+ * A workload captured by a {@link TracingTransport}: the calls made, in
+ * order, with their API method, parameter shape, response size and
+ * latency, but without parameter values or response bodies.<p>
+ *
+ * The parameter shape lists the parameter names in alphabetical order,
+ * each with the length of its value rounded up to a power of two, like
+ * <code>extras:64,page:1,per_page:4,tags:16</code>. The API key and the
+ * method are left out.<p>
+ *
+ * The binary format is written by {@link TraceWriter}: a header followed by
+ * records, which either define a string used by later calls or describe
+ * one call in 24 bytes.
+ */
+public class Trace {
+
+    static final String MAGIC = "flickrj-trace";
+    static final int VERSION = 1;
+
+    static final int DEFINE = 1;
+    static final int CALL = 2;
+
+    public static final int STATUS_OK = 0;
+    public static final int STATUS_ERROR = 1;
+    public static final int STATUS_FAILED = 2;
+
+    /**
+     * One captured call.
+     */
+    public static class Call {
+
+        private final String path;
+        private final String method;
+        private final String shape;
+        private final boolean post;
+        private final boolean multipart;
+        private final int status;
+        private final long offsetMicros;
+        private final int latencyMicros;
+        private final int responseSize;
+
+        public Call(String path, String method, String shape, boolean post, boolean multipart,
+          int status, long offsetMicros, int latencyMicros, int responseSize) {
+            this.path = path;
+            this.method = method;
+            this.shape = shape;
+            this.post = post;
+            this.multipart = multipart;
+            this.status = status;
+            this.offsetMicros = offsetMicros;
+            this.latencyMicros = latencyMicros;
+            this.responseSize = responseSize;
+        }
+
+        /**
+         * @return The request path
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return The API method, or an empty String for uploads
+         */
+        public String getMethod() {
+            return method;
+        }
+
+        /**
+         * @return The parameter names and value lengths
+         */
+        public String getShape() {
+            return shape;
+        }
+
+        public boolean isPost() {
+            return post;
+        }
+
+        public boolean isMultipart() {
+            return multipart;
+        }
+
+        /**
+         * @return STATUS_OK, STATUS_ERROR for a Flickr error response or
+         * STATUS_FAILED for an IOException
+         */
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * @return The microseconds between the start of the trace and the call
+         */
+        public long getOffsetMicros() {
+            return offsetMicros;
+        }
+
+        /**
+         * @return The microseconds the call took
+         */
+        public int getLatencyMicros() {
+            return latencyMicros;
+        }
+
+        /**
+         * @return The size of the response body, or -1 if unknown
+         */
+        public int getResponseSize() {
+            return responseSize;
+        }
+
+    }
+
+    private final List calls;
+
+    public Trace(List calls) {
+        this.calls = calls;
+    }
+
+    /**
+     * @return The calls, in order of their start
+     */
+    public List getCalls() {
+        return calls;
+    }
+
+    /**
+     * Read a trace. The stream is left open. A trace cut short by a crash
+     * is read up to the last complete record.
+     *
+     * @param in The stream
+     * @return The trace
+     * @throws IOException If the stream isn't a trace
+     */
+    public static Trace read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (!MAGIC.equals(data.readUTF())) {
+            throw new IOException("Not a trace");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported trace version " + version);
+        }
+        Map strings = new HashMap();
+        List calls = new ArrayList();
+        try {
+            int tag;
+            while ((tag = data.read()) != -1) {
+                if (tag == DEFINE) {
+                    Integer id = new Integer(data.readUnsignedShort());
+                    strings.put(id, data.readUTF());
+                } else if (tag == CALL) {
+                    int flags = data.readUnsignedByte();
+                    String path = (String) strings.get(new Integer(data.readUnsignedShort()));
+                    String method = (String) strings.get(new Integer(data.readUnsignedShort()));
+                    String shape = (String) strings.get(new Integer(data.readUnsignedShort()));
+                    long offset = data.readLong();
+                    int latency = data.readInt();
+                    int size = data.readInt();
+                    calls.add(new Call(path, method, shape, (flags & 1) != 0, (flags & 2) != 0,
+                        flags >> 2, offset, latency, size));
+                } else {
+                    throw new IOException("Corrupt trace, unknown record " + tag);
+                }
+            }
+        } catch (EOFException e) {
+            // incomplete last record
+        }
+        return new Trace(calls);
+    }
+
+    /**
+     * Read a trace from a file.
+     *
+     * @param file The file
+     * @return The trace
+     * @throws IOException
+     */
+    public static Trace load(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return read(in);
+        } finally {
+            IOUtilities.close(in);
+        }
+    }
+
+}
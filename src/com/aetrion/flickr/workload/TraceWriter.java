@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+
+package com.aetrion.flickr.workload;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the calls of a {@link Trace} as they happen. Strings are written
+ * once and referred to by number, so a call costs 24 bytes in a buffer,
+ * and a write to the stream every few thousand calls.<p>
+ *
+ * Safe for use by several threads.
+ */
+public class TraceWriter {
+
+    private final DataOutputStream out;
+    private final Map strings = new HashMap();
+
+    /**
+     * Construct a TraceWriter and write the header.
+     *
+     * @param out The stream, closed by {@link #close()}
+     * @throws IOException
+     */
+    public TraceWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 65536));
+        this.out.writeUTF(Trace.MAGIC);
+        this.out.writeInt(Trace.VERSION);
+    }
+
+    /**
+     * Write a call.
+     *
+     * @param call The call
+     * @throws IOException
+     */
+    public synchronized void write(Trace.Call call) throws IOException {
+        int path = id(call.getPath());
+        int method = id(call.getMethod());
+        int shape = id(call.getShape());
+        out.writeByte(Trace.CALL);
+        out.writeByte((call.isPost() ? 1 : 0) | (call.isMultipart() ? 2 : 0) | (call.getStatus() << 2));
+        out.writeShort(path);
+        out.writeShort(method);
+        out.writeShort(shape);
+        out.writeLong(call.getOffsetMicros());
+        out.writeInt(call.getLatencyMicros());
+        out.writeInt(call.getResponseSize());
+    }
+
+    private int id(String s) throws IOException {
+        Integer id = (Integer) strings.get(s);
+        if (id == null) {
+            if (strings.size() > 0xffff) {
+                throw new IOException("Too many different strings in the trace");
+            }
+            id = new Integer(strings.size());
+            strings.put(s, id);
+            out.writeByte(Trace.DEFINE);
+            out.writeShort(id.intValue());
+            out.writeUTF(s);
+        }
+        return id.intValue();
+    }
+
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+}
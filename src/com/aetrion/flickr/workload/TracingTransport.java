@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2005 Aetrion LLC.
+ */
+
+package com.aetrion.flickr.workload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+import com.aetrion.flickr.Parameter;
+import com.aetrion.flickr.ProgressListener;
+import com.aetrion.flickr.Response;
+import com.aetrion.flickr.Transport;
+
+/**
+ * A Transport writing a {@link Trace} of all calls sent through another
+ * Transport, to be replayed as load by the {@link LoadGenerator}.<p>
+ *
+ * Only the method, the parameter names and value lengths, the response
+ * size and the latency of a call are captured, so traces can be taken
+ * in production without storing user data. The value lengths are rounded
+ * up to powers of two, so the number of different shapes stays small.
+ * The size of POST responses is always -1.<p>
+ *
+ * Failures to write the trace never fail the call, they are only counted.
+ *
+ * <pre>
+ * TracingTransport tracer = new TracingTransport(new REST(), new TraceWriter(new FileOutputStream("api.trace")));
+ * Flickr flickr = new Flickr(apiKey, sharedSecret, tracer);
+ * ...
+ * tracer.getWriter().close();
+ * </pre>
+ */
+public class TracingTransport extends Transport {
+
+    private final Transport transport;
+    private final TraceWriter writer;
+    private final DocumentBuilder builder;
+    private final long start = System.nanoTime();
+    private final AtomicLong writeFailures = new AtomicLong();
+
+    /**
+     * Construct a TracingTransport.
+     *
+     * @param transport The Transport sending the requests
+     * @param writer The TraceWriter
+     * @throws ParserConfigurationException
+     */
+    public TracingTransport(Transport transport, TraceWriter writer) throws ParserConfigurationException {
+        this.transport = transport;
+        this.writer = writer;
+        setTransportType(transport.getTransportType());
+        setHost(transport.getHost());
+        setPort(transport.getPort());
+        setPath(transport.getPath());
+        if (transport.getResponseClass() != null) {
+            setResponseClass(transport.getResponseClass());
+        }
+        builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+    }
+
+    /**
+     * @return The TraceWriter
+     */
+    public TraceWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * @return The number of calls which could not be written to the trace
+     */
+    public long getWriteFailures() {
+        return writeFailures.get();
+    }
+
+    public void setResponseClass(Class responseClass) {
+        super.setResponseClass(responseClass);
+        transport.setResponseClass(responseClass);
+    }
+
+    public Response get(String path, List parameters) throws IOException, SAXException {
+        long callStart = System.nanoTime();
+        Response response = null;
+        int size = -1;
+        try {
+            byte[] data = transport.getBytes(path, parameters);
+            size = data.length;
+            response = parse(builder, data);
+            return response;
+        } finally {
+            write(path, getMethod(parameters), getShape(parameters), false, false, callStart, response, size);
+        }
+    }
+
+    public byte[] getBytes(String path, List parameters) throws IOException {
+        long callStart = System.nanoTime();
+        byte[] data = null;
+        try {
+            data = transport.getBytes(path, parameters);
+            return data;
+        } finally {
+            write(path, getMethod(parameters), getShape(parameters), false, false, callStart, null,
+                data == null ? -1 : data.length);
+        }
+    }
+
+    public Response post(String path, List parameters, boolean multipart, ProgressListener progressListener, boolean video)
+      throws IOException, SAXException {
+        // the shape is taken first, streamed photos are consumed by the post
+        String shape = getShape(parameters);
+        long callStart = System.nanoTime();
+        Response response = null;
+        try {
+            response = transport.post(path, parameters, multipart, progressListener, video);
+            return response;
+        } finally {
+            write(path, getMethod(parameters), shape, true, multipart, callStart, response, -1);
+        }
+    }
+
+    private void write(String path, String method, String shape, boolean post, boolean multipart,
+      long callStart, Response response, int size) {
+        long now = System.nanoTime();
+        int status;
+        if (response == null && size < 0) {
+            status = Trace.STATUS_FAILED;
+        } else if (response != null && response.isError()) {
+            status = Trace.STATUS_ERROR;
+        } else {
+            status = Trace.STATUS_OK;
+        }
+        try {
+            writer.write(new Trace.Call(path, method, shape, post, multipart, status,
+                (callStart - start) / 1000, (int) Math.min(Integer.MAX_VALUE, (now - callStart) / 1000), size));
+        } catch (IOException e) {
+            writeFailures.incrementAndGet();
+        }
+    }
+
+    private static String getMethod(List parameters) {
+        for (int i = 0; i < parameters.size(); i++) {
+            Parameter parameter = (Parameter) parameters.get(i);
+            if ("method".equals(parameter.getName())) {
+                return String.valueOf(parameter.getValue());
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Get the parameter names and value lengths rounded up to a power of
+     * two, like <code>page:1,per_page:4</code>. Streamed values have the
+     * length -1.
+     */
+    static String getShape(List parameters) {
+        String[] entries = new String[parameters.size()];
+        int count = 0;
+        for (int i = 0; i < parameters.size(); i++) {
+            Parameter parameter = (Parameter) parameters.get(i);
+            String name = parameter.getName();
+            if ("method".equals(name) || "api_key".equals(name)) {
+                continue;
+            }
+            Object value = parameter.getValue();
+            int length;
+            if (value instanceof byte[]) {
+                length = ((byte[]) value).length;
+            } else if (value instanceof InputStream) {
+                length = -1;
+            } else {
+                length = String.valueOf(value).length();
+            }
+            entries[count++] = name + ":" + roundUp(length);
+        }
+        Arrays.sort(entries, 0, count);
+        StringBuffer shape = new StringBuffer();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                shape.append(',');
+            }
+            shape.append(entries[i]);
+        }
+        return shape.toString();
+    }
+
+    /**
+     * Round a length up to the next power of two, negative lengths and 0
+     * are kept.
+     */
+    static int roundUp(int length) {
+        if (length <= 1) {
+            return length;
+        }
+        int power = Integer.highestOneBit(length);
+        return power == length ? length : power << 1;
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.aetrion.flickr;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+import org.xml.sax.SAXException;
+
+import com.aetrion.flickr.auth.Auth;
+import com.aetrion.flickr.photos.BatchLookup;
+import com.aetrion.flickr.photos.BatchResult;
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.server.StandInServer;
+
+/**
+ * Tests the BatchLookup against the StandInServer. Runs without network
+ * access.
+ */
+public class BatchLookupTest extends TestCase {
+
+    private StandInServer server;
+    private CountingTransport transport;
+    private Flickr flickr;
+
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        server.addFixtures(StandInServer.DEFAULT_FIXTURES, new String[] {"flickr.photos.getInfo"});
+        server.start();
+        transport = new CountingTransport(server.createTransport());
+        flickr = new Flickr("key", "secret", transport);
+    }
+
+    public void tearDown() {
+        server.stop();
+        RequestContext.getRequestContext().setAuth(null);
+    }
+
+    public void testGetInfo() throws Exception {
+        server.setLatency(100);
+        List ids = ids(20);
+        BatchLookup lookup = new BatchLookup(flickr.getPhotosInterface());
+        lookup.setConcurrency(10);
+        long start = System.currentTimeMillis();
+        List results = lookup.getInfo(ids);
+        long elapsed = System.currentTimeMillis() - start;
+        assertEquals(20, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            BatchResult result = (BatchResult) results.get(i);
+            assertEquals(ids.get(i), result.getPhotoId());
+            assertFalse(result.isError());
+            assertTrue(result.getValue() instanceof Photo);
+        }
+        // two rounds of ten calls
+        assertTrue(elapsed >= 200);
+        assertTrue(elapsed < 1500);
+        assertEquals(10, transport.maxConcurrent);
+    }
+
+    public void testErrors() throws Exception {
+        List results = new BatchLookup(flickr.getPhotosInterface()).getSizes(ids(3));
+        assertEquals(3, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            BatchResult result = (BatchResult) results.get(i);
+            assertTrue(result.isError());
+            assertNull(result.getValue());
+            assertEquals("112", ((FlickrException) result.getException()).getErrorCode());
+        }
+        assertTrue(new BatchLookup(flickr.getPhotosInterface()).getExif(Collections.EMPTY_LIST).isEmpty());
+    }
+
+    public void testRequestContext() throws Exception {
+        Auth auth = new Auth();
+        auth.setToken("token");
+        RequestContext.getRequestContext().setAuth(auth);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            BatchLookup lookup = new BatchLookup(flickr.getPhotosInterface(), executor);
+            lookup.getPerms(ids(8));
+            assertEquals(8, transport.tokens);
+
+            // the threads of the executor are left as they were
+            RequestContext.getRequestContext().setAuth(null);
+            transport.tokens = 0;
+            lookup.getPerms(ids(8));
+            assertEquals(0, transport.tokens);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List ids(int count) {
+        List ids = new ArrayList();
+        for (int i = 0; i < count; i++) {
+            ids.add(String.valueOf(2733 + i));
+        }
+        return ids;
+    }
+
+    /**
+     * Counts concurrent calls and calls with an auth token.
+     */
+    private static class CountingTransport extends Transport {
+
+        private final Transport transport;
+        int concurrent;
+        int maxConcurrent;
+        int tokens;
+
+        CountingTransport(Transport transport) {
+            this.transport = transport;
+            setPath(transport.getPath());
+            setResponseClass(RESTResponse.class);
+        }
+
+        public Response get(String path, List parameters) throws IOException, SAXException {
+            enter(parameters);
+            try {
+                return transport.get(path, parameters);
+            } finally {
+                leave();
+            }
+        }
+
+        public byte[] getBytes(String path, List parameters) throws IOException {
+            enter(parameters);
+            try {
+                return transport.getBytes(path, parameters);
+            } finally {
+                leave();
+            }
+        }
+
+        public Response post(String path, List parameters, boolean multipart,
+          ProgressListener progressListener, boolean video) throws IOException, SAXException {
+            enter(parameters);
+            try {
+                return transport.post(path, parameters, multipart, progressListener, video);
+            } finally {
+                leave();
+            }
+        }
+
+        private synchronized void enter(List parameters) {
+            maxConcurrent = Math.max(maxConcurrent, ++concurrent);
+            for (int i = 0; i < parameters.size(); i++) {
+                if ("auth_token".equals(((Parameter) parameters.get(i)).getName())) {
+                    tokens++;
+                }
+            }
+        }
+
+        private synchronized void leave() {
+            concurrent--;
+        }
+
+    }
+
+}
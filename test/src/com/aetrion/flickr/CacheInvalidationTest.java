@@ -0,0 +1,181 @@
+package com.aetrion.flickr;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.xml.sax.SAXException;
+
+import com.aetrion.flickr.cache.CacheInvalidation;
+import com.aetrion.flickr.cache.CachePolicy;
+import com.aetrion.flickr.cache.CachingTransport;
+import com.aetrion.flickr.cache.ResponseCache;
+import com.aetrion.flickr.server.StandInServer;
+
+/**
+ * Tests the CacheInvalidation of the CachingTransport against the
+ * StandInServer. Runs without network access.
+ */
+public class CacheInvalidationTest extends TestCase {
+
+    private static final String PHOTOSET =
+        "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<rsp stat=\"ok\">\n"
+        + "<photoset id=\"72157\" primary=\"1\" owner=\"10@N01\" page=\"1\" pages=\"1\" perpage=\"500\" total=\"2\">\n"
+        + "<photo id=\"1\" secret=\"abc\" server=\"1\" farm=\"1\" title=\"One\" isprimary=\"1\" />\n"
+        + "<photo place_id=\"x\" id='2' secret=\"abc\" server=\"1\" farm=\"1\" title=\"Two\" isprimary=\"0\" />\n"
+        + "</photoset>\n</rsp>\n";
+
+    private static final String OK = "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<rsp stat=\"ok\">\n</rsp>\n";
+
+    private StandInServer server;
+    private ResponseCache cache;
+    private Flickr flickr;
+
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        server.addFixtures(StandInServer.DEFAULT_FIXTURES, new String[] {"flickr.photos.getInfo"});
+        server.addFixture("flickr.photosets.getPhotos", PHOTOSET.getBytes("UTF-8"));
+        server.addFixture("flickr.photos.setMeta", OK.getBytes("UTF-8"));
+        server.addFixture("flickr.photosets.addPhoto", OK.getBytes("UTF-8"));
+        server.addFixture("flickr.photosets.create", ("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<rsp stat=\"ok\">\n"
+            + "<photoset id=\"72159\" url=\"http://www.flickr.com/photos/x/sets/72159/\" />\n</rsp>\n").getBytes("UTF-8"));
+        server.addFixture("flickr.photosets.getList", ("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<rsp stat=\"ok\">\n"
+            + "<photosets cancreate=\"1\">\n</photosets>\n</rsp>\n").getBytes("UTF-8"));
+        server.start();
+        cache = new ResponseCache();
+        flickr = new Flickr("key", "secret",
+            new CachingTransport(server.createTransport(), new CachePolicy(), cache));
+    }
+
+    public void tearDown() {
+        server.stop();
+    }
+
+    public void testTags() throws Exception {
+        List parameters = new ArrayList();
+        parameters.add(new Parameter("method", "flickr.photosets.getPhotos"));
+        parameters.add(new Parameter("photoset_id", "72157"));
+        assertEquals(Arrays.asList(new String[] {"photoset:72157", "photo:1", "photo:2"}),
+            Arrays.asList(CacheInvalidation.getTags(parameters, PHOTOSET.getBytes("UTF-8"))));
+    }
+
+    public void testSetMeta() throws Exception {
+        flickr.getPhotosInterface().getInfo("1", null);
+        flickr.getPhotosInterface().getInfo("7", null);
+        flickr.getPhotosetsInterface().getPhotos("72157", 500, 1);
+        flickr.getPhotosetsInterface().getPhotos("72158", 500, 1);
+        assertEquals(4, cache.getSize());
+
+        // the photo and the sets containing it
+        flickr.getPhotosInterface().setMeta("1", "title", "description");
+        assertEquals(1, cache.getSize());
+        flickr.getPhotosInterface().getInfo("7", null);
+        assertEquals(1, cache.getHits());
+
+        flickr.getPhotosInterface().setMeta("8", "title", "description");
+        assertEquals(1, cache.getSize());
+    }
+
+    public void testInFlight() throws Exception {
+        final BlockingTransport transport = new BlockingTransport(server.createTransport());
+        final Flickr blocked = new Flickr("key", "secret", new CachingTransport(transport, new CachePolicy(), cache));
+        Thread reader = new Thread() {
+            public void run() {
+                try {
+                    blocked.getPhotosInterface().getInfo("1", null);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        reader.start();
+        assertTrue(transport.fetched.await(5, TimeUnit.SECONDS));
+
+        // the write doesn't wait for the fetch, later reads don't join it
+        blocked.getPhotosInterface().setMeta("1", "title", "description");
+        blocked.getPhotosInterface().getInfo("1", null);
+        assertEquals(3, server.getRequestCount());
+        assertEquals(1, cache.getSize());
+        byte[] data = ((ResponseCache.Entry) cache.getEntries().get(0)).getData();
+
+        // the fetch started before the write is not cached
+        transport.released.countDown();
+        reader.join();
+        assertEquals(1, cache.getSize());
+        assertSame(data, ((ResponseCache.Entry) cache.getEntries().get(0)).getData());
+    }
+
+    public void testPhotosets() throws Exception {
+        flickr.getPhotosInterface().getInfo("3", null);
+        flickr.getPhotosetsInterface().getPhotos("72157", 500, 1);
+        flickr.getPhotosetsInterface().getPhotos("72158", 500, 1);
+
+        flickr.getPhotosetsInterface().addPhoto("72158", "3");
+        assertEquals(2, cache.getSize());
+        flickr.getPhotosetsInterface().getPhotos("72157", 500, 1);
+        assertEquals(1, cache.getHits());
+        flickr.getPhotosetsInterface().getPhotos("72158", 500, 1);
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getSize());
+
+        // a new set may be in any list of sets
+        flickr.getPhotosetsInterface().getList("10@N01");
+        assertEquals(4, cache.getSize());
+        flickr.getPhotosetsInterface().create("title", "description", "1");
+        assertEquals(3, cache.getSize());
+
+        // errors leave the cache
+        server.setErrorRate(1);
+        try {
+            flickr.getPhotosetsInterface().addPhoto("72157", "3");
+            fail();
+        } catch (FlickrException e) {
+        }
+        assertEquals(3, cache.getSize());
+    }
+
+    /**
+     * Holds the first GET response until released.
+     */
+    private static class BlockingTransport extends Transport {
+
+        private final Transport transport;
+        final CountDownLatch fetched = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+
+        BlockingTransport(Transport transport) {
+            this.transport = transport;
+            setPath(transport.getPath());
+            setResponseClass(RESTResponse.class);
+        }
+
+        public Response get(String path, List parameters) throws IOException, SAXException {
+            return transport.get(path, parameters);
+        }
+
+        public byte[] getBytes(String path, List parameters) throws IOException {
+            byte[] data = transport.getBytes(path, parameters);
+            if (fetched.getCount() > 0) {
+                fetched.countDown();
+                try {
+                    released.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return data;
+        }
+
+        public Response post(String path, List parameters, boolean multipart,
+          ProgressListener progressListener, boolean video) throws IOException, SAXException {
+            return transport.post(path, parameters, multipart, progressListener, video);
+        }
+
+    }
+
+}
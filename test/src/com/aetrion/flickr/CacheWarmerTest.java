@@ -0,0 +1,97 @@
+package com.aetrion.flickr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import com.aetrion.flickr.blogs.Service;
+import com.aetrion.flickr.cache.CacheWarmer;
+import com.aetrion.flickr.cache.CachingTransport;
+import com.aetrion.flickr.server.StandInServer;
+
+/**
+ * Tests the CacheWarmer against the StandInServer. Runs without network
+ * access.
+ */
+public class CacheWarmerTest extends TestCase {
+
+    private static final String[][] FIXTURES = {
+        {"flickr.photos.licenses.getInfo", "<licenses><license id=\"4\" name=\"Attribution License\" url=\"\" /></licenses>"},
+        {"flickr.places.getPlaceTypes", "<place_types><place_type id=\"22\">neighbourhood</place_type></place_types>"},
+        {"flickr.reflection.getMethods", "<methods><method>flickr.test.echo</method></methods>"},
+        {"flickr.blogs.getServices", "<services><service id=\"beta.blogger.com\">Blogger</service></services>"},
+        {"flickr.commons.getInstitutions", "<institutions><institution nsid=\"1@N01\" date_launch=\"1200000000\">"
+            + "<name>Institution</name></institution></institutions>"}
+    };
+
+    private StandInServer server;
+    private File snapshot;
+
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        for (int i = 0; i < FIXTURES.length; i++) {
+            server.addFixture(FIXTURES[i][0], ("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<rsp stat=\"ok\">\n"
+                + FIXTURES[i][1] + "\n</rsp>\n").getBytes("UTF-8"));
+        }
+        server.start();
+        snapshot = File.createTempFile("reference", ".snapshot");
+        snapshot.delete();
+    }
+
+    public void tearDown() {
+        server.stop();
+        snapshot.delete();
+    }
+
+    private Flickr flickr() throws Exception {
+        return new Flickr("key", "secret", new CachingTransport(server.createTransport()));
+    }
+
+    public void testWarmUp() throws Exception {
+        Thread refresh = new CacheWarmer(flickr()).warmUp(snapshot, false);
+        refresh.join(5000);
+        assertEquals(5, server.getRequestCount());
+        assertTrue(snapshot.isFile());
+
+        // the next process starts from the snapshot
+        server.setErrorRate(1);
+        Flickr flickr = flickr();
+        CacheWarmer warmer = new CacheWarmer(flickr);
+        assertEquals(5, warmer.loadSnapshot(snapshot));
+        warmer.prime(3);
+        assertEquals(1, flickr.getLicensesInterface().getInfo().size());
+        assertEquals("Blogger", ((Service) flickr.getBlogsInterface().getServices()
+            .iterator().next()).getName());
+        assertEquals(5, server.getRequestCount());
+
+        // a failed refresh keeps the snapshot
+        assertEquals(0, warmer.refresh());
+        assertEquals(10, server.getRequestCount());
+        assertEquals(1, flickr.getPlacesInterface().getPlaceTypes().size());
+    }
+
+    public void testRefresh() throws Exception {
+        Flickr flickr = flickr();
+        CacheWarmer warmer = new CacheWarmer(flickr);
+        assertEquals(5, warmer.refresh());
+        assertEquals(5, warmer.refresh());
+        assertEquals(10, server.getRequestCount());
+        flickr.getCommonsInterface().getInstitutions();
+        assertEquals(10, server.getRequestCount());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        warmer.writeSnapshot(out);
+        assertEquals(5, new CacheWarmer(flickr()).loadSnapshot(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    public void testTransport() throws Exception {
+        try {
+            new CacheWarmer(new Flickr("key", "secret", server.createTransport()));
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+}
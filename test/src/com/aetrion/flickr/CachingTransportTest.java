@@ -0,0 +1,127 @@
+package com.aetrion.flickr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import com.aetrion.flickr.cache.CachePolicy;
+import com.aetrion.flickr.cache.CachingTransport;
+import com.aetrion.flickr.cache.ResponseCache;
+import com.aetrion.flickr.server.StandInServer;
+
+/**
+ * Tests the CachingTransport and CachePolicy against the StandInServer.
+ * Runs without network access.
+ */
+public class CachingTransportTest extends TestCase {
+
+    private static final String LICENSES =
+        "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<rsp stat=\"ok\">\n<licenses>\n"
+        + "<license id=\"0\" name=\"All Rights Reserved\" url=\"\" />\n"
+        + "<license id=\"4\" name=\"Attribution License\" url=\"http://creativecommons.org/licenses/by/2.0/\" />\n"
+        + "</licenses>\n</rsp>\n";
+
+    private StandInServer server;
+    private CachePolicy policy;
+    private ResponseCache cache;
+    private Flickr flickr;
+
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        server.addFixtures(StandInServer.DEFAULT_FIXTURES, new String[] {"flickr.photos.getInfo"});
+        server.addFixture("flickr.photos.licenses.getInfo", LICENSES.getBytes("UTF-8"));
+        server.start();
+        policy = new CachePolicy();
+        cache = new ResponseCache(2);
+        flickr = new Flickr("key", "secret", new CachingTransport(server.createTransport(), policy, cache));
+    }
+
+    public void tearDown() {
+        server.stop();
+    }
+
+    public void testForever() throws Exception {
+        assertEquals(2, flickr.getLicensesInterface().getInfo().size());
+        assertEquals(2, flickr.getLicensesInterface().getInfo().size());
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    public void testMinutes() throws Exception {
+        policy.setTtl(CachePolicy.MINUTES, 500);
+        assertNotNull(flickr.getPhotosInterface().getInfo("2733", null).getId());
+        flickr.getPhotosInterface().getInfo("2733", null);
+        assertEquals(1, server.getRequestCount());
+        Thread.sleep(600);
+        flickr.getPhotosInterface().getInfo("2733", null);
+        assertEquals(2, server.getRequestCount());
+
+        // the forever entries don't count against the maximum
+        flickr.getLicensesInterface().getInfo();
+        flickr.getPhotosInterface().getInfo("1", null);
+        flickr.getPhotosInterface().getInfo("2", null);
+        assertEquals(3, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    public void testNeverAndErrors() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("flickr.photos.getInfo", "never");
+        policy.setPolicies(properties);
+        flickr.getPhotosInterface().getInfo("2733", null);
+        flickr.getPhotosInterface().getInfo("2733", null);
+        assertEquals(2, server.getRequestCount());
+        assertEquals(0, cache.getSize());
+
+        // errors aren't cached
+        server.setErrorRate(1);
+        for (int i = 0; i < 2; i++) {
+            try {
+                flickr.getLicensesInterface().getInfo();
+                fail();
+            } catch (FlickrException e) {
+                assertEquals("105", e.getErrorCode());
+            }
+        }
+        assertEquals(4, server.getRequestCount());
+        assertEquals(0, cache.getSize());
+    }
+
+    public void testPolicy() {
+        assertEquals(CachePolicy.FOREVER, policy.getPolicy("flickr.places.getPlaceTypes"));
+        assertEquals(CachePolicy.NEVER, policy.getPolicy("flickr.photos.setMeta"));
+        assertEquals(CachePolicy.MINUTES, policy.getPolicy(parameters("flickr.interestingness.getList", null)));
+        assertEquals(CachePolicy.FOREVER, policy.getPolicy(parameters("flickr.interestingness.getList", "2009-01-01")));
+        assertEquals(CachePolicy.MINUTES, policy.getPolicy(parameters("flickr.interestingness.getList", "2999-01-01")));
+        policy.setPolicy("flickr.interestingness.getList", CachePolicy.NEVER);
+        assertEquals(CachePolicy.NEVER, policy.getPolicy(parameters("flickr.interestingness.getList", "2009-01-01")));
+        try {
+            CachePolicy.parsePolicy("weekly");
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testKey() {
+        List parameters = parameters("flickr.photos.getInfo", null);
+        parameters.add(new Parameter("api_key", "key"));
+        parameters.add(new Parameter("photo_id", "1"));
+        String key = ResponseCache.getKey("/services/rest/", parameters);
+        assertEquals("/services/rest/?method=flickr.photos.getInfo&photo_id=1", key);
+        parameters.add(new Parameter("auth_token", "token"));
+        assertFalse(key.equals(ResponseCache.getKey("/services/rest/", parameters)));
+    }
+
+    private static List parameters(String method, String date) {
+        List parameters = new ArrayList();
+        parameters.add(new Parameter("method", method));
+        if (date != null) {
+            parameters.add(new Parameter("date", date));
+        }
+        return parameters;
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.aetrion.flickr;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Element;
+
+import com.aetrion.flickr.photos.Note;
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.photos.PhotoUtils;
+import com.aetrion.flickr.tags.Tag;
+import com.aetrion.flickr.util.ElementIndex;
+import com.aetrion.flickr.util.XMLUtilities;
+
+/**
+ * Tests the ElementIndex and the child lookups of XMLUtilities. Runs
+ * without network access.
+ */
+public class ElementIndexTest extends TestCase {
+
+    private static final String PHOTO =
+        "<photo id=\"2733\" secret=\"123456\" server=\"12\" farm=\"1\" license=\"3\">\n"
+        + "\t<owner nsid=\"12037949754@N01\" username=\"Bees\" realname=\"Cal Henderson\"/>\n"
+        + "\t<title>orford_castle_taster</title>\n"
+        + "\t<description>hello!</description>\n"
+        + "\t<visibility ispublic=\"1\" isfriend=\"0\" isfamily=\"1\"/>\n"
+        + "\t<dates posted=\"1100897479\" taken=\"2004-11-19 12:51:19\" takengranularity=\"0\"/>\n"
+        + "\t<editability cancomment=\"1\" canaddmeta=\"0\"/>\n"
+        + "\t<comments>7</comments>\n"
+        + "\t<notes>\n"
+        + "\t\t<note id=\"313\" author=\"12037949754@N01\" x=\"10\" y=\"10\" w=\"50\" h=\"50\">foo</note>\n"
+        + "\t\t<note id=\"314\" author=\"12037949754@N01\" x=\"20\" y=\"20\" w=\"50\" h=\"50\">bar</note>\n"
+        + "\t</notes>\n"
+        + "\t<tags>\n"
+        + "\t\t<tag id=\"1234\" author=\"12037949754@N01\" raw=\"Woo Yay\">wooyay</tag>\n"
+        + "\t\t<tag id=\"1235\" author=\"12037949754@N01\" raw=\"hoopla\">hoopla</tag>\n"
+        + "\t</tags>\n"
+        + "\t<location latitude=\"52.1\" longitude=\"-0.4\" accuracy=\"16\">\n"
+        + "\t\t<locality place_id=\"a\">Bedford</locality>\n"
+        + "\t</location>\n"
+        + "\t<urls>\n"
+        + "\t\t<url type=\"photopage\">http://www.flickr.com/photos/bees/2733/</url>\n"
+        + "\t</urls>\n"
+        + "</photo>";
+
+    private Element photoElement;
+
+    public void setUp() throws Exception {
+        photoElement = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+            .parse(new ByteArrayInputStream(PHOTO.getBytes("UTF-8"))).getDocumentElement();
+    }
+
+    public void testIndex() {
+        ElementIndex index = new ElementIndex(photoElement);
+        assertEquals("orford_castle_taster", index.getChildValue("title"));
+        assertEquals("1", index.getChild("visibility").getAttribute("ispublic"));
+        assertEquals(1, index.getChildren("tags").size());
+        assertNull(index.getChild("missing"));
+        assertTrue(index.getChildren("missing").isEmpty());
+        // only direct children are indexed
+        assertNull(index.getChild("tag"));
+        assertNull(index.getChild("locality"));
+
+        List tags = new ElementIndex(index.getChild("tags")).getChildren("tag");
+        assertEquals(2, tags.size());
+        assertEquals("1235", ((Element) tags.get(1)).getAttribute("id"));
+
+        ElementIndex empty = new ElementIndex(index.getChild("owner"));
+        assertNull(empty.getChild("owner"));
+        assertNull(empty.getChildValue("owner"));
+    }
+
+    public void testXMLUtilities() {
+        assertNull(XMLUtilities.getChild(photoElement, "note"));
+        assertEquals("7", XMLUtilities.getChildValue(photoElement, "comments"));
+        Element notesElement = XMLUtilities.getChild(photoElement, "notes");
+        assertEquals(2, XMLUtilities.getChildren(notesElement, "note").size());
+        assertTrue(XMLUtilities.getChildren(photoElement, "note").isEmpty());
+    }
+
+    public void testCreatePhoto() {
+        Photo photo = PhotoUtils.createPhoto(photoElement);
+        assertEquals("Bees", photo.getOwner().getUsername());
+        assertEquals("orford_castle_taster", photo.getTitle());
+        assertEquals("hello!", photo.getDescription());
+        assertTrue(photo.isPublicFlag());
+        assertFalse(photo.isFriendFlag());
+        assertTrue(photo.isFamilyFlag());
+        assertNotNull(photo.getDateTaken());
+        assertTrue(photo.getEditability().isComment());
+        assertFalse(photo.getEditability().isAddmeta());
+        assertEquals(7, photo.getComments());
+        assertEquals(2, photo.getNotes().size());
+        assertEquals("bar", ((Note) ((List) photo.getNotes()).get(1)).getText());
+        assertEquals(2, photo.getTags().size());
+        assertEquals("Woo Yay", ((Tag) ((List) photo.getTags()).get(0)).getRaw());
+        assertEquals("http://www.flickr.com/photos/bees/2733/", photo.getUrl());
+        assertEquals(52.1f, photo.getGeoData().getLatitude(), 0.001f);
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.aetrion.flickr;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+import com.aetrion.flickr.util.ImageCache;
+
+/**
+ * Tests the ImageCache. Runs without network access.
+ */
+public class ImageCacheTest extends TestCase {
+
+    private File directory;
+    private int fetches;
+
+    public void setUp() throws IOException {
+        directory = File.createTempFile("flickrj", "cache");
+        directory.delete();
+        directory.mkdirs();
+        fetches = 0;
+    }
+
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+        directory.delete();
+    }
+
+    public void testHitAndMiss() throws IOException {
+        ImageCache cache = new ImageCache(directory, 1000);
+        ImageCache.Source source = createSource(100);
+        ByteBuffer buffer = cache.get("http://farm1.static.flickr.com/1/1_a_s.jpg", source);
+        assertEquals(100, buffer.remaining());
+        buffer = cache.get("http://farm1.static.flickr.com/1/1_a_s.jpg", source);
+        assertEquals(100, buffer.remaining());
+        assertEquals(1, fetches);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate(), 0.001);
+
+        // files are picked up again
+        cache = new ImageCache(directory, 1000);
+        assertTrue(cache.contains("http://farm1.static.flickr.com/1/1_a_s.jpg"));
+        assertEquals(100, cache.getTotalBytes());
+    }
+
+    public void testEviction() throws IOException {
+        ImageCache cache = new ImageCache(directory, 250);
+        ImageCache.Source source = createSource(100);
+        cache.get("url1", source);
+        cache.get("url2", source);
+        cache.get("url1", source);
+        cache.get("url3", source);
+        assertEquals(1, cache.getEvictions());
+        assertTrue(cache.contains("url1"));
+        assertFalse(cache.contains("url2"));
+        assertTrue(cache.contains("url3"));
+        assertEquals(200, cache.getTotalBytes());
+    }
+
+    public void testMapped() throws IOException {
+        ImageCache cache = new ImageCache(directory, 1 << 20);
+        ByteBuffer small = cache.get("url1", createSource(100));
+        assertFalse(small.isDirect());
+        assertTrue(small.isReadOnly());
+        assertEquals(100, cache.get("url1").remaining());
+        ByteBuffer large = cache.get("url2", createSource(100 * 1024));
+        assertTrue(large.isDirect());
+        assertTrue(large.isReadOnly());
+        assertEquals(100 * 1024, cache.get("url2").remaining());
+    }
+
+    public void testAccessOrderAfterRestart() throws IOException {
+        ImageCache cache = new ImageCache(directory, 1000);
+        ImageCache.Source source = createSource(100);
+        cache.get("url1", source);
+        cache.get("url2", source);
+        File[] files = directory.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            files[i].setLastModified(System.currentTimeMillis() - 60000);
+        }
+        cache.get("url1", source);
+
+        // the hit moved url1 behind url2
+        cache = new ImageCache(directory, 150);
+        assertTrue(cache.contains("url1"));
+        assertFalse(cache.contains("url2"));
+    }
+
+    public void testTruncated() throws IOException {
+        ImageCache cache = new ImageCache(directory, 1000);
+        try {
+            cache.get("url1", createSource(100, 60));
+            fail();
+        } catch (IOException e) {
+        }
+        assertFalse(cache.contains("url1"));
+        assertEquals(0, cache.getTotalBytes());
+        assertEquals(100, cache.get("url1", createSource(100)).remaining());
+        assertEquals(2, fetches);
+    }
+
+    public void testJoined() throws Exception {
+        final ImageCache cache = new ImageCache(directory, 1000);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ImageCache.Source source = new ImageCache.Source() {
+            public InputStream open(String url, long[] length) throws IOException {
+                fetches++;
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e.getMessage());
+                }
+                return new ByteArrayInputStream(new byte[100]);
+            }
+        };
+        Thread[] threads = new Thread[2];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        cache.get("url1", source);
+                    } catch (IOException e) {
+                        fail(e.getMessage());
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        // both requests are counted before the image arrives
+        while (cache.getMisses() < 2) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        assertEquals(1, fetches);
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    private ImageCache.Source createSource(int length) {
+        return createSource(length, length);
+    }
+
+    private ImageCache.Source createSource(final int announced, final int length) {
+        return new ImageCache.Source() {
+            public InputStream open(String url, long[] contentLength) {
+                fetches++;
+                contentLength[0] = announced;
+                return new ByteArrayInputStream(new byte[length]);
+            }
+        };
+    }
+
+}
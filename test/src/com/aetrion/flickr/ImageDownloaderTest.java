@@ -0,0 +1,196 @@
+package com.aetrion.flickr;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.aetrion.flickr.photos.DownloadResult;
+import com.aetrion.flickr.photos.ImageDownloader;
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.photos.Size;
+import com.aetrion.flickr.server.StandInServer;
+import com.aetrion.flickr.util.IOUtilities;
+
+/**
+ * Tests the ImageDownloader against the images of the StandInServer. Runs
+ * without network access.
+ */
+public class ImageDownloaderTest extends TestCase {
+
+    private static final String NAME = "2733_abc_o.jpg";
+
+    private StandInServer server;
+    private byte[] image;
+    private File directory;
+    private File target;
+    private File part;
+    private Photo photo;
+    private ImageDownloader downloader;
+
+    public void setUp() throws Exception {
+        image = new byte[100000];
+        new Random(2733).nextBytes(image);
+        server = new StandInServer();
+        server.addImage(NAME, image);
+        server.start();
+
+        directory = File.createTempFile("images", "");
+        directory.delete();
+        directory.mkdirs();
+        target = new File(directory, NAME);
+        part = new File(directory, NAME + ".part");
+
+        Size size = new Size();
+        size.setLabel(Size.ORIGINAL);
+        size.setSource(server.getImageUrl(NAME));
+        photo = new Photo();
+        photo.setId("2733");
+        photo.setSizes(Collections.singletonList(size));
+        downloader = new ImageDownloader(new Flickr("key", "secret", server.createTransport()).getPhotosInterface());
+    }
+
+    public void tearDown() {
+        server.stop();
+        File[] files = directory.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        directory.delete();
+    }
+
+    public void testDownload() throws Exception {
+        DownloadResult result = downloader.download(photo, Size.ORIGINAL, directory);
+        assertTrue(result.isSuccess());
+        assertFalse(result.isResumed());
+        assertEquals(image.length, result.getLength());
+        assertContent();
+
+        result = downloader.download(photo, Size.ORIGINAL, directory);
+        assertTrue(result.isSkipped());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    public void testResume() throws Exception {
+        writePart(40000);
+        DownloadResult result = downloader.download(photo, Size.ORIGINAL, directory);
+        assertTrue(result.isSuccess());
+        assertTrue(result.isResumed());
+        assertEquals(60000, result.getBytesTransferred());
+        assertContent();
+    }
+
+    public void testUnsatisfiableRange() throws Exception {
+        // a partial file longer than the image
+        writePart(image.length);
+        DownloadResult result = downloader.download(photo, Size.ORIGINAL, directory);
+        assertTrue(result.isSuccess());
+        assertFalse(result.isResumed());
+        assertEquals(2, server.getRequestCount());
+        assertContent();
+    }
+
+    public void testMisplacedRange() throws Exception {
+        server.setMisplacedRanges(true);
+        writePart(40000);
+        DownloadResult result = downloader.download(photo, Size.ORIGINAL, directory);
+        assertTrue(result.isSuccess());
+        assertFalse(result.isResumed());
+        assertEquals(2, server.getRequestCount());
+        assertContent();
+    }
+
+    public void testLengthMismatch() throws Exception {
+        server.setImageTruncation(1000);
+        DownloadResult result = downloader.download(photo, Size.ORIGINAL, directory);
+        assertFalse(result.isSuccess());
+        assertTrue(result.getException() instanceof IOException);
+        assertFalse(target.exists());
+        assertEquals(image.length - 1000, part.length());
+
+        server.setImageTruncation(0);
+        result = downloader.download(photo, Size.ORIGINAL, directory);
+        assertTrue(result.isSuccess());
+        assertTrue(result.isResumed());
+        assertEquals(1000, result.getBytesTransferred());
+        assertContent();
+    }
+
+    public void testSegmented() throws Exception {
+        image = new byte[300000];
+        new Random(2734).nextBytes(image);
+        server.addImage(NAME, image);
+        downloader.setSegments(4);
+        downloader.setSegmentThreshold(200000);
+        DownloadResult result = downloader.download(photo, Size.ORIGINAL, directory);
+        assertTrue(result.isSuccess());
+        assertEquals(image.length, result.getBytesTransferred());
+        // HEAD and four ranges
+        assertEquals(5, server.getRequestCount());
+        assertContent();
+
+        // ranges at the wrong offset fail, instead of overwriting other ranges
+        target.delete();
+        server.setMisplacedRanges(true);
+        result = downloader.download(photo, Size.ORIGINAL, directory);
+        assertFalse(result.isSuccess());
+        assertTrue(result.getException() instanceof IOException);
+        assertFalse(target.exists());
+        assertFalse(part.exists());
+    }
+
+    public void testBelowSegmentThreshold() throws Exception {
+        downloader.setSegments(4);
+        downloader.setSegmentThreshold(200000);
+        assertTrue(downloader.download(photo, Size.ORIGINAL, directory).isSuccess());
+        // HEAD and one request for the whole image
+        assertEquals(2, server.getRequestCount());
+        assertContent();
+    }
+
+    public void testMissingOriginalSecret() throws Exception {
+        Photo other = new Photo();
+        other.setId("2734");
+        other.setSecret("abc");
+        other.setServer("1");
+        other.setFarm("1");
+        DownloadResult result = downloader.download(other, Size.ORIGINAL, directory);
+        assertFalse(result.isSuccess());
+        assertTrue(result.getException() instanceof FlickrException);
+        assertEquals(0, server.getRequestCount());
+    }
+
+    private void writePart(int length) throws IOException {
+        FileOutputStream out = new FileOutputStream(part);
+        try {
+            out.write(image, 0, Math.min(length, image.length));
+            if (length >= image.length) {
+                out.write(new byte[10]);
+            }
+        } finally {
+            IOUtilities.close(out);
+        }
+    }
+
+    private void assertContent() throws IOException {
+        assertFalse(part.exists());
+        assertEquals(image.length, target.length());
+        byte[] data = new byte[image.length];
+        FileInputStream in = new FileInputStream(target);
+        try {
+            int read = 0;
+            while (read < data.length) {
+                read += in.read(data, read, data.length - read);
+            }
+        } finally {
+            IOUtilities.close(in);
+        }
+        assertTrue(Arrays.equals(image, data));
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.aetrion.flickr;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+
+import com.aetrion.flickr.util.ImageUtilities;
+
+/**
+ * Tests the ImageUtilities. Runs without network access.
+ */
+public class ImageUtilitiesTest extends TestCase {
+
+    private byte[] png;
+
+    public void setUp() throws IOException {
+        BufferedImage image = new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(399, 299, 0xff0000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        png = out.toByteArray();
+    }
+
+    public void testGetSubsampling() {
+        assertEquals(1, ImageUtilities.getSubsampling(400, 300, 0, 0));
+        assertEquals(1, ImageUtilities.getSubsampling(400, 300, 500, 500));
+        assertEquals(4, ImageUtilities.getSubsampling(400, 300, 100, 0));
+        assertEquals(3, ImageUtilities.getSubsampling(400, 300, 100, 100));
+    }
+
+    public void testReadImage() throws IOException {
+        BufferedImage image = ImageUtilities.readImage(new ByteArrayInputStream(png), 100, 100);
+        assertEquals(134, image.getWidth());
+        assertEquals(100, image.getHeight());
+
+        image = ImageUtilities.readImage(new ByteArrayInputStream(png), null, 0, 0, null);
+        assertEquals(400, image.getWidth());
+        assertEquals(0xff0000, image.getRGB(399, 299) & 0xffffff);
+    }
+
+    public void testReadRegion() throws IOException {
+        BufferedImage image = ImageUtilities.readImage(
+            new ByteArrayInputStream(png), new Rectangle(200, 150, 400, 400), 0, 0, null);
+        assertEquals(200, image.getWidth());
+        assertEquals(150, image.getHeight());
+        assertEquals(0xff0000, image.getRGB(199, 149) & 0xffffff);
+    }
+
+    public void testReuseDestination() throws IOException {
+        BufferedImage first = ImageUtilities.readImage(new ByteArrayInputStream(png), 100, 100);
+        BufferedImage second = ImageUtilities.readImage(
+            new ByteArrayInputStream(png), null, 100, 100, first);
+        assertSame(first, second);
+    }
+
+    public void testBufferImage() {
+        BufferedImage image = new BufferedImage(20, 10, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage buffered = new ImageUtilities().bufferImage(image);
+        assertEquals(20, buffered.getWidth());
+        assertEquals(BufferedImage.TYPE_INT_RGB, buffered.getType());
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.aetrion.flickr;
+
+import java.io.ByteArrayInputStream;
+import java.util.Iterator;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Element;
+
+import com.aetrion.flickr.people.User;
+import com.aetrion.flickr.photos.InstancePool;
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.photos.PhotoList;
+import com.aetrion.flickr.photos.PhotoUtils;
+import com.aetrion.flickr.photos.Size;
+import com.aetrion.flickr.tags.Tag;
+
+/**
+ * Tests the InstancePool. Runs without network access.
+ */
+public class InstancePoolTest extends TestCase {
+
+    private static final String RESPONSE =
+        "<photos page=\"1\" pages=\"1\" perpage=\"3\" total=\"3\">"
+        + "<photo id=\"101\" owner=\"1@N01\" ownername=\"one\" secret=\"aaa\" server=\"12\" farm=\"1\""
+        + " title=\"first\" tags=\"berlin street\"/>"
+        + "<photo id=\"102\" owner=\"1@N01\" ownername=\"one\" secret=\"bbb\" server=\"12\" farm=\"1\""
+        + " title=\"second\" tags=\"berlin\"/>"
+        + "<photo id=\"103\" owner=\"2@N01\" ownername=\"two\" secret=\"ccc\" server=\"12\" farm=\"1\""
+        + " title=\"third\" tags=\"street\"/>"
+        + "</photos>";
+
+    private Element photosElement;
+
+    public void setUp() throws Exception {
+        photosElement = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+            .parse(new ByteArrayInputStream(RESPONSE.getBytes("UTF-8"))).getDocumentElement();
+    }
+
+    public void tearDown() {
+        RequestContext.getRequestContext().setInstancePool(null);
+        InstancePool.setShared(null);
+    }
+
+    public void testWithoutPool() {
+        PhotoList photos = PhotoUtils.createPhotoList(photosElement);
+        Photo first = (Photo) photos.get(0);
+        Photo second = (Photo) photos.get(1);
+        assertEquals(first.getOwner(), second.getOwner());
+        assertNotSame(first.getOwner(), second.getOwner());
+    }
+
+    public void testRequestPool() {
+        InstancePool pool = new InstancePool();
+        RequestContext.getRequestContext().setInstancePool(pool);
+        PhotoList photos = PhotoUtils.createPhotoList(photosElement);
+        Photo first = (Photo) photos.get(0);
+        Photo second = (Photo) photos.get(1);
+        Photo third = (Photo) photos.get(2);
+        assertSame(first.getOwner(), second.getOwner());
+        assertNotSame(first.getOwner(), third.getOwner());
+        assertEquals("two", third.getOwner().getUsername());
+        assertSame(first.getTags().iterator().next(), second.getTags().iterator().next());
+        Iterator it = first.getTags().iterator();
+        it.next();
+        assertSame(it.next(), third.getTags().iterator().next());
+        // one owner and two tags reused
+        assertEquals(3, pool.getHits());
+        assertEquals(4, pool.size());
+
+        PhotoList again = PhotoUtils.createPhotoList(photosElement);
+        assertSame(first.getOwner(), ((Photo) again.get(0)).getOwner());
+    }
+
+    public void testSharedPool() {
+        InstancePool.setShared(InstancePool.createWeakPool());
+        PhotoList photos = PhotoUtils.createPhotoList(photosElement);
+        assertSame(((Photo) photos.get(0)).getOwner(), ((Photo) photos.get(1)).getOwner());
+    }
+
+    public void testDifferentAttributesNotMerged() {
+        InstancePool pool = new InstancePool();
+        User sparse = new User();
+        sparse.setId("1@N01");
+        User full = new User();
+        full.setId("1@N01");
+        full.setRealName("Real Name");
+        assertSame(sparse, pool.getUser(sparse));
+        assertSame(full, pool.getUser(full));
+        // the latest instance replaces the pooled one
+        User other = new User();
+        other.setId("1@N01");
+        other.setRealName("Real Name");
+        assertSame(full, pool.getUser(other));
+
+        Tag tag = new Tag();
+        tag.setId("1-101-1");
+        tag.setValue("berlin");
+        assertSame(tag, pool.getTag(tag));
+        Tag copy = new Tag();
+        copy.setId("1-101-1");
+        copy.setValue("berlin");
+        assertSame(copy, pool.getTag(copy));
+
+        Size size = new Size();
+        size.setSource("http://farm1.static.flickr.com/12/101_aaa_s.jpg");
+        size.setWidth(75);
+        Size larger = new Size();
+        larger.setSource(size.getSource());
+        larger.setWidth(100);
+        assertSame(size, pool.getSize(size));
+        assertSame(larger, pool.getSize(larger));
+    }
+
+    public void testWeakPoolReleases() throws Exception {
+        InstancePool pool = InstancePool.createWeakPool();
+        for (int i = 0; i < 1000; i++) {
+            User user = new User();
+            user.setId(i + "@N01");
+            pool.getUser(user);
+        }
+        for (int i = 0; i < 10 && pool.size() > 0; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertTrue(pool.size() < 1000);
+    }
+
+}
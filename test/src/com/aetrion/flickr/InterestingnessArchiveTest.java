@@ -0,0 +1,95 @@
+package com.aetrion.flickr;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import com.aetrion.flickr.interestingness.InterestingnessArchive;
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.photos.PhotoList;
+import com.aetrion.flickr.server.StandInServer;
+
+/**
+ * Tests the InterestingnessArchive against the StandInServer. Runs without
+ * network access.
+ */
+public class InterestingnessArchiveTest extends TestCase {
+
+    private static final String LIST =
+        "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<rsp stat=\"ok\">\n"
+        + "<photos page=\"1\" pages=\"2\" perpage=\"2\" total=\"4\">\n"
+        + "<photo id=\"1\" owner=\"10@N01\" secret=\"abc\" server=\"1\" farm=\"1\" title=\"One\" ispublic=\"1\" isfriend=\"0\" isfamily=\"0\" />\n"
+        + "<photo id=\"2\" owner=\"10@N01\" secret=\"abc\" server=\"1\" farm=\"1\" title=\"Two\" ispublic=\"1\" isfriend=\"0\" isfamily=\"0\" />\n"
+        + "</photos>\n</rsp>\n";
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private StandInServer server;
+    private File directory;
+    private InterestingnessArchive archive;
+
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        server.addFixture("flickr.interestingness.getList", LIST.getBytes("UTF-8"));
+        server.start();
+        directory = File.createTempFile("interestingness", "");
+        directory.delete();
+        Flickr flickr = new Flickr("key", "secret", server.createTransport());
+        archive = new InterestingnessArchive(flickr.getInterestingnessInterface(), directory);
+        archive.setPerPage(2);
+        archive.setConcurrency(3);
+    }
+
+    public void tearDown() {
+        server.stop();
+        File[] files = directory.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        directory.delete();
+    }
+
+    public void testSealedDays() throws Exception {
+        assertTrue(archive.crawl("2009-06-30", "2009-07-02").isEmpty());
+        assertEquals(6, server.getRequestCount());
+        assertEquals(Arrays.asList(new String[] {"2009-06-30", "2009-07-01", "2009-07-02"}), archive.getDays());
+        assertTrue(archive.isSealed("2009-07-01"));
+
+        PhotoList photos = archive.getDay("2009-07-01");
+        assertEquals(4, photos.size());
+        assertEquals(4, photos.getTotal());
+        assertEquals(1, photos.getPages());
+        assertEquals("Two", ((Photo) photos.get(3)).getTitle());
+        assertNull(archive.getDay("2009-07-03"));
+
+        // sealed days are never fetched again
+        assertTrue(archive.crawl("2009-06-30", "2009-07-03").isEmpty());
+        assertEquals(8, server.getRequestCount());
+    }
+
+    public void testRecentDays() throws Exception {
+        Date now = new Date();
+        assertTrue(archive.crawl(new Date(now.getTime() - DAY), new Date(now.getTime() + 3 * DAY)).isEmpty());
+        assertEquals(4, server.getRequestCount());
+        assertEquals(2, archive.getDays().size());
+        assertFalse(archive.isSealed((String) archive.getDays().get(0)));
+        assertEquals(4, archive.getDay(now).size());
+
+        archive.crawl(now, now);
+        assertEquals(6, server.getRequestCount());
+    }
+
+    public void testFailedDays() throws Exception {
+        server.setErrorRate(1);
+        assertEquals(Arrays.asList(new String[] {"2009-07-01", "2009-07-02"}),
+            archive.crawl("2009-07-01", "2009-07-02"));
+        assertTrue(archive.getDays().isEmpty());
+
+        server.setErrorRate(0);
+        assertTrue(archive.crawl("2009-07-01", "2009-07-02").isEmpty());
+        assertTrue(archive.isSealed("2009-07-02"));
+    }
+
+}
@@ -0,0 +1,209 @@
+package com.aetrion.flickr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.aetrion.flickr.people.User;
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.photosets.Photoset;
+import com.aetrion.flickr.places.Place;
+import com.aetrion.flickr.store.MetadataStore;
+import com.aetrion.flickr.tags.Tag;
+
+/**
+ * Tests the MetadataStore. Runs without network access.
+ */
+public class MetadataStoreTest extends TestCase {
+
+    private File file;
+
+    public void setUp() throws IOException {
+        file = File.createTempFile("flickrj", ".store");
+        file.delete();
+    }
+
+    public void tearDown() {
+        file.delete();
+    }
+
+    public void testPutAndGet() throws IOException {
+        MetadataStore store = MetadataStore.open(file);
+        List photos = new ArrayList();
+        photos.add(createPhoto("1", "owner1", 1000L, 5000L));
+        photos.add(createPhoto("2", "owner1", 2000L, 6000L));
+        photos.add(createPhoto("3", "owner2", 3000L, 7000L));
+        Photoset set = new Photoset();
+        set.setId("set1");
+        set.setTitle("A set");
+        set.setPhotoCount(2);
+        User user = new User();
+        user.setId("owner1");
+        user.setUsername("username");
+        Place place = new Place("placeId", "Berlin", Place.TYPE_LOCALITY);
+
+        store.newBatch()
+            .putPhotos(photos)
+            .putPhotoset(set, photos.subList(0, 2))
+            .putUser(user)
+            .putPlace(place)
+            .commit();
+
+        assertEquals(3, store.getPhotoCount());
+        Photo photo = store.getPhoto("2");
+        assertEquals("secret2", photo.getSecret());
+        assertEquals("owner1", photo.getOwner().getId());
+        assertEquals(2, photo.getTags().size());
+        assertEquals(2, store.getPhotosByOwner("owner1").size());
+        assertEquals(2, store.getPhotosInSet("set1").size());
+        assertEquals("A set", store.getPhotoset("set1").getTitle());
+        assertEquals("username", store.getUser("owner1").getUsername());
+        assertEquals("Berlin", store.getPlace("placeId").getName());
+        assertEquals(2, store.getPhotosTaken(new Date(1000L), new Date(3000L)).size());
+        assertEquals(1, store.getPhotosPosted(new Date(7000L), null).size());
+        assertNull(store.getPhoto("4"));
+        store.close();
+
+        // indexes are rebuilt on open
+        store = MetadataStore.open(file);
+        assertEquals(3, store.getPhotoCount());
+        assertEquals("secret3", store.getPhoto("3").getSecret());
+        assertEquals(2, store.getPhotosInSet("set1").size());
+        store.close();
+    }
+
+    public void testReplace() throws IOException {
+        MetadataStore store = MetadataStore.open(file);
+        store.putPhoto(createPhoto("1", "owner1", 1000L, 5000L));
+        store.putPhoto(createPhoto("1", "owner2", 1000L, 5000L));
+        assertEquals(1, store.getPhotoCount());
+        assertEquals(0, store.getPhotosByOwner("owner1").size());
+        assertEquals(1, store.getPhotosByOwner("owner2").size());
+        store.close();
+    }
+
+    public void testIncompleteBatchIsDropped() throws IOException {
+        MetadataStore store = MetadataStore.open(file);
+        store.putPhoto(createPhoto("1", "owner1", 1000L, 5000L));
+        store.putPhoto(createPhoto("2", "owner1", 1000L, 5000L));
+        store.close();
+
+        // simulate a crash while the second batch was written
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 10);
+        raf.close();
+
+        store = MetadataStore.open(file);
+        assertEquals(1, store.getPhotoCount());
+        assertNotNull(store.getPhoto("1"));
+        store.putPhoto(createPhoto("3", "owner1", 1000L, 5000L));
+        store.close();
+
+        store = MetadataStore.open(file);
+        assertEquals(2, store.getPhotoCount());
+        store.close();
+    }
+
+    public void testSegments() throws IOException {
+        // records and batches cross the boundaries of the small segments
+        MetadataStore store = MetadataStore.open(file, 1000);
+        for (int i = 0; i < 30; i++) {
+            List photos = new ArrayList();
+            for (int j = 0; j < 10; j++) {
+                photos.add(createPhoto(String.valueOf(i * 10 + j), "owner" + i, 1000L, 5000L));
+            }
+            store.putPhotos(photos);
+            assertEquals("secret" + i * 10, store.getPhoto(String.valueOf(i * 10)).getSecret());
+        }
+        assertTrue(store.getLength() > 10 * 1000);
+        assertPhotos(store, 300);
+        store.close();
+
+        store = MetadataStore.open(file, 1000);
+        assertPhotos(store, 300);
+        assertEquals(10, store.getPhotosByOwner("owner29").size());
+        store.close();
+    }
+
+    public void testCompact() throws IOException {
+        MetadataStore store = MetadataStore.open(file);
+        List photos = new ArrayList();
+        photos.add(createPhoto("1", "owner1", 1000L, 5000L));
+        photos.add(createPhoto("2", "owner1", 2000L, 6000L));
+        Photoset set = new Photoset();
+        set.setId("set1");
+        set.setTitle("A set");
+        store.newBatch().putPhotoset(set, photos).commit();
+        for (int i = 0; i < 100; i++) {
+            store.putPhoto(createPhoto("1", "owner" + i, 1000L, 5000L));
+        }
+        long length = store.getLength();
+        store.compact();
+        assertTrue(store.getLength() < length / 10);
+        assertEquals(2, store.getPhotoCount());
+        assertEquals("owner99", store.getPhoto("1").getOwner().getId());
+        assertEquals(1, store.getPhotosByOwner("owner99").size());
+        assertEquals(2, store.getPhotosInSet("set1").size());
+        assertEquals("A set", store.getPhotoset("set1").getTitle());
+        store.putPhoto(createPhoto("3", "owner1", 1000L, 5000L));
+        store.close();
+
+        store = MetadataStore.open(file);
+        assertEquals(3, store.getPhotoCount());
+        store.close();
+    }
+
+    public void testCompactOnOpen() throws IOException {
+        MetadataStore store = MetadataStore.open(file);
+        MetadataStore.Batch batch = store.newBatch();
+        for (int i = 0; i < 20000; i++) {
+            batch.putPhoto(createPhoto(String.valueOf(i % 10), "owner1", 1000L, 5000L));
+        }
+        batch.commit();
+        long length = store.getLength();
+        assertTrue(length > 1 << 20);
+        store.close();
+
+        store = MetadataStore.open(file);
+        assertTrue(store.getLength() < length / 100);
+        assertPhotos(store, 10);
+        store.close();
+    }
+
+    private void assertPhotos(MetadataStore store, int count) {
+        assertEquals(count, store.getPhotoCount());
+        for (int i = 0; i < count; i++) {
+            Photo photo = store.getPhoto(String.valueOf(i));
+            assertEquals("secret" + i, photo.getSecret());
+            assertEquals(2, photo.getTags().size());
+        }
+    }
+
+    private Photo createPhoto(String id, String ownerId, long taken, long posted) {
+        Photo photo = new Photo();
+        photo.setId(id);
+        photo.setSecret("secret" + id);
+        photo.setServer("123");
+        photo.setFarm("1");
+        User owner = new User();
+        owner.setId(ownerId);
+        photo.setOwner(owner);
+        photo.setDateTaken(new Date(taken));
+        photo.setDatePosted(new Date(posted));
+        List tags = new ArrayList();
+        Tag tag = new Tag();
+        tag.setValue("a");
+        tags.add(tag);
+        tag = new Tag();
+        tag.setValue("b");
+        tags.add(tag);
+        photo.setTags(tags);
+        return photo;
+    }
+
+}
@@ -4,7 +4,9 @@ import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import junit.framework.TestCase;
 
@@ -17,6 +19,7 @@ import com.aetrion.flickr.photos.Permissions;
 import com.aetrion.flickr.photos.Photo;
 import com.aetrion.flickr.photos.Size;
 import com.aetrion.flickr.tags.Tag;
+import com.aetrion.flickr.util.ObjectUtilities;
 /**
  *
  * @author mago
@@ -205,4 +208,69 @@ public class ObjectTest extends TestCase {
         p2.setDateTaken(cal.getTime());
         assertTrue(p1.equals(p2));
     }
+
+    /**
+     * Objects which are equal, because an optional attribute is unset on
+     * one side, have the same hash code.
+     */
+    public void testHashCode() {
+        Size s1 = new Size();
+        s1.setLabel(Size.MEDIUM);
+        s1.setWidth(500);
+        s1.setSource("http://farm1.static.flickr.com/1/1_a.jpg");
+        Size s2 = new Size();
+        s2.setLabel(Size.MEDIUM);
+        s2.setWidth(500);
+        assertFalse(s1.equals(s2));
+        s2.setSource("http://farm1.static.flickr.com/1/1_a.jpg");
+        assertTrue(s1.equals(s2));
+        assertEquals(s1.hashCode(), s2.hashCode());
+        // the same sum of label, width and height
+        s2.setLabel(Size.THUMB);
+        s2.setWidth(500 + Size.MEDIUM - Size.THUMB);
+        assertTrue(s1.hashCode() != s2.hashCode());
+
+        Tag t1 = new Tag();
+        t1.setValue("value");
+        Tag t2 = new Tag();
+        t2.setValue("value");
+        t2.setAuthor("author");
+        assertFalse(t1.equals(t2));
+        t1.setAuthor("author");
+        assertTrue(t1.equals(t2));
+        assertEquals(t1.hashCode(), t2.hashCode());
+        // tags differing only in their value spread over the hash codes
+        Set hashCodes = new HashSet();
+        for (int i = 0; i < 100; i++) {
+            Tag tag = new Tag();
+            tag.setValue("tag" + i);
+            hashCodes.add(new Integer(tag.hashCode()));
+        }
+        assertEquals(100, hashCodes.size());
+
+        Permissions perms1 = new Permissions();
+        perms1.setPublicFlag(true);
+        perms1.setId("id");
+        Permissions perms2 = new Permissions();
+        perms2.setPublicFlag(true);
+        perms2.setId("id");
+        assertTrue(perms1.equals(perms2));
+        assertEquals(perms1.hashCode(), perms2.hashCode());
+
+        Note n1 = new Note();
+        n1.setText("text");
+        Note n2 = new Note();
+        assertFalse(n1.equals(n2));
+        n2.setText("text");
+        assertTrue(n1.equals(n2));
+        assertEquals(n1.hashCode(), n2.hashCode());
+
+        GeoData g1 = new GeoData();
+        g1.setLatitude(52.5f);
+        GeoData g2 = new GeoData();
+        g2.setLatitude(52.5f);
+        assertEquals(g1.hashCode(), g2.hashCode());
+        assertEquals(Boolean.TRUE.hashCode(), ObjectUtilities.hashCode(true));
+        assertEquals(Long.valueOf(-3L).hashCode(), ObjectUtilities.hashCode(-3L));
+    }
 }
@@ -0,0 +1,116 @@
+package com.aetrion.flickr;
+
+import java.io.ByteArrayInputStream;
+import java.util.Date;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Element;
+
+import com.aetrion.flickr.photos.Extras;
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.photos.PhotoBatch;
+import com.aetrion.flickr.photos.PhotoList;
+
+/**
+ * Tests the PhotoBatch. Runs without network access.
+ */
+public class PhotoBatchTest extends TestCase {
+
+    private static final String RESPONSE =
+        "<photos page=\"1\" pages=\"10\" perpage=\"3\" total=\"30\">"
+        + "<photo id=\"101\" owner=\"1@N01\" ownername=\"one\" secret=\"aaa\" server=\"12\" farm=\"1\""
+        + " title=\"first\" license=\"4\" dateupload=\"1200000000\" latitude=\"52.5\" longitude=\"13.4\""
+        + " accuracy=\"16\" media=\"photo\"/>"
+        + "<photo id=\"102\" owner=\"2@N01\" ownername=\"two\" secret=\"bbb\" server=\"13\" farm=\"2\""
+        + " title=\"second\" license=\"4\" dateupload=\"1200086400\" latitude=\"48.1\" longitude=\"11.6\""
+        + " accuracy=\"11\" media=\"video\"/>"
+        + "<photo id=\"103\" owner=\"1@N01\" ownername=\"one\" secret=\"ccc\" server=\"12\" farm=\"1\""
+        + " title=\"third\" license=\"0\" dateupload=\"1200172800\" latitude=\"0\" longitude=\"0\""
+        + " accuracy=\"0\" media=\"photo\"/>"
+        + "</photos>";
+
+    private Element photosElement;
+
+    public void setUp() throws Exception {
+        photosElement = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+            .parse(new ByteArrayInputStream(RESPONSE.getBytes("UTF-8"))).getDocumentElement();
+    }
+
+    public void testAddPhotos() {
+        PhotoBatch batch = new PhotoBatch(PhotoBatch.ALL_COLUMNS, 1);
+        batch.addPhotos(photosElement);
+        assertEquals(3, batch.size());
+        assertEquals(30, batch.getTotal());
+        assertEquals(102, batch.getId(1));
+        assertEquals("2@N01", batch.getOwnerId(1));
+        assertEquals("two", batch.getOwnerName(1));
+        assertEquals(2, batch.getOwnerCount());
+        assertEquals("bbb", batch.getSecret(1));
+        assertEquals(13, batch.getServer(1));
+        assertEquals(2, batch.getFarm(1));
+        assertEquals(1200086400000L, batch.getDateUploaded(1));
+        assertEquals(PhotoBatch.NO_DATE, batch.getDateTaken(1));
+        assertEquals(PhotoBatch.MEDIA_VIDEO, batch.getMedia(1));
+        assertEquals(PhotoBatch.NONE, batch.getViews(1));
+    }
+
+    public void testProjection() {
+        PhotoBatch batch = new PhotoBatch(PhotoBatch.LICENSE);
+        batch.addPhotos(photosElement);
+        assertTrue(batch.hasColumn(PhotoBatch.ID));
+        assertFalse(batch.hasColumn(PhotoBatch.OWNER));
+        try {
+            batch.getOwnerId(0);
+            fail();
+        } catch (IllegalStateException e) {
+        }
+        assertEquals(PhotoBatch.getExtras(PhotoBatch.LICENSE).size(), 1);
+        assertTrue(PhotoBatch.getExtras(PhotoBatch.GEO).contains(Extras.GEO));
+    }
+
+    public void testScans() {
+        PhotoBatch batch = new PhotoBatch(PhotoBatch.ALL_COLUMNS);
+        batch.addPhotos(photosElement);
+
+        int[] licenses = batch.countByLicense();
+        assertEquals(5, licenses.length);
+        assertEquals(1, licenses[0]);
+        assertEquals(2, licenses[4]);
+
+        assertEquals(2, batch.countByOwner("1@N01"));
+        assertEquals(0, batch.countByOwner("3@N01"));
+
+        int[] days = batch.histogram(PhotoBatch.DATE_UPLOAD, new Date(1200000000000L), 86400000L, 2);
+        assertEquals(1, days[0]);
+        assertEquals(1, days[1]);
+
+        float[] bounds = batch.getBounds();
+        assertEquals(0f, bounds[0], 0.001f);
+        assertEquals(0f, bounds[1], 0.001f);
+        assertEquals(52.5f, bounds[2], 0.001f);
+        assertEquals(13.4f, bounds[3], 0.001f);
+    }
+
+    public void testPhotoListConversion() {
+        PhotoBatch batch = new PhotoBatch(PhotoBatch.ALL_COLUMNS);
+        batch.addPhotos(photosElement);
+        PhotoList photos = batch.toPhotoList();
+        assertEquals(3, photos.size());
+        Photo photo = (Photo) photos.get(0);
+        assertEquals("101", photo.getId());
+        assertEquals("one", photo.getOwner().getUsername());
+        assertEquals("4", photo.getLicense());
+        assertEquals(52.5f, photo.getGeoData().getLatitude(), 0.001f);
+        assertEquals(new Date(1200000000000L), photo.getDatePosted());
+
+        PhotoBatch copy = PhotoBatch.fromPhotos(photos, PhotoBatch.ALL_COLUMNS);
+        assertEquals(3, copy.size());
+        assertEquals(30, copy.getTotal());
+        assertEquals(photo, copy.getPhoto(0));
+        assertEquals(batch.getDateUploaded(2), copy.getDateUploaded(2));
+    }
+
+}
@@ -0,0 +1,224 @@
+package com.aetrion.flickr;
+
+import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.aetrion.flickr.contacts.OnlineStatus;
+import com.aetrion.flickr.people.User;
+import com.aetrion.flickr.photos.GeoData;
+import com.aetrion.flickr.photos.Note;
+import com.aetrion.flickr.photos.Permissions;
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.photos.PhotoCodec;
+import com.aetrion.flickr.photos.PhotoList;
+import com.aetrion.flickr.photos.PhotoUrl;
+import com.aetrion.flickr.photos.PhotoUtils;
+import com.aetrion.flickr.photos.Size;
+import com.aetrion.flickr.tags.Tag;
+
+/**
+ * Tests the PhotoCodec. Runs without network access.
+ */
+public class PhotoCodecTest extends TestCase {
+
+    public void testPhotoRoundTrip() {
+        Photo photo = createPhoto(1);
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        PhotoCodec.encode(photo, buffer);
+        buffer.flip();
+        Photo decoded = PhotoCodec.decodePhoto(buffer);
+        assertEquals(photo, decoded);
+        assertFalse(buffer.hasRemaining());
+
+        assertEquals("3c2cf5d5b1", decoded.getSecret());
+        assertEquals("Gr\u00fc\u00dfe aus K\u00f6ln", decoded.getTitle());
+        assertEquals(new Date(1200000000000L), decoded.getDatePosted());
+        assertNull(decoded.getDateAdded());
+        assertEquals(-1, decoded.getViews());
+        assertEquals(2, decoded.getTags().size());
+        assertEquals(new Rectangle(10, 20, 30, 40), ((Note) decoded.getNotes().iterator().next()).getBounds());
+        assertEquals("http://example.com/page", ((PhotoUrl) decoded.getUrls().iterator().next()).getUrl());
+        assertEquals(52.5f, decoded.getGeoData().getLatitude(), 0f);
+        assertEquals(true, decoded.getPermissions().isPublicFlag());
+        assertEquals("http://static.flickr.com/12/s.jpg", decoded.getSquareSize().getSource());
+        assertEquals(OnlineStatus.AWAY, decoded.getOwner().getOnline());
+        assertEquals("http://flickr.com/photos/12037949754@N01/2000000001", decoded.getUrl());
+    }
+
+    public void testNonNumericIds() {
+        Photo photo = new Photo();
+        photo.setId("0123");
+        photo.setServer("abc");
+        photo.setFarm("99999999999999999999");
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        PhotoCodec.encode(photo, buffer);
+        buffer.flip();
+        Photo decoded = PhotoCodec.decodePhoto(buffer);
+        assertEquals("0123", decoded.getId());
+        assertEquals("abc", decoded.getServer());
+        assertEquals("99999999999999999999", decoded.getFarm());
+    }
+
+    public void testPhotoListRoundTrip() {
+        PhotoList photos = new PhotoList();
+        photos.setPage(2);
+        photos.setPages(30);
+        photos.setPerPage(100);
+        photos.setTotal(2950);
+        for (int i = 0; i < 100; i++) {
+            photos.add(createPhoto(i));
+        }
+        ByteBuffer buffer = PhotoCodec.encode(photos);
+        PhotoList decoded = PhotoCodec.decodePhotoList(buffer);
+        assertEquals(2, decoded.getPage());
+        assertEquals(30, decoded.getPages());
+        assertEquals(100, decoded.getPerPage());
+        assertEquals(2950, decoded.getTotal());
+        assertEquals(photos, decoded);
+        // owner, tags and servers come from the dictionary after the first photo
+        ByteBuffer single = ByteBuffer.allocate(4096);
+        PhotoCodec.encode(createPhoto(0), single);
+        assertTrue(buffer.limit() < 100 * (single.position() - 40));
+    }
+
+    public void testGrowingList() {
+        PhotoList photos = new PhotoList();
+        StringBuffer description = new StringBuffer();
+        for (int i = 0; i < 1000; i++) {
+            description.append("description ");
+        }
+        for (int i = 0; i < 3; i++) {
+            Photo photo = new Photo();
+            photo.setId(String.valueOf(i + 1));
+            photo.setDescription(description.toString());
+            photos.add(photo);
+        }
+        PhotoList decoded = PhotoCodec.decodePhotoList(PhotoCodec.encode(photos));
+        assertEquals(photos, decoded);
+        // encoding doesn't allocate the unset lists
+        assertNull(PhotoUtils.getTagsIfSet((Photo) photos.get(0)));
+        assertNull(PhotoUtils.getTagsIfSet((Photo) decoded.get(0)));
+    }
+
+    public void testPartsRoundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        User user = createPhoto(1).getOwner();
+        PhotoCodec.encode(user, buffer);
+        buffer.flip();
+        User decodedUser = PhotoCodec.decodeUser(buffer);
+        assertEquals(user, decodedUser);
+        assertEquals(1234567890123L, decodedUser.getBandwidthMax());
+
+        buffer.clear();
+        Tag tag = (Tag) createPhoto(1).getTags().iterator().next();
+        PhotoCodec.encode(tag, buffer);
+        buffer.flip();
+        assertEquals(tag, PhotoCodec.decodeTag(buffer));
+
+        buffer.clear();
+        GeoData geoData = new GeoData("13.4", "-52.5", "16");
+        PhotoCodec.encode(geoData, buffer);
+        buffer.flip();
+        assertEquals(geoData, PhotoCodec.decodeGeoData(buffer));
+
+        buffer.clear();
+        Size size = createPhoto(1).getSquareSize();
+        PhotoCodec.encode(size, buffer);
+        buffer.flip();
+        assertEquals(size, PhotoCodec.decodeSize(buffer));
+    }
+
+    public void testUnknownFieldsSkipped() {
+        // version 1 tag with an added field 7 (string) and a nested group 8
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put(new byte[] {(byte) 0xF1, 2, 4});
+        buffer.put(new byte[] {(7 << 3) | 2, 2, 3, 'n', 'e', 'w'});
+        buffer.put(new byte[] {(8 << 3) | 3, (1 << 3) | 0, 5, 4});
+        // field 5, value: dictionary reference to "new"
+        buffer.put(new byte[] {(5 << 3) | 2, 3});
+        buffer.put(new byte[] {4});
+        buffer.flip();
+        Tag tag = PhotoCodec.decodeTag(buffer);
+        assertEquals("new", tag.getValue());
+        assertNull(tag.getId());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    public void testWrongType() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        PhotoCodec.encode(new Size(), buffer);
+        buffer.flip();
+        try {
+            PhotoCodec.decodeTag(buffer);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private Photo createPhoto(int i) {
+        User owner = new User();
+        owner.setId("12037949754@N01");
+        owner.setUsername("owner");
+        owner.setPro(true);
+        owner.setOnline(OnlineStatus.AWAY);
+        owner.setBandwidthMax(1234567890123L);
+        Photo photo = new Photo();
+        photo.setId(String.valueOf(2000000000L + i));
+        photo.setOwner(owner);
+        photo.setUrl("http://flickr.com/photos/" + owner.getId() + "/" + photo.getId());
+        photo.setSecret("3c2cf5d5b1");
+        photo.setServer("12");
+        photo.setFarm("1");
+        photo.setLicense("4");
+        photo.setTitle("Gr\u00fc\u00dfe aus K\u00f6ln");
+        photo.setPublicFlag(true);
+        photo.setDatePosted(new Date(1200000000000L));
+        photo.setDateTaken(new Date(-86400000L));
+        photo.setTakenGranularity("0");
+        GeoData geo = new GeoData();
+        geo.setLatitude(52.5f);
+        geo.setLongitude(13.4f);
+        geo.setAccuracy(16);
+        photo.setGeoData(geo);
+        Permissions permissions = new Permissions();
+        permissions.setId(photo.getId());
+        permissions.setPublicFlag(true);
+        permissions.setComment(3);
+        photo.setPermissions(permissions);
+        List tags = new ArrayList();
+        for (int t = 0; t < 2; t++) {
+            Tag tag = new Tag();
+            tag.setId("1-" + photo.getId() + "-" + t);
+            tag.setAuthor(owner.getId());
+            tag.setRaw("Tag " + t);
+            tag.setValue("tag" + t);
+            tags.add(tag);
+        }
+        photo.setTags(tags);
+        Note note = new Note();
+        note.setId("72157");
+        note.setBounds(new Rectangle(10, 20, 30, 40));
+        note.setText("a note");
+        photo.getNotes().add(note);
+        PhotoUrl photoUrl = new PhotoUrl();
+        photoUrl.setUrl("http://example.com/page");
+        photoUrl.setType("photopage");
+        photo.getUrls().add(photoUrl);
+        Size size = new Size();
+        size.setLabel(Size.SQUARE);
+        size.setWidth(75);
+        size.setHeight(75);
+        size.setSource("http://static.flickr.com/12/s.jpg");
+        List sizes = new ArrayList();
+        sizes.add(size);
+        photo.setSizes(sizes);
+        return photo;
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.aetrion.flickr;
+
+import junit.framework.TestCase;
+
+import com.aetrion.flickr.photos.Extras;
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.photos.PhotoList;
+import com.aetrion.flickr.photos.PhotoQuery;
+import com.aetrion.flickr.photos.PhotoQueryPlanner;
+import com.aetrion.flickr.server.StandInServer;
+
+/**
+ * Tests the PhotoQueryPlanner against the StandInServer. Runs without
+ * network access.
+ */
+public class PhotoQueryPlannerTest extends TestCase {
+
+    private static final String OWNER = "10@N01";
+
+    private StandInServer server;
+    private PhotoQueryPlanner planner;
+
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        server.addFixtures(StandInServer.DEFAULT_FIXTURES, new String[] {"flickr.photos.getInfo"});
+        server.addFixture("flickr.photos.search", list("photos", 1, new String[] {"1", "2", "3"}));
+        server.addFixture("flickr.photosets.getPhotos", list("photoset", 1, new String[] {"4", "5"}));
+        server.start();
+        planner = new PhotoQueryPlanner(new Flickr("key", "secret", server.createTransport()));
+    }
+
+    public void tearDown() {
+        server.stop();
+    }
+
+    private static byte[] list(String element, int pages, String[] ids) throws Exception {
+        StringBuffer xml = new StringBuffer("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<rsp stat=\"ok\">\n<");
+        xml.append(element).append(" id=\"72157\" owner=\"" + OWNER + "\" page=\"1\" pages=\"")
+            .append(pages).append("\" perpage=\"500\" per_page=\"500\" total=\"")
+            .append(pages * ids.length).append("\">\n");
+        for (int i = 0; i < ids.length; i++) {
+            xml.append("<photo id=\"").append(ids[i]).append("\" owner=\"" + OWNER + "\" secret=\"abc\" server=\"1\"")
+                .append(" farm=\"1\" title=\"Photo ").append(ids[i]).append("\" ispublic=\"1\" isfriend=\"0\"")
+                .append(" isfamily=\"0\" datetaken=\"2009-02-02 02:27:26\" datetakengranularity=\"0\"")
+                .append(" o_width=\"4000\" o_height=\"3000\" />\n");
+        }
+        xml.append("</").append(element).append(">\n</rsp>\n");
+        return xml.toString().getBytes("UTF-8");
+    }
+
+    public void testSearchOwner() throws Exception {
+        PhotoQuery query = new PhotoQuery()
+            .addPhotoId("3", OWNER).addPhotoId("1", OWNER)
+            .addField(Extras.DATE_TAKEN).addField(Extras.O_DIMS);
+        PhotoQueryPlanner.Plan plan = planner.plan(query);
+        assertEquals(1, plan.getSteps().size());
+        assertEquals(PhotoQueryPlanner.Step.SEARCH_OWNER, ((PhotoQueryPlanner.Step) plan.getSteps().get(0)).getType());
+        assertEquals(1, plan.getEstimatedCalls());
+
+        PhotoList photos = planner.execute(plan);
+        assertEquals(1, plan.getCalls());
+        assertEquals(1, server.getRequestCount());
+        assertEquals(2, photos.size());
+        assertEquals("3", ((Photo) photos.get(0)).getId());
+        assertEquals("1", ((Photo) photos.get(1)).getId());
+        assertEquals(4000, ((Photo) photos.get(0)).getOriginalWidth());
+        assertNotNull(((Photo) photos.get(0)).getDateTaken());
+    }
+
+    public void testGetInfo() throws Exception {
+        // a single photo or unknown owners aren't worth a list
+        PhotoQuery query = new PhotoQuery()
+            .addPhotoId("1", OWNER).addPhotoId("7").addPhotoId("8")
+            .addField(Extras.TAGS);
+        PhotoQueryPlanner.Plan plan = planner.plan(query);
+        assertEquals(1, plan.getSteps().size());
+        assertEquals(PhotoQueryPlanner.Step.GET_INFO, ((PhotoQueryPlanner.Step) plan.getSteps().get(0)).getType());
+        assertEquals(3, planner.execute(plan).size());
+        assertEquals(3, plan.getCalls());
+
+        // with getInfo for each photo anyway, the owner isn't searched
+        query = new PhotoQuery()
+            .addPhotoId("1", OWNER).addPhotoId("2", OWNER)
+            .addField(Extras.TAGS).addField(PhotoQuery.DESCRIPTION);
+        plan = planner.plan(query);
+        assertTrue(plan.isInfoNeeded());
+        assertEquals(PhotoQueryPlanner.Step.GET_INFO, ((PhotoQueryPlanner.Step) plan.getSteps().get(0)).getType());
+        assertEquals(2, plan.getEstimatedCalls());
+    }
+
+    public void testListOwnerAndPhotoset() throws Exception {
+        PhotoQuery query = new PhotoQuery()
+            .addOwner(OWNER).addPhotoset("72157").addPhotoId("2", OWNER)
+            .addField(Extras.DATE_TAKEN);
+        PhotoQueryPlanner.Plan plan = planner.plan(query);
+        assertEquals(2, plan.getSteps().size());
+        PhotoList photos = planner.execute(plan);
+        assertEquals(2, plan.getCalls());
+        assertEquals(5, photos.size());
+        // the photo ids first
+        assertEquals("2", ((Photo) photos.get(0)).getId());
+        assertEquals("1", ((Photo) photos.get(1)).getId());
+        assertEquals("5", ((Photo) photos.get(4)).getId());
+
+        // the description needs getInfo for each listed photo
+        query.addField(PhotoQuery.DESCRIPTION).addField(Extras.O_DIMS);
+        plan = planner.plan(query);
+        photos = planner.execute(plan);
+        assertEquals(2 + 5, plan.getCalls());
+        assertEquals(5, photos.size());
+        assertNotNull(((Photo) photos.get(0)).getDescription());
+        assertEquals(4000, ((Photo) photos.get(0)).getOriginalWidth());
+    }
+
+    public void testSearchStopsEarly() throws Exception {
+        server.addFixture("flickr.photos.search", list("photos", 100, new String[] {"1"}));
+        PhotoQuery query = new PhotoQuery()
+            .addPhotoId("1", OWNER).addPhotoId("2", OWNER).addPhotoId("3", OWNER)
+            .addField(Extras.DATE_TAKEN);
+        PhotoQueryPlanner.Plan plan = planner.plan(query);
+        PhotoList photos = planner.execute(plan);
+        // one page, then getInfo for the two missing photos
+        assertEquals(3, plan.getCalls());
+        assertEquals(3, photos.size());
+        assertTrue(plan.getFailures().isEmpty());
+    }
+
+    public void testDimensions() throws Exception {
+        server.addFixture("flickr.photos.search", list("photos", 200, new String[] {"1"}));
+        PhotoQuery query = new PhotoQuery().addPhotoId("9", OWNER).addField(Extras.O_DIMS);
+        PhotoQueryPlanner.Plan plan = planner.plan(query);
+        assertEquals(PhotoQueryPlanner.Step.SEARCH_OWNER, ((PhotoQueryPlanner.Step) plan.getSteps().get(0)).getType());
+        // not on the first page of many, looked up instead of listing all pages
+        assertEquals(1, planner.execute(plan).size());
+        assertEquals(2, plan.getCalls());
+
+        // with getInfo anyway, the dimensions of one photo aren't worth a list
+        query.addField(PhotoQuery.DESCRIPTION);
+        plan = planner.plan(query);
+        assertEquals(1, plan.getSteps().size());
+        assertEquals(PhotoQueryPlanner.Step.GET_INFO, ((PhotoQueryPlanner.Step) plan.getSteps().get(0)).getType());
+        assertEquals(1, plan.getEstimatedCalls());
+    }
+
+    public void testFailures() throws Exception {
+        server.setErrorRate(1);
+        PhotoQuery query = new PhotoQuery().addPhotoId("7").addField(Extras.TAGS);
+        PhotoQueryPlanner.Plan plan = planner.plan(query);
+        assertEquals(0, planner.execute(plan).size());
+        assertEquals("105", ((FlickrException) plan.getFailures().get("7")).getErrorCode());
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.aetrion.flickr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Element;
+
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.photos.PhotoCodec;
+import com.aetrion.flickr.photos.PhotoList;
+import com.aetrion.flickr.photos.PhotoUtils;
+import com.aetrion.flickr.photos.PhotoViewList;
+
+/**
+ * Tests the PhotoViewList. Runs without network access.
+ */
+public class PhotoViewListTest extends TestCase {
+
+    private static final String RESPONSE =
+        "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n"
+        + "<rsp stat=\"ok\">\n"
+        + "<photos page=\"2\" pages=\"10\" perpage=\"3\" total=\"30\">\n"
+        + "\t<photo id=\"101\" owner=\"1@N01\" ownername=\"one\" secret=\"aaa\" server=\"12\" farm=\"1\""
+        + " title=\"Tom &amp; Jerry &quot;&#228;&#x2603;&quot;\" ispublic=\"1\" isfriend=\"0\" isfamily=\"1\""
+        + " license=\"4\" dateupload=\"1200000000\" lastupdate=\"1210000000\""
+        + " datetaken=\"2008-01-10 12:34:56\" datetakengranularity=\"0\" iconserver=\"5\" iconfarm=\"1\""
+        + " latitude=\"52.5\" longitude=\"13.4\" accuracy=\"16\" tags=\"berlin street\""
+        + " media=\"photo\" media_status=\"ready\" o_width=\"1024\" o_height=\"768\""
+        + " url_sq=\"http://farm1.static.flickr.com/12/101_aaa_s.jpg\" height_sq=\"75\" width_sq=\"75\"/>\n"
+        + "\t<photo id='102' owner='2@N01' ownername='K\u00f6ln' secret='bbb' server='13' farm='2'"
+        + " title='second' ispublic='0' isfriend='1' isfamily='0' latitude='0' longitude='0'"
+        + " originalformat='png' rotation='90' />\n"
+        + "\t<photo id=\"103\" owner=\"1@N01\" secret=\"ccc\" server=\"12\" farm=\"1\" title=\"\"></photo>\n"
+        + "</photos>\n"
+        + "</rsp>\n";
+
+    private byte[] data;
+
+    public void setUp() throws Exception {
+        data = RESPONSE.getBytes("UTF-8");
+    }
+
+    public void testHeader() throws Exception {
+        PhotoViewList views = new PhotoViewList(data);
+        assertEquals(3, views.size());
+        assertEquals(2, views.getPage());
+        assertEquals(10, views.getPages());
+        assertEquals(3, views.getPerPage());
+        assertEquals(30, views.getTotal());
+    }
+
+    public void testSameAsPhotoUtils() throws Exception {
+        PhotoList photos = PhotoUtils.createPhotoList(
+            (Element) DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(data)).getDocumentElement()
+                .getElementsByTagName("photos").item(0));
+        PhotoViewList views = new PhotoViewList(data);
+        for (int i = 0; i < photos.size(); i++) {
+            assertTrue("photo " + i, Arrays.equals(
+                encode((Photo) photos.get(i)), encode(views.get(i))));
+        }
+        Photo first = views.get(0);
+        assertEquals("Tom & Jerry \"\u00e4\u2603\"", first.getTitle());
+        assertEquals("http://farm1.static.flickr.com/12/101_aaa_s.jpg", first.getSmallSquareUrl());
+        assertEquals("http://farm1.static.flickr.com/12/101_aaa_t.jpg", first.getThumbnailUrl());
+        assertEquals(2, first.getTags().size());
+        assertNotNull(first.getUrl());
+        assertEquals(((Photo) photos.get(0)).getUrl(), first.getUrl());
+        Photo second = views.get(1);
+        assertEquals("K\u00f6ln", second.getOwner().getUsername());
+        assertFalse(second.hasGeoData());
+        assertEquals(90, second.getRotation());
+        assertEquals("jpg", views.get(2).getOriginalFormat());
+    }
+
+    public void testSetterReplacesValue() throws Exception {
+        PhotoViewList views = new PhotoViewList(data);
+        Photo photo = views.get(0);
+        photo.setTitle("changed");
+        photo.setFriendFlag(true);
+        assertEquals("changed", photo.getTitle());
+        assertTrue(photo.isPublicFlag());
+        assertTrue(photo.isFriendFlag());
+        assertEquals("101", photo.getId());
+        assertEquals("Tom & Jerry \"\u00e4\u2603\"", views.getAttribute(0, "title"));
+    }
+
+    public void testEquals() throws Exception {
+        PhotoList first = new PhotoViewList(data).toPhotoList();
+        PhotoList second = new PhotoViewList(data).toPhotoList();
+        assertEquals(first, second);
+        assertEquals(first.get(0).hashCode(), second.get(0).hashCode());
+        assertFalse(first.get(0).equals(second.get(1)));
+    }
+
+    public void testSerialization() throws Exception {
+        Photo photo = new PhotoViewList(data).get(0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(photo);
+        out.close();
+        Photo copy = (Photo) new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(photo, copy);
+        assertEquals("aaa", copy.getSecret());
+    }
+
+    public void testError() throws Exception {
+        byte[] error = "<rsp stat=\"fail\"><err code=\"1\" msg=\"Photo not found\"/></rsp>".getBytes("UTF-8");
+        try {
+            new PhotoViewList(error);
+            fail("FlickrException expected");
+        } catch (FlickrException e) {
+            assertEquals("1", e.getErrorCode());
+            assertEquals("Photo not found", e.getErrorMessage());
+        }
+    }
+
+    private static byte[] encode(Photo photo) {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        PhotoCodec.encode(photo, buffer);
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+
+}
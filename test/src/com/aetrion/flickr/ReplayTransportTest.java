@@ -0,0 +1,138 @@
+package com.aetrion.flickr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.xml.sax.SAXException;
+
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.photos.PhotoList;
+import com.aetrion.flickr.photos.SearchParameters;
+import com.aetrion.flickr.replay.Recording;
+import com.aetrion.flickr.replay.RecordingTransport;
+import com.aetrion.flickr.replay.ReplayTransport;
+import com.aetrion.flickr.server.StandInServer;
+
+/**
+ * Tests the RecordingTransport and the ReplayTransport against the
+ * StandInServer. Runs without network access.
+ */
+public class ReplayTransportTest extends TestCase {
+
+    private StandInServer server;
+    private Recording recording;
+
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        server.addFixtures(StandInServer.DEFAULT_FIXTURES,
+            new String[] {"flickr.photos.search", "flickr.photos.getInfo"});
+        server.start();
+
+        RecordingTransport recorder = new RecordingTransport(server.createTransport());
+        Flickr flickr = new Flickr("key", "secret", recorder);
+        server.setLatency(100);
+        flickr.getPhotosInterface().search(new SearchParameters(), 100, 1);
+        server.setLatency(0);
+        flickr.getPhotosInterface().getInfo("2733", null);
+        List parameters = new ArrayList();
+        parameters.add(new Parameter("name", "value"));
+        flickr.getTestInterface().echo(parameters);
+        try {
+            flickr.getTestInterface().login();
+            fail();
+        } catch (FlickrException e) {
+            assertEquals("112", e.getErrorCode());
+        }
+        recording = recorder.getRecording();
+    }
+
+    public void tearDown() {
+        server.stop();
+    }
+
+    public void testRecording() throws Exception {
+        assertEquals(4, recording.size());
+        Recording.Exchange search = (Recording.Exchange) recording.getExchanges().get(0);
+        assertTrue(search.getKey().startsWith("GET /services/rest/?"));
+        assertTrue(search.getKey().indexOf("method=flickr.photos.search") > 0);
+        assertTrue(search.getKey().indexOf("api_key") < 0);
+        assertTrue(search.getNanos() >= 100000000L);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recording.write(out);
+        Recording copy = Recording.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(4, copy.size());
+        Recording.Exchange copied = (Recording.Exchange) copy.getExchanges().get(0);
+        assertEquals(search.getKey(), copied.getKey());
+        assertEquals(search.getNanos(), copied.getNanos());
+        assertEquals(search.getResponse().length, copied.getResponse().length);
+        // compressed
+        assertTrue(out.size() < search.getResponse().length);
+    }
+
+    public void testReplay() throws Exception {
+        long requests = server.getRequestCount();
+        ReplayTransport transport = new ReplayTransport(recording, false);
+        Flickr flickr = new Flickr("otherkey", "othersecret", transport);
+        PhotoList photos = flickr.getPhotosInterface().search(new SearchParameters(), 100, 1);
+        assertEquals(0, transport.getDelayedNanos());
+        assertEquals(100, photos.size());
+        Photo photo = flickr.getPhotosInterface().getInfo("2733", null);
+        assertNotNull(photo.getId());
+        // answered again
+        assertEquals(photo.getId(), flickr.getPhotosInterface().getInfo("2733", null).getId());
+
+        List parameters = new ArrayList();
+        parameters.add(new Parameter("name", "value"));
+        assertFalse(flickr.getTestInterface().echo(parameters).isEmpty());
+        try {
+            flickr.getTestInterface().login();
+            fail();
+        } catch (FlickrException e) {
+            assertEquals("112", e.getErrorCode());
+        }
+        try {
+            flickr.getPhotosInterface().getInfo("2734", null);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().indexOf("photo_id=2734") > 0);
+        }
+        assertEquals(requests, server.getRequestCount());
+    }
+
+    public void testOriginalTiming() throws Exception {
+        ReplayTransport transport = new ReplayTransport(recording, true);
+        Flickr flickr = new Flickr("key", "secret", transport);
+        flickr.getPhotosInterface().search(new SearchParameters(), 100, 1);
+        Recording.Exchange search = (Recording.Exchange) recording.getExchanges().get(0);
+        assertEquals(search.getNanos(), transport.getDelayedNanos());
+    }
+
+    public void testParsedResponses() throws Exception {
+        // a Transport implementing only get and post
+        final Transport rest = server.createTransport();
+        Transport parsing = new Transport() {
+            public Response get(String path, List parameters) throws IOException, SAXException {
+                return rest.get(path, parameters);
+            }
+
+            public Response post(String path, List parameters, boolean multipart,
+              ProgressListener progressListener, boolean video) throws IOException, SAXException {
+                return rest.post(path, parameters, multipart, progressListener, video);
+            }
+        };
+        parsing.setPath(rest.getPath());
+        parsing.setResponseClass(RESTResponse.class);
+        RecordingTransport recorder = new RecordingTransport(parsing);
+        Photo photo = new Flickr("key", "secret", recorder).getPhotosInterface().getInfo("2733", null);
+
+        Flickr flickr = new Flickr("key", "secret", new ReplayTransport(recorder.getRecording(), false));
+        assertEquals(photo.getId(), flickr.getPhotosInterface().getInfo("2733", null).getId());
+    }
+
+}
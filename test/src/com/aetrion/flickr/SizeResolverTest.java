@@ -0,0 +1,130 @@
+package com.aetrion.flickr;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.photos.PhotoList;
+import com.aetrion.flickr.photos.SearchParameters;
+import com.aetrion.flickr.photos.Size;
+import com.aetrion.flickr.photos.SizeResolver;
+import com.aetrion.flickr.server.StandInServer;
+
+/**
+ * Tests the SizeResolver against the StandInServer. Runs without network
+ * access.
+ */
+public class SizeResolverTest extends TestCase {
+
+    private static final String SIZES =
+        "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<rsp stat=\"ok\">\n"
+        + "<sizes canblog=\"1\" canprint=\"1\" candownload=\"1\">\n"
+        + "<size label=\"Square\" width=\"75\" height=\"75\" source=\"http://farm1.static.flickr.com/2/1_abc_s.jpg\" url=\"http://www.flickr.com/photos/x/1/sizes/sq/\" />\n"
+        + "<size label=\"Medium\" width=\"500\" height=\"333\" source=\"http://farm1.static.flickr.com/2/1_abc.jpg\" url=\"http://www.flickr.com/photos/x/1/sizes/m/\" />\n"
+        + "</sizes>\n</rsp>\n";
+
+    private StandInServer server;
+    private SizeResolver resolver;
+
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        server.addFixtures(StandInServer.DEFAULT_FIXTURES, new String[] {"flickr.photos.search"});
+        server.addFixture("flickr.photos.getSizes", SIZES.getBytes("UTF-8"));
+        server.start();
+        resolver = new SizeResolver(new Flickr("key", "secret", server.createTransport()).getPhotosInterface());
+    }
+
+    public void tearDown() {
+        server.stop();
+    }
+
+    public void testDerive() throws Exception {
+        Photo photo = photo(4000, 3000);
+        photo.setOriginalSecret("173d9c1724");
+        photo.setOriginalFormat("png");
+        List sizes = (List) resolver.getSizes(photo);
+        assertEquals(6, sizes.size());
+        assertSize(Size.SQUARE, 75, 75, photo.getSmallSquareUrl(), (Size) sizes.get(0));
+        assertSize(Size.THUMB, 100, 75, photo.getThumbnailUrl(), (Size) sizes.get(1));
+        assertSize(Size.SMALL, 240, 180, photo.getSmallUrl(), (Size) sizes.get(2));
+        assertSize(Size.MEDIUM, 500, 375, photo.getMediumUrl(), (Size) sizes.get(3));
+        assertSize(Size.LARGE, 1024, 768, photo.getLargeUrl(), (Size) sizes.get(4));
+        assertSize(Size.ORIGINAL, 4000, 3000, photo.getOriginalUrl(), (Size) sizes.get(5));
+        assertTrue(photo.getOriginalUrl().endsWith("_173d9c1724_o.png"));
+        assertEquals(0, server.getRequestCount());
+        assertEquals(0, resolver.getFallbackCount());
+    }
+
+    public void testSmallOriginal() throws Exception {
+        // portrait, and no originalsecret
+        List sizes = (List) resolver.getSizes(photo(300, 400));
+        assertEquals(4, sizes.size());
+        assertSize(Size.SMALL, 180, 240, null, (Size) sizes.get(2));
+        assertSize(Size.MEDIUM, 300, 400, null, (Size) sizes.get(3));
+        assertNull(resolver.getSize(photo(300, 400), Size.LARGE));
+        assertEquals(0, server.getRequestCount());
+    }
+
+    public void testExtras() throws Exception {
+        Flickr flickr = new Flickr("key", "secret", server.createTransport());
+        PhotoList photos = flickr.getPhotosInterface().search(new SearchParameters(), 10, 1);
+        Photo photo = (Photo) photos.get(0);
+        assertEquals(75, photo.getSquareSize().getWidth());
+        Size square = resolver.getSize(photo, Size.SQUARE);
+        assertSame(photo.getSquareSize(), square);
+        assertEquals(1, server.getRequestCount());
+    }
+
+    public void testFallback() throws Exception {
+        Photo photo = photo(0, 0);
+        Size medium = resolver.getSize(photo, Size.MEDIUM);
+        assertEquals(333, medium.getHeight());
+        assertEquals("http://www.flickr.com/photos/x/1/sizes/m/", medium.getUrl());
+        assertEquals(1, resolver.getFallbackCount());
+
+        // set on the photo
+        assertEquals(75, resolver.getSize(photo, Size.SQUARE).getWidth());
+        assertEquals(1, resolver.getFallbackCount());
+        assertEquals(1, server.getRequestCount());
+
+        // without a PhotosInterface only the URL is known
+        Size thumb = new SizeResolver(null).getSize(photo(0, 0), Size.THUMB);
+        assertEquals("http://farm1.static.flickr.com/2/1_abc_t.jpg", thumb.getSource());
+        assertEquals(0, thumb.getWidth());
+    }
+
+    public void testGetUrls() throws Exception {
+        Photo incomplete = new Photo();
+        incomplete.setId("2");
+        List photos = Arrays.asList(new Photo[] {photo(0, 0), incomplete, photo(800, 600)});
+        String[] urls = SizeResolver.getUrls(photos, Size.MEDIUM);
+        assertEquals(3, urls.length);
+        assertEquals(photo(0, 0).getMediumUrl(), urls[0]);
+        assertNull(urls[1]);
+        assertEquals(urls[0], urls[2]);
+        assertNull(SizeResolver.getUrls(photos, Size.ORIGINAL)[0]);
+    }
+
+    private static Photo photo(int width, int height) {
+        Photo photo = new Photo();
+        photo.setId("1");
+        photo.setFarm("1");
+        photo.setServer("2");
+        photo.setSecret("abc");
+        photo.setOriginalWidth(width);
+        photo.setOriginalHeight(height);
+        return photo;
+    }
+
+    private static void assertSize(int label, int width, int height, String source, Size size) {
+        assertEquals(label, size.getLabel());
+        assertEquals(width, size.getWidth());
+        assertEquals(height, size.getHeight());
+        if (source != null) {
+            assertEquals(source, size.getSource());
+        }
+    }
+
+}
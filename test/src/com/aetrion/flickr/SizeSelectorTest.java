@@ -0,0 +1,99 @@
+package com.aetrion.flickr;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.photos.Size;
+import com.aetrion.flickr.photos.SizeSelector;
+
+/**
+ * Tests the SizeSelector. Runs without network access.
+ */
+public class SizeSelectorTest extends TestCase {
+
+    private SizeSelector selector;
+
+    public void setUp() {
+        selector = new SizeSelector();
+    }
+
+    public void testFit() throws Exception {
+        Photo photo = photo(4000, 3000);
+        assertEquals(Size.THUMB, selector.select(photo, 100, 100).getLabel());
+        assertEquals(Size.SMALL, selector.select(photo, 200, 100).getLabel());
+        assertEquals(Size.MEDIUM, selector.select(photo, 500, 400).getLabel());
+        // 800x600 fits into 1000x600, medium would be scaled up
+        assertEquals(Size.LARGE, selector.select(photo, 1000, 600).getLabel());
+        // no originalsecret, so large is the best there is
+        assertEquals(Size.LARGE, selector.select(photo, 2000, 2000).getLabel());
+
+        photo.setOriginalSecret("173d9c1724");
+        photo.setOriginalFormat("jpg");
+        Size original = selector.select(photo, 2000, 2000);
+        assertEquals(Size.ORIGINAL, original.getLabel());
+        assertEquals(photo.getOriginalUrl(), original.getSource());
+    }
+
+    public void testCrop() {
+        Photo photo = photo(4000, 3000);
+        assertEquals(Size.SQUARE, selector.select(photo, 75, 60, true).getLabel());
+        assertEquals(Size.THUMB, selector.select(photo, 100, 60, true).getLabel());
+        // covering 240x240 needs 320x240
+        assertEquals(Size.MEDIUM, selector.select(photo, 240, 240, true).getLabel());
+        assertEquals(Size.SMALL, selector.select(photo, 240, 240).getLabel());
+    }
+
+    public void testSmallOriginal() {
+        // medium has the dimensions of the original, there is no large
+        Size size = selector.select(photo(400, 300), 1024, 768);
+        assertEquals(Size.MEDIUM, size.getLabel());
+        assertEquals(400, size.getWidth());
+    }
+
+    public void testUnknownDimensions() {
+        Photo photo = photo(0, 0);
+        Size size = selector.select(photo, 300, 200);
+        assertEquals(Size.MEDIUM, size.getLabel());
+        assertEquals(photo.getMediumUrl(), size.getSource());
+        assertEquals(Size.LARGE, selector.select(photo, 3000, 2000).getLabel());
+        assertEquals(0, selector.getBytesSaved());
+
+        // the dimensions of an url_* extra
+        Size small = new Size();
+        small.setLabel(Size.SMALL);
+        small.setSource("http://farm1.static.flickr.com/2/1_abc_m.jpg");
+        small.setWidth(240);
+        small.setHeight(160);
+        List sizes = new ArrayList();
+        sizes.add(small);
+        photo.setSizes(sizes);
+        assertSame(small, selector.select(photo, 200, 200));
+        assertNull(selector.select(new Photo(), 100, 100));
+    }
+
+    public void testBytesSaved() {
+        Photo photo = photo(4000, 3000);
+        Size medium = selector.select(photo, 500, 500);
+        assertEquals(Size.MEDIUM, medium.getLabel());
+        assertEquals(500 * 375 / 5, selector.estimateBytes(medium));
+        assertEquals(4000 * 3000 / 5 - 500 * 375 / 5, selector.getBytesSaved());
+        selector.select(photo, 500, 500);
+        assertEquals(2, selector.getSelections());
+        assertEquals(2 * (4000 * 3000 / 5 - 500 * 375 / 5), selector.getBytesSaved());
+    }
+
+    private static Photo photo(int width, int height) {
+        Photo photo = new Photo();
+        photo.setId("1");
+        photo.setFarm("1");
+        photo.setServer("2");
+        photo.setSecret("abc");
+        photo.setOriginalWidth(width);
+        photo.setOriginalHeight(height);
+        return photo;
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.aetrion.flickr;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Element;
+
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.photos.PhotoList;
+import com.aetrion.flickr.photos.SearchParameters;
+import com.aetrion.flickr.server.StandInServer;
+import com.aetrion.flickr.uploader.UploadMetaData;
+import com.aetrion.flickr.uploader.Uploader;
+
+/**
+ * Tests the StandInServer with the real transport. Runs without network
+ * access.
+ */
+public class StandInServerTest extends TestCase {
+
+    private StandInServer server;
+    private Flickr flickr;
+
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        server.addFixtures(StandInServer.DEFAULT_FIXTURES,
+            new String[] {"flickr.photos.search", "flickr.photos.getInfo"});
+        server.start();
+        flickr = new Flickr("key", "secret", server.createTransport());
+    }
+
+    public void tearDown() {
+        server.stop();
+    }
+
+    public void testFixtures() throws Exception {
+        PhotoList photos = flickr.getPhotosInterface().search(new SearchParameters(), 100, 1);
+        assertEquals(100, photos.size());
+        Photo photo = flickr.getPhotosInterface().getInfo("2733", null);
+        assertNotNull(photo.getId());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    public void testEcho() throws Exception {
+        List parameters = new ArrayList();
+        parameters.add(new Parameter("name", "K\u00f6ln & <Bonn>"));
+        Collection echoed = flickr.getTestInterface().echo(parameters);
+        boolean found = false;
+        Iterator iter = echoed.iterator();
+        while (iter.hasNext()) {
+            Element element = (Element) iter.next();
+            if ("name".equals(element.getTagName())) {
+                assertEquals("K\u00f6ln & <Bonn>", element.getFirstChild().getNodeValue());
+                found = true;
+            }
+        }
+        assertTrue(found);
+    }
+
+    public void testUnknownMethod() throws Exception {
+        try {
+            flickr.getTestInterface().login();
+            fail();
+        } catch (FlickrException e) {
+            assertEquals("112", e.getErrorCode());
+        }
+    }
+
+    public void testInjectedErrors() throws Exception {
+        server.setErrorRate(1);
+        try {
+            flickr.getPhotosInterface().getInfo("2733", null);
+            fail();
+        } catch (FlickrException e) {
+            assertEquals("105", e.getErrorCode());
+        }
+        assertEquals(1, server.getErrorCount());
+    }
+
+    public void testLatencyAndBandwidth() throws Exception {
+        server.setLatency(200);
+        long start = System.currentTimeMillis();
+        flickr.getPhotosInterface().getInfo("2733", null);
+        assertTrue(System.currentTimeMillis() - start >= 200);
+
+        // the search response is about 40 KB
+        server.setLatency(0);
+        server.setBandwidth(100000);
+        start = System.currentTimeMillis();
+        flickr.getPhotosInterface().search(new SearchParameters(), 100, 1);
+        assertTrue(System.currentTimeMillis() - start >= 200);
+    }
+
+    public void testUpload() throws Exception {
+        Uploader uploader = new Uploader("key", "secret", server.createTransport());
+        UploadMetaData metaData = new UploadMetaData();
+        metaData.setTitle("test");
+        String first = uploader.upload(new byte[200000], metaData, null);
+        String second = uploader.upload(new byte[10], metaData, null);
+        assertNotNull(first);
+        assertFalse(first.equals(second));
+        assertTrue(server.getBytesRead() > 200000);
+    }
+
+    public void testConcurrentClients() throws Exception {
+        server.setLatency(50);
+        final int clients = 200;
+        final List failures = new ArrayList();
+        Thread[] threads = new Thread[clients];
+        for (int i = 0; i < clients; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 5; j++) {
+                            flickr.getPhotosInterface().getInfo("2733", null);
+                        }
+                    } catch (Exception e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < clients; i++) {
+            threads[i].join();
+        }
+        assertEquals("" + failures, 0, failures.size());
+        assertEquals(clients * 5, server.getRequestCount());
+    }
+
+}
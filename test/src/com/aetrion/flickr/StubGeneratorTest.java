@@ -0,0 +1,184 @@
+package com.aetrion.flickr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+
+import com.aetrion.flickr.reflection.Argument;
+import com.aetrion.flickr.reflection.Method;
+import com.aetrion.flickr.reflection.MethodSnapshot;
+import com.aetrion.flickr.reflection.StubGenerator;
+import com.aetrion.flickr.request.FlickrRequest;
+import com.aetrion.flickr.request.PhotosGetInfoRequest;
+import com.aetrion.flickr.request.PhotosSetMetaRequest;
+
+/**
+ * Tests the MethodSnapshot, the StubGenerator and the generated request
+ * stubs. Runs without network access.
+ */
+public class StubGeneratorTest extends TestCase {
+
+    private static final String SNAPSHOT =
+        "<methods>\n"
+        + "<method name=\"flickr.photos.setMeta\" needslogin=\"1\" needssigning=\"1\" requiredperms=\"2\">\n"
+        + "<description>Set the meta information for a photo.</description>\n"
+        + "<response/>\n"
+        + "<explanation/>\n"
+        + "<arguments>\n"
+        + "<argument name=\"api_key\" optional=\"0\">Your API application key.</argument>\n"
+        + "<argument name=\"photo_id\" optional=\"0\">The id of the photo to set information for.</argument>\n"
+        + "<argument name=\"title\" optional=\"0\">The title for the photo. */ @return</argument>\n"
+        + "<argument name=\"is_public\" optional=\"1\">&lt;b&gt;K\u00f6ln&lt;/b&gt;</argument>\n"
+        + "</arguments>\n"
+        + "<errors>\n"
+        + "<error code=\"1\" message=\"Photo not found\">The photo id passed was not a valid photo id.</error>\n"
+        + "</errors>\n"
+        + "</method>\n"
+        + "<method name=\"flickr.test.echo\" needslogin=\"0\" needssigning=\"0\" requiredperms=\"0\">\n"
+        + "<arguments><argument name=\"api_key\" optional=\"0\"/></arguments>\n"
+        + "<errors/>\n"
+        + "</method>\n"
+        + "</methods>\n";
+
+    private List methods;
+
+    public void setUp() throws Exception {
+        methods = MethodSnapshot.read(new ByteArrayInputStream(SNAPSHOT.getBytes("UTF-8")));
+    }
+
+    public void testNames() {
+        assertEquals("PhotosGetInfoRequest", StubGenerator.getClassName("flickr.photos.getInfo"));
+        assertEquals("PhotosGeoGetLocationRequest", StubGenerator.getClassName("flickr.photos.geo.getLocation"));
+        assertEquals("photoId", StubGenerator.getFieldName("photo_id"));
+        assertEquals("minUploadDate", StubGenerator.getFieldName("min_upload_date"));
+        assertEquals("text", StubGenerator.getFieldName("text"));
+        assertEquals("publicValue", StubGenerator.getFieldName("public"));
+    }
+
+    public void testSnapshot() throws Exception {
+        assertEquals(2, methods.size());
+        Method method = (Method) methods.get(0);
+        assertEquals("flickr.photos.setMeta", method.getName());
+        assertTrue(method.needsLogin());
+        assertEquals(Method.WRITE_PERMISSION, method.getRequiredPerms());
+        assertEquals(4, method.getArguments().size());
+        assertEquals(1, method.getErrors().size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MethodSnapshot.write(methods, out);
+        List copy = MethodSnapshot.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(2, copy.size());
+        Method copied = (Method) copy.get(0);
+        assertEquals(method.getName(), copied.getName());
+        assertEquals(method.getRequiredPerms(), copied.getRequiredPerms());
+        assertEquals(method.getDescription(), copied.getDescription());
+        Argument argument = (Argument) ((List) copied.getArguments()).get(3);
+        assertEquals("is_public", argument.getName());
+        assertTrue(argument.isOptional());
+        assertEquals("<b>K\u00f6ln</b>", argument.getDescription());
+        assertEquals(0, ((Method) copy.get(1)).getErrors().size());
+    }
+
+    public void testGenerate() {
+        StringWriter source = new StringWriter();
+        StubGenerator.generate((Method) methods.get(0), "test.xml", source);
+        String java = source.toString();
+        assertTrue(java.indexOf("package com.aetrion.flickr.request;") >= 0);
+        assertTrue(java.indexOf("public final class PhotosSetMetaRequest extends FlickrRequest {") >= 0);
+        assertTrue(java.indexOf("public PhotosSetMetaRequest(String photoId, String title) {") >= 0);
+        assertTrue(java.indexOf("super(METHOD, true, true, 2, 3);") >= 0);
+        assertTrue(java.indexOf("public PhotosSetMetaRequest setIsPublic(String isPublic) {") >= 0);
+        assertTrue(java.indexOf("new Parameter(\"is_public\", isPublic)") >= 0);
+        assertTrue(java.indexOf("api_key") < 0);
+        // descriptions can't end the comment, add tags or leave ASCII
+        assertTrue(java.indexOf("*&#47; &#64;return") >= 0);
+        assertTrue(java.indexOf("K&#246;ln") >= 0);
+        assertTrue(java.indexOf("write permission") >= 0);
+
+        source = new StringWriter();
+        StubGenerator.generate((Method) methods.get(1), "test.xml", source);
+        assertTrue(source.toString().indexOf("public TestEchoRequest() {") >= 0);
+        assertTrue(source.toString().indexOf("import com.aetrion.flickr.Parameter;") < 0);
+    }
+
+    public void testGeneratedRequests() throws Exception {
+        RecordingTransport transport = new RecordingTransport();
+        FlickrRequest request = new PhotosGetInfoRequest("2733").setSecret("123456");
+        assertFalse(request.isSigned());
+        assertFalse(request.isPost());
+        Element payload = request.call(transport, "key", "secret");
+        assertEquals("photo", payload.getTagName());
+        assertFalse(transport.posted);
+        assertEquals(4, transport.parameters.size());
+        assertEquals("flickr.photos.getInfo", value(transport.parameters, "method"));
+        assertEquals("key", value(transport.parameters, "api_key"));
+        assertEquals("2733", value(transport.parameters, "photo_id"));
+        assertEquals("123456", value(transport.parameters, "secret"));
+
+        request = new PhotosSetMetaRequest("2733", "title", null);
+        assertTrue(request.isSigned());
+        assertTrue(request.isPost());
+        request.call(transport, "key", "secret");
+        assertTrue(transport.posted);
+        assertEquals("title", value(transport.parameters, "title"));
+        assertNull(value(transport.parameters, "description"));
+        assertNotNull(value(transport.parameters, "api_sig"));
+    }
+
+    private static Object value(List parameters, String name) {
+        for (int i = 0; i < parameters.size(); i++) {
+            Parameter parameter = (Parameter) parameters.get(i);
+            if (parameter.getName().equals(name)) {
+                return parameter.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remembers the last request and answers with a photo.
+     */
+    private static class RecordingTransport extends Transport {
+
+        List parameters;
+        boolean posted;
+
+        public Response get(String path, List parameters) throws IOException, SAXException {
+            this.parameters = parameters;
+            this.posted = false;
+            return respond();
+        }
+
+        public Response post(String path, List parameters, boolean multipart,
+          ProgressListener progressListener, boolean video) throws IOException, SAXException {
+            this.parameters = parameters;
+            this.posted = true;
+            return respond();
+        }
+
+        private Response respond() throws IOException, SAXException {
+            try {
+                Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                    .parse(new ByteArrayInputStream("<rsp stat=\"ok\"><photo id=\"2733\"/></rsp>".getBytes("UTF-8")));
+                RESTResponse response = new RESTResponse();
+                response.parse(document);
+                return response;
+            } catch (ParserConfigurationException e) {
+                throw new RuntimeException(e.getMessage());
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.aetrion.flickr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.aetrion.flickr.photos.SearchParameters;
+import com.aetrion.flickr.server.StandInServer;
+import com.aetrion.flickr.uploader.UploadMetaData;
+import com.aetrion.flickr.uploader.Uploader;
+import com.aetrion.flickr.workload.LoadGenerator;
+import com.aetrion.flickr.workload.Trace;
+import com.aetrion.flickr.workload.TraceWriter;
+import com.aetrion.flickr.workload.TracingTransport;
+
+/**
+ * Tests the TracingTransport and the LoadGenerator against the
+ * StandInServer. Runs without network access.
+ */
+public class WorkloadTest extends TestCase {
+
+    private StandInServer server;
+
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        server.addFixtures(StandInServer.DEFAULT_FIXTURES,
+            new String[] {"flickr.photos.search", "flickr.photos.getInfo"});
+        server.start();
+    }
+
+    public void tearDown() {
+        server.stop();
+    }
+
+    public void testCaptureAndReplay() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TraceWriter writer = new TraceWriter(out);
+        Flickr flickr = new Flickr("key", "secret", new TracingTransport(server.createTransport(), writer));
+        SearchParameters parameters = new SearchParameters();
+        parameters.setText("bridge");
+        flickr.getPhotosInterface().search(parameters, 100, 1);
+        for (int i = 0; i < 3; i++) {
+            flickr.getPhotosInterface().getInfo("2733", null);
+        }
+        try {
+            flickr.getTestInterface().login();
+            fail();
+        } catch (FlickrException e) {
+            assertEquals("112", e.getErrorCode());
+        }
+        Uploader uploader = new Uploader("key", "secret", new TracingTransport(server.createTransport(), writer));
+        uploader.upload(new byte[1000], new UploadMetaData(), null);
+        writer.close();
+
+        List calls = Trace.read(new ByteArrayInputStream(out.toByteArray())).getCalls();
+        assertEquals(6, calls.size());
+        Trace.Call search = (Trace.Call) calls.get(0);
+        assertEquals("flickr.photos.search", search.getMethod());
+        assertEquals("/services/rest/", search.getPath());
+        assertEquals("api_sig:32,page:1,per_page:4,text:8", search.getShape());
+        assertFalse(search.isPost());
+        assertEquals(Trace.STATUS_OK, search.getStatus());
+        assertTrue(search.getResponseSize() > 10000);
+        assertTrue(search.getLatencyMicros() > 0);
+        Trace.Call getInfo = (Trace.Call) calls.get(3);
+        assertTrue(getInfo.getOffsetMicros() >= search.getOffsetMicros());
+        Trace.Call login = (Trace.Call) calls.get(4);
+        assertEquals(Trace.STATUS_ERROR, login.getStatus());
+        assertTrue(login.isPost());
+        assertEquals(-1, login.getResponseSize());
+        Trace.Call upload = (Trace.Call) calls.get(5);
+        assertEquals("/services/upload/", upload.getPath());
+        assertEquals("", upload.getMethod());
+        assertTrue(upload.isMultipart());
+        assertTrue(upload.getShape().indexOf("photo:1024") >= 0);
+
+        long requests = server.getRequestCount();
+        server.setLatency(20);
+        LoadGenerator generator = new LoadGenerator(server.createTransport(), "key");
+        generator.setSpeed(10);
+        LoadGenerator.Result result = generator.run(Trace.read(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals(6, result.getCalls());
+        assertEquals(1, result.getErrors());
+        assertEquals(0, result.getFailures());
+        assertTrue(result.getPercentile(50) >= 20000);
+        assertEquals(requests + 6, server.getRequestCount());
+        assertTrue(server.getBytesRead() > 1000);
+    }
+
+    public void testWriteFailures() throws Exception {
+        TraceWriter writer = new TraceWriter(new ByteArrayOutputStream()) {
+            public void write(Trace.Call call) throws IOException {
+                throw new IOException("Too many different strings in the trace");
+            }
+        };
+        TracingTransport tracer = new TracingTransport(server.createTransport(), writer);
+        Flickr flickr = new Flickr("key", "secret", tracer);
+        assertNotNull(flickr.getPhotosInterface().getInfo("2733", null).getId());
+        try {
+            flickr.getTestInterface().login();
+            fail();
+        } catch (FlickrException e) {
+            assertEquals("112", e.getErrorCode());
+        }
+        assertEquals(2, tracer.getWriteFailures());
+    }
+
+    public void testOpenLoop() throws Exception {
+        List calls = new ArrayList();
+        for (int i = 0; i < 10; i++) {
+            calls.add(new Trace.Call("/services/rest/", "flickr.photos.getInfo", "photo_id:4",
+                false, false, Trace.STATUS_OK, i * 1000, 1000, 1000));
+        }
+        server.setLatency(50);
+        LoadGenerator generator = new LoadGenerator(server.createTransport(), "key");
+        generator.setThreads(1);
+        LoadGenerator.Result result = generator.run(new Trace(calls));
+        assertEquals(10, result.getCalls());
+        // the last call waited for the nine before it
+        assertTrue(result.getPercentile(100) >= 450000);
+        assertTrue(result.getPercentile(0) < 100000);
+        assertTrue(result.toString().indexOf("p99") > 0);
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.aetrion.flickr.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+
+import com.aetrion.flickr.photos.PhotoCodec;
+import com.aetrion.flickr.photos.PhotoList;
+import com.aetrion.flickr.photos.PhotoUtils;
+
+/**
+ * Compares the PhotoCodec with Java serialization on a page of 500
+ * search results with the usual extras.<p>
+ *
+ * Run with <code>java com.aetrion.flickr.benchmark.CodecBenchmark</code>.
+ * Prints the encoded size and microseconds per page.
+ */
+public class CodecBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int ITERATIONS = 200;
+
+    /** Keeps the results alive, so the JIT can't drop the loops. */
+    static int sink;
+
+    public static void main(String[] args) throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+            .parse(new ByteArrayInputStream(FootprintBenchmark.createPage(0)));
+        PhotoList photos = PhotoUtils.createPhotoList(document.getDocumentElement());
+
+        byte[] serialized = serialize(photos);
+        ByteBuffer encoded = PhotoCodec.encode(photos);
+        System.out.println("photos:             " + photos.size());
+        System.out.println("serialized size:    " + serialized.length + " bytes");
+        System.out.println("codec size:         " + encoded.limit() + " bytes");
+        if (!photos.equals(PhotoCodec.decodePhotoList(encoded.duplicate()))) {
+            throw new IllegalStateException("Round trip failed");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(encoded.limit() * 2);
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean warmup = round < ROUNDS - 1;
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink += serialize(photos).length;
+            }
+            report(warmup, "serialize:          ", start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized));
+                sink += ((PhotoList) in.readObject()).size();
+            }
+            report(warmup, "deserialize:        ", start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                buffer.clear();
+                PhotoCodec.encode(photos, buffer);
+                sink += buffer.position();
+            }
+            report(warmup, "codec encode:       ", start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink += PhotoCodec.decodePhotoList(encoded.duplicate()).size();
+            }
+            report(warmup, "codec decode:       ", start);
+        }
+    }
+
+    private static void report(boolean warmup, String name, long start) {
+        if (!warmup) {
+            long micros = (System.nanoTime() - start) / (ITERATIONS * 1000L);
+            System.out.println(name + micros + " us/page");
+        }
+    }
+
+    private static byte[] serialize(Object o) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(o);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+}
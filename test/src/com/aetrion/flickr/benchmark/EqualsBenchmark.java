@@ -0,0 +1,159 @@
+package com.aetrion.flickr.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.aetrion.flickr.people.User;
+import com.aetrion.flickr.photos.GeoData;
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.tags.Tag;
+import com.aetrion.flickr.util.StringUtilities;
+
+/**
+ * Measures Photo.equals() and Photo.hashCode() against the former
+ * reflection-based comparison of all getters.<p>
+ *
+ * Run with <code>java com.aetrion.flickr.benchmark.EqualsBenchmark</code>
+ * and the API classes on the classpath. Prints nanoseconds per operation.
+ */
+public class EqualsBenchmark {
+
+    private static final int PHOTOS = 1000;
+    private static final int ROUNDS = 5;
+
+    /** Keeps the results alive, so the JIT can't drop the loops. */
+    static int sink;
+
+    public static void main(String[] args) throws Exception {
+        Photo[] photos = createPhotos();
+        Photo[] copies = createPhotos();
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean warmup = round < ROUNDS - 1;
+            report(warmup, "Photo.equals()", runEquals(photos, copies, 200));
+            report(warmup, "Photo.hashCode()", runHashCode(photos, 200));
+            report(warmup, "HashSet.add()", runHashSet(photos, 200));
+            report(warmup, "reflective equals", runReflectiveEquals(photos, copies, 5));
+        }
+    }
+
+    private static void report(boolean warmup, String name, double nanos) {
+        if (!warmup) {
+            System.out.println(name + ": " + Math.round(nanos) + " ns/op");
+        }
+    }
+
+    static double runEquals(Photo[] photos, Photo[] copies, int iterations) {
+        long start = System.nanoTime();
+        for (int n = 0; n < iterations; n++) {
+            for (int i = 0; i < photos.length; i++) {
+                if (photos[i].equals(copies[i])) {
+                    sink++;
+                }
+            }
+        }
+        return (double) (System.nanoTime() - start) / (iterations * photos.length);
+    }
+
+    static double runHashCode(Photo[] photos, int iterations) {
+        long start = System.nanoTime();
+        for (int n = 0; n < iterations; n++) {
+            for (int i = 0; i < photos.length; i++) {
+                sink += photos[i].hashCode();
+            }
+        }
+        return (double) (System.nanoTime() - start) / (iterations * photos.length);
+    }
+
+    static double runHashSet(Photo[] photos, int iterations) {
+        long start = System.nanoTime();
+        for (int n = 0; n < iterations; n++) {
+            Set set = new HashSet();
+            for (int i = 0; i < photos.length; i++) {
+                set.add(photos[i]);
+            }
+            sink += set.size();
+        }
+        return (double) (System.nanoTime() - start) / (iterations * photos.length);
+    }
+
+    static double runReflectiveEquals(Photo[] photos, Photo[] copies, int iterations)
+      throws Exception {
+        long start = System.nanoTime();
+        for (int n = 0; n < iterations; n++) {
+            for (int i = 0; i < photos.length; i++) {
+                if (reflectiveEquals(photos[i], copies[i])) {
+                    sink++;
+                }
+            }
+        }
+        return (double) (System.nanoTime() - start) / (iterations * photos.length);
+    }
+
+    /**
+     * The lookup and invocation of the getters, as done by the former
+     * implementation.
+     */
+    static boolean reflectiveEquals(Object o1, Object o2) throws Exception {
+        Method[] method = o1.getClass().getMethods();
+        for (int i = 0; i < method.length; i++) {
+            String name = method[i].getName();
+            if (StringUtilities.getterPattern.matcher(name).find()
+                && !name.equals("getClass")
+                && method[i].getParameterTypes().length == 0) {
+                Object res;
+                Object resTest;
+                try {
+                    res = method[i].invoke(o1, (Object[]) null);
+                    resTest = method[i].invoke(o2, (Object[]) null);
+                } catch (Exception e) {
+                    continue;
+                }
+                if (res == null ? resTest != null : !res.equals(resTest)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    static Photo[] createPhotos() {
+        Photo[] photos = new Photo[PHOTOS];
+        User owner = new User();
+        owner.setId("12037949754@N01");
+        owner.setUsername("owner");
+        for (int i = 0; i < photos.length; i++) {
+            Photo photo = new Photo();
+            photo.setId(String.valueOf(2000000000L + i));
+            photo.setSecret("3c2cf5d5b1");
+            photo.setServer("2345");
+            photo.setFarm("3");
+            photo.setTitle("Photo number " + i);
+            photo.setDescription("A description of photo " + i);
+            photo.setOwner(owner);
+            photo.setPublicFlag(true);
+            photo.setViews(i);
+            photo.setDateTaken(new Date(1200000000000L + i * 1000L));
+            photo.setDatePosted(new Date(1200000000000L + i * 2000L));
+            GeoData geo = new GeoData();
+            geo.setLatitude(52.5f);
+            geo.setLongitude(13.4f);
+            geo.setAccuracy(16);
+            photo.setGeoData(geo);
+            List tags = new ArrayList();
+            for (int t = 0; t < 5; t++) {
+                Tag tag = new Tag();
+                tag.setValue("tag" + t);
+                tag.setRaw("Tag " + t);
+                tags.add(tag);
+            }
+            photo.setTags(tags);
+            photos[i] = photo;
+        }
+        return photos;
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.aetrion.flickr.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+
+import com.aetrion.flickr.RequestContext;
+import com.aetrion.flickr.photos.InstancePool;
+import com.aetrion.flickr.photos.PhotoList;
+import com.aetrion.flickr.photos.PhotoUtils;
+
+/**
+ * Measures the heap held by parsed photos.<p>
+ *
+ * Parses search result pages with the usual extras until the requested
+ * number of photos is reached (1,000,000 by default) and prints the
+ * retained bytes per photo. Every page has distinct ids, secrets and
+ * titles, so no strings are shared by accident. Owners and tags repeat
+ * across pages, like in a feed.<p>
+ *
+ * The second argument selects the {@link InstancePool}: <code>none</code>
+ * (default), <code>request</code> for a new pool per page, or
+ * <code>shared</code> for one weak pool for all pages.<p>
+ *
+ * Run with <code>java -Xmx2g com.aetrion.flickr.benchmark.FootprintBenchmark [photos] [pool]</code>.
+ */
+public class FootprintBenchmark {
+
+    private static final int PER_PAGE = 500;
+
+    private static final String[] LICENSES = {"0", "1", "2", "4", "5"};
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        String pool = args.length > 1 ? args[1] : "none";
+        int pages = (count + PER_PAGE - 1) / PER_PAGE;
+        if (pool.equals("shared")) {
+            InstancePool.setShared(InstancePool.createWeakPool());
+        }
+        DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+
+        long before = usedMemory();
+        long start = System.currentTimeMillis();
+        List lists = new ArrayList(pages);
+        int photos = 0;
+        for (int page = 0; page < pages; page++) {
+            Document document = builder.parse(new ByteArrayInputStream(createPage(page)));
+            if (pool.equals("request")) {
+                RequestContext.getRequestContext().setInstancePool(new InstancePool());
+            }
+            PhotoList list = PhotoUtils.createPhotoList(document.getDocumentElement());
+            photos += list.size();
+            lists.add(list);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        long after = usedMemory();
+
+        System.out.println("pool:            " + pool);
+        System.out.println("photos:          " + photos);
+        System.out.println("parse time:      " + elapsed + " ms");
+        System.out.println("retained heap:   " + (after - before) / (1024 * 1024) + " MB");
+        System.out.println("bytes per photo: " + (after - before) / photos);
+        // keep the lists reachable until after the measurement
+        System.out.println("pages:           " + lists.size());
+    }
+
+    /**
+     * A flickr.photos.search page with the extras license, date_upload,
+     * date_taken, owner_name, icon_server, original_format, last_update,
+     * geo, tags, media and url_sq.
+     */
+    static byte[] createPage(int page) throws Exception {
+        StringBuffer xml = new StringBuffer(PER_PAGE * 600);
+        xml.append("<photos page=\"").append(page + 1)
+            .append("\" pages=\"2000\" perpage=\"").append(PER_PAGE)
+            .append("\" total=\"1000000\">");
+        for (int i = 0; i < PER_PAGE; i++) {
+            long id = 3000000000L + (long) page * PER_PAGE + i;
+            int owner = (page * 7 + i) % 5000;
+            String secret = Long.toHexString(id * 2654435761L).substring(0, 10);
+            String server = String.valueOf(2000 + (int) (id % 1500));
+            String farm = String.valueOf(1 + (int) (id % 4));
+            xml.append("<photo id=\"").append(id)
+                .append("\" owner=\"").append(owner).append("@N0").append(owner % 8)
+                .append("\" secret=\"").append(secret)
+                .append("\" server=\"").append(server)
+                .append("\" farm=\"").append(farm)
+                .append("\" title=\"Photo ").append(id)
+                .append("\" ispublic=\"1\" isfriend=\"0\" isfamily=\"0\" license=\"")
+                .append(LICENSES[i % LICENSES.length])
+                .append("\" dateupload=\"").append(1200000000L + id % 100000000L)
+                .append("\" lastupdate=\"").append(1210000000L + id % 100000000L)
+                .append("\" datetaken=\"2008-0").append(1 + i % 9).append("-1")
+                .append(i % 10).append(" 12:34:56\" datetakengranularity=\"0\" ownername=\"user")
+                .append(owner).append("\" iconserver=\"").append(owner % 100)
+                .append("\" iconfarm=\"1\" originalformat=\"jpg\" latitude=\"52.5")
+                .append(i % 100).append("\" longitude=\"13.4").append(i % 100)
+                .append("\" accuracy=\"16\" tags=\"berlin street tag").append(i % 50)
+                .append("\" media=\"photo\" media_status=\"ready\" url_sq=\"http://farm")
+                .append(farm).append(".static.flickr.com/").append(server).append("/")
+                .append(id).append("_").append(secret)
+                .append("_s.jpg\" height_sq=\"75\" width_sq=\"75\"/>");
+        }
+        xml.append("</photos>");
+        return xml.toString().getBytes("UTF-8");
+    }
+
+    private static long usedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,322 @@
+package com.aetrion.flickr.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Element;
+
+import com.aetrion.flickr.Flickr;
+import com.aetrion.flickr.Parameter;
+import com.aetrion.flickr.RESTResponse;
+import com.aetrion.flickr.auth.AuthUtilities;
+import com.aetrion.flickr.photos.Extras;
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.photos.PhotoList;
+import com.aetrion.flickr.photos.PhotoUtils;
+import com.aetrion.flickr.photos.SearchParameters;
+import com.aetrion.flickr.replay.Recording;
+import com.aetrion.flickr.replay.RecordingTransport;
+import com.aetrion.flickr.replay.ReplayTransport;
+import com.aetrion.flickr.server.StandInServer;
+import com.aetrion.flickr.util.IOUtilities;
+import com.aetrion.flickr.util.UrlUtilities;
+
+/**
+ * Measures the hot paths of a client on recorded responses: parsing
+ * responses like REST does, PhotoUtils, the request signature, the request
+ * URL, the search parameters, Photo.equals() and hashCode() and whole
+ * interface calls answered by a {@link ReplayTransport}.<p>
+ *
+ * Each operation is warmed up and then run for several measurement
+ * iterations of fixed time. The median throughput is printed in
+ * operations per second, with the bytes allocated per operation and the
+ * allocation rate, where the JVM can count allocations per thread.<p>
+ *
+ * Run with <code>ant benchmark</code> in the test directory, or with
+ * <code>java com.aetrion.flickr.benchmark.HotPathBenchmark [name...]</code>
+ * to run only the operations whose names contain one of the arguments.
+ * The system properties <code>benchmark.time</code> (milliseconds per
+ * iteration, default 1000) and <code>benchmark.iterations</code>
+ * (default 5) control the run length.
+ */
+public class HotPathBenchmark {
+
+    private static final String FIXTURES = "/com/aetrion/flickr/benchmark/fixtures/";
+
+    /** Keeps the results alive, so the JIT can't drop the loops. */
+    static int sink;
+
+    /**
+     * One measured operation.
+     */
+    abstract static class Operation {
+
+        final String name;
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return Anything depending on the result
+         */
+        abstract int run() throws Exception;
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        long time = Long.getLong("benchmark.time", 1000).longValue();
+        int iterations = Integer.getInteger("benchmark.iterations", 5).intValue();
+
+        List operations = createOperations();
+        System.out.println(pad("operation", 36) + pad("ops/s", 14) + pad("bytes/op", 12) + "alloc MB/s");
+        for (int i = 0; i < operations.size(); i++) {
+            Operation operation = (Operation) operations.get(i);
+            if (matches(operation.name, args)) {
+                measure(operation, time, iterations);
+            }
+        }
+    }
+
+    private static boolean matches(String name, String[] filters) {
+        if (filters.length == 0) {
+            return true;
+        }
+        for (int i = 0; i < filters.length; i++) {
+            if (name.indexOf(filters[i]) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static List createOperations() throws Exception {
+        final byte[] searchResponse = readFixture("photos.search.xml");
+        final byte[] infoResponse = readFixture("photos.getInfo.xml");
+        final DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        final Element photosElement = parse(builder, searchResponse).getPayload();
+        final Element photoElement = parse(builder, infoResponse).getPayload();
+        final PhotoList photos = PhotoUtils.createPhotoList(photosElement);
+        final PhotoList copies = PhotoUtils.createPhotoList(photosElement);
+
+        final SearchParameters searchParameters = new SearchParameters();
+        searchParameters.setTags(new String[] {"berlin", "spree", "bridge"});
+        searchParameters.setTagMode("all");
+        searchParameters.setMinTakenDate(new Date(1230768000000L));
+        searchParameters.setMaxTakenDate(new Date(1262304000000L));
+        searchParameters.setBBox("13.0", "52.3", "13.8", "52.7");
+        searchParameters.setAccuracy(11);
+        searchParameters.setSort(SearchParameters.INTERESTINGNESS_DESC);
+        searchParameters.setExtras(Extras.ALL_EXTRAS);
+
+        final List requestParameters = new ArrayList();
+        requestParameters.add(new Parameter("method", "flickr.photos.search"));
+        requestParameters.add(new Parameter("api_key", "2a4d1b9f6c3e8a7d5b0c9e1f2a3b4c5d"));
+        requestParameters.addAll(searchParameters.getAsParameters());
+        requestParameters.add(new Parameter("per_page", 100));
+        requestParameters.add(new Parameter("page", 1));
+
+        final Flickr replay = new Flickr("key", "secret", new ReplayTransport(record(), false));
+
+        List operations = new ArrayList();
+        operations.add(new Operation("REST parse search") {
+            int run() throws Exception {
+                return parse(builder, searchResponse).getPayload().getChildNodes().getLength();
+            }
+        });
+        operations.add(new Operation("REST parse getInfo") {
+            int run() throws Exception {
+                return parse(builder, infoResponse).getPayload().getChildNodes().getLength();
+            }
+        });
+        operations.add(new Operation("PhotoUtils.createPhoto") {
+            int run() {
+                return PhotoUtils.createPhoto(photoElement).getTags().size();
+            }
+        });
+        operations.add(new Operation("PhotoUtils.createPhotoList") {
+            int run() {
+                return PhotoUtils.createPhotoList(photosElement).size();
+            }
+        });
+        operations.add(new Operation("AuthUtilities.getSignature") {
+            int run() {
+                // getSignature() sorts the list and may add the token
+                return AuthUtilities.getSignature("8e2c7a1f5d3b9e06", new ArrayList(requestParameters)).length();
+            }
+        });
+        operations.add(new Operation("UrlUtilities.buildUrl") {
+            int run() throws Exception {
+                return UrlUtilities.buildUrl("api.flickr.com", 0, "/services/rest/", requestParameters)
+                    .getFile().length();
+            }
+        });
+        operations.add(new Operation("SearchParameters.getAsParameters") {
+            int run() {
+                return searchParameters.getAsParameters().size();
+            }
+        });
+        operations.add(new Operation("Photo.equals x100") {
+            int run() {
+                int equal = 0;
+                for (int i = 0; i < photos.size(); i++) {
+                    if (photos.get(i).equals(copies.get(i))) {
+                        equal++;
+                    }
+                }
+                return equal;
+            }
+        });
+        operations.add(new Operation("Photo.hashCode x100") {
+            int run() {
+                int hash = 0;
+                for (int i = 0; i < photos.size(); i++) {
+                    hash += ((Photo) photos.get(i)).hashCode();
+                }
+                return hash;
+            }
+        });
+        operations.add(new Operation("PhotosInterface.search replayed") {
+            int run() throws Exception {
+                return replay.getPhotosInterface().search(new SearchParameters(), 100, 1).size();
+            }
+        });
+        operations.add(new Operation("PhotosInterface.getInfo replayed") {
+            int run() throws Exception {
+                return replay.getPhotosInterface().getInfo("2733", null).getTags().size();
+            }
+        });
+        return operations;
+    }
+
+    /**
+     * Record the interface calls of the replayed operations from a
+     * StandInServer answering with the fixtures.
+     */
+    static Recording record() throws Exception {
+        StandInServer server = new StandInServer();
+        server.addFixtures(FIXTURES, new String[] {"flickr.photos.search", "flickr.photos.getInfo"});
+        server.start();
+        try {
+            RecordingTransport recorder = new RecordingTransport(server.createTransport());
+            Flickr flickr = new Flickr("key", "secret", recorder);
+            flickr.getPhotosInterface().search(new SearchParameters(), 100, 1);
+            flickr.getPhotosInterface().getInfo("2733", null);
+            return recorder.getRecording();
+        } finally {
+            server.stop();
+        }
+    }
+
+    static byte[] readFixture(String name) throws IOException {
+        InputStream in = HotPathBenchmark.class.getResourceAsStream(FIXTURES + name);
+        if (in == null) {
+            throw new IOException("Fixture not found: " + name);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            IOUtilities.close(in);
+        }
+    }
+
+    /**
+     * Parse a response the way REST.get() does.
+     */
+    static RESTResponse parse(DocumentBuilder builder, byte[] data) throws Exception {
+        RESTResponse response = new RESTResponse();
+        response.parse(builder.parse(new ByteArrayInputStream(data)));
+        return response;
+    }
+
+    private static void measure(Operation operation, long time, int iterations) throws Exception {
+        // warmup
+        runFor(operation, time);
+        runFor(operation, time);
+
+        double[] throughput = new double[iterations];
+        double[] allocation = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            long ops = runFor(operation, time);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            throughput[i] = ops / seconds;
+            allocation[i] = allocated < 0 ? -1 : (double) (allocatedBytes() - allocated) / ops;
+        }
+        Arrays.sort(throughput);
+        Arrays.sort(allocation);
+        double opsPerSecond = throughput[iterations / 2];
+        double bytesPerOp = allocation[iterations / 2];
+        System.out.println(pad(operation.name, 36)
+            + pad(String.valueOf(Math.round(opsPerSecond)), 14)
+            + (bytesPerOp < 0
+                ? pad("n/a", 12) + "n/a"
+                : pad(String.valueOf(Math.round(bytesPerOp)), 12)
+                    + Math.round(bytesPerOp * opsPerSecond / (1024 * 1024))));
+    }
+
+    private static long runFor(Operation operation, long millis) throws Exception {
+        long end = System.nanoTime() + millis * 1000000L;
+        long ops = 0;
+        int batch = 1;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < batch; i++) {
+                sink += operation.run();
+            }
+            ops += batch;
+            if (batch < 1024) {
+                batch *= 2;
+            }
+        }
+        return ops;
+    }
+
+    private static Method allocatedBytesMethod;
+
+    /**
+     * @return The bytes allocated by the current thread, or -1 if the JVM
+     * doesn't count them
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        try {
+            if (allocatedBytesMethod == null) {
+                allocatedBytesMethod = Class.forName("com.sun.management.ThreadMXBean")
+                    .getMethod("getThreadAllocatedBytes", new Class[] {long.class});
+            }
+            Long bytes = (Long) allocatedBytesMethod.invoke(
+                bean, new Object[] {new Long(Thread.currentThread().getId())});
+            return bytes.longValue();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private static String pad(String s, int width) {
+        StringBuffer buffer = new StringBuffer(s);
+        while (buffer.length() < width) {
+            buffer.append(' ');
+        }
+        return buffer.toString();
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.aetrion.flickr.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+
+import com.aetrion.flickr.ProgressListener;
+import com.aetrion.flickr.RESTResponse;
+import com.aetrion.flickr.Response;
+import com.aetrion.flickr.Transport;
+import com.aetrion.flickr.photos.PhotosInterface;
+import com.aetrion.flickr.places.Place;
+import com.aetrion.flickr.places.PlacesInterface;
+
+/**
+ * Measures the binding of already parsed responses to objects for the
+ * heaviest single responses: flickr.photos.getInfo of a photo with many
+ * tags and notes, flickr.places.getInfo and flickr.places.placesForUser.
+ * The XML parsing itself is left out, the transport hands out responses
+ * of documents parsed once.<p>
+ *
+ * Run with <code>java com.aetrion.flickr.benchmark.ParseBenchmark</code>.
+ * Prints microseconds per call.
+ */
+public class ParseBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    /** Keeps the results alive, so the JIT can't drop the loops. */
+    static int sink;
+
+    public static void main(String[] args) throws Exception {
+        CannedTransport transport = new CannedTransport();
+        PhotosInterface photos = new PhotosInterface("key", "secret", transport);
+        PlacesInterface places = new PlacesInterface("key", "secret", transport);
+        Document photoInfo = parse(createPhotoInfo(500, 50));
+        Document placeInfo = parse(createPlaceInfo());
+        Document userPlaces = parse(createPlacesForUser(1000));
+
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean warmup = round < ROUNDS - 1;
+
+            transport.document = photoInfo;
+            long start = System.nanoTime();
+            for (int n = 0; n < 2000; n++) {
+                sink += photos.getInfo("1", null).getTags().size();
+            }
+            report(warmup, "photos.getInfo:       ", 2000, start);
+
+            transport.document = placeInfo;
+            start = System.nanoTime();
+            for (int n = 0; n < 100000; n++) {
+                sink += places.getInfo("1", null).getCountry().getName().length();
+            }
+            report(warmup, "places.getInfo:       ", 100000, start);
+
+            transport.document = userPlaces;
+            start = System.nanoTime();
+            for (int n = 0; n < 1000; n++) {
+                sink += places.placesForUser(Place.TYPE_LOCALITY, null, null, null,
+                    null, null, null, null).size();
+            }
+            report(warmup, "places.placesForUser: ", 1000, start);
+        }
+    }
+
+    private static void report(boolean warmup, String name, int calls, long start) {
+        if (!warmup) {
+            double micros = (System.nanoTime() - start) / 1e3 / calls;
+            System.out.println(name + " " + Math.round(micros * 10) / 10.0 + " us/call");
+        }
+    }
+
+    private static Document parse(String xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+            .parse(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+    }
+
+    static String createPhotoInfo(int tags, int notes) {
+        StringBuffer xml = new StringBuffer();
+        xml.append("<rsp stat=\"ok\">\n<photo id=\"2733\" secret=\"123456\" server=\"12\" farm=\"1\"")
+            .append(" isfavorite=\"0\" license=\"3\" rotation=\"90\" originalsecret=\"1bc09ce34a\"")
+            .append(" originalformat=\"png\" views=\"42\" media=\"photo\">\n")
+            .append("\t<owner nsid=\"12037949754@N01\" username=\"Bees\" realname=\"Cal Henderson\" location=\"Bedford, UK\"/>\n")
+            .append("\t<title>orford_castle_taster</title>\n")
+            .append("\t<description>hello!</description>\n")
+            .append("\t<visibility ispublic=\"1\" isfriend=\"0\" isfamily=\"0\"/>\n")
+            .append("\t<dates posted=\"1100897479\" taken=\"2004-11-19 12:51:19\" takengranularity=\"0\" lastupdate=\"1093022469\"/>\n")
+            .append("\t<permissions permcomment=\"3\" permaddmeta=\"2\"/>\n")
+            .append("\t<editability cancomment=\"1\" canaddmeta=\"1\"/>\n")
+            .append("\t<comments>1</comments>\n")
+            .append("\t<notes>\n");
+        for (int i = 0; i < notes; i++) {
+            xml.append("\t\t<note id=\"").append(313 + i).append("\" author=\"12037949754@N01\"")
+                .append(" authorname=\"Bees\" x=\"10\" y=\"10\" w=\"50\" h=\"50\">foo ").append(i)
+                .append("</note>\n");
+        }
+        xml.append("\t</notes>\n\t<tags>\n");
+        for (int i = 0; i < tags; i++) {
+            xml.append("\t\t<tag id=\"1234-").append(i).append("\" author=\"12037949754@N01\" raw=\"Tag ")
+                .append(i).append("\">tag").append(i).append("</tag>\n");
+        }
+        xml.append("\t</tags>\n")
+            .append("\t<location latitude=\"52.1\" longitude=\"-0.4\" accuracy=\"16\">\n")
+            .append("\t\t<locality place_id=\"a\" woeid=\"1\">Bedford</locality>\n")
+            .append("\t\t<county place_id=\"b\" woeid=\"2\">Bedfordshire</county>\n")
+            .append("\t\t<region place_id=\"c\" woeid=\"3\">England</region>\n")
+            .append("\t\t<country place_id=\"d\" woeid=\"4\">United Kingdom</country>\n")
+            .append("\t</location>\n")
+            .append("\t<urls>\n\t\t<url type=\"photopage\">http://www.flickr.com/photos/bees/2733/</url>\n\t</urls>\n")
+            .append("</photo>\n</rsp>\n");
+        return xml.toString();
+    }
+
+    static String createPlaceInfo() {
+        return "<rsp stat=\"ok\">\n"
+            + "<location place_id=\"kH8dLOubBZRvX_YZ\" woeid=\"2487956\" latitude=\"37.779\" longitude=\"-122.420\""
+            + " place_url=\"/United+States/California/San+Francisco\" place_type=\"locality\">\n"
+            + "\t<locality place_id=\"kH8dLOubBZRvX_YZ\" woeid=\"2487956\" latitude=\"37.779\" longitude=\"-122.420\""
+            + " place_url=\"/United+States/California/San+Francisco\">San Francisco</locality>\n"
+            + "\t<county place_id=\"hCca8XSYA5nn0X1Sfw\" woeid=\"12587707\" latitude=\"37.759\" longitude=\"-122.435\""
+            + " place_url=\"/hCca8XSYA5nn0X1Sfw\">San Francisco</county>\n"
+            + "\t<region place_id=\"SVrAMtCbAphCLAtP\" woeid=\"2347563\" latitude=\"37.271\" longitude=\"-119.270\""
+            + " place_url=\"/United+States/California\">California</region>\n"
+            + "\t<country place_id=\"4KO02SibApitvSBieQ\" woeid=\"23424977\" latitude=\"48.890\" longitude=\"-116.982\""
+            + " place_url=\"/United+States\">United States</country>\n"
+            + "</location>\n</rsp>\n";
+    }
+
+    static String createPlacesForUser(int count) {
+        StringBuffer xml = new StringBuffer();
+        xml.append("<rsp stat=\"ok\">\n<places total=\"").append(count).append("\">\n");
+        for (int i = 0; i < count; i++) {
+            xml.append("\t<place place_id=\"kH8dLOubBZRvX_").append(i).append("\" woeid=\"").append(2487956 + i)
+                .append("\" latitude=\"37.779\" longitude=\"-122.420\" place_url=\"/United+States/California/City")
+                .append(i).append("\" place_type=\"locality\" place_type_id=\"7\" photo_count=\"").append(i)
+                .append("\">City ").append(i).append(", California, United States</place>\n");
+        }
+        xml.append("</places>\n</rsp>\n");
+        return xml.toString();
+    }
+
+    /**
+     * Answers every request with a response of the current document.
+     */
+    static class CannedTransport extends Transport {
+
+        Document document;
+
+        public Response get(String path, List parameters) {
+            RESTResponse response = new RESTResponse();
+            response.parse(document);
+            return response;
+        }
+
+        public Response post(String path, List parameters, boolean multipart,
+          ProgressListener progressListener, boolean video) {
+            return get(path, parameters);
+        }
+
+    }
+
+}
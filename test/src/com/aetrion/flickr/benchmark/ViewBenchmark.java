@@ -0,0 +1,88 @@
+package com.aetrion.flickr.benchmark;
+
+import java.io.ByteArrayInputStream;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import com.aetrion.flickr.photos.Photo;
+import com.aetrion.flickr.photos.PhotoList;
+import com.aetrion.flickr.photos.PhotoUtils;
+import com.aetrion.flickr.photos.PhotoViewList;
+
+/**
+ * Lists id, secret, server and farm of search result pages, once with
+ * DOM parsing and PhotoUtils, once with a PhotoViewList over the raw
+ * bytes. A loop summing all response bytes shows the memory bandwidth.<p>
+ *
+ * Run with <code>java com.aetrion.flickr.benchmark.ViewBenchmark</code>.
+ * Prints megabytes of response per second.
+ */
+public class ViewBenchmark {
+
+    private static final int PAGES = 20;
+    private static final int ROUNDS = 5;
+
+    /** Keeps the results alive, so the JIT can't drop the loops. */
+    static int sink;
+
+    public static void main(String[] args) throws Exception {
+        byte[][] pages = new byte[PAGES][];
+        long bytes = 0;
+        for (int i = 0; i < PAGES; i++) {
+            pages[i] = FootprintBenchmark.createPage(i);
+            bytes += pages[i].length;
+        }
+        DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean warmup = round < ROUNDS - 1;
+
+            long start = System.nanoTime();
+            for (int n = 0; n < 10; n++) {
+                for (int i = 0; i < PAGES; i++) {
+                    byte[] page = pages[i];
+                    int sum = 0;
+                    for (int b = 0; b < page.length; b++) {
+                        sum += page[b];
+                    }
+                    sink += sum;
+                }
+            }
+            report(warmup, "byte scan:       ", bytes * 10, start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < PAGES; i++) {
+                PhotoList photos = PhotoUtils.createPhotoList(
+                    builder.parse(new ByteArrayInputStream(pages[i])).getDocumentElement());
+                for (int p = 0; p < photos.size(); p++) {
+                    list((Photo) photos.get(p));
+                }
+            }
+            report(warmup, "DOM + PhotoUtils:", bytes, start);
+
+            start = System.nanoTime();
+            for (int n = 0; n < 10; n++) {
+                for (int i = 0; i < PAGES; i++) {
+                    PhotoViewList photos = new PhotoViewList(pages[i]);
+                    for (int p = 0; p < photos.size(); p++) {
+                        list(photos.get(p));
+                    }
+                }
+            }
+            report(warmup, "PhotoViewList:   ", bytes * 10, start);
+        }
+    }
+
+    private static void list(Photo photo) {
+        sink += photo.getId().length() + photo.getSecret().length()
+            + photo.getServer().length() + photo.getFarm().length();
+    }
+
+    private static void report(boolean warmup, String name, long bytes, long start) {
+        if (!warmup) {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(name + " " + Math.round(bytes / seconds / (1024 * 1024)) + " MB/s");
+        }
+    }
+
+}
@@ -0,0 +1,797 @@
+package com.aetrion.flickr.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import com.aetrion.flickr.REST;
+import com.aetrion.flickr.util.IOUtilities;
+
+/**
+ * A local stand-in for the Flickr API, answering /services/rest/ from
+ * recorded responses, accepting uploads on /services/upload/ and
+ * /services/replace/ and serving images on /images/.<p>
+ *
+ * REST requests are answered with the fixture of their method,
+ * flickr.test.echo with its parameters and unknown methods with error
+ * 112. Uploads are read completely and answered with a new photo id.
+ * Images answer HEAD and byte-range requests like the static servers.
+ * Latency, jitter, bandwidth per connection and the rate of
+ * "Service currently unavailable" errors can be changed while the
+ * server runs.<p>
+ *
+ * All connections are served by one selector thread, so thousands of
+ * concurrent, persistent connections cost no threads. The backlog of
+ * the listening socket is large enough for bursts of new connections.
+ *
+ * <pre>
+ * StandInServer server = new StandInServer();
+ * server.addFixtures(StandInServer.DEFAULT_FIXTURES, new String[] {"flickr.photos.search"});
+ * server.setLatency(80);
+ * server.start();
+ * Flickr flickr = new Flickr("key", "secret", server.createTransport());
+ * </pre>
+ *
+ * Run standalone with <code>java com.aetrion.flickr.server.StandInServer
+ * [-port n] [-latency ms] [-jitter ms] [-bandwidth bytesPerSecond] [-errors rate]</code>.
+ */
+public class StandInServer {
+
+    public static final String REST_PATH = "/services/rest/";
+    public static final String UPLOAD_PATH = "/services/upload/";
+    public static final String REPLACE_PATH = "/services/replace/";
+    public static final String IMAGE_PATH = "/images/";
+
+    /** The recorded responses of the benchmarks, named like photos.search.xml. */
+    public static final String DEFAULT_FIXTURES = "/com/aetrion/flickr/benchmark/fixtures/";
+
+    private static final int BACKLOG = 4096;
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_HEADER_SIZE = 65536;
+
+    private static final int READING_HEADERS = 0;
+    private static final int READING_BODY = 1;
+    private static final int WAITING = 2;
+    private static final int WRITING = 3;
+
+    private final Map fixtures = new HashMap();
+    private final Map images = new HashMap();
+
+    private volatile long latency;
+    private volatile long jitter;
+    private volatile long bandwidth;
+    private volatile double errorRate;
+    private volatile int imageTruncation;
+    private volatile boolean misplacedRanges;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong photoIds = new AtomicLong(4000000000L);
+
+    private final Random random = new Random();
+
+    /** Connections waiting for their latency or bandwidth, by wake-up time. */
+    private final PriorityQueue waiting = new PriorityQueue(64, new Comparator() {
+        public int compare(Object o1, Object o2) {
+            long t1 = ((Connection) o1).wakeAt;
+            long t2 = ((Connection) o2).wakeAt;
+            return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+        }
+    });
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * The state of one client connection. Only used by the selector thread.
+     */
+    private static class Connection {
+
+        SocketChannel channel;
+        SelectionKey key;
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        ByteBuffer out;
+        int state = READING_HEADERS;
+        String method;
+        String path;
+        String query;
+        String range;
+        long bodyRemaining;
+        ByteArrayOutputStream body;
+        boolean close;
+        long wakeAt;
+
+        void reset() {
+            state = READING_HEADERS;
+            method = null;
+            path = null;
+            query = null;
+            range = null;
+            body = null;
+            bodyRemaining = 0;
+            out = null;
+        }
+
+    }
+
+    /**
+     * Add the recorded response of a method.
+     *
+     * @param method The method name, like flickr.photos.search
+     * @param response The complete response, including the rsp element
+     */
+    public void addFixture(String method, byte[] response) {
+        synchronized (fixtures) {
+            fixtures.put(method, response);
+        }
+    }
+
+    /**
+     * Add recorded responses from the classpath. The response of
+     * flickr.photos.search is read from <code>directory + "photos.search.xml"</code>.
+     *
+     * @param directory The resource directory, ending with a slash
+     * @param methods The method names
+     * @throws IOException If a fixture is missing
+     */
+    public void addFixtures(String directory, String[] methods) throws IOException {
+        for (int i = 0; i < methods.length; i++) {
+            String name = methods[i].startsWith("flickr.") ? methods[i].substring(7) : methods[i];
+            InputStream in = StandInServer.class.getResourceAsStream(directory + name + ".xml");
+            if (in == null) {
+                throw new IOException("Fixture not found: " + directory + name + ".xml");
+            }
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+                addFixture(methods[i], out.toByteArray());
+            } finally {
+                IOUtilities.close(in);
+            }
+        }
+    }
+
+    /**
+     * Add an image, served at {@link #getImageUrl(String)}.
+     *
+     * @param name The file name, like 2733_abc_o.jpg
+     * @param data The image
+     */
+    public void addImage(String name, byte[] data) {
+        synchronized (images) {
+            images.put(name, data);
+        }
+    }
+
+    /**
+     * @param name The file name of an image
+     * @return The URL of the image on the started server
+     */
+    public String getImageUrl(String name) {
+        return "http://127.0.0.1:" + getPort() + IMAGE_PATH + name;
+    }
+
+    /**
+     * @param imageTruncation The number of bytes left out at the end of each
+     * image response, which still announces its full length
+     */
+    public void setImageTruncation(int imageTruncation) {
+        this.imageTruncation = imageTruncation;
+    }
+
+    /**
+     * @param misplacedRanges Answer byte-range requests from the start of the
+     * image, with a Content-Range saying so, like a server ignoring the offset
+     */
+    public void setMisplacedRanges(boolean misplacedRanges) {
+        this.misplacedRanges = misplacedRanges;
+    }
+
+    /**
+     * @param latency The milliseconds between a complete request and the response
+     */
+    public void setLatency(long latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * @param jitter The maximum of random milliseconds added to the latency
+     */
+    public void setJitter(long jitter) {
+        this.jitter = jitter;
+    }
+
+    /**
+     * @param bandwidth The bytes per second written to each connection, 0 for no limit
+     */
+    public void setBandwidth(long bandwidth) {
+        this.bandwidth = bandwidth;
+    }
+
+    /**
+     * @param errorRate The fraction of requests answered with error 105, between 0 and 1
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @return The number of answered requests
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return The number of requests answered with an injected error
+     */
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    /**
+     * @return The number of bytes received
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * @return The number of bytes sent
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * @return The number of open connections
+     */
+    public long getConnectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * Start the server on a free port of the loopback interface.
+     *
+     * @return The port
+     * @throws IOException
+     */
+    public int start() throws IOException {
+        return start(0);
+    }
+
+    /**
+     * Start the server.
+     *
+     * @param port The port, 0 for a free one
+     * @return The port
+     * @throws IOException
+     */
+    public synchronized int start(int port) throws IOException {
+        if (running) {
+            throw new IllegalStateException("Already started");
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.socket().bind(new InetSocketAddress("127.0.0.1", port), BACKLOG);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        thread = new Thread(new Runnable() {
+            public void run() {
+                loop();
+            }
+        }, "StandInServer-" + getPort());
+        thread.setDaemon(true);
+        thread.start();
+        return getPort();
+    }
+
+    /**
+     * @return The port the server listens on
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Stop the server and close all connections.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return A REST transport sending to this server
+     */
+    public REST createTransport() {
+        try {
+            return new REST("127.0.0.1", getPort());
+        } catch (ParserConfigurationException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    private void loop() {
+        try {
+            while (running) {
+                long timeout = 0;
+                if (!waiting.isEmpty()) {
+                    long delay = ((Connection) waiting.peek()).wakeAt - System.nanoTime();
+                    timeout = Math.max(1, delay / 1000000L);
+                }
+                selector.select(timeout);
+                Iterator keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = (SelectionKey) keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                read(connection);
+                            } else if (key.isWritable()) {
+                                write(connection);
+                            }
+                        } catch (IOException e) {
+                            close(connection);
+                        }
+                    }
+                }
+                long now = System.nanoTime();
+                while (!waiting.isEmpty() && ((Connection) waiting.peek()).wakeAt <= now) {
+                    Connection connection = (Connection) waiting.poll();
+                    try {
+                        connection.state = WRITING;
+                        write(connection);
+                    } catch (IOException e) {
+                        close(connection);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            Iterator keys = selector.keys().iterator();
+            while (keys.hasNext()) {
+                try {
+                    ((SelectionKey) keys.next()).channel().close();
+                } catch (IOException e) {
+                    // closing anyway
+                }
+            }
+            waiting.clear();
+            connections.set(0);
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection();
+            connection.channel = channel;
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.incrementAndGet();
+        }
+    }
+
+    private void close(Connection connection) {
+        if (connection.channel.isOpen()) {
+            connections.decrementAndGet();
+            connection.key.cancel();
+            try {
+                connection.channel.close();
+            } catch (IOException e) {
+                // closed anyway
+            }
+        }
+        waiting.remove(connection);
+    }
+
+    private void read(Connection connection) throws IOException {
+        if (!connection.in.hasRemaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(connection.in.capacity() * 2);
+            connection.in.flip();
+            larger.put(connection.in);
+            connection.in = larger;
+        }
+        int n = connection.channel.read(connection.in);
+        if (n < 0) {
+            close(connection);
+            return;
+        }
+        bytesRead.addAndGet(n);
+        process(connection);
+    }
+
+    /**
+     * Consume the buffered input of a connection and answer the request
+     * once it is complete.
+     */
+    private void process(Connection connection) throws IOException {
+        if (connection.state == READING_HEADERS) {
+            int end = indexOfHeaderEnd(connection.in);
+            if (end < 0) {
+                if (connection.in.position() > MAX_HEADER_SIZE) {
+                    close(connection);
+                }
+                return;
+            }
+            String header = new String(connection.in.array(), 0, end, "ISO-8859-1");
+            consume(connection.in, end + 4);
+            if (!parseHeader(connection, header)) {
+                respond(connection, 400, "Bad Request", new byte[0]);
+                connection.close = true;
+                return;
+            }
+            connection.state = READING_BODY;
+        }
+        if (connection.state == READING_BODY) {
+            int available = (int) Math.min(connection.in.position(), connection.bodyRemaining);
+            if (available > 0) {
+                if (connection.body != null) {
+                    connection.body.write(connection.in.array(), 0, available);
+                }
+                consume(connection.in, available);
+                connection.bodyRemaining -= available;
+            }
+            if (connection.bodyRemaining == 0) {
+                answer(connection);
+            }
+        }
+    }
+
+    private static int indexOfHeaderEnd(ByteBuffer in) {
+        byte[] data = in.array();
+        for (int i = 3; i < in.position(); i++) {
+            if (data[i] == '\n' && data[i - 1] == '\r' && data[i - 2] == '\n' && data[i - 3] == '\r') {
+                return i - 3;
+            }
+        }
+        return -1;
+    }
+
+    private static void consume(ByteBuffer in, int count) {
+        in.flip();
+        in.position(count);
+        in.compact();
+    }
+
+    private boolean parseHeader(Connection connection, String header) {
+        String[] lines = header.split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3) {
+            return false;
+        }
+        connection.method = requestLine[0];
+        String target = requestLine[1];
+        int question = target.indexOf('?');
+        connection.path = question < 0 ? target : target.substring(0, question);
+        connection.query = question < 0 ? null : target.substring(question + 1);
+        connection.close = "HTTP/1.0".equals(requestLine[2]);
+        connection.bodyRemaining = 0;
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String name = lines[i].substring(0, colon).trim().toLowerCase();
+            String value = lines[i].substring(colon + 1).trim();
+            if ("content-length".equals(name)) {
+                try {
+                    connection.bodyRemaining = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            } else if ("range".equals(name)) {
+                connection.range = value;
+            } else if ("connection".equals(name)) {
+                connection.close = "close".equalsIgnoreCase(value);
+            } else if ("transfer-encoding".equals(name)) {
+                // only bodies with a length are supported
+                return false;
+            }
+        }
+        // uploads are counted, not kept
+        connection.body = REST_PATH.equals(connection.path) && connection.bodyRemaining > 0
+            ? new ByteArrayOutputStream((int) connection.bodyRemaining) : null;
+        return true;
+    }
+
+    private void answer(Connection connection) throws IOException {
+        if (connection.path.startsWith(IMAGE_PATH)) {
+            image(connection);
+        } else if (random.nextDouble() < errorRate) {
+            errors.incrementAndGet();
+            respond(connection, 200, "OK", error(105, "Service currently unavailable"));
+        } else if (REST_PATH.equals(connection.path)) {
+            Map parameters = new LinkedHashMap();
+            decode(connection.query, parameters);
+            if (connection.body != null) {
+                decode(connection.body.toString("ISO-8859-1"), parameters);
+            }
+            respond(connection, 200, "OK", rest(parameters));
+        } else if (UPLOAD_PATH.equals(connection.path) || REPLACE_PATH.equals(connection.path)) {
+            respond(connection, 200, "OK", ("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<rsp stat=\"ok\">\n<photoid>"
+                + photoIds.incrementAndGet() + "</photoid>\n</rsp>\n").getBytes("UTF-8"));
+        } else {
+            respond(connection, 404, "Not Found", new byte[0]);
+        }
+    }
+
+    /**
+     * Answer an image request, honoring a single byte-range.
+     */
+    private void image(Connection connection) throws IOException {
+        byte[] image;
+        synchronized (images) {
+            image = (byte[]) images.get(connection.path.substring(IMAGE_PATH.length()));
+        }
+        if (image == null) {
+            respond(connection, 404, "Not Found", new byte[0]);
+            return;
+        }
+        int first = 0;
+        int last = image.length - 1;
+        boolean partial = false;
+        if (connection.range != null && connection.range.startsWith("bytes=")) {
+            String range = connection.range.substring(6);
+            int dash = range.indexOf('-');
+            try {
+                first = Integer.parseInt(range.substring(0, dash).trim());
+                if (dash + 1 < range.length()) {
+                    last = Math.min(last, Integer.parseInt(range.substring(dash + 1).trim()));
+                }
+            } catch (RuntimeException e) {
+                respond(connection, 400, "Bad Request", new byte[0]);
+                return;
+            }
+            if (first >= image.length || first > last) {
+                respond(connection, 416, "Requested Range Not Satisfiable", "Content-Range: bytes */"
+                    + image.length + "\r\n", new byte[0], 0);
+                return;
+            }
+            if (misplacedRanges) {
+                last -= first;
+                first = 0;
+            }
+            partial = true;
+        }
+        int length = last - first + 1;
+        String headers = "Content-Type: image/jpeg\r\nAccept-Ranges: bytes\r\n";
+        if (partial) {
+            headers += "Content-Range: bytes " + first + "-" + last + "/" + image.length + "\r\n";
+        }
+        byte[] body = new byte[0];
+        if (!"HEAD".equals(connection.method)) {
+            body = new byte[Math.max(0, length - imageTruncation)];
+            System.arraycopy(image, first, body, 0, body.length);
+            if (body.length < length) {
+                // the client only notices the missing bytes at the end of the stream
+                connection.close = true;
+            }
+        }
+        if (partial) {
+            respond(connection, 206, "Partial Content", headers, body, length);
+        } else {
+            respond(connection, 200, "OK", headers, body, length);
+        }
+    }
+
+    private byte[] rest(Map parameters) throws UnsupportedEncodingException {
+        String method = (String) parameters.get("method");
+        if ("flickr.test.echo".equals(method)) {
+            StringBuffer xml = new StringBuffer("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<rsp stat=\"ok\">\n");
+            Iterator iter = parameters.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry entry = (Map.Entry) iter.next();
+                String name = escape((String) entry.getKey());
+                xml.append('<').append(name).append('>').append(escape((String) entry.getValue()))
+                    .append("</").append(name).append(">\n");
+            }
+            xml.append("</rsp>\n");
+            return xml.toString().getBytes("UTF-8");
+        }
+        byte[] fixture;
+        synchronized (fixtures) {
+            fixture = (byte[]) fixtures.get(method);
+        }
+        if (fixture == null) {
+            return error(112, "Method \"" + method + "\" not found");
+        }
+        return fixture;
+    }
+
+    private static byte[] error(int code, String message) throws UnsupportedEncodingException {
+        return ("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<rsp stat=\"fail\">\n\t<err code=\""
+            + code + "\" msg=\"" + escape(message) + "\" />\n</rsp>\n").getBytes("UTF-8");
+    }
+
+    private static String escape(String s) {
+        StringBuffer buffer = new StringBuffer(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+            case '<':
+                buffer.append("&lt;");
+                break;
+            case '>':
+                buffer.append("&gt;");
+                break;
+            case '&':
+                buffer.append("&amp;");
+                break;
+            case '"':
+                buffer.append("&quot;");
+                break;
+            default:
+                buffer.append(c);
+            }
+        }
+        return buffer.toString();
+    }
+
+    private static void decode(String form, Map parameters) throws UnsupportedEncodingException {
+        if (form == null || form.length() == 0) {
+            return;
+        }
+        String[] pairs = form.split("&");
+        for (int i = 0; i < pairs.length; i++) {
+            int equals = pairs[i].indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pairs[i].substring(0, equals), "UTF-8"),
+                    URLDecoder.decode(pairs[i].substring(equals + 1), "UTF-8"));
+            }
+        }
+    }
+
+    /**
+     * Queue an XML response, to be written after the latency.
+     */
+    private void respond(Connection connection, int status, String reason, byte[] body) throws IOException {
+        respond(connection, status, reason, "Content-Type: text/xml; charset=utf-8\r\n", body, body.length);
+    }
+
+    /**
+     * Queue the response, to be written after the latency.
+     *
+     * @param headers Additional header lines, each ending with CRLF
+     * @param contentLength The announced length of the body
+     */
+    private void respond(Connection connection, int status, String reason, String headers, byte[] body,
+        long contentLength) throws IOException {
+        String header = "HTTP/1.1 " + status + " " + reason + "\r\n"
+            + headers
+            + "Content-Length: " + contentLength + "\r\n"
+            + (connection.close ? "Connection: close\r\n" : "")
+            + "\r\n";
+        byte[] head = header.getBytes("ISO-8859-1");
+        connection.out = ByteBuffer.allocate(head.length + body.length);
+        connection.out.put(head).put(body).flip();
+        // counted before the client can see the response
+        requests.incrementAndGet();
+        connection.key.interestOps(0);
+
+        long delay = latency;
+        if (jitter > 0) {
+            delay += (long) (random.nextDouble() * jitter);
+        }
+        if (delay > 0) {
+            connection.state = WAITING;
+            connection.wakeAt = System.nanoTime() + delay * 1000000L;
+            waiting.add(connection);
+        } else {
+            connection.state = WRITING;
+            write(connection);
+        }
+    }
+
+    private void write(Connection connection) throws IOException {
+        ByteBuffer out = connection.out;
+        long limitPerSecond = bandwidth;
+        int limit = out.limit();
+        if (limitPerSecond > 0) {
+            // write 10 ms worth of bytes at a time
+            int chunk = (int) Math.max(1, Math.min(Integer.MAX_VALUE, limitPerSecond / 100));
+            if (out.remaining() > chunk) {
+                out.limit(out.position() + chunk);
+            }
+        }
+        int n = connection.channel.write(out);
+        out.limit(limit);
+        bytesWritten.addAndGet(n);
+
+        if (!out.hasRemaining()) {
+            if (connection.close) {
+                close(connection);
+                return;
+            }
+            connection.reset();
+            connection.key.interestOps(SelectionKey.OP_READ);
+            if (connection.in.position() > 0) {
+                process(connection);
+            }
+        } else if (limitPerSecond > 0 && n > 0) {
+            connection.key.interestOps(0);
+            connection.wakeAt = System.nanoTime() + n * 1000000000L / limitPerSecond;
+            waiting.add(connection);
+        } else {
+            connection.key.interestOps(SelectionKey.OP_WRITE);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        StandInServer server = new StandInServer();
+        int port = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if ("-port".equals(args[i])) {
+                port = Integer.parseInt(args[i + 1]);
+            } else if ("-latency".equals(args[i])) {
+                server.setLatency(Long.parseLong(args[i + 1]));
+            } else if ("-jitter".equals(args[i])) {
+                server.setJitter(Long.parseLong(args[i + 1]));
+            } else if ("-bandwidth".equals(args[i])) {
+                server.setBandwidth(Long.parseLong(args[i + 1]));
+            } else if ("-errors".equals(args[i])) {
+                server.setErrorRate(Double.parseDouble(args[i + 1]));
+            }
+        }
+        server.addFixtures(DEFAULT_FIXTURES, new String[] {"flickr.photos.search", "flickr.photos.getInfo"});
+        System.out.println("Listening on http://127.0.0.1:" + server.start(port) + REST_PATH);
+        while (true) {
+            Thread.sleep(10000);
+            System.out.println(server.getRequestCount() + " requests, " + server.getConnectionCount()
+                + " connections, " + server.getErrorCount() + " errors");
+        }
+    }
+
+}